@@ -0,0 +1,194 @@
+package com.github.uplert.agent;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * The connection to the backend's {@code /ws/agent} endpoint. It reconnects with exponential backoff whenever the
+ * connection fails or is closed. Sends block until the frame is written, one at a time, and fail rather than wait
+ * while there is no connection.
+ */
+final class AgentSocket implements WebSocket.Listener, ResultUploader.Connection {
+    private static final System.Logger log = System.getLogger(AgentSocket.class.getName());
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final String token;
+    private final Duration sendTimeout;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService worker;
+    private final Consumer<String> onMessage;
+    private final Runnable onConnected;
+    // the open connection, and the same once onConnected has run and it is used for sends
+    private final AtomicReference<WebSocket> current = new AtomicReference<>();
+    private final AtomicReference<WebSocket> ready = new AtomicReference<>();
+    // only touched by the listener callbacks, which the client never runs concurrently
+    private final StringBuilder partial = new StringBuilder();
+    // sends hold the socket's monitor for up to the send timeout, the backoff has its own
+    private final Object backoffLock = new Object();
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+    private volatile int generation;
+    private volatile boolean closed;
+
+    /**
+     * @param onMessage   gets every text frame, on the worker
+     * @param onConnected runs on the worker after every (re)connect, before any message of the new connection
+     */
+    AgentSocket(URI uri, String token, Duration connectTimeout, Duration sendTimeout, ScheduledExecutorService timer,
+                ExecutorService worker, Consumer<String> onMessage, Runnable onConnected) {
+        this.uri = uri;
+        this.token = token;
+        this.sendTimeout = sendTimeout;
+        this.timer = timer;
+        this.worker = worker;
+        this.onMessage = onMessage;
+        this.onConnected = onConnected;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+    }
+
+    @Override
+    public int generation() {
+        return generation;
+    }
+
+    void connect() {
+        if (closed) {
+            return;
+        }
+        httpClient.newWebSocketBuilder()
+                .header("Authorization", "Bearer " + token)
+                .buildAsync(uri, this)
+                .whenComplete((connected, throwable) -> {
+                    if (throwable != null) {
+                        log.log(System.Logger.Level.WARNING, "Failed to connect to {0}: {1}", uri, throwable.getMessage());
+                        reconnectLater();
+                    }
+                });
+    }
+
+    synchronized boolean sendText(String text) {
+        WebSocket webSocket = ready.get();
+        if (webSocket == null) {
+            return false;
+        }
+        try {
+            webSocket.sendText(text, true).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            lost(webSocket, "send failed: " + e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean sendBinary(byte[] data) {
+        WebSocket webSocket = ready.get();
+        if (webSocket == null) {
+            return false;
+        }
+        try {
+            webSocket.sendBinary(ByteBuffer.wrap(data), true).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            lost(webSocket, "send failed: " + e);
+            return false;
+        }
+    }
+
+    void close() {
+        closed = true;
+        ready.set(null);
+        WebSocket webSocket = current.getAndSet(null);
+        if (webSocket != null) {
+            try {
+                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Agent stopped").get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                webSocket.abort();
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        log.log(System.Logger.Level.INFO, "Connected to {0}", uri);
+        partial.setLength(0);
+        current.set(webSocket);
+        // messages only start to flow once onConnected has run
+        worker.execute(() -> {
+            generation++;
+            if (current.get() == webSocket) {
+                ready.set(webSocket);
+                onConnected.run();
+                webSocket.request(1);
+            }
+        });
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (!last) {
+            webSocket.request(1);
+            return null;
+        }
+        String message = partial.toString();
+        partial.setLength(0);
+        // the backend took the agent, unlike one that closes right after the handshake
+        synchronized (backoffLock) {
+            backoffMillis = MIN_BACKOFF_MILLIS;
+        }
+        worker.execute(() -> {
+            try {
+                onMessage.accept(message);
+            } finally {
+                webSocket.request(1);
+            }
+        });
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        lost(webSocket, "closed with " + statusCode + " " + reason);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        lost(webSocket, String.valueOf(error));
+    }
+
+    private void lost(WebSocket lost, String why) {
+        lost.abort();
+        ready.compareAndSet(lost, null);
+        // a connection is only lost once, whichever callback or send notices first
+        if (current.compareAndSet(lost, null)) {
+            log.log(System.Logger.Level.WARNING, "Connection to {0} lost: {1}", uri, why);
+            reconnectLater();
+        }
+    }
+
+    private void reconnectLater() {
+        if (closed) {
+            return;
+        }
+        long delay;
+        synchronized (backoffLock) {
+            delay = backoffMillis + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        timer.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+}
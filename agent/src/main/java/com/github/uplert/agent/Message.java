@@ -0,0 +1,17 @@
+package com.github.uplert.agent;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Control message exchanged with the backend as a JSON text frame: {@code assign}, {@code delta}, {@code ack} and
+ * {@code probe} come from the backend, {@code resync} goes to it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Message(String type, Long version, List<Monitor> monitors, List<String> removed, Long seq, String id) {
+
+    static Message resync() {
+        return new Message("resync", null, null, null, null, null);
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.uplert.agent;
+
+import java.util.List;
+
+/**
+ * A monitor assigned by the backend.
+ *
+ * @param monitorType {@code HTTP} or {@code TCP}
+ * @param required    keywords the response must contain, may be {@code null}
+ * @param forbidden   keywords the response must not contain, may be {@code null}
+ * @param maxBytes    how much of the response the keywords are looked for in, {@code null} for the default
+ */
+public record Monitor(String id, String url, String monitorType, long intervalMillis, List<String> required,
+                      List<String> forbidden, Integer maxBytes) {
+
+    boolean hasContentCheck() {
+        return required != null && !required.isEmpty() || forbidden != null && !forbidden.isEmpty();
+    }
+}
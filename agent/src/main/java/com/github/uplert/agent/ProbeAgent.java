@@ -0,0 +1,275 @@
+package com.github.uplert.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remote probe agent. It connects to the backend's {@code /ws/agent} endpoint, probes the monitors the backend
+ * assigns to it and uploads the results, see {@link ResultUploader}. Each monitor runs at its interval with a random
+ * phase, on a virtual thread, and is skipped while its previous check is still running.
+ * <p>
+ * Settings come from environment variables, or the system property in brackets:
+ * <ul>
+ *     <li>{@code UPLERT_URL} ({@code uplert.url}): the endpoint, {@code ws://localhost:8080/ws/agent} by default</li>
+ *     <li>{@code AGENT_TOKEN} ({@code uplert.agent.token}): the backend's {@code uplert.agent.token}, required</li>
+ *     <li>{@code AGENT_GROUP} ({@code uplert.agent.group}): the agent group whose monitors to probe, required</li>
+ *     <li>{@code AGENT_ID} ({@code uplert.agent.id}): unique per agent, the host name by default</li>
+ *     <li>{@code AGENT_BATCH_SIZE}, {@code AGENT_FLUSH_INTERVAL}, {@code AGENT_MAX_PENDING_BATCHES},
+ *     {@code AGENT_CONNECT_TIMEOUT}, {@code AGENT_READ_TIMEOUT}: results per batch (500), seconds between flushes
+ *     (1), unacknowledged batches kept while the backend is unreachable (1000), probe timeouts in seconds (5, 10)</li>
+ * </ul>
+ */
+public final class ProbeAgent {
+    private static final System.Logger log = System.getLogger(ProbeAgent.class.getName());
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "agent-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // handles the backend's messages in order
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "agent-worker"));
+    private final ExecutorService probes = Executors.newVirtualThreadPerTaskExecutor();
+    private final Prober prober;
+    private final AgentSocket socket;
+    private final ResultUploader uploader;
+    private final Duration flushInterval;
+    // only touched by the worker
+    private final Map<String, Scheduled> monitors = new HashMap<>();
+    private long version;
+
+    public ProbeAgent(URI uri, String token, Duration connectTimeout, Duration readTimeout, int batchSize,
+                      Duration flushInterval, int maxPendingBatches) {
+        this.prober = new Prober(connectTimeout, readTimeout);
+        this.socket = new AgentSocket(uri, token, connectTimeout, Duration.ofSeconds(10), timer, worker,
+                this::handle, this::connected);
+        this.uploader = new ResultUploader(socket, objectMapper, batchSize, maxPendingBatches);
+        this.flushInterval = flushInterval;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String token = setting("AGENT_TOKEN", "uplert.agent.token", "");
+        String group = setting("AGENT_GROUP", "uplert.agent.group", "");
+        if (token.isBlank() || group.isBlank()) {
+            System.err.println("AGENT_TOKEN and AGENT_GROUP must be set");
+            System.exit(2);
+        }
+        String id = setting("AGENT_ID", "uplert.agent.id", hostName());
+        URI endpoint = URI.create(setting("UPLERT_URL", "uplert.url", "ws://localhost:8080/ws/agent"));
+        URI uri = URI.create(endpoint + (endpoint.getQuery() == null ? "?" : "&")
+                + "agentId=" + encode(id) + "&group=" + encode(group));
+
+        ProbeAgent agent = new ProbeAgent(uri, token,
+                Duration.ofSeconds(Long.parseLong(setting("AGENT_CONNECT_TIMEOUT", "uplert.agent.connect-timeout", "5"))),
+                Duration.ofSeconds(Long.parseLong(setting("AGENT_READ_TIMEOUT", "uplert.agent.read-timeout", "10"))),
+                Integer.parseInt(setting("AGENT_BATCH_SIZE", "uplert.agent.batch-size", "500")),
+                Duration.ofSeconds(Long.parseLong(setting("AGENT_FLUSH_INTERVAL", "uplert.agent.flush-interval", "1"))),
+                Integer.parseInt(setting("AGENT_MAX_PENDING_BATCHES", "uplert.agent.max-pending-batches", "1000")));
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            agent.stop();
+            stopped.countDown();
+        }));
+        log.log(System.Logger.Level.INFO, "Probe agent {0} of group {1} starting", id, group);
+        agent.start();
+        stopped.await();
+    }
+
+    public void start() {
+        timer.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        socket.connect();
+    }
+
+    public void stop() {
+        worker.execute(() -> {
+            monitors.values().forEach(Scheduled::cancel);
+            monitors.clear();
+        });
+        worker.shutdown();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        probes.shutdownNow();
+        flush();
+        socket.close();
+        timer.shutdownNow();
+    }
+
+    private void flush() {
+        try {
+            uploader.flush();
+        } catch (RuntimeException e) {
+            log.log(System.Logger.Level.ERROR, "Failed to upload results", e);
+        }
+    }
+
+    /**
+     * A new connection first gets the results the previous one did not acknowledge, then its assignment.
+     */
+    private void connected() {
+        version = 0;
+        flush();
+    }
+
+    private void handle(String text) {
+        Message message;
+        try {
+            message = objectMapper.readValue(text, Message.class);
+        } catch (JsonProcessingException e) {
+            log.log(System.Logger.Level.WARNING, "Unreadable message from the backend: {0}", e.getOriginalMessage());
+            return;
+        }
+        switch (String.valueOf(message.type())) {
+            case "assign" -> {
+                version = message.version();
+                assign(message.monitors());
+            }
+            case "delta" -> {
+                if (version == 0 || message.version() != version + 1) {
+                    log.log(System.Logger.Level.WARNING, "Missed assignment changes ({0} after {1}), resyncing",
+                            message.version(), version);
+                    version = 0;
+                    sendResync();
+                    return;
+                }
+                version = message.version();
+                update(message.monitors(), message.removed());
+            }
+            case "ack" -> uploader.acknowledged(message.seq());
+            case "probe" -> {
+                Scheduled scheduled = monitors.get(message.id());
+                if (scheduled != null) {
+                    scheduled.runNow();
+                }
+            }
+            default -> log.log(System.Logger.Level.DEBUG, "Ignoring message of type {0}", message.type());
+        }
+    }
+
+    private void sendResync() {
+        try {
+            socket.sendText(objectMapper.writeValueAsString(Message.resync()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assign(List<Monitor> assigned) {
+        Map<String, Monitor> byId = new HashMap<>();
+        if (assigned != null) {
+            assigned.forEach(monitor -> byId.put(monitor.id(), monitor));
+        }
+        monitors.entrySet().removeIf(entry -> {
+            if (byId.containsKey(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().cancel();
+            return true;
+        });
+        update(List.copyOf(byId.values()), null);
+        log.log(System.Logger.Level.INFO, "Probing {0} monitors", monitors.size());
+    }
+
+    private void update(List<Monitor> changed, List<String> removed) {
+        if (removed != null) {
+            for (String id : removed) {
+                Scheduled scheduled = monitors.remove(id);
+                if (scheduled != null) {
+                    scheduled.cancel();
+                }
+            }
+        }
+        if (changed != null) {
+            for (Monitor monitor : changed) {
+                Scheduled current = monitors.get(monitor.id());
+                if (current != null && current.monitor.equals(monitor)) {
+                    continue;
+                }
+                if (current != null) {
+                    current.cancel();
+                }
+                monitors.put(monitor.id(), new Scheduled(monitor));
+            }
+        }
+    }
+
+    private static String setting(String variable, String property, String defaultValue) {
+        String value = System.getProperty(property, System.getenv(variable));
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "agent-" + ProcessHandle.current().pid();
+        }
+    }
+
+    private static String encode(String value) {
+        return java.net.URLEncoder.encode(value, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A monitor and its timer.
+     */
+    private final class Scheduled {
+        private final Monitor monitor;
+        private final ScheduledFuture<?> future;
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private Scheduled(Monitor monitor) {
+            this.monitor = monitor;
+            long interval = Math.max(1000, monitor.intervalMillis());
+            // spread the first checks over the interval instead of running them all at once
+            this.future = timer.scheduleAtFixedRate(this::runNow, ThreadLocalRandom.current().nextLong(interval),
+                    interval, TimeUnit.MILLISECONDS);
+        }
+
+        private void runNow() {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                probes.execute(() -> {
+                    try {
+                        uploader.add(prober.probe(monitor));
+                    } catch (RuntimeException e) {
+                        log.log(System.Logger.Level.ERROR, "Failed to check " + monitor.url(), e);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // shutting down
+                running.set(false);
+            }
+        }
+
+        private void cancel() {
+            future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.uplert.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the checks, blocking the calling virtual thread. HTTP monitors pass with a status below 400, TCP monitors
+ * once the connection is established; both then apply the monitor's keyword checks to the start of the response,
+ * an HTTP body or the banner a TCP service sends, like the backend does.
+ */
+final class Prober {
+    static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private final HttpClient httpClient;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+
+    Prober(Duration connectTimeout, Duration readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    Result probe(Monitor monitor) {
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            return "TCP".equals(monitor.monitorType())
+                    ? probeTcp(monitor, startedAt, start)
+                    : probeHttp(monitor, startedAt, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failure(monitor.id(), startedAt, elapsed(start), "Interrupted");
+        } catch (HttpTimeoutException | SocketTimeoutException e) {
+            return Result.failure(monitor.id(), startedAt, elapsed(start), "Timed out: " + describe(e));
+        } catch (IOException | RuntimeException e) {
+            return Result.failure(monitor.id(), startedAt, elapsed(start), describe(e));
+        }
+    }
+
+    private Result probeHttp(Monitor monitor, long startedAt, long start) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(monitor.url()))
+                .timeout(readTimeout)
+                .header("User-Agent", "uplert-agent")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (!monitor.hasContentCheck()) {
+                return new Result(monitor.id(), startedAt, elapsed(start), response.statusCode(), null,
+                        null, null, null);
+            }
+            byte[] read = body.readNBytes(maxBytes(monitor));
+            String reason = verdict(monitor, new String(read, StandardCharsets.UTF_8), true);
+            return new Result(monitor.id(), startedAt, elapsed(start), response.statusCode(), null,
+                    reason == null, reason, (long) read.length);
+        }
+    }
+
+    private Result probeTcp(Monitor monitor, long startedAt, long start) throws IOException {
+        URI uri = URI.create(monitor.url());
+        if (uri.getHost() == null || uri.getPort() == -1) {
+            return Result.failure(monitor.id(), startedAt, 0, "Expected tcp://host:port: " + monitor.url());
+        }
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), (int) connectTimeout.toMillis());
+            if (!monitor.hasContentCheck()) {
+                return new Result(monitor.id(), startedAt, elapsed(start), null, null, null, null, null);
+            }
+            // the service has sent what it is going to send once it goes quiet until the read deadline
+            long deadline = System.nanoTime() + readTimeout.toNanos();
+            byte[] banner = new byte[maxBytes(monitor)];
+            int length = 0;
+            InputStream in = socket.getInputStream();
+            while (length < banner.length) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                socket.setSoTimeout((int) remaining);
+                int read;
+                try {
+                    read = in.read(banner, length, banner.length - length);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+                String content = new String(banner, 0, length, StandardCharsets.UTF_8);
+                if (verdict(monitor, content, false) != null || decided(monitor, content)) {
+                    break;
+                }
+            }
+            String reason = verdict(monitor, new String(banner, 0, length, StandardCharsets.UTF_8), true);
+            return new Result(monitor.id(), startedAt, elapsed(start), null, null, reason == null, reason,
+                    (long) length);
+        }
+    }
+
+    /**
+     * @param complete whether no more content follows, only then are missing required keywords a failure
+     * @return why the content fails the checks, {@code null} if it passes
+     */
+    private static String verdict(Monitor monitor, String content, boolean complete) {
+        for (String keyword : nonNull(monitor.forbidden())) {
+            if (content.contains(keyword)) {
+                return "Forbidden keyword found: " + keyword;
+            }
+        }
+        if (complete) {
+            for (String keyword : nonNull(monitor.required())) {
+                if (!content.contains(keyword)) {
+                    return "Required keyword not found: " + keyword;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether more content cannot change the verdict: every required keyword is there and none are forbidden.
+     */
+    private static boolean decided(Monitor monitor, String content) {
+        return nonNull(monitor.forbidden()).isEmpty()
+                && nonNull(monitor.required()).stream().allMatch(content::contains);
+    }
+
+    private static int maxBytes(Monitor monitor) {
+        return monitor.maxBytes() != null && monitor.maxBytes() > 0 ? monitor.maxBytes() : DEFAULT_MAX_BYTES;
+    }
+
+    private static List<String> nonNull(List<String> keywords) {
+        return keywords != null ? keywords : List.of();
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
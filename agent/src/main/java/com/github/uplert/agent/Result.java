@@ -0,0 +1,15 @@
+package com.github.uplert.agent;
+
+/**
+ * Outcome of one check, uploaded to the backend.
+ *
+ * @param statusCode    {@code null} for TCP monitors and failed checks
+ * @param contentPassed {@code null} if the monitor has no keyword checks or the response was not read
+ */
+public record Result(String id, long startedAt, long responseTime, Integer statusCode, String error,
+                     Boolean contentPassed, String contentReason, Long bytes) {
+
+    static Result failure(String id, long startedAt, long responseTime, String error) {
+        return new Result(id, startedAt, responseTime, null, error, null, null, null);
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.uplert.agent;
+
+import java.util.List;
+
+/**
+ * Results uploaded in one gzipped binary frame. The backend acknowledges each batch with its {@code seq} and skips
+ * batches it has already ingested, so unacknowledged batches can be sent again.
+ */
+public record ResultBatch(long seq, List<Result> results) {
+}
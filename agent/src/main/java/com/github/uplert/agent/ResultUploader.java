@@ -0,0 +1,115 @@
+package com.github.uplert.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects results into batches of up to {@code batchSize}, flushed when full and on a timer, and uploads them as
+ * gzipped JSON. Batches are numbered in upload order and kept until the backend acknowledges them; after a reconnect
+ * all unacknowledged batches are sent again, oldest first, before any new one, because the backend skips batches
+ * numbered below one it has already ingested. When {@code maxPending} batches are waiting, the oldest is dropped.
+ * <p>
+ * Numbering starts at the current time in milliseconds so that it keeps growing across agent restarts.
+ */
+final class ResultUploader {
+    private static final System.Logger log = System.getLogger(ResultUploader.class.getName());
+
+    private final Connection socket;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxPending;
+    // guarded by this
+    private final List<Result> buffer = new ArrayList<>();
+    private final NavigableMap<Long, byte[]> unacked = new TreeMap<>();
+    private long nextSeq = System.currentTimeMillis();
+    private int sentGeneration = -1;
+    private long sentUpTo = Long.MIN_VALUE;
+    private long dropped;
+
+    ResultUploader(Connection socket, ObjectMapper objectMapper, int batchSize, int maxPending) {
+        this.socket = socket;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Where the batches go, the {@link AgentSocket} outside of tests.
+     */
+    interface Connection {
+
+        /**
+         * Changes with every new connection, a connection only knows what was sent on it.
+         */
+        int generation();
+
+        /**
+         * @return {@code false} if there is no connection or the send failed
+         */
+        boolean sendBinary(byte[] data);
+    }
+
+    synchronized void add(Result result) {
+        buffer.add(result);
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        if (!buffer.isEmpty()) {
+            long seq = nextSeq++;
+            unacked.put(seq, gzip(new ResultBatch(seq, List.copyOf(buffer))));
+            buffer.clear();
+            while (unacked.size() > maxPending) {
+                unacked.pollFirstEntry();
+                if (dropped++ % 100 == 0) {
+                    log.log(System.Logger.Level.WARNING, "Backend unreachable, {0} result batches dropped", dropped);
+                }
+            }
+        }
+        send();
+    }
+
+    synchronized void acknowledged(long seq) {
+        unacked.headMap(seq, true).clear();
+    }
+
+    /**
+     * Sends the batches the current connection has not seen: all unacknowledged ones on a new connection, the ones
+     * added since the last send otherwise.
+     */
+    private void send() {
+        int generation = socket.generation();
+        if (generation != sentGeneration) {
+            sentGeneration = generation;
+            sentUpTo = Long.MIN_VALUE;
+        }
+        for (var batch : unacked.tailMap(sentUpTo, false).entrySet()) {
+            if (!socket.sendBinary(batch.getValue())) {
+                // everything goes again on the next connection
+                sentGeneration = -1;
+                return;
+            }
+            sentUpTo = batch.getKey();
+        }
+    }
+
+    private byte[] gzip(ResultBatch batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
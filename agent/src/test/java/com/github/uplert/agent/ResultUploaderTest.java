@@ -0,0 +1,152 @@
+package com.github.uplert.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultUploaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FakeConnection connection = new FakeConnection();
+
+    @Test
+    void sendsABatchOnceItIsFull() {
+        ResultUploader uploader = new ResultUploader(connection, objectMapper, 2, 10);
+
+        uploader.add(result("a"));
+        assertTrue(connection.sent.isEmpty());
+        uploader.add(result("b"));
+
+        assertEquals(List.of(List.of("a", "b")), ids(connection.sent));
+    }
+
+    @Test
+    void sendsOnlyNewBatchesOnTheSameConnection() {
+        ResultUploader uploader = new ResultUploader(connection, objectMapper, 10, 10);
+
+        uploader.add(result("a"));
+        uploader.flush();
+        uploader.add(result("b"));
+        uploader.flush();
+        uploader.flush();
+
+        assertEquals(List.of(List.of("a"), List.of("b")), ids(connection.sent));
+        List<ResultBatch> batches = batches(connection.sent);
+        assertTrue(batches.get(0).seq() < batches.get(1).seq());
+    }
+
+    @Test
+    void resendsUnacknowledgedBatchesOldestFirstAfterAReconnect() {
+        ResultUploader uploader = new ResultUploader(connection, objectMapper, 10, 10);
+        uploader.add(result("a"));
+        uploader.flush();
+        uploader.add(result("b"));
+        uploader.flush();
+        uploader.acknowledged(batches(connection.sent).get(0).seq());
+
+        connection.disconnect();
+        uploader.add(result("c"));
+        uploader.flush();
+        connection.reconnect();
+        uploader.flush();
+
+        assertEquals(List.of(List.of("b"), List.of("c")), ids(connection.sent));
+    }
+
+    @Test
+    void resendsEverythingAfterAFailedSendEvenOnTheSameGeneration() {
+        ResultUploader uploader = new ResultUploader(connection, objectMapper, 10, 10);
+        uploader.add(result("a"));
+        uploader.flush();
+
+        // the send fails before the socket notices the connection is gone
+        connection.failNextSend = true;
+        uploader.add(result("b"));
+        uploader.flush();
+        connection.sent.clear();
+        uploader.flush();
+
+        assertEquals(List.of(List.of("a"), List.of("b")), ids(connection.sent));
+    }
+
+    @Test
+    void dropsTheOldestBatchWhenTooManyArePending() {
+        ResultUploader uploader = new ResultUploader(connection, objectMapper, 10, 2);
+        connection.disconnect();
+        for (String id : List.of("a", "b", "c")) {
+            uploader.add(result(id));
+            uploader.flush();
+        }
+
+        connection.reconnect();
+        uploader.flush();
+
+        assertEquals(List.of(List.of("b"), List.of("c")), ids(connection.sent));
+    }
+
+    private static Result result(String id) {
+        return new Result(id, 1_700_000_000_000L, 12, 200, null, null, null, 100L);
+    }
+
+    private List<ResultBatch> batches(List<byte[]> frames) {
+        List<ResultBatch> batches = new ArrayList<>();
+        for (byte[] frame : frames) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(frame))) {
+                batches.add(objectMapper.readValue(in, ResultBatch.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return batches;
+    }
+
+    private List<List<String>> ids(List<byte[]> frames) {
+        return batches(frames).stream()
+                .map(batch -> batch.results().stream().map(Result::id).toList())
+                .toList();
+    }
+
+    /**
+     * Records the frames sent while connected.
+     */
+    private static final class FakeConnection implements ResultUploader.Connection {
+        private final List<byte[]> sent = new ArrayList<>();
+        private int generation = 1;
+        private boolean connected = true;
+        private boolean failNextSend;
+
+        void disconnect() {
+            connected = false;
+        }
+
+        void reconnect() {
+            connected = true;
+            generation++;
+            sent.clear();
+        }
+
+        @Override
+        public int generation() {
+            return generation;
+        }
+
+        @Override
+        public boolean sendBinary(byte[] data) {
+            if (!connected || failNextSend) {
+                failNextSend = false;
+                return false;
+            }
+            sent.add(data);
+            return true;
+        }
+    }
+}
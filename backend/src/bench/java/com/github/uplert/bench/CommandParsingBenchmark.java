@@ -0,0 +1,102 @@
+package com.github.uplert.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.cluster.StandaloneOwnership;
+import com.github.uplert.model.SlowConsumerPolicy;
+import com.github.uplert.scheduler.TimingWheelScheduler;
+import com.github.uplert.service.MonitorRegistry;
+import com.github.uplert.service.MonitorRequestService;
+import com.github.uplert.websocket.ResultHub;
+import com.github.uplert.websocket.WebSocketHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WebSocketHandler#handleMessage} for the commands the dashboard sends. The pings target a monitor that is
+ * not scheduled, so each one is parsed, validated and answered with an error reply through the {@link ResultHub}
+ * without touching Mongo or the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParsingBenchmark {
+
+    private static final String PING = "{\"action\":\"ping\",\"website\":{\"userId\":1,\"id\":\"a1\","
+            + "\"projectId\":\"6f1c2a9e\",\"url\":\"https://example.com/health\",\"interval\":\"THIRTY\"}}";
+
+    private static final String BATCH;
+
+    static {
+        StringBuilder batch = new StringBuilder("{\"action\":\"ping\",\"websites\":[");
+        for (int i = 0; i < 10; i++) {
+            batch.append(i == 0 ? "" : ",").append("{\"projectId\":\"6f1c2a9e\",\"url\":\"https://example.com/")
+                    .append(i).append("\",\"interval\":\"SIXTY\"}");
+        }
+        BATCH = batch.append("]}").toString();
+    }
+
+    private ScheduledExecutorService timer;
+    private ResultHub resultHub;
+    private WebSocketHandler handler;
+    private BenchSession session;
+    private TextMessage ping;
+    private TextMessage batch;
+    private TextMessage malformed;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        timer = Executors.newSingleThreadScheduledExecutor();
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(timer, Runnable::run, Duration.ofMillis(100), meterRegistry);
+        resultHub = new ResultHub(SlowConsumerPolicy.DROP_OLDEST, 256, meterRegistry);
+        MonitorRequestService monitorRequestService = new MonitorRequestService(null,
+                new MonitorRegistry(null, null, Duration.ZERO, meterRegistry), null, null, null,
+                new ObjectMapper(), null, null, null, null, scheduler, null, resultHub, null, null, null, new StandaloneOwnership(), null);
+        handler = new WebSocketHandler(monitorRequestService, resultHub, new ObjectMapper(), 1000);
+        session = new BenchSession("bench", URI.create("ws://localhost/ws?sessionId=bench"), null);
+        ping = new TextMessage(PING);
+        batch = new TextMessage(BATCH);
+        malformed = new TextMessage("{\"action\":\"ping\",\"website\":");
+    }
+
+    @TearDown
+    public void tearDown() {
+        resultHub.stop();
+        timer.shutdownNow();
+    }
+
+    @Benchmark
+    public void ping() throws Exception {
+        handler.handleMessage(session, ping);
+    }
+
+    @Benchmark
+    public void batchPing() throws Exception {
+        handler.handleMessage(session, batch);
+    }
+
+    @Benchmark
+    public void malformed() throws Exception {
+        handler.handleMessage(session, malformed);
+    }
+}
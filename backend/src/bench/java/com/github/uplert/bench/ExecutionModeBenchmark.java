@@ -0,0 +1,131 @@
+package com.github.uplert.bench;
+
+import com.github.uplert.config.SchedulerConfig;
+import com.github.uplert.model.ExecutionMode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the two check execution modes of {@link SchedulerConfig} with the same shape the application uses:
+ * one timer thread firing every monitor at a fixed rate and handing the check to the check executor. Each check
+ * makes a blocking call to a deliberately slow local endpoint, standing in for the Mongo and SMTP round trips
+ * a real check performs.
+ * <p>
+ * Usage: {@code mvnw -Pbenchmark test-compile exec:java -Dexec.mainClass=com.github.uplert.bench.ExecutionModeBenchmark
+ * -Dexec.args="monitors latencyMs intervalSec durationSec poolSize"}, defaults {@code 10000 200 10 30 10}.
+ * The open file limit must allow one socket per concurrently running check.
+ */
+public class ExecutionModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int monitors = intArg(args, 0, 10_000);
+        int latencyMs = intArg(args, 1, 200);
+        int intervalSec = intArg(args, 2, 10);
+        int durationSec = intArg(args, 3, 30);
+        int poolSize = intArg(args, 4, 10);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        URI target = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+
+        System.out.printf("%d monitors, %d ms target latency, %d s interval, %d s run, pool size %d%n",
+                monitors, latencyMs, intervalSec, durationSec, poolSize);
+        try {
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                run(mode, target, monitors, intervalSec, durationSec, poolSize);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void run(ExecutionMode mode, URI target, int monitors, int intervalSec, int durationSec,
+                            int poolSize) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(target).timeout(Duration.ofSeconds(30)).build();
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService checkExecutor = SchedulerConfig.createCheckExecutor(mode, poolSize);
+        AtomicLong fired = new AtomicLong();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ConcurrentLinkedQueue<Long> startLagNanos = new ConcurrentLinkedQueue<>();
+
+        List<ScheduledFuture<?>> futures = new ArrayList<>(monitors);
+        long begin = System.nanoTime();
+        for (int i = 0; i < monitors; i++) {
+            futures.add(timer.scheduleAtFixedRate(() -> {
+                long firedAt = System.nanoTime();
+                fired.incrementAndGet();
+                checkExecutor.execute(() -> {
+                    startLagNanos.add(System.nanoTime() - firedAt);
+                    try {
+                        client.send(request, HttpResponse.BodyHandlers.discarding());
+                        completed.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                });
+            }, 0, intervalSec, TimeUnit.SECONDS));
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSec));
+        futures.forEach(future -> future.cancel(false));
+        long elapsedNanos = System.nanoTime() - begin;
+        long started = startLagNanos.size();
+        long done = completed.get();
+        long errors = failed.get();
+        timer.shutdownNow();
+        checkExecutor.shutdownNow();
+        checkExecutor.awaitTermination(10, TimeUnit.SECONDS);
+
+        long[] lags = startLagNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%n[%s]%n", mode);
+        System.out.printf("  checks fired      %d%n", fired.get());
+        System.out.printf("  checks started    %d (backlog %d)%n", started, fired.get() - started);
+        System.out.printf("  checks completed  %d (%.1f/s), failed %d%n", done, done / seconds, errors);
+        System.out.printf("  start lag ms      p50 %.1f  p99 %.1f  max %.1f%n",
+                percentile(lags, 0.50), percentile(lags, 0.99), percentile(lags, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
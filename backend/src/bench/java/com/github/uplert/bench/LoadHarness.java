@@ -0,0 +1,520 @@
+package com.github.uplert.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test against a running backend. It starts a local HTTP target farm, registers {@code monitors}
+ * monitors pointing at it through the {@code /ws} {@code start} action, opens {@code subscribers}
+ * {@code /ws/{projectId}/log} dashboards and after {@code duration} seconds reports:
+ * <ul>
+ *     <li>probes per second, as seen by the farm and by {@code uplert.probe.latency}</li>
+ *     <li>scheduler fire lag percentiles from the {@code uplert.scheduler.fire.lag} histogram</li>
+ *     <li>result delivery latency on {@code /ws} (farm response to dashboard message) and on the log stream (entry
+ *     timestamp to dashboard message)</li>
+ *     <li>backend heap and GC pauses</li>
+ * </ul>
+ * Backend figures are read from {@code /actuator/prometheus}, so they are deltas over the run. The monitors are
+ * deleted again at the end.
+ * <p>
+ * Everything runs locally: start MongoDB with {@code docker compose up -d mongodb}, the backend with
+ * {@code mvnw spring-boot:run}, then {@code mvnw -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.github.uplert.bench.LoadHarness -Dexec.args="monitors=1000 subscribers=50"}.
+ * <p>
+ * Arguments as {@code key=value}: {@code backend} (http://localhost:8080), {@code farmHost} (127.0.0.1, the address
+ * the backend reaches this machine on), {@code monitors} (1000), {@code projects} (100), {@code subscribers} (10),
+ * {@code interval} seconds (10), {@code duration} seconds (60), {@code latencyMs} (50), {@code errorRate} (0.01),
+ * {@code hangProbability} (0.001), {@code hangMs} (30000), {@code batch} websites per command (500), {@code frameBytes}
+ * (524288). Commands are split further when a batch would not fit a text frame of {@code frameBytes}, lower both when
+ * the backend runs with smaller WebSocket limits.
+ */
+public class LoadHarness {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    // the backend's uplert.websocket.max-batch-size and max-text-message-bytes defaults
+    private static final int MAX_BATCH = 1000;
+    private static final int MAX_FRAME_BYTES = 512 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final Map<String, String> options;
+    private final URI backend;
+    private final AtomicLong farmRequests = new AtomicLong();
+    private final AtomicLong farmErrors = new AtomicLong();
+    private final AtomicLong farmHangs = new AtomicLong();
+    private final Map<String, Long> lastResponse = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> resultLatencyNanos = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> logLatencyMillis = new ConcurrentLinkedQueue<>();
+    private final AtomicLong logEntries = new AtomicLong();
+    private final List<WebSocket> subscribers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+        this.backend = URI.create(option("backend", "http://localhost:8080"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(keyValue[0], keyValue[1]);
+        }
+        new LoadHarness(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int monitors = intOption("monitors", 1000);
+        int projects = Math.min(monitors, intOption("projects", 100));
+        int subscriberCount = intOption("subscribers", 10);
+        int interval = intOption("interval", 10);
+        int duration = intOption("duration", 60);
+
+        HttpServer farm = startFarm();
+        String farmBase = "http://" + option("farmHost", "127.0.0.1") + ":" + farm.getAddress().getPort() + "/t/";
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<ObjectNode> websites = new ArrayList<>(monitors);
+        for (int i = 0; i < monitors; i++) {
+            ObjectNode website = objectMapper.createObjectNode();
+            website.put("projectId", "load-" + runId + "-" + (i % projects));
+            website.put("url", farmBase + runId + "/" + i);
+            website.put("intervalSeconds", interval);
+            websites.add(website);
+        }
+        System.out.printf("%d monitors in %d projects every %d s, %d log subscribers, %d s run, farm %s%n",
+                monitors, projects, interval, subscriberCount, duration, farmBase);
+
+        Control control = new Control();
+        WebSocket commands = httpClient.newWebSocketBuilder()
+                .buildAsync(webSocketUri("/ws"), control).join();
+        try {
+            long registerStart = System.nanoTime();
+            control.expect(send(commands, "start", websites));
+            if (!control.acks.await(5, TimeUnit.MINUTES)) {
+                System.out.printf("only %d of the start commands were acknowledged%n", control.acknowledged.get());
+            }
+            System.out.printf("registered %d monitors in %.1f s, %d failed%n", monitors,
+                    (System.nanoTime() - registerStart) / 1e9, control.failed.get());
+
+            // a project's log only exists after its first flush, the subscribers retry until it does
+            for (int i = 0; i < subscriberCount; i++) {
+                subscribe("load-" + runId + "-" + (i % projects));
+            }
+
+            Map<String, Double> before = scrape();
+            long farmBefore = farmRequests.get();
+            long begin = System.nanoTime();
+            for (int elapsed = 0; elapsed < duration; ) {
+                int step = Math.min(10, duration - elapsed);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(step));
+                elapsed += step;
+                System.out.printf("  %4d s  farm %d requests  %d results  %d log entries%n", elapsed,
+                        farmRequests.get() - farmBefore, control.results.get(), logEntries.get());
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            Map<String, Double> after = scrape();
+            report(before, after, seconds, farmRequests.get() - farmBefore, control.results.get());
+        } finally {
+            running = false;
+            synchronized (subscribers) {
+                subscribers.forEach(WebSocket::abort);
+            }
+            send(commands, "delete", websites);
+            Thread.sleep(2000);
+            commands.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            farm.stop(0);
+        }
+    }
+
+    private HttpServer startFarm() throws Exception {
+        int latencyMs = intOption("latencyMs", 50);
+        double errorRate = doubleOption("errorRate", 0.01);
+        double hangProbability = doubleOption("hangProbability", 0.001);
+        int hangMs = intOption("hangMs", 30_000);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/t/", exchange -> {
+            farmRequests.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            try {
+                if (random.nextDouble() < hangProbability) {
+                    farmHangs.incrementAndGet();
+                    Thread.sleep(hangMs);
+                } else if (latencyMs > 0) {
+                    // +-50% jitter around the configured latency
+                    Thread.sleep(latencyMs / 2 + random.nextInt(latencyMs + 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean error = random.nextDouble() < errorRate;
+            if (error) {
+                farmErrors.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(error ? 500 : 200, -1);
+            exchange.close();
+            lastResponse.put(exchange.getRequestURI().getPath(), System.nanoTime());
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Sends the websites in batch commands that fit the backend's batch and text frame limits.
+     *
+     * @return the number of commands sent
+     */
+    private int send(WebSocket commands, String action, List<ObjectNode> websites) {
+        int maxBatch = Math.min(MAX_BATCH, intOption("batch", 500));
+        int maxBytes = intOption("frameBytes", MAX_FRAME_BYTES);
+        int sent = 0;
+        List<ObjectNode> batch = new ArrayList<>();
+        // a frame holds UTF-8 bytes, the ASCII commands here have one per character
+        int empty = command(action, batch).length();
+        int bytes = empty;
+        for (ObjectNode website : websites) {
+            int size = website.toString().length() + 1;
+            if (!batch.isEmpty() && (batch.size() >= maxBatch || bytes + size > maxBytes)) {
+                sendCommand(commands, command(action, batch), maxBytes);
+                sent++;
+                batch.clear();
+                bytes = empty;
+            }
+            batch.add(website);
+            bytes += size;
+        }
+        if (!batch.isEmpty()) {
+            sendCommand(commands, command(action, batch), maxBytes);
+            sent++;
+        }
+        return sent;
+    }
+
+    private String command(String action, List<ObjectNode> websites) {
+        ObjectNode command = objectMapper.createObjectNode();
+        command.put("action", action);
+        command.putArray("websites").addAll(websites);
+        return command.toString();
+    }
+
+    private static void sendCommand(WebSocket commands, String text, int maxBytes) {
+        if (text.length() > maxBytes) {
+            throw new IllegalArgumentException("A single website does not fit a " + maxBytes + " byte frame");
+        }
+        commands.sendText(text, true).join();
+    }
+
+    private void subscribe(String projectId) {
+        if (!running) {
+            return;
+        }
+        long connectedAt = System.currentTimeMillis();
+        httpClient.newWebSocketBuilder()
+                .buildAsync(webSocketUri("/ws/" + projectId + "/log"), new LogSubscriber(projectId, connectedAt))
+                .whenComplete((webSocket, throwable) -> {
+                    if (throwable != null) {
+                        retrySubscribe(projectId);
+                    } else {
+                        synchronized (subscribers) {
+                            subscribers.add(webSocket);
+                        }
+                    }
+                });
+    }
+
+    private void retrySubscribe(String projectId) {
+        CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS).execute(() -> subscribe(projectId));
+    }
+
+    private URI webSocketUri(String path) {
+        return URI.create(backend.toString().replaceFirst("^http", "ws") + path);
+    }
+
+    private Map<String, Double> scrape() throws Exception {
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(backend.resolve("/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Map<String, Double> samples = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            samples.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+        }
+        return samples;
+    }
+
+    private void report(Map<String, Double> before, Map<String, Double> after, double seconds, long farmCount,
+                        long results) {
+        double probes = delta(before, after, "uplert_probe_latency_seconds_count", null);
+        System.out.printf("%nthroughput%n");
+        System.out.printf("  farm requests     %.1f/s (%d errors, %d hangs)%n", farmCount / seconds, farmErrors.get(),
+                farmHangs.get());
+        System.out.printf("  probes completed  %.1f/s%n", probes / seconds);
+        System.out.printf("  /ws results       %.1f/s%n", results / seconds);
+        System.out.printf("  log entries       %.1f/s%n", logEntries.get() / seconds);
+
+        System.out.printf("%nlatency ms            p50      p90      p99      max%n");
+        printHistogram("scheduler fire lag", histogram(before, after, "uplert_scheduler_fire_lag_seconds_bucket"));
+        printHistogram("probe", histogram(before, after, "uplert_probe_latency_seconds_bucket"));
+        printLatencies("/ws result delivery", resultLatencyNanos.stream().mapToLong(nanos -> nanos).sorted()
+                .mapToDouble(nanos -> nanos / 1e6).toArray());
+        printLatencies("log delivery", logLatencyMillis.stream().mapToLong(millis -> millis).sorted()
+                .mapToDouble(millis -> millis).toArray());
+
+        System.out.printf("%nbackend jvm%n");
+        System.out.printf("  heap used         %.1f MB (%.1f MB at start)%n",
+                sum(after, "jvm_memory_used_bytes", "area=\"heap\"") / 1e6,
+                sum(before, "jvm_memory_used_bytes", "area=\"heap\"") / 1e6);
+        System.out.printf("  heap committed    %.1f MB%n", sum(after, "jvm_memory_committed_bytes", "area=\"heap\"") / 1e6);
+        System.out.printf("  gc pauses         %.0f, %.1f ms total, %.1f ms max%n",
+                delta(before, after, "jvm_gc_pause_seconds_count", null),
+                delta(before, after, "jvm_gc_pause_seconds_sum", null) * 1000,
+                max(after, "jvm_gc_pause_seconds_max") * 1000);
+        System.out.printf("  live threads      %.0f%n", sum(after, "jvm_threads_live_threads", null));
+    }
+
+    /**
+     * Bucket counts of a histogram accumulated during the run, keyed by upper bound in milliseconds.
+     */
+    private static TreeMap<Double, Double> histogram(Map<String, Double> before, Map<String, Double> after,
+                                                     String bucketName) {
+        TreeMap<Double, Double> buckets = new TreeMap<>();
+        for (Map.Entry<String, Double> sample : after.entrySet()) {
+            String name = sample.getKey();
+            if (!name.startsWith(bucketName + "{")) {
+                continue;
+            }
+            int le = name.indexOf("le=\"");
+            String bound = name.substring(le + 4, name.indexOf('"', le + 4));
+            double upper = bound.equals("+Inf") ? Double.POSITIVE_INFINITY : Double.parseDouble(bound) * 1000;
+            buckets.merge(upper, sample.getValue() - before.getOrDefault(name, 0.0), Double::sum);
+        }
+        return buckets;
+    }
+
+    private static void printHistogram(String label, TreeMap<Double, Double> cumulative) {
+        double total = cumulative.isEmpty() ? 0 : cumulative.lastEntry().getValue();
+        if (total <= 0) {
+            System.out.printf("  %-20s no samples%n", label);
+            return;
+        }
+        double[] quantiles = {0.5, 0.9, 0.99, 1.0};
+        StringBuilder line = new StringBuilder(String.format("  %-20s", label));
+        for (double quantile : quantiles) {
+            double bound = Double.POSITIVE_INFINITY;
+            for (Map.Entry<Double, Double> bucket : cumulative.entrySet()) {
+                if (bucket.getValue() >= quantile * total) {
+                    bound = bucket.getKey();
+                    break;
+                }
+            }
+            line.append(String.format(" %8s", bound == Double.POSITIVE_INFINITY ? "inf" : "<" + format(bound)));
+        }
+        System.out.println(line);
+    }
+
+    private static void printLatencies(String label, double[] sorted) {
+        if (sorted.length == 0) {
+            System.out.printf("  %-20s no samples%n", label);
+            return;
+        }
+        System.out.printf("  %-20s %8s %8s %8s %8s%n", label, format(percentile(sorted, 0.5)),
+                format(percentile(sorted, 0.9)), format(percentile(sorted, 0.99)), format(sorted[sorted.length - 1]));
+    }
+
+    private static String format(double millis) {
+        return millis < 10 ? String.format("%.2f", millis) : String.format("%.0f", millis);
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static double delta(Map<String, Double> before, Map<String, Double> after, String name, String label) {
+        return sum(after, name, label) - sum(before, name, label);
+    }
+
+    private static double sum(Map<String, Double> samples, String name, String label) {
+        double sum = 0;
+        for (Map.Entry<String, Double> sample : samples.entrySet()) {
+            if (matches(sample.getKey(), name, label)) {
+                sum += sample.getValue();
+            }
+        }
+        return sum;
+    }
+
+    private static double max(Map<String, Double> samples, String name) {
+        double max = 0;
+        for (Map.Entry<String, Double> sample : samples.entrySet()) {
+            if (matches(sample.getKey(), name, null)) {
+                max = Math.max(max, sample.getValue());
+            }
+        }
+        return max;
+    }
+
+    private static boolean matches(String sample, String name, String label) {
+        return (sample.equals(name) || sample.startsWith(name + "{")) && (label == null || sample.contains(label));
+    }
+
+    private String option(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    private int intOption(String key, int defaultValue) {
+        return options.containsKey(key) ? Integer.parseInt(options.get(key)) : defaultValue;
+    }
+
+    private double doubleOption(String key, double defaultValue) {
+        return options.containsKey(key) ? Double.parseDouble(options.get(key)) : defaultValue;
+    }
+
+    /**
+     * Collects a text message that may arrive in several parts.
+     */
+    private abstract static class TextListener implements WebSocket.Listener {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                long receivedAt = System.nanoTime();
+                String message = text.toString();
+                text.setLength(0);
+                onMessage(message, receivedAt);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        abstract void onMessage(String message, long receivedAt);
+    }
+
+    /**
+     * The {@code /ws} connection: counts batch acknowledgements while registering, then measures how long results
+     * take from the farm's response to the dashboard.
+     */
+    private final class Control extends TextListener {
+        private final CountDownLatch acks = new CountDownLatch(1);
+        private final AtomicLong acknowledged = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong results = new AtomicLong();
+        private long expectedAcks = -1;
+
+        private synchronized void expect(int commands) {
+            expectedAcks = commands;
+            if (acknowledged.get() >= expectedAcks) {
+                acks.countDown();
+            }
+        }
+
+        @Override
+        void onMessage(String message, long receivedAt) {
+            if (!message.startsWith("{")) {
+                return;
+            }
+            try {
+                JsonNode json = objectMapper.readTree(message);
+                if (json.has("succeeded")) {
+                    failed.addAndGet(json.path("failed").size());
+                    synchronized (this) {
+                        if (acknowledged.incrementAndGet() == expectedAcks) {
+                            acks.countDown();
+                        }
+                    }
+                } else if (json.has("website") && json.has("statusCode")) {
+                    results.incrementAndGet();
+                    Long respondedAt = lastResponse.get(URI.create(json.get("website").asText()).getPath());
+                    if (respondedAt != null) {
+                        resultLatencyNanos.add(receivedAt - respondedAt);
+                    }
+                }
+            } catch (Exception e) {
+                // not a message the harness cares about
+            }
+        }
+    }
+
+    /**
+     * A {@code /ws/{projectId}/log} dashboard, reconnecting until the project's log exists.
+     */
+    private final class LogSubscriber extends TextListener {
+        private final String projectId;
+        private final long connectedAt;
+
+        private LogSubscriber(String projectId, long connectedAt) {
+            this.projectId = projectId;
+            this.connectedAt = connectedAt;
+        }
+
+        @Override
+        void onMessage(String message, long receivedAt) {
+            long now = System.currentTimeMillis();
+            try {
+                JsonNode json = objectMapper.readTree(message);
+                long timestamp = OffsetDateTime.parse(json.path("timestamp").asText(), TIMESTAMP).toInstant().toEpochMilli();
+                // the stored history sent on connect is not a delivery
+                if (timestamp >= connectedAt) {
+                    logEntries.incrementAndGet();
+                    logLatencyMillis.add(now - timestamp);
+                }
+            } catch (DateTimeParseException | JsonProcessingException e) {
+                // not a log entry
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            synchronized (subscribers) {
+                subscribers.remove(webSocket);
+            }
+            retrySubscribe(projectId);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            synchronized (subscribers) {
+                subscribers.remove(webSocket);
+            }
+            retrySubscribe(projectId);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.uplert.bench;
+
+import com.github.uplert.domain.MonitoringLog;
+import com.github.uplert.model.Status;
+import com.github.uplert.service.MonitoringJobService;
+import com.github.uplert.websocket.LogHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-probe string work: the {@code String.format} encoded dashboard result and log messages, and the
+ * {@code SimpleDateFormat} timestamp of every log entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEncodingBenchmark {
+
+    private final MonitoringLog.LogEntry entry =
+            new MonitoringLog.LogEntry("https://example.com/health", "2024-01-01T00:00:00.000+0000", 120, 200);
+
+    @Benchmark
+    public String formatLog() {
+        return LogHandler.formatLog(entry);
+    }
+
+    @Benchmark
+    public String formatResult() {
+        return MonitoringJobService.formatResult(entry, "6f1c2a9e", Status.ACTIVE, null);
+    }
+
+    @Benchmark
+    public String timestamp() {
+        return MonitoringJobService.timestamp(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.uplert.bench;
+
+import com.github.uplert.domain.MonitoringLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MonitoringLog#addLogEntry} on a log that already holds {@code inserts} entries' worth of history. Every
+ * insert past the 20 entry cap replaces the list with a {@code subList} view of the previous one, so the cost of
+ * an insert depends on how many inserts the log has seen, not on its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoringLogBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int inserts;
+
+    private MonitoringLog monitoringLog;
+    private MonitoringLog.LogEntry entry;
+
+    @Setup
+    public void setUp() {
+        entry = new MonitoringLog.LogEntry("https://example.com", "2024-01-01T00:00:00.000+0000", 120, 200);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        monitoringLog = new MonitoringLog();
+        for (int i = 0; i < inserts; i++) {
+            monitoringLog.addLogEntry(entry);
+        }
+    }
+
+    @Benchmark
+    public MonitoringLog addLogEntry() {
+        monitoringLog.addLogEntry(entry);
+        return monitoringLog;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.uplert.bench;
+
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.SlowConsumerPolicy;
+import com.github.uplert.model.Status;
+import com.github.uplert.notify.AlertDispatcher;
+import com.github.uplert.probe.HttpProbeEngine;
+import com.github.uplert.repos.MonitoringSitesRepository;
+import com.github.uplert.service.IncidentTracker;
+import com.github.uplert.service.MonitorRegistry;
+import com.github.uplert.service.MonitoringJobService;
+import com.github.uplert.service.MonitoringLogWriter;
+import com.github.uplert.service.ProbeCoalescer;
+import com.github.uplert.websocket.ResultHub;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One complete check as {@link MonitoringJobService} runs it: the HTTP probe against an in-process stub, result
+ * handling, queueing the log entry, the incident update and publishing to a subscribed dashboard session. Mongo is
+ * left out, the log writer's queue is emptied between iterations instead of flushed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProbeCycleBenchmark {
+
+    private static final String PROJECT_ID = "6f1c2a9e";
+
+    private HttpServer server;
+    private HttpProbeEngine probeEngine;
+    private ResultHub resultHub;
+    private MonitoringLogWriter monitoringLogWriter;
+    private MonitoringJobService job;
+    private volatile CompletableFuture<Void> completion;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/health";
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MonitoringSites site = new MonitoringSites();
+        site.setProjectId(PROJECT_ID);
+        site.setUrl(url);
+        site.setInterval(Intervals.TEN);
+        site.setStatus(Status.ACTIVE);
+        MonitorRegistry monitorRegistry = new MonitorRegistry(sitesRepository(site), null, Duration.ZERO, meterRegistry);
+        monitorRegistry.refresh();
+
+        probeEngine = new HttpProbeEngine(meterRegistry, Duration.ofSeconds(5), Duration.ofSeconds(10),
+                HttpClient.Version.HTTP_1_1, 4, HttpClient.Redirect.NORMAL);
+        resultHub = new ResultHub(SlowConsumerPolicy.COALESCE, 256, meterRegistry);
+        resultHub.subscribe(ResultHub.resultsTopic(PROJECT_ID), new BenchSession("dashboard", URI.create("ws://localhost/ws"), null));
+        monitoringLogWriter = new MonitoringLogWriter(null, null, meterRegistry, 1 << 20, 500, Duration.ofSeconds(1), 20);
+        IncidentTracker incidentTracker = new IncidentTracker(null, 3, 2, Duration.ofHours(1), 3);
+        AlertDispatcher alertDispatcher = new AlertDispatcher(List.of(), meterRegistry, 1000, 5,
+                Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ofSeconds(30));
+
+        // handles the result inline on the probe engine's thread and signals the waiting benchmark thread
+        Executor signalling = task -> {
+            task.run();
+            completion.complete(null);
+        };
+        MonitorRequestDTO website = new MonitorRequestDTO();
+        website.setProjectId(PROJECT_ID);
+        website.setUrl(url);
+        website.setInterval(Intervals.TEN);
+        job = new MonitoringJobService(website, resultHub, monitoringLogWriter, monitorRegistry, alertDispatcher,
+                probeEngine, new ProbeCoalescer(meterRegistry, Duration.ZERO), incidentTracker, signalling);
+    }
+
+    @Setup(Level.Iteration)
+    public void discardLogs() {
+        monitoringLogWriter.discardPending(PROJECT_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        resultHub.stop();
+        probeEngine.shutdown();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public void probeCycle() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        completion = done;
+        job.run();
+        done.join();
+    }
+
+    private static MonitoringSitesRepository sitesRepository(MonitoringSites site) {
+        return (MonitoringSitesRepository) Proxy.newProxyInstance(MonitoringSitesRepository.class.getClassLoader(),
+                new Class<?>[]{MonitoringSitesRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findAll") && method.getParameterCount() == 0) {
+                        return List.of(site);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,258 @@
+package com.github.uplert.cluster;
+
+import com.github.uplert.domain.ClusterNode;
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.domain.PartitionLease;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster mode, enabled with {@code uplert.cluster.enabled}. Monitors are split into {@code uplert.cluster.partitions}
+ * partitions by a hash of their ID, and the partitions are spread over the live nodes with a consistent hash ring.
+ * <p>
+ * Every {@code heartbeat-interval} the node records its heartbeat in {@code cluster_nodes}, builds the ring of the
+ * nodes whose heartbeat is younger than {@code lease-duration}, renews the leases it holds in
+ * {@code partition_leases}, releases those the ring now gives to another node and takes those the ring gives to it
+ * once they are free or expired. A node stops probing a partition before releasing its lease, and stops probing all
+ * of them when it could not renew its leases in time, so a monitor is never probed by two nodes at once. When a node
+ * joins or dies the partitions move within a few heartbeats. Lease expiry uses the nodes' clocks, which must agree
+ * to well within a heartbeat interval.
+ * <p>
+ * The heartbeat runs on its own thread, so housekeeping on the shared task scheduler can never delay a renewal
+ * past the lease.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "uplert.cluster.enabled", havingValue = "true")
+public class ClusterCoordinator implements MonitorOwnership {
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final int partitions;
+    private final int virtualNodes;
+    private final Duration heartbeatInterval;
+    private final Duration leaseDuration;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Counter rebalances;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Set<Integer> owned = Set.of();
+    // System.nanoTime() until which the owned leases are certainly still ours
+    private volatile long ownedUntil;
+    private volatile int liveNodes;
+
+    public ClusterCoordinator(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                              @Value("${uplert.cluster.node-id:}") String nodeId,
+                              @Value("${uplert.cluster.partitions:256}") int partitions,
+                              @Value("${uplert.cluster.virtual-nodes:64}") int virtualNodes,
+                              @Value("${uplert.cluster.heartbeat-interval:2s}") Duration heartbeatInterval,
+                              @Value("${uplert.cluster.lease-duration:10s}") Duration leaseDuration,
+                              @Value("${uplert.registry.refresh-interval:0s}") Duration registryRefreshInterval) {
+        if (leaseDuration.compareTo(heartbeatInterval.multipliedBy(3)) < 0) {
+            throw new IllegalArgumentException("uplert.cluster.lease-duration must be at least three heartbeat intervals");
+        }
+        if (registryRefreshInterval.isZero() || registryRefreshInterval.isNegative()) {
+            // every node would keep probing only the monitors it loaded at startup
+            throw new IllegalArgumentException("Cluster mode requires a positive uplert.registry.refresh-interval so "
+                    + "that nodes pick up monitors added on other nodes");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId == null || nodeId.isBlank()
+                ? ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8) : nodeId;
+        this.partitions = partitions;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatInterval = heartbeatInterval;
+        this.leaseDuration = leaseDuration;
+        this.rebalances = Counter.builder("uplert.cluster.rebalances")
+                .description("Changes of the partitions this node owns")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("uplert.cluster.partitions.owned", this, coordinator -> coordinator.owned.size())
+                .description("Monitor partitions this node holds the lease for")
+                .register(meterRegistry);
+        Gauge.builder("uplert.cluster.nodes", this, coordinator -> coordinator.liveNodes)
+                .description("Live nodes in the cluster, this one included")
+                .register(meterRegistry);
+        // nodes that are long gone are dropped from the collection
+        mongoTemplate.indexOps(ClusterNode.class).ensureIndex(
+                new Index().on("heartbeatAt", Sort.Direction.ASC).expire(Duration.ofDays(1)));
+        log.info("Joining the cluster as node {}", nodeId);
+        heartbeat.scheduleWithFixedDelay(this::tick, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands the partitions over right away instead of letting their leases expire.
+     */
+    @PreDestroy
+    public void stop() {
+        // let a running heartbeat finish, so it cannot take leases back after they are released
+        heartbeat.shutdown();
+        try {
+            heartbeat.awaitTermination(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        changeOwned(Set.of(), 0);
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("owner").is(nodeId)), PartitionLease.class);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(nodeId)), ClusterNode.class);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release the partitions of node {}, they move once their leases expire", nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean owns(MonitoringSites site) {
+        return site.getId() != null && System.nanoTime() - ownedUntil < 0
+                && owned.contains(ConsistentHashRing.partition(site.getId(), partitions));
+    }
+
+    @Override
+    public void onChange(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isClustered() {
+        return true;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    void tick() {
+        long tickStart = System.nanoTime();
+        Instant now = Instant.now();
+        // leave a heartbeat of margin for clock differences between the nodes
+        long validUntil = tickStart + leaseDuration.minus(heartbeatInterval).toNanos();
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(nodeId)),
+                    new Update().set("heartbeatAt", now).setOnInsert("startedAt", now), ClusterNode.class);
+            Set<String> nodes = new TreeSet<>();
+            nodes.add(nodeId);
+            Query live = Query.query(Criteria.where("heartbeatAt").gt(now.minus(leaseDuration)));
+            live.fields().include("_id");
+            mongoTemplate.find(live, ClusterNode.class).forEach(node -> nodes.add(node.getId()));
+            liveNodes = nodes.size();
+
+            ConsistentHashRing ring = new ConsistentHashRing(nodes, virtualNodes);
+            Set<Integer> wanted = new HashSet<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                if (nodeId.equals(ring.owner(partition))) {
+                    wanted.add(partition);
+                }
+            }
+
+            Set<Integer> held = renew(now);
+            Set<Integer> release = new HashSet<>(held);
+            release.removeAll(wanted);
+            held.removeAll(release);
+            // stop probing before another node can take over
+            changeOwned(held, validUntil);
+            if (!release.isEmpty()) {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(release).and("owner").is(nodeId)),
+                        PartitionLease.class);
+            }
+
+            Set<Integer> acquired = new HashSet<>(held);
+            for (int partition : wanted) {
+                if (!held.contains(partition) && acquire(partition, now)) {
+                    acquired.add(partition);
+                }
+            }
+            changeOwned(acquired, validUntil);
+        } catch (RuntimeException e) {
+            log.error("Cluster heartbeat of node {} failed", nodeId, e);
+            if (!owned.isEmpty() && System.nanoTime() - ownedUntil >= 0) {
+                log.warn("Leases of node {} expired without renewal, no longer probing", nodeId);
+                changeOwned(Set.of(), 0);
+            }
+        }
+    }
+
+    /**
+     * Extends the leases this node still holds.
+     *
+     * @return their partitions, without any that expired and were taken by another node
+     */
+    private Set<Integer> renew(Instant now) {
+        Criteria mine = Criteria.where("owner").is(nodeId).and("expiresAt").gt(now);
+        mongoTemplate.updateMulti(Query.query(mine), Update.update("expiresAt", now.plus(leaseDuration)),
+                PartitionLease.class);
+        Query held = Query.query(Criteria.where("owner").is(nodeId).and("expiresAt").gt(now));
+        held.fields().include("_id");
+        Set<Integer> partitions = new HashSet<>();
+        mongoTemplate.find(held, PartitionLease.class).forEach(lease -> partitions.add(lease.getPartition()));
+        return partitions;
+    }
+
+    /**
+     * Takes the lease if it is free, expired or already ours.
+     */
+    private boolean acquire(int partition, Instant now) {
+        Query free = Query.query(Criteria.where("_id").is(partition)
+                .orOperator(Criteria.where("owner").is(nodeId), Criteria.where("expiresAt").lte(now)));
+        try {
+            return mongoTemplate.findAndModify(free,
+                    new Update().set("owner", nodeId).set("expiresAt", now.plus(leaseDuration)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), PartitionLease.class) != null;
+        } catch (DuplicateKeyException e) {
+            // held by a live node, the upsert tried to insert a second lease
+            return false;
+        }
+    }
+
+    private void changeOwned(Set<Integer> partitions, long validUntil) {
+        ownedUntil = validUntil;
+        if (partitions.equals(owned)) {
+            return;
+        }
+        log.info("Node {} now owns {} of {} partitions (was {})", nodeId, partitions.size(), this.partitions,
+                owned.size());
+        owned = Set.copyOf(partitions);
+        rebalances.increment();
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.error("Failed to apply the partition change", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.uplert.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of node IDs, each placed at several virtual points so partitions spread evenly. When a node
+ * joins or leaves only the partitions next to its points change owner.
+ */
+final class ConsistentHashRing {
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @return the node owning the partition, {@code null} if the ring is empty
+     */
+    String owner(int partition) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash("partition-" + partition));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    static int partition(String monitorId, int partitions) {
+        return (int) Math.floorMod(hash(monitorId), (long) partitions);
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur3 finalizer, the same on every node and spread much better than
+     * {@code String.hashCode}.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.uplert.cluster;
+
+import com.github.uplert.domain.MonitoringSites;
+
+/**
+ * Decides which monitors this node probes. A single node probes all of them; in cluster mode every monitor is
+ * probed by exactly one of the live nodes.
+ */
+public interface MonitorOwnership {
+
+    boolean owns(MonitoringSites site);
+
+    /**
+     * Registers the callback run whenever the set of owned monitors changes, on the thread that changed it.
+     */
+    void onChange(Runnable listener);
+
+    /**
+     * Whether ownership is shared with other nodes, so monitors must be scheduled as ownership changes instead of
+     * all at once.
+     */
+    boolean isClustered();
+}
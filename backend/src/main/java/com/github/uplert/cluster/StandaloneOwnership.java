@@ -0,0 +1,28 @@
+package com.github.uplert.cluster;
+
+import com.github.uplert.domain.MonitoringSites;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The default single-node mode, this node owns every monitor.
+ */
+@Component
+@ConditionalOnProperty(name = "uplert.cluster.enabled", havingValue = "false", matchIfMissing = true)
+public class StandaloneOwnership implements MonitorOwnership {
+
+    @Override
+    public boolean owns(MonitoringSites site) {
+        return true;
+    }
+
+    @Override
+    public void onChange(Runnable listener) {
+        // ownership never changes
+    }
+
+    @Override
+    public boolean isClustered() {
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.uplert.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.notify.DiscordNotifier;
+import com.github.uplert.notify.GenericWebhookNotifier;
+import com.github.uplert.notify.SlackNotifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Webhook alert channels, each enabled by setting its URL. All of them share one asynchronous {@link HttpClient}
+ * and therefore its connection pool.
+ */
+@Configuration
+public class NotifierConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public HttpClient notifierHttpClient(@Value("${uplert.notify.connect-timeout:5s}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${uplert.notify.slack.webhook-url:}' != ''")
+    public SlackNotifier slackNotifier(HttpClient notifierHttpClient, ObjectMapper objectMapper,
+                                       @Value("${uplert.notify.slack.webhook-url}") String url,
+                                       @Value("${uplert.notify.request-timeout:10s}") Duration timeout,
+                                       @Value("${uplert.notify.slack.batch-size:20}") int batchSize,
+                                       @Value("${uplert.notify.slack.rate-per-minute:60}") int ratePerMinute) {
+        return new SlackNotifier(url, notifierHttpClient, objectMapper, timeout, batchSize, ratePerMinute);
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${uplert.notify.discord.webhook-url:}' != ''")
+    public DiscordNotifier discordNotifier(HttpClient notifierHttpClient, ObjectMapper objectMapper,
+                                           @Value("${uplert.notify.discord.webhook-url}") String url,
+                                           @Value("${uplert.notify.request-timeout:10s}") Duration timeout,
+                                           @Value("${uplert.notify.discord.batch-size:10}") int batchSize,
+                                           @Value("${uplert.notify.discord.rate-per-minute:30}") int ratePerMinute) {
+        return new DiscordNotifier(url, notifierHttpClient, objectMapper, timeout, batchSize, ratePerMinute);
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${uplert.notify.webhook.url:}' != ''")
+    public GenericWebhookNotifier genericWebhookNotifier(HttpClient notifierHttpClient, ObjectMapper objectMapper,
+                                                         @Value("${uplert.notify.webhook.url}") String url,
+                                                         @Value("${uplert.notify.request-timeout:10s}") Duration timeout,
+                                                         @Value("${uplert.notify.webhook.batch-size:50}") int batchSize,
+                                                         @Value("${uplert.notify.webhook.rate-per-minute:60}") int ratePerMinute) {
+        return new GenericWebhookNotifier(url, notifierHttpClient, objectMapper, timeout, batchSize, ratePerMinute);
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.uplert.config;
+
+import com.github.uplert.model.ExecutionMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Scheduling only decides when a check is due and is kept on a single timer thread. The check itself (probe
+ * handling, Mongo round trips, SMTP) is handed to the check executor, whose threading model is selected with
+ * {@code uplert.scheduler.execution-mode}.
+ * <p>
+ * Background housekeeping ({@code @Scheduled} methods) gets its own task scheduler so it never runs on the
+ * monitor timer.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulerConfig {
+
+    @Bean
+    public TaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("background-");
+        return scheduler;
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService monitorTimer() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "monitor-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService checkExecutor(@Value("${uplert.scheduler.execution-mode:VIRTUAL}") ExecutionMode mode,
+                                         @Value("${uplert.scheduler.pool-size:10}") int poolSize) {
+        return createCheckExecutor(mode, poolSize);
+    }
+
+    public static ExecutorService createCheckExecutor(ExecutionMode mode, int poolSize) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("monitor-check-", 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "monitor-check-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+}
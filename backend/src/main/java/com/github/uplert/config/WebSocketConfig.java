@@ -1,27 +1,53 @@
 package com.github.uplert.config;
 
+import com.github.uplert.websocket.AgentHandler;
 import com.github.uplert.websocket.CustomHandshakeHandler;
+import com.github.uplert.websocket.LogFrameEncoder;
 import com.github.uplert.websocket.LogHandler;
 import com.github.uplert.websocket.WebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
     private final WebSocketHandler webSocketHandler;
     private final LogHandler logHandler;
+    private final AgentHandler agentHandler;
 
-    public WebSocketConfig(WebSocketHandler webSocketHandler, LogHandler logHandler) {
+    public WebSocketConfig(WebSocketHandler webSocketHandler, LogHandler logHandler, AgentHandler agentHandler) {
         this.webSocketHandler = webSocketHandler;
         this.logHandler = logHandler;
+        this.agentHandler = agentHandler;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(logHandler, "/ws/{projectId}/log").setAllowedOrigins("*").setHandshakeHandler(new CustomHandshakeHandler());
+        CustomHandshakeHandler logHandshakeHandler = new CustomHandshakeHandler();
+        // clients that do not ask for a subprotocol keep getting JSON text frames
+        logHandshakeHandler.setSupportedProtocols(LogFrameEncoder.PROTOCOL);
+        registry.addHandler(logHandler, "/ws/{projectId}/log").setAllowedOrigins("*").setHandshakeHandler(logHandshakeHandler);
         registry.addHandler(webSocketHandler, "/ws").setAllowedOrigins("*");
+        registry.addHandler(agentHandler, "/ws/agent");
+    }
+
+    /**
+     * Probe agents upload their results in binary frames of up to {@code uplert.agent.max-batch-bytes}, dashboards
+     * send batch commands in text frames of up to {@code uplert.websocket.max-text-message-bytes}.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer(
+            @Value("${uplert.agent.max-batch-bytes:1MB}") DataSize maxBatchBytes,
+            @Value("${uplert.websocket.max-text-message-bytes:512KB}") DataSize maxTextMessageBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize((int) maxBatchBytes.toBytes());
+        container.setMaxTextMessageBufferSize((int) maxTextMessageBytes.toBytes());
+        return container;
     }
 }
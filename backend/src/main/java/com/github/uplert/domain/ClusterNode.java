@@ -0,0 +1,27 @@
+package com.github.uplert.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A backend node in cluster mode, alive while its heartbeat is recent.
+ */
+@Document(collection = "cluster_nodes")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ClusterNode {
+    @Id
+    private String id;
+
+    private Instant startedAt;
+
+    private Instant heartbeatAt;
+}
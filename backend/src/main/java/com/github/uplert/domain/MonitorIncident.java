@@ -0,0 +1,65 @@
+package com.github.uplert.domain;
+
+import com.github.uplert.model.IncidentState;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incident state of a single monitor, keyed by its URL.
+ */
+@Document(collection = "monitor_incidents")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class MonitorIncident {
+    @Id
+    private String url;
+
+    private String projectId;
+
+    private IncidentState state = IncidentState.UP;
+
+    private int consecutiveFailures;
+
+    private int consecutiveSuccesses;
+
+    /**
+     * When the current state was entered.
+     */
+    private Instant since;
+
+    /**
+     * Times the monitor was confirmed down within the flap window, oldest first.
+     */
+    private List<Instant> downTransitions = new ArrayList<>();
+
+    private boolean flapping;
+
+    /**
+     * The alert of the current outage was suppressed while flapping and is still to be sent.
+     */
+    private boolean alertDeferred;
+
+    private Integer lastStatusCode;
+
+    private String lastError;
+
+    /**
+     * Digest of the last probed body, to report content changes.
+     */
+    private String contentDigest;
+
+    /**
+     * Certificate expiry threshold in days the user was last warned about, {@code null} if not warned.
+     */
+    private Integer expiryWarningDays;
+}
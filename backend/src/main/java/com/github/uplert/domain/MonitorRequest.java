@@ -32,10 +32,17 @@ public class MonitorRequest {
 
     private String url;
 
+    /**
+     * Lowercased {@link #url}, indexed for exact case-insensitive uniqueness checks.
+     */
+    private String urlKey;
+
     @BsonProperty(value = "interval")
     @Enumerated(EnumType.ORDINAL)
     private Intervals interval;
 
+    private Integer intervalSeconds;
+
     @Enumerated(EnumType.STRING)
     private Status status;
 
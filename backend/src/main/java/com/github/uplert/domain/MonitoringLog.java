@@ -27,13 +27,42 @@ public class MonitoringLog {
     @Getter
     @Setter
     public static class LogEntry {
+        /**
+         * Assigned when the entry is queued for writing, {@code null} for entries written before entries had ids.
+         */
+        private String id;
         private String timestamp;
         private String website;
         private Long responseTime;
         private Integer statusCode;
         private String error;
 
-        public LogEntry(String website, String timestamp, long responseTime, int statusCode) {
+        /**
+         * Phase breakdown of the probe, only present when the backend runs in the timed probe mode.
+         */
+        private Timings timings;
+
+        /**
+         * Response bytes read by the probe, headers included, only present with {@link #timings}.
+         */
+        private Long bytes;
+
+        /**
+         * Hex SHA-256 of the body, only present for monitors whose content check asks for it.
+         */
+        private String digest;
+
+        /**
+         * Whether {@link #digest} differs from the previous probe's, {@code null} when there is nothing to compare.
+         */
+        private Boolean contentChanged;
+
+        /**
+         * Handshake and certificate details, only present for TLS monitors.
+         */
+        private Tls tls;
+
+        public LogEntry(String website, String timestamp, long responseTime, Integer statusCode) {
             this.timestamp = timestamp;
             this.website = website;
             this.responseTime = responseTime;
@@ -46,6 +75,39 @@ public class MonitoringLog {
         }
     }
 
+    /**
+     * Probe phase durations in microseconds, {@code null} for phases the probe did not reach.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Timings {
+        private Long dns;
+        private Long connect;
+        private Long tls;
+        private Long ttfb;
+        private Long transfer;
+    }
+
+    /**
+     * What a TLS monitor's handshake negotiated and when the certificate chain expires.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Tls {
+        private String protocol;
+        private String cipherSuite;
+        private Boolean resumed;
+        private String expiresAt;
+        private Long daysToExpiry;
+        private String subject;
+        /**
+         * Why the chain or host name did not validate, {@code null} if they did.
+         */
+        private String validationError;
+    }
+
     public void addLogEntry(LogEntry entry) {
         if (this.logs == null) {
             this.logs = new ArrayList<>();
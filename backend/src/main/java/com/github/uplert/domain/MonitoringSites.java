@@ -1,6 +1,8 @@
 package com.github.uplert.domain;
 
+import com.github.uplert.model.ContentCheck;
 import com.github.uplert.model.Intervals;
+import com.github.uplert.model.MonitorType;
 import com.github.uplert.model.Status;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -12,6 +14,8 @@ import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Duration;
+
 @Document(collection = "monitoring_sites")
 @AllArgsConstructor
 @NoArgsConstructor
@@ -28,12 +32,27 @@ public class MonitoringSites {
     @Indexed(unique = true)
     private String url;
 
-    @NotNull
     @BsonProperty(value = "interval")
     @Enumerated(EnumType.ORDINAL)
     private Intervals interval;
 
+    private Integer intervalSeconds;
+
     @NotNull
     @Enumerated(EnumType.STRING)
     private Status status;
+
+    private ContentCheck contentCheck;
+
+    @Enumerated(EnumType.STRING)
+    private MonitorType monitorType;
+
+    /**
+     * Group of remote probe agents that checks the monitor, {@code null} when the backend checks it.
+     */
+    private String agentGroup;
+
+    public Duration resolveInterval() {
+        return Intervals.resolve(interval, intervalSeconds);
+    }
 }
@@ -0,0 +1,28 @@
+package com.github.uplert.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Ownership of one monitor partition in cluster mode. Only the owner probes the partition's monitors, and only
+ * until the lease expires unless it renews it.
+ */
+@Document(collection = "partition_leases")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PartitionLease {
+    @Id
+    private Integer partition;
+
+    private String owner;
+
+    private Instant expiresAt;
+}
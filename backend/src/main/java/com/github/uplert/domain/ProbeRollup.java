@@ -0,0 +1,38 @@
+package com.github.uplert.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+/**
+ * Aggregate of the probe samples of one URL within one bucket. Stored in one collection per
+ * {@link com.github.uplert.model.HistoryTier}, so it carries no {@code @Document} mapping of its own.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProbeRollup {
+    @Id
+    private String id;
+
+    private String projectId;
+
+    private String url;
+
+    private Instant bucket;
+
+    private long count;
+
+    private long failures;
+
+    private Long minLatency;
+
+    private Long maxLatency;
+
+    private Long sumLatency;
+
+    private Double avgLatency;
+}
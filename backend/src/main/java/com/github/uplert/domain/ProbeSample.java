@@ -0,0 +1,42 @@
+package com.github.uplert.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Raw probe result in the {@code probe_samples} time-series collection, bucketed by {@link Meta}.
+ */
+@Document(collection = "probe_samples")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProbeSample {
+    @Id
+    private String id;
+
+    private Instant timestamp;
+
+    private Meta meta;
+
+    private Long responseTime;
+
+    private Integer statusCode;
+
+    private boolean failed;
+
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    public static class Meta {
+        private String projectId;
+        private String url;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.uplert.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Control message on {@code /ws/agent}, sent as a JSON text frame. The {@code type} decides which fields are set:
+ * <ul>
+ *     <li>{@code assign} (to the agent): the agent's complete monitor set in {@code monitors}</li>
+ *     <li>{@code delta} (to the agent): monitors added or changed in {@code monitors}, IDs of removed ones in
+ *     {@code removed}</li>
+ *     <li>{@code ack} (to the agent): every result batch up to {@code seq} was ingested</li>
+ *     <li>{@code probe} (to the agent): check monitor {@code id} now</li>
+ *     <li>{@code resync} (to the backend): send a complete {@code assign}</li>
+ * </ul>
+ * Assignments carry a {@code version} that grows by one with every {@code assign} or {@code delta} on a connection;
+ * an agent that sees a gap asks for a {@code resync}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AgentMessageDTO {
+
+    private String type;
+
+    private Long version;
+
+    private List<AgentMonitorDTO> monitors;
+
+    private List<String> removed;
+
+    private Long seq;
+
+    private String id;
+}
@@ -0,0 +1,38 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * A monitor as a remote probe agent runs it. Agents check HTTP monitors, optionally for required and forbidden
+ * keywords in the body, and TCP monitors.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class AgentMonitorDTO {
+
+    private String id;
+
+    private String url;
+
+    private MonitorType monitorType;
+
+    private long intervalMillis;
+
+    private List<String> required;
+
+    private List<String> forbidden;
+
+    /**
+     * Body bytes to search for the keywords at most.
+     */
+    private Integer maxBytes;
+}
@@ -0,0 +1,24 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Results uploaded by a remote probe agent as one gzip-compressed JSON binary frame on {@code /ws/agent}. Sequence
+ * numbers grow by one per batch; the agent keeps a batch until it is acknowledged and sends it again after a
+ * reconnect, batches the backend has already ingested are acknowledged again but not ingested twice.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentResultBatchDTO {
+
+    private long seq;
+
+    private List<AgentResultDTO> results;
+}
@@ -0,0 +1,41 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of one check run by a remote probe agent.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgentResultDTO {
+
+    /**
+     * ID of the monitor, as assigned in {@link AgentMonitorDTO#getId()}.
+     */
+    private String id;
+
+    private long startedAt;
+
+    private long responseTime;
+
+    /**
+     * {@code null} for TCP monitors and failed checks.
+     */
+    private Integer statusCode;
+
+    private String error;
+
+    /**
+     * Whether the body passed the keyword checks, {@code null} if there were none or the body was not read.
+     */
+    private Boolean contentPassed;
+
+    private String contentReason;
+
+    private Long bytes;
+}
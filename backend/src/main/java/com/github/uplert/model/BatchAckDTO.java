@@ -0,0 +1,25 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated reply to a batch command: the URLs it was applied to and the error for every URL it failed for.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAckDTO {
+
+    private String action;
+
+    private List<String> succeeded;
+
+    private Map<String, String> failed;
+}
@@ -0,0 +1,32 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResultDTO {
+    private int received;
+    private int created;
+    private int scheduled;
+    private List<RowError> errors;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        /**
+         * Zero-based position of the row in the request body.
+         */
+        private int row;
+        private String url;
+        private String error;
+    }
+}
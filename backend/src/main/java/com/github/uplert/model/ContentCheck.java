@@ -0,0 +1,45 @@
+package com.github.uplert.model;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Optional checks of a monitor's response body. A check fails when a required keyword or the regex is missing
+ * from the first {@code maxBytes} of the body, or a forbidden keyword is present. Keywords are case-sensitive.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentCheck {
+
+    @Size(max = 32)
+    private List<String> required;
+
+    @Size(max = 32)
+    private List<String> forbidden;
+
+    @Size(max = 1024)
+    private String regex;
+
+    /**
+     * Whether to report a SHA-256 of the body so that content changes can be detected.
+     */
+    private Boolean digest;
+
+    /**
+     * Body bytes to inspect at most, 1 MiB if not set.
+     */
+    @Min(1)
+    @Max(16 * 1024 * 1024)
+    private Integer maxBytes;
+}
@@ -18,9 +18,21 @@ public class EmailDetails {
         private String responseTime;
         private String url;
         private String statusCode;
+        /**
+         * What the warning is about, only set for warnings.
+         */
+        private String message;
     }
     private List<String> recipients;
     private BodyData msgBody;
     private String subject;
     private String attachment;
+    /**
+     * A warning about a site that is still up, e.g. an expiring certificate, rather than an outage.
+     */
+    private boolean warning;
+    /**
+     * The site is back up after an outage.
+     */
+    private boolean recovery;
 }
@@ -0,0 +1,14 @@
+package com.github.uplert.model;
+
+public enum ExecutionMode {
+
+    /**
+     * Checks run on a fixed pool of platform threads.
+     */
+    PLATFORM,
+
+    /**
+     * Each check runs on its own virtual thread.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,22 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryPointDTO {
+    private String url;
+    private Instant timestamp;
+    private long count;
+    private long failures;
+    private Long minLatency;
+    private Long maxLatency;
+    private Double avgLatency;
+}
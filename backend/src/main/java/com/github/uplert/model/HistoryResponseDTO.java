@@ -0,0 +1,21 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryResponseDTO {
+    private String projectId;
+    private HistoryTier tier;
+    private Instant from;
+    private Instant to;
+    private List<HistoryPointDTO> points;
+}
@@ -0,0 +1,29 @@
+package com.github.uplert.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public enum HistoryTier {
+
+    RAW("probe_samples", Duration.ZERO, null),
+    MINUTE("probe_rollups_1m", Duration.ofMinutes(1), "minute"),
+    HOUR("probe_rollups_1h", Duration.ofHours(1), "hour"),
+    DAY("probe_rollups_1d", Duration.ofDays(1), "day");
+
+    private final String collection;
+
+    private final Duration resolution;
+
+    /**
+     * Unit passed to {@code $dateTrunc} when rolling samples up into this tier.
+     */
+    private final String unit;
+
+    HistoryTier(String collection, Duration resolution, String unit) {
+        this.collection = collection;
+        this.resolution = resolution;
+        this.unit = unit;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.uplert.model;
+
+public enum IncidentState {
+
+    /**
+     * The monitor is healthy.
+     */
+    UP,
+
+    /**
+     * The monitor failed but not yet often enough in a row to be considered down.
+     */
+    SUSPECT,
+
+    /**
+     * The failure is confirmed.
+     */
+    DOWN,
+
+    /**
+     * A down monitor succeeded but not yet often enough in a row to be considered up.
+     */
+    RECOVERING
+}
@@ -2,6 +2,8 @@ package com.github.uplert.model;
 
 import lombok.Getter;
 
+import java.time.Duration;
+
 @Getter
 public enum Intervals {
 
@@ -12,4 +14,18 @@ public enum Intervals {
     Intervals(int i) {
         this.interval = i;
     }
+
+    public Duration toDuration() {
+        return Duration.ofMinutes(interval);
+    }
+
+    /**
+     * Effective check interval of a monitor: an explicit interval in seconds wins over the preset.
+     */
+    public static Duration resolve(Intervals preset, Integer intervalSeconds) {
+        if (intervalSeconds != null) {
+            return Duration.ofSeconds(intervalSeconds);
+        }
+        return preset != null ? preset.toDuration() : null;
+    }
 }
@@ -0,0 +1,23 @@
+package com.github.uplert.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Frame received on the {@code /ws} control channel. A command targets either a single {@code website} or, in its
+ * batch form, every entry of {@code websites}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class MonitorCommand {
+
+    private String action;
+
+    private MonitorRequestDTO website;
+
+    private List<MonitorRequestDTO> websites;
+}
@@ -1,7 +1,10 @@
 package com.github.uplert.model;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
@@ -11,6 +14,7 @@ import lombok.Setter;
 import org.hibernate.annotations.ColumnDefault;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import java.time.Duration;
 import java.util.UUID;
 
 
@@ -30,8 +34,32 @@ public class MonitorRequestDTO {
     @MonitorRequestUrlUnique
     private String url;
 
-    @NotNull
     private Intervals interval;
 
+    @Min(1)
+    @Max(86400)
+    private Integer intervalSeconds;
+
     private Status status;
+
+    @Valid
+    private ContentCheck contentCheck;
+
+    private MonitorType monitorType;
+
+    /**
+     * Group of remote probe agents that checks the monitor instead of the backend, {@code null} for backend checks.
+     */
+    @Size(max = 64)
+    private String agentGroup;
+
+    @JsonIgnore
+    @AssertTrue(message = "either interval or intervalSeconds is required")
+    public boolean isIntervalPresent() {
+        return interval != null || intervalSeconds != null;
+    }
+
+    public Duration resolveInterval() {
+        return Intervals.resolve(interval, intervalSeconds);
+    }
 }
@@ -0,0 +1,21 @@
+package com.github.uplert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonitorRequestPageDTO {
+    private List<MonitorRequestDTO> items;
+
+    /**
+     * Value for the {@code after} parameter of the next page, {@code null} on the last page.
+     */
+    private String nextCursor;
+}
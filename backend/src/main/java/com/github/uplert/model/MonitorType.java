@@ -0,0 +1,23 @@
+package com.github.uplert.model;
+
+/**
+ * How a monitor checks its target. A monitor without a type is an {@link #HTTP} monitor.
+ */
+public enum MonitorType {
+    /**
+     * GET of an {@code http://} or {@code https://} URL.
+     */
+    HTTP,
+    /**
+     * Connect to {@code tcp://host:port}, optionally checking the banner the service sends with the content check.
+     */
+    TCP,
+    /**
+     * TLS handshake with {@code tls://host[:port]}, port 443 by default, reporting the certificate chain's expiry.
+     */
+    TLS;
+
+    public static MonitorType of(MonitorType type) {
+        return type != null ? type : HTTP;
+    }
+}
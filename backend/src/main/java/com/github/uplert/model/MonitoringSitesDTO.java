@@ -20,8 +20,15 @@ public class MonitoringSitesDTO {
     @MonitorRequestUrlUnique
     private String url;
 
-    @NotNull
     private Intervals interval;
 
+    private Integer intervalSeconds;
+
     private Status status;
+
+    private ContentCheck contentCheck;
+
+    private MonitorType monitorType;
+
+    private String agentGroup;
 }
@@ -0,0 +1,19 @@
+package com.github.uplert.model;
+
+public enum SlowConsumerPolicy {
+
+    /**
+     * A full send queue discards its oldest message.
+     */
+    DROP_OLDEST,
+
+    /**
+     * A queued result is replaced by a newer result for the same URL; a full queue discards its oldest message.
+     */
+    COALESCE,
+
+    /**
+     * A full send queue closes the session.
+     */
+    DISCONNECT
+}
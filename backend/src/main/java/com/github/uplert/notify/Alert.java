@@ -0,0 +1,54 @@
+package com.github.uplert.notify;
+
+import com.github.uplert.model.IncidentState;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * An incident transition worth telling the user about, an outage or the {@link #isRecovery() recovery} from one, or
+ * a {@link #isWarning() warning} that does not change the incident state, e.g. a certificate close to its expiry.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Alert {
+
+    private final String url;
+
+    private final String projectId;
+
+    private final IncidentState from;
+
+    private final IncidentState to;
+
+    private final Integer statusCode;
+
+    private final Long responseTime;
+
+    private final String error;
+
+    private final Instant raisedAt;
+
+    public boolean isWarning() {
+        return from == to;
+    }
+
+    public boolean isRecovery() {
+        return to == IncidentState.UP && from != to;
+    }
+
+    /**
+     * One-line summary used by the chat channels.
+     */
+    public String summary() {
+        if (isWarning()) {
+            return url + ": " + error;
+        }
+        String detail = error != null ? "error: " + error
+                : "status " + statusCode + (responseTime != null ? ", " + responseTime + " ms" : "");
+        return url + " is " + to + " (" + detail + ")";
+    }
+}
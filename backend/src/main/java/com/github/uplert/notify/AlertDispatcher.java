@@ -0,0 +1,180 @@
+package com.github.uplert.notify;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fans alerts out to every {@link Notifier}. {@link #dispatch(Alert)} only queues; each channel has its own bounded
+ * queue and worker, so a slow or failing channel never delays the checks or the other channels. A worker waits for
+ * its channel's rate limit, sends everything queued meanwhile as one batch (up to {@link Notifier#maxBatchSize()})
+ * and retries failed deliveries with exponential backoff.
+ */
+@Slf4j
+@Service
+public class AlertDispatcher {
+
+    private final List<Channel> channels = new ArrayList<>();
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long sendTimeoutMillis;
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("alert-", 0).factory());
+    private volatile boolean running = true;
+
+    public AlertDispatcher(List<Notifier> notifiers, MeterRegistry meterRegistry,
+                           @Value("${uplert.notify.queue-capacity:1000}") int queueCapacity,
+                           @Value("${uplert.notify.max-attempts:5}") int maxAttempts,
+                           @Value("${uplert.notify.initial-backoff:1s}") Duration initialBackoff,
+                           @Value("${uplert.notify.max-backoff:1m}") Duration maxBackoff,
+                           @Value("${uplert.notify.send-timeout:30s}") Duration sendTimeout) {
+        for (Notifier notifier : notifiers) {
+            channels.add(new Channel(notifier, new ArrayBlockingQueue<>(queueCapacity), meterRegistry));
+        }
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.sendTimeoutMillis = sendTimeout.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Channel channel : channels) {
+            workers.execute(channel::run);
+            log.info("Alert channel {} enabled", channel.notifier.name());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.shutdownNow();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public void dispatch(Alert alert) {
+        for (Channel channel : channels) {
+            if (!channel.queue.offer(alert)) {
+                log.warn("Alert queue of {} is full, dropping alert for {}", channel.notifier.name(), alert.getUrl());
+            }
+        }
+    }
+
+    private final class Channel {
+        private final Notifier notifier;
+        private final BlockingQueue<Alert> queue;
+        private final long spacingNanos;
+        private final Timer delivered;
+        private final Timer failed;
+        private long nextSendAt = System.nanoTime();
+
+        private Channel(Notifier notifier, BlockingQueue<Alert> queue, MeterRegistry meterRegistry) {
+            this.notifier = notifier;
+            this.queue = queue;
+            this.spacingNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, notifier.ratePerMinute());
+            Gauge.builder("uplert.notify.queue.depth", queue, BlockingQueue::size)
+                    .description("Alerts waiting for delivery")
+                    .tag("channel", notifier.name())
+                    .register(meterRegistry);
+            this.delivered = deliveryTimer(meterRegistry, "success");
+            this.failed = deliveryTimer(meterRegistry, "failure");
+        }
+
+        private Timer deliveryTimer(MeterRegistry meterRegistry, String outcome) {
+            return Timer.builder("uplert.notify.delivery")
+                    .description("Delivery attempts of one alert batch")
+                    .tag("channel", notifier.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+
+        private void run() {
+            List<Alert> batch = new ArrayList<>();
+            while (running) {
+                try {
+                    batch.add(queue.take());
+                    long wait = nextSendAt - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    queue.drainTo(batch, notifier.maxBatchSize() - batch.size());
+                    deliver(batch);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.error("Alert channel {} failed", notifier.name(), e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void deliver(List<Alert> batch) throws InterruptedException {
+            long backoff = initialBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                Throwable failure;
+                // retries count against the rate limit as well
+                long start = System.nanoTime();
+                nextSendAt = start + spacingNanos;
+                CompletableFuture<Void> sending = notifier.send(List.copyOf(batch));
+                try {
+                    sending.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                    delivered.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return;
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                } catch (TimeoutException e) {
+                    // abort the send, a late success must not deliver the batch next to its retry
+                    sending.cancel(true);
+                    failure = e;
+                } catch (CancellationException e) {
+                    failure = e;
+                }
+                failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                boolean retryable = !(failure instanceof NotificationException notification) || notification.isRetryable();
+                if (!retryable || attempt >= maxAttempts) {
+                    log.error("Dropping {} alerts for channel {} after {} attempts: {}",
+                            batch.size(), notifier.name(), attempt, failure.toString());
+                    return;
+                }
+                long delay = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                if (failure instanceof NotificationException notification && notification.getRetryAfter() != null) {
+                    delay = Math.max(delay, notification.getRetryAfter().toMillis());
+                }
+                if (failure instanceof NotificationException notification && notification.getUndelivered() != null) {
+                    // the rest of the batch went out, sending it again would duplicate it
+                    List<Alert> undelivered = List.copyOf(notification.getUndelivered());
+                    batch.clear();
+                    batch.addAll(undelivered);
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                }
+                log.warn("Alert channel {} failed ({}), retrying {} alerts in {} ms", notifier.name(), failure.toString(),
+                        batch.size(), delay);
+                Thread.sleep(delay);
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.uplert.notify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Discord webhook, a batch is sent as one message with an embed per alert.
+ */
+public class DiscordNotifier extends WebhookNotifier {
+
+    // Discord rejects messages with more embeds
+    private static final int MAX_EMBEDS = 10;
+    private static final int RED = 0xE74C3C;
+    private static final int ORANGE = 0xE67E22;
+    private static final int GREEN = 0x2ECC71;
+
+    public DiscordNotifier(String url, HttpClient httpClient, ObjectMapper objectMapper, Duration timeout,
+                           int maxBatchSize, int ratePerMinute) {
+        super("discord", url, httpClient, objectMapper, timeout, Math.min(maxBatchSize, MAX_EMBEDS), ratePerMinute);
+    }
+
+    @Override
+    protected Object body(List<Alert> alerts) {
+        List<Map<String, Object>> embeds = alerts.stream().map(alert -> {
+            Map<String, Object> embed = new LinkedHashMap<>();
+            embed.put("title", alert.isWarning() ? "Warning for " + alert.getUrl() : alert.getUrl() + " is " + alert.getTo());
+            embed.put("description", alert.summary());
+            embed.put("color", alert.isWarning() ? ORANGE : alert.isRecovery() ? GREEN : RED);
+            embed.put("timestamp", alert.getRaisedAt().toString());
+            return embed;
+        }).toList();
+        return Map.of("embeds", embeds);
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.uplert.notify;
+
+import com.github.uplert.config.SingleUserInitializer;
+import com.github.uplert.domain.User;
+import com.github.uplert.model.EmailDetails;
+import com.github.uplert.repos.UserRepository;
+import com.github.uplert.service.EmailService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Alert mail through the {@link EmailService}, which queues the mails itself and sends alerts raised close together
+ * as one digest. The recipients are reloaded every {@code uplert.notify.email.recipients-refresh} rather than read
+ * on every send, which would block the dispatcher on the database.
+ */
+@Slf4j
+@Component
+public class EmailNotifier implements Notifier {
+
+    private final EmailService emailService;
+    private final UserRepository userRepository;
+    private final int ratePerMinute;
+    // null until loaded
+    private volatile List<String> recipients;
+
+    public EmailNotifier(EmailService emailService, UserRepository userRepository,
+                         @Value("${uplert.notify.email.rate-per-minute:600}") int ratePerMinute) {
+        this.emailService = emailService;
+        this.userRepository = userRepository;
+        this.ratePerMinute = ratePerMinute;
+    }
+
+    @Scheduled(fixedDelayString = "${uplert.notify.email.recipients-refresh:30s}")
+    public void refreshRecipients() {
+        try {
+            User user = userRepository.findById(SingleUserInitializer.SINGLE_USER_ID).orElse(null);
+            recipients = user != null && user.getEmails() != null ? List.copyOf(user.getEmails()) : List.of();
+        } catch (RuntimeException e) {
+            log.warn("Failed to load the alert recipients: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String name() {
+        return "email";
+    }
+
+    @Override
+    public CompletableFuture<Void> send(List<Alert> alerts) {
+        List<String> to = recipients;
+        if (to == null) {
+            return CompletableFuture.failedFuture(new NotificationException("Alert recipients not loaded yet", true, null));
+        }
+        if (to.isEmpty()) {
+            return CompletableFuture.failedFuture(new NotificationException("No alert recipients configured", false, null));
+        }
+        for (int i = 0; i < alerts.size(); i++) {
+            if (!"Email queued".equals(emailService.sendEmail(toEmail(alerts.get(i), to)))) {
+                // retry only the alerts that did not make it into the queue
+                return CompletableFuture.failedFuture(new NotificationException("Mail queue is full", true, null,
+                        i > 0 ? alerts.subList(i, alerts.size()) : null));
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static EmailDetails toEmail(Alert alert, List<String> recipients) {
+        EmailDetails emailDetails = new EmailDetails();
+        if (alert.isWarning()) {
+            emailDetails.setSubject("Warning: " + alert.summary());
+            emailDetails.setMsgBody(new EmailDetails.BodyData("", alert.getUrl(), "", alert.getError()));
+            emailDetails.setWarning(true);
+        } else if (alert.isRecovery()) {
+            emailDetails.setSubject("Resolved: " + alert.getUrl() + " is back up");
+            emailDetails.setMsgBody(new EmailDetails.BodyData(Objects.toString(alert.getResponseTime(), ""), alert.getUrl(),
+                    Objects.toString(alert.getStatusCode(), ""), null));
+            emailDetails.setRecovery(true);
+        } else {
+            emailDetails.setSubject("Urgent: Your Website Is Down – Immediate Action Required");
+            emailDetails.setMsgBody(new EmailDetails.BodyData(Objects.toString(alert.getResponseTime(), ""), alert.getUrl(),
+                    Objects.toString(alert.getStatusCode(), "unreachable"), null));
+        }
+        emailDetails.setRecipients(recipients);
+        return emailDetails;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 100;
+    }
+
+    @Override
+    public int ratePerMinute() {
+        return ratePerMinute;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.uplert.notify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic webhook, a batch is posted as {@code {"alerts": [...]}} with every {@link Alert} field.
+ */
+public class GenericWebhookNotifier extends WebhookNotifier {
+
+    public GenericWebhookNotifier(String url, HttpClient httpClient, ObjectMapper objectMapper, Duration timeout,
+                                  int maxBatchSize, int ratePerMinute) {
+        super("webhook", url, httpClient, objectMapper, timeout, maxBatchSize, ratePerMinute);
+    }
+
+    @Override
+    protected Object body(List<Alert> alerts) {
+        return Map.of("alerts", alerts);
+    }
+}
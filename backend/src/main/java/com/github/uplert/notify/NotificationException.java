@@ -0,0 +1,35 @@
+package com.github.uplert.notify;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+public class NotificationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retryable;
+
+    /**
+     * Delay requested by the target before the next attempt, {@code null} if it did not ask for one.
+     */
+    private final Duration retryAfter;
+
+    /**
+     * Alerts of the batch that were not delivered and are all a retry sends, {@code null} if none was delivered.
+     */
+    private final transient List<Alert> undelivered;
+
+    public NotificationException(String message, boolean retryable, Duration retryAfter) {
+        this(message, retryable, retryAfter, null);
+    }
+
+    public NotificationException(String message, boolean retryable, Duration retryAfter, List<Alert> undelivered) {
+        super(message);
+        this.retryable = retryable;
+        this.retryAfter = retryAfter;
+        this.undelivered = undelivered;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.uplert.notify;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A channel alerts are delivered to. Every {@code Notifier} bean becomes a channel of the {@link AlertDispatcher},
+ * which calls {@link #send(List)} from that channel's own worker, one batch at a time, and takes care of queueing,
+ * rate limiting and retries.
+ * <p>
+ * Implementations must not block the caller. A failed delivery completes the future exceptionally; a
+ * {@link NotificationException} that is not {@link NotificationException#isRetryable() retryable} drops the batch,
+ * any other failure is retried. A channel that delivered part of the batch names the rest in
+ * {@link NotificationException#getUndelivered()} so that only those are sent again.
+ */
+public interface Notifier {
+
+    /**
+     * Channel name used in logs.
+     */
+    String name();
+
+    CompletableFuture<Void> send(List<Alert> alerts);
+
+    /**
+     * Largest number of alerts the target accepts in one delivery, {@code 1} if it does not support batching.
+     */
+    default int maxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Deliveries allowed per minute, alerts raised while the channel waits are batched into the next delivery.
+     */
+    default int ratePerMinute() {
+        return 60;
+    }
+}
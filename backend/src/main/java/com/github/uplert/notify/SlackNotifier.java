@@ -0,0 +1,28 @@
+package com.github.uplert.notify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Slack incoming webhook, a batch is sent as one message with a line per alert.
+ */
+public class SlackNotifier extends WebhookNotifier {
+
+    public SlackNotifier(String url, HttpClient httpClient, ObjectMapper objectMapper, Duration timeout,
+                         int maxBatchSize, int ratePerMinute) {
+        super("slack", url, httpClient, objectMapper, timeout, maxBatchSize, ratePerMinute);
+    }
+
+    @Override
+    protected Object body(List<Alert> alerts) {
+        return Map.of("text", alerts.stream()
+                .map(alert -> (alert.isWarning() ? ":warning: " : alert.isRecovery() ? ":large_green_circle: " : ":red_circle: ")
+                        + alert.summary())
+                .collect(Collectors.joining("\n")));
+    }
+}
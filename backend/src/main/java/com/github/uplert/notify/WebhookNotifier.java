@@ -0,0 +1,102 @@
+package com.github.uplert.notify;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Posts alerts as JSON to a webhook over the shared asynchronous {@link HttpClient}. A 429 or 5xx response is
+ * retried, honouring {@code Retry-After}; any other non-2xx response drops the batch.
+ */
+public abstract class WebhookNotifier implements Notifier {
+
+    private final String name;
+    private final URI uri;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final int maxBatchSize;
+    private final int ratePerMinute;
+
+    protected WebhookNotifier(String name, String url, HttpClient httpClient, ObjectMapper objectMapper,
+                              Duration timeout, int maxBatchSize, int ratePerMinute) {
+        this.name = name;
+        this.uri = URI.create(url);
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.ratePerMinute = ratePerMinute;
+    }
+
+    /**
+     * The JSON request body for one batch, serialized with Jackson.
+     */
+    protected abstract Object body(List<Alert> alerts);
+
+    @Override
+    public CompletableFuture<Void> send(List<Alert> alerts) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(body(alerts));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new NotificationException(e.getOriginalMessage(), false, null));
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.discarding());
+        CompletableFuture<Void> result = exchange.thenApply(response -> {
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                return null;
+            }
+            boolean retryable = status == 429 || status >= 500;
+            throw new NotificationException(name + " webhook responded with " + status, retryable,
+                    retryAfter(response));
+        });
+        // cancelling a dependent future does not reach the exchange it depends on
+        result.whenComplete((ignored, failure) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static Duration retryAfter(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue("Retry-After")
+                    .map(value -> Duration.ofMillis((long) (Double.parseDouble(value) * 1000)))
+                    .orElse(null);
+        } catch (NumberFormatException e) {
+            // an HTTP date, fall back to the regular backoff
+            return null;
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public int ratePerMinute() {
+        return ratePerMinute;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.uplert.probe;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Feeds the response body to a {@link ContentScanner} one chunk at a time and cancels the rest of the body as soon
+ * as the verdict is known. Cancelling closes an HTTP/1.1 connection instead of returning it to the pool, which is
+ * still cheaper than downloading a large page.
+ */
+class ContentBodySubscriber implements HttpResponse.BodySubscriber<ContentVerdict> {
+
+    private final ContentScanner scanner;
+    private final CompletableFuture<ContentVerdict> verdict = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    ContentBodySubscriber(ContentScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public CompletionStage<ContentVerdict> getBody() {
+        return verdict;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (verdict.isDone()) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (scanner.feed(buffer)) {
+                verdict.complete(scanner.finish(false));
+                subscription.cancel();
+                return;
+            }
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        verdict.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        verdict.complete(scanner.finish(true));
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.uplert.probe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled content checks of one monitor, immutable and shared by all of its probes. Each probe reads the body
+ * through its own {@link ContentScanner}.
+ * <p>
+ * Required and forbidden keywords are matched case-sensitively against the raw UTF-8 bytes by a single
+ * Aho-Corasick automaton, so every body byte is looked at once no matter how many keywords there are. The regex is
+ * applied to a sliding window of the decoded text and only finds matches of up to {@value #REGEX_WINDOW}
+ * characters.
+ * <p>
+ * Rules compiled from the same checks are equal, so probes with the same checks can be shared.
+ */
+public class ContentRules {
+
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    public static final long MAX_BYTES_LIMIT = 16 * 1024 * 1024;
+    public static final int MAX_KEYWORDS = 64;
+    static final int REGEX_WINDOW = 8192;
+
+    private final List<String> keywords;
+    private final long requiredMask;
+    private final long forbiddenMask;
+    private final Pattern regex;
+    private final boolean digest;
+    private final long maxBytes;
+
+    // dense automaton: the next state of state s on byte b is transitions[s * 256 + b]
+    private final int[] transitions;
+    // keywords ending in each state, as a bit per keyword
+    private final long[] matches;
+
+    private ContentRules(List<String> keywords, long requiredMask, long forbiddenMask, Pattern regex, boolean digest,
+                         long maxBytes) {
+        this.keywords = keywords;
+        this.requiredMask = requiredMask;
+        this.forbiddenMask = forbiddenMask;
+        this.regex = regex;
+        this.digest = digest;
+        this.maxBytes = maxBytes;
+
+        List<int[]> gotos = new ArrayList<>();
+        List<Long> outputs = new ArrayList<>();
+        gotos.add(newState());
+        outputs.add(0L);
+        for (int i = 0; i < keywords.size(); i++) {
+            int state = 0;
+            for (byte b : keywords.get(i).getBytes(StandardCharsets.UTF_8)) {
+                int next = gotos.get(state)[b & 0xff];
+                if (next == -1) {
+                    next = gotos.size();
+                    gotos.get(state)[b & 0xff] = next;
+                    gotos.add(newState());
+                    outputs.add(0L);
+                }
+                state = next;
+            }
+            outputs.set(state, outputs.get(state) | 1L << i);
+        }
+
+        int states = gotos.size();
+        this.transitions = new int[states * 256];
+        this.matches = new long[states];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        // breadth first, so the failure state of every state is complete before the state itself
+        for (int b = 0; b < 256; b++) {
+            int next = gotos.get(0)[b];
+            if (next == -1) {
+                transitions[b] = 0;
+            } else {
+                transitions[b] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        matches[0] = outputs.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matches[state] = outputs.get(state) | matches[failure[state]];
+            for (int b = 0; b < 256; b++) {
+                int next = gotos.get(state)[b];
+                if (next == -1) {
+                    transitions[state * 256 + b] = transitions[failure[state] * 256 + b];
+                } else {
+                    transitions[state * 256 + b] = next;
+                    failure[next] = transitions[failure[state] * 256 + b];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * @param maxBytes body bytes to inspect at most, capped at {@link #MAX_BYTES_LIMIT}
+     * @return the compiled rules, {@code null} if nothing is to be checked
+     * @throws IllegalArgumentException if there are too many keywords or the regex is invalid
+     */
+    public static ContentRules compile(Collection<String> required, Collection<String> forbidden, String regex,
+                                       boolean digest, long maxBytes) {
+        List<String> keywords = new ArrayList<>();
+        long requiredMask = 0;
+        long forbiddenMask = 0;
+        for (String keyword : required != null ? required : List.<String>of()) {
+            if (keyword != null && !keyword.isEmpty()) {
+                requiredMask |= 1L << add(keywords, keyword);
+            }
+        }
+        for (String keyword : forbidden != null ? forbidden : List.<String>of()) {
+            if (keyword != null && !keyword.isEmpty()) {
+                forbiddenMask |= 1L << add(keywords, keyword);
+            }
+        }
+        Pattern pattern = regex != null && !regex.isEmpty() ? Pattern.compile(regex) : null;
+        if (keywords.isEmpty() && pattern == null && !digest) {
+            return null;
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Content check byte limit must be positive");
+        }
+        return new ContentRules(List.copyOf(keywords), requiredMask, forbiddenMask, pattern, digest,
+                Math.min(maxBytes, MAX_BYTES_LIMIT));
+    }
+
+    private static int add(List<String> keywords, String keyword) {
+        if (keywords.size() == MAX_KEYWORDS) {
+            throw new IllegalArgumentException("At most " + MAX_KEYWORDS + " content keywords are supported");
+        }
+        keywords.add(keyword);
+        return keywords.size() - 1;
+    }
+
+    public ContentScanner newScanner() {
+        return new ContentScanner(this);
+    }
+
+    String keyword(int index) {
+        return keywords.get(index);
+    }
+
+    long requiredMask() {
+        return requiredMask;
+    }
+
+    long forbiddenMask() {
+        return forbiddenMask;
+    }
+
+    Pattern regex() {
+        return regex;
+    }
+
+    boolean digest() {
+        return digest;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentRules other)) {
+            return false;
+        }
+        return requiredMask == other.requiredMask && forbiddenMask == other.forbiddenMask && digest == other.digest
+                && maxBytes == other.maxBytes && keywords.equals(other.keywords)
+                && Objects.equals(regex != null ? regex.pattern() : null, other.regex != null ? other.regex.pattern() : null);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keywords, requiredMask, forbiddenMask, regex != null ? regex.pattern() : null, digest,
+                maxBytes);
+    }
+
+    int next(int state, byte b) {
+        return transitions[state * 256 + (b & 0xff)];
+    }
+
+    long matches(int state) {
+        return matches[state];
+    }
+}
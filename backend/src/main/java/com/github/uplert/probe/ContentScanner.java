@@ -0,0 +1,135 @@
+package com.github.uplert.probe;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+
+/**
+ * Evaluates {@link ContentRules} over a response body as it streams in, chunk by chunk, keeping no more than the
+ * regex window in memory. Not thread-safe; one scanner per probe.
+ */
+public class ContentScanner {
+
+    private final ContentRules rules;
+    private final MessageDigest digest;
+    private final CharsetDecoder decoder;
+    private final StringBuilder window;
+    private ByteBuffer undecoded;
+    private int state;
+    private long found;
+    private boolean regexMatched;
+    private long bytes;
+    private boolean truncated;
+
+    ContentScanner(ContentRules rules) {
+        this.rules = rules;
+        this.digest = rules.digest() ? sha256() : null;
+        if (rules.regex() != null) {
+            this.decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.window = new StringBuilder();
+        } else {
+            this.decoder = null;
+            this.window = null;
+            this.regexMatched = true;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Inspects the next chunk of the body and consumes it.
+     *
+     * @return {@code true} once the verdict is known or the byte limit is reached, the rest of the body can then be
+     * skipped
+     */
+    public boolean feed(ByteBuffer chunk) {
+        if (isDone()) {
+            chunk.position(chunk.limit());
+            return true;
+        }
+        long allowed = rules.maxBytes() - bytes;
+        if (chunk.remaining() > allowed) {
+            chunk.limit(chunk.position() + (int) allowed);
+            truncated = true;
+        }
+        int start = chunk.position();
+        int end = chunk.limit();
+        for (int i = start; i < end; i++) {
+            state = rules.next(state, chunk.get(i));
+            found |= rules.matches(state);
+        }
+        bytes += end - start;
+        if (digest != null) {
+            digest.update(chunk.duplicate());
+        }
+        if (!regexMatched) {
+            scanRegex(chunk.duplicate());
+        }
+        chunk.position(end);
+        return isDone();
+    }
+
+    private void scanRegex(ByteBuffer chunk) {
+        ByteBuffer input = chunk;
+        if (undecoded != null) {
+            input = ByteBuffer.allocate(undecoded.remaining() + chunk.remaining()).put(undecoded).put(chunk).flip();
+            undecoded = null;
+        }
+        CharBuffer chars = CharBuffer.allocate(input.remaining());
+        decoder.decode(input, chars, false);
+        if (input.hasRemaining()) {
+            // a multi-byte character continues in the next chunk
+            undecoded = ByteBuffer.allocate(input.remaining()).put(input).flip();
+        }
+        window.append(chars.flip());
+        Matcher matcher = rules.regex().matcher(window);
+        if (matcher.find()) {
+            regexMatched = true;
+            window.setLength(0);
+        } else if (window.length() > ContentRules.REGEX_WINDOW) {
+            window.delete(0, window.length() - ContentRules.REGEX_WINDOW);
+        }
+    }
+
+    private boolean isDone() {
+        if (truncated || (found & rules.forbiddenMask()) != 0) {
+            return true;
+        }
+        // absence of forbidden keywords and the digest need the whole body
+        return rules.forbiddenMask() == 0 && digest == null && regexMatched
+                && (found & rules.requiredMask()) == rules.requiredMask();
+    }
+
+    /**
+     * @param complete whether the whole body was fed, as opposed to the probe stopping early
+     */
+    public ContentVerdict finish(boolean complete) {
+        String reason = null;
+        long forbidden = found & rules.forbiddenMask();
+        long missing = rules.requiredMask() & ~found;
+        if (forbidden != 0) {
+            reason = "Forbidden keyword found: " + rules.keyword(Long.numberOfTrailingZeros(forbidden));
+        } else if (missing != 0) {
+            reason = "Required keyword not found: " + rules.keyword(Long.numberOfTrailingZeros(missing));
+        } else if (!regexMatched) {
+            reason = "Pattern not matched: " + rules.regex().pattern();
+        }
+        String hex = digest != null && (complete || truncated) && forbidden == 0
+                ? HexFormat.of().formatHex(digest.digest()) : null;
+        return new ContentVerdict(reason == null, reason, hex, bytes, truncated);
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.uplert.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Outcome of the content checks of one probe.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ContentVerdict {
+
+    private final boolean passed;
+
+    /**
+     * Why the checks failed, {@code null} if they passed.
+     */
+    private final String reason;
+
+    /**
+     * Hex SHA-256 of the inspected bytes, {@code null} unless requested and the body was read up to the byte limit.
+     */
+    private final String digest;
+
+    /**
+     * Body bytes inspected.
+     */
+    private final long bytes;
+
+    /**
+     * Whether the body was longer than the byte limit.
+     */
+    private final boolean truncated;
+}
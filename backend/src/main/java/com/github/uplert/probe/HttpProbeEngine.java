@@ -0,0 +1,149 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ProbeEngine} backed by the asynchronous {@link HttpClient}. One client is kept per connect timeout so
+ * that probes to the same origin reuse pooled HTTP/1.1 keep-alive or multiplexed HTTP/2 connections, and a
+ * handful of selector and worker threads can keep thousands of checks in flight. This is the default
+ * {@code uplert.probe.mode}, see {@link TimedHttpProbeEngine} for the alternative. Redirects are followed except
+ * from HTTPS to HTTP, set {@code uplert.probe.follow-redirects} to {@code NEVER} to report the 3xx status instead.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "uplert.probe.mode", havingValue = "POOLED", matchIfMissing = true)
+public class HttpProbeEngine implements ProbeEngine {
+
+    private final Duration defaultConnectTimeout;
+    private final Duration defaultReadTimeout;
+    private final HttpClient.Version version;
+    private final HttpClient.Redirect redirect;
+    private final ExecutorService executor;
+    private final Map<Duration, HttpClient> clients = new ConcurrentHashMap<>();
+    private final ProbeMetrics metrics;
+
+    public HttpProbeEngine(MeterRegistry meterRegistry,
+                           @Value("${uplert.probe.connect-timeout:5s}") Duration defaultConnectTimeout,
+                           @Value("${uplert.probe.read-timeout:10s}") Duration defaultReadTimeout,
+                           @Value("${uplert.probe.http-version:HTTP_2}") HttpClient.Version version,
+                           @Value("${uplert.probe.worker-threads:4}") int workerThreads,
+                           @Value("${uplert.probe.follow-redirects:NORMAL}") HttpClient.Redirect redirect) {
+        this.defaultConnectTimeout = defaultConnectTimeout;
+        this.defaultReadTimeout = defaultReadTimeout;
+        this.version = version;
+        this.redirect = redirect;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "probe-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.metrics = new ProbeMetrics(meterRegistry, "http");
+    }
+
+    @Override
+    public CompletableFuture<ProbeResult> probe(ProbeRequest request) {
+        String url = request.getUrl();
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Duration connectTimeout = request.getConnectTimeout() != null
+                ? request.getConnectTimeout() : defaultConnectTimeout;
+        Duration readTimeout = request.getReadTimeout() != null
+                ? request.getReadTimeout() : defaultReadTimeout;
+
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(url))
+                    .GET()
+                    .timeout(readTimeout)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0, e.getMessage()));
+        }
+
+        ContentRules contentRules = request.getContentRules();
+        HttpResponse.BodyHandler<ContentVerdict> bodyHandler = contentRules == null
+                ? HttpResponse.BodyHandlers.replacing(null)
+                // error responses fail the check anyway, their bodies are not worth reading
+                : info -> info.statusCode() >= 400 ? HttpResponse.BodySubscribers.replacing(null)
+                : new ContentBodySubscriber(contentRules.newScanner());
+
+        metrics.started();
+        CompletableFuture<HttpResponse<ContentVerdict>> exchange = client(connectTimeout)
+                .sendAsync(httpRequest, bodyHandler);
+
+        // request.timeout() only covers the wait for response headers, so bound the whole exchange as well
+        long deadlineMillis = connectTimeout.plus(readTimeout).toMillis();
+        return exchange
+                .orTimeout(deadlineMillis, TimeUnit.MILLISECONDS)
+                .handle((response, throwable) -> {
+                    long elapsed = System.nanoTime() - start;
+                    long responseTime = TimeUnit.NANOSECONDS.toMillis(elapsed);
+                    if (throwable == null) {
+                        metrics.finished(elapsed, response.statusCode(), false);
+                        return ProbeResult.success(url, startedAt, responseTime, response.statusCode(), response.body());
+                    }
+                    exchange.cancel(true);
+                    metrics.finished(elapsed, null, isTimeout(throwable));
+                    return ProbeResult.failure(url, startedAt, responseTime, describe(throwable, deadlineMillis));
+                });
+    }
+
+    private HttpClient client(Duration connectTimeout) {
+        return clients.computeIfAbsent(connectTimeout, timeout -> HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(timeout)
+                .followRedirects(redirect)
+                .executor(executor)
+                .build());
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+    }
+
+    private static boolean isTimeout(Throwable throwable) {
+        Throwable cause = unwrap(throwable);
+        return cause instanceof TimeoutException || cause instanceof HttpTimeoutException;
+    }
+
+    private static String describe(Throwable throwable, long deadlineMillis) {
+        Throwable cause = unwrap(throwable);
+        if (cause instanceof TimeoutException) {
+            return "Timed out: no complete response after " + deadlineMillis + " ms";
+        }
+        if (isTimeout(cause)) {
+            return "Timed out: " + cause.getMessage();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
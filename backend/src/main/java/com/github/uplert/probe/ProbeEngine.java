@@ -0,0 +1,13 @@
+package com.github.uplert.probe;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes a single check against a monitored target. Implementations must never block the caller and must
+ * always complete the returned future, reporting transport failures through {@link ProbeResult#getError()}.
+ */
+public interface ProbeEngine {
+
+    CompletableFuture<ProbeResult> probe(ProbeRequest request);
+
+}
@@ -0,0 +1,92 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters shared by the probe engines: probes in flight and probe latency by outcome, plus the connection phases
+ * for engines that measure them. All meters are tagged with the probe type, {@code http} or {@code tcp}.
+ */
+class ProbeMetrics {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer successLatency;
+    private final Timer httpErrorLatency;
+    private final Timer timeoutLatency;
+    private final Timer errorLatency;
+    private final MeterRegistry meterRegistry;
+    private final String type;
+
+    ProbeMetrics(MeterRegistry meterRegistry, String type) {
+        this.meterRegistry = meterRegistry;
+        this.type = type;
+        Gauge.builder("uplert.probe.in.flight", inFlight, AtomicInteger::get)
+                .description("Probes waiting for a response")
+                .tag("type", type)
+                .register(meterRegistry);
+        this.successLatency = latencyTimer("success");
+        this.httpErrorLatency = latencyTimer("http_error");
+        this.timeoutLatency = latencyTimer("timeout");
+        this.errorLatency = latencyTimer("error");
+    }
+
+    private Timer latencyTimer(String outcome) {
+        return Timer.builder("uplert.probe.latency")
+                .description("Time from sending a probe until its response headers arrived or it failed")
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    void finished(long elapsedNanos, Integer statusCode, boolean timeout) {
+        if (statusCode != null) {
+            finished(elapsedNanos, statusCode >= 400 ? httpErrorLatency : successLatency);
+        } else {
+            finished(elapsedNanos, timeout ? timeoutLatency : errorLatency);
+        }
+    }
+
+    /**
+     * For probes of protocols without a status code.
+     */
+    void finished(long elapsedNanos, boolean succeeded, boolean timeout) {
+        finished(elapsedNanos, succeeded ? successLatency : timeout ? timeoutLatency : errorLatency);
+    }
+
+    private void finished(long elapsedNanos, Timer latency) {
+        inFlight.decrementAndGet();
+        latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the phases of a probe under {@code uplert.probe.phase}, phases that did not happen are skipped.
+     */
+    void phases(ProbeTimings timings) {
+        phase("dns", timings.getDnsNanos());
+        phase("connect", timings.getConnectNanos());
+        phase("tls", timings.getTlsNanos());
+        phase("ttfb", timings.getTtfbNanos());
+        phase("transfer", timings.getTransferNanos());
+    }
+
+    private void phase(String phase, long nanos) {
+        if (nanos > 0) {
+            Timer.builder("uplert.probe.phase")
+                    .description("Duration of one phase of a timed probe")
+                    .tag("type", type)
+                    .tag("phase", phase)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
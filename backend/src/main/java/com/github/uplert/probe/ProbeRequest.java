@@ -0,0 +1,36 @@
+package com.github.uplert.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+@AllArgsConstructor
+public class ProbeRequest {
+
+    private final String url;
+
+    /**
+     * Deadline for establishing the connection, {@code null} to use the engine default.
+     */
+    private final Duration connectTimeout;
+
+    /**
+     * Deadline for the whole exchange once connected, {@code null} to use the engine default.
+     */
+    private final Duration readTimeout;
+
+    /**
+     * Checks to run against the response body, {@code null} to not read the body.
+     */
+    private final ContentRules contentRules;
+
+    public static ProbeRequest of(String url) {
+        return new ProbeRequest(url, null, null, null);
+    }
+
+    public static ProbeRequest of(String url, ContentRules contentRules) {
+        return new ProbeRequest(url, null, null, contentRules);
+    }
+}
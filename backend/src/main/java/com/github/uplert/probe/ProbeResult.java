@@ -0,0 +1,56 @@
+package com.github.uplert.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class ProbeResult {
+
+    private final String url;
+
+    private final long startedAt;
+
+    private final long responseTime;
+
+    private final Integer statusCode;
+
+    private final String error;
+
+    /**
+     * Phase breakdown, {@code null} unless the engine measures it.
+     */
+    private final ProbeTimings timings;
+
+    /**
+     * Outcome of the content checks, {@code null} if none were requested or the body was not inspected.
+     */
+    private final ContentVerdict content;
+
+    /**
+     * Handshake and certificate details, {@code null} unless this was a TLS probe that completed the handshake.
+     */
+    private final TlsInfo tls;
+
+    public static ProbeResult success(String url, long startedAt, long responseTime, int statusCode) {
+        return success(url, startedAt, responseTime, statusCode, null);
+    }
+
+    /**
+     * @param statusCode {@code null} for protocols without a status, e.g. plain TCP
+     */
+    public static ProbeResult success(String url, long startedAt, long responseTime, Integer statusCode,
+                                      ContentVerdict content) {
+        return new ProbeResult(url, startedAt, responseTime, statusCode, null, null, content, null);
+    }
+
+    public static ProbeResult failure(String url, long startedAt, long responseTime, String error) {
+        return new ProbeResult(url, startedAt, responseTime, null, error, null, null, null);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.uplert.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Where the time of a probe went, measured with {@link System#nanoTime()}. Phases that did not happen, e.g. the TLS
+ * handshake of a plain HTTP probe or everything after a failed connect, are 0.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ProbeTimings {
+
+    /**
+     * Resolving the host name.
+     */
+    private final long dnsNanos;
+
+    /**
+     * Establishing the TCP connection.
+     */
+    private final long connectNanos;
+
+    private final long tlsNanos;
+
+    /**
+     * From the request being written until the first response byte arrived.
+     */
+    private final long ttfbNanos;
+
+    /**
+     * From the first response byte until the response was read completely.
+     */
+    private final long transferNanos;
+
+    /**
+     * Response bytes read, headers included.
+     */
+    private final long bytes;
+}
@@ -0,0 +1,329 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProbeEngine} for {@code tcp://host:port} monitors. Connects are non-blocking and all of them are multiplexed
+ * on one selector thread, so a single thread keeps tens of thousands of checks per minute going; only the DNS lookup
+ * runs on a virtual thread because the JDK resolver blocks. The connect timeout covers the lookup too, a lookup that
+ * outlasts it fails the probe without waiting for the resolver.
+ * <p>
+ * A probe succeeds once the connection is established. If the request has content rules, they are applied to the
+ * banner the service sends, e.g. an SMTP greeting, which is read until the rules have their verdict, the service
+ * closes the connection or the read timeout ends the wait. The result carries no status code.
+ */
+@Slf4j
+@Component
+public class TcpProbeEngine implements ProbeEngine {
+
+    private final Duration defaultConnectTimeout;
+    private final Duration defaultReadTimeout;
+    private final ProbeMetrics metrics;
+    private final ExecutorService resolver = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<Attempt> registrations = new ConcurrentLinkedQueue<>();
+    private final Selector selector;
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    // only touched by the selector thread
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::at));
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+
+    public TcpProbeEngine(MeterRegistry meterRegistry,
+                          @Value("${uplert.probe.connect-timeout:5s}") Duration defaultConnectTimeout,
+                          @Value("${uplert.probe.read-timeout:10s}") Duration defaultReadTimeout) {
+        this.defaultConnectTimeout = defaultConnectTimeout;
+        this.defaultReadTimeout = defaultReadTimeout;
+        this.metrics = new ProbeMetrics(meterRegistry, "tcp");
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.selectorThread = new Thread(this::selectLoop, "tcp-probe-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    @Override
+    public CompletableFuture<ProbeResult> probe(ProbeRequest request) {
+        String url = request.getUrl();
+        long startedAt = System.currentTimeMillis();
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0, e.getMessage()));
+        }
+        if (!"tcp".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null || uri.getPort() == -1) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0,
+                    "Expected tcp://host:port: " + url));
+        }
+
+        Attempt attempt = new Attempt(url, startedAt,
+                request.getConnectTimeout() != null ? request.getConnectTimeout() : defaultConnectTimeout,
+                request.getReadTimeout() != null ? request.getReadTimeout() : defaultReadTimeout,
+                request.getContentRules() != null ? request.getContentRules().newScanner() : null);
+        metrics.started();
+        CompletableFuture.runAsync(() -> connect(attempt, uri.getHost(), uri.getPort()), resolver)
+                .orTimeout(attempt.connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    // the resolver thread gives up on the attempt once the lookup returns
+                    finish(attempt, null, "Timed out: resolving " + uri.getHost() + " after "
+                            + attempt.connectTimeout.toMillis() + " ms");
+                    return null;
+                });
+        return attempt.result;
+    }
+
+    /**
+     * Resolves the host and starts the connect, then hands the channel to the selector thread.
+     */
+    private void connect(Attempt attempt, String host, int port) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            attempt.resolved = System.nanoTime();
+            if (attempt.result.isDone()) {
+                return;
+            }
+            SocketChannel channel = SocketChannel.open();
+            attempt.channel = channel;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            attempt.connectedImmediately = channel.connect(new InetSocketAddress(address, port));
+        } catch (IOException | RuntimeException e) {
+            attempt.close();
+            finish(attempt, null, describe(e));
+            return;
+        }
+        registrations.add(attempt);
+        selector.wakeup();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                Deadline next = deadlines.peek();
+                long timeout = next != null ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.at() - System.nanoTime()) + 1) : 0;
+                selector.select(timeout);
+                register();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    handle(key, (Attempt) key.attachment());
+                }
+                expire();
+            } catch (IOException | RuntimeException e) {
+                log.error("TCP probe selector failed", e);
+            }
+        }
+    }
+
+    private void register() {
+        Attempt attempt;
+        while ((attempt = registrations.poll()) != null) {
+            if (attempt.result.isDone()) {
+                // timed out while resolving
+                attempt.close();
+                continue;
+            }
+            try {
+                attempt.key = attempt.channel.register(selector, attempt.connectedImmediately ? 0 : SelectionKey.OP_CONNECT, attempt);
+            } catch (ClosedChannelException e) {
+                finish(attempt, null, "Connection closed");
+                continue;
+            }
+            if (attempt.connectedImmediately) {
+                connected(attempt);
+            } else {
+                schedule(attempt, attempt.start + attempt.connectTimeout.toNanos());
+            }
+        }
+    }
+
+    private void handle(SelectionKey key, Attempt attempt) {
+        if (!key.isValid() || attempt.result.isDone()) {
+            return;
+        }
+        try {
+            if (key.isConnectable()) {
+                if (attempt.channel.finishConnect()) {
+                    connected(attempt);
+                }
+            } else if (key.isReadable()) {
+                read(attempt);
+            }
+        } catch (IOException e) {
+            attempt.close();
+            finish(attempt, null, describe(e));
+        }
+    }
+
+    private void connected(Attempt attempt) {
+        attempt.connected = System.nanoTime();
+        if (attempt.scanner == null) {
+            attempt.close();
+            finish(attempt, null, null);
+            return;
+        }
+        attempt.key.interestOps(SelectionKey.OP_READ);
+        schedule(attempt, attempt.connected + attempt.readTimeout.toNanos());
+    }
+
+    private void read(Attempt attempt) throws IOException {
+        readBuffer.clear();
+        int read = attempt.channel.read(readBuffer);
+        if (read < 0) {
+            attempt.close();
+            finish(attempt, attempt.scanner.finish(true), null);
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+        if (attempt.firstByte == 0) {
+            attempt.firstByte = System.nanoTime();
+        }
+        attempt.bytes += read;
+        readBuffer.flip();
+        if (attempt.scanner.feed(readBuffer)) {
+            attempt.close();
+            finish(attempt, attempt.scanner.finish(false), null);
+        }
+    }
+
+    private void schedule(Attempt attempt, long at) {
+        attempt.deadline = at;
+        deadlines.add(new Deadline(at, attempt));
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        Deadline next;
+        while ((next = deadlines.peek()) != null && next.at() <= now) {
+            deadlines.poll();
+            Attempt attempt = next.attempt();
+            // deadlines are replaced rather than removed, skip the outdated ones
+            if (attempt.result.isDone() || attempt.deadline != next.at()) {
+                continue;
+            }
+            attempt.close();
+            if (attempt.connected == 0) {
+                finish(attempt, null, "Timed out: connect after " + attempt.connectTimeout.toMillis() + " ms");
+            } else {
+                // the service has sent what it is going to send, judge the banner as far as it got
+                finish(attempt, attempt.scanner.finish(false), null);
+            }
+        }
+    }
+
+    private void finish(Attempt attempt, ContentVerdict content, String error) {
+        long end = System.nanoTime();
+        long elapsed = end - attempt.start;
+        long resolved = attempt.resolved;
+        ProbeTimings timings = new ProbeTimings(
+                resolved != 0 ? resolved - attempt.start : 0,
+                attempt.connected != 0 ? attempt.connected - resolved : 0,
+                0,
+                attempt.firstByte != 0 ? attempt.firstByte - attempt.connected : 0,
+                attempt.firstByte != 0 ? end - attempt.firstByte : 0,
+                attempt.bytes);
+        long responseTime = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        boolean completed = attempt.result.complete(error != null
+                ? new ProbeResult(attempt.url, attempt.startedAt, responseTime, null, error, timings, null, null)
+                : new ProbeResult(attempt.url, attempt.startedAt, responseTime, null, null, timings, content, null));
+        if (!completed) {
+            // the lookup failed after it had already timed out
+            return;
+        }
+        metrics.finished(elapsed, error == null, error != null && error.startsWith("Timed out"));
+        metrics.phases(timings);
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private record Deadline(long at, Attempt attempt) {
+    }
+
+    private static class Attempt {
+        private final String url;
+        private final long startedAt;
+        private final long start = System.nanoTime();
+        private final Duration connectTimeout;
+        private final Duration readTimeout;
+        private final ContentScanner scanner;
+        private final CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        // set by the resolver thread
+        private volatile SocketChannel channel;
+        private volatile long resolved;
+        private SelectionKey key;
+        private boolean connectedImmediately;
+        private long deadline;
+        private long connected;
+        private long firstByte;
+        private long bytes;
+
+        Attempt(String url, long startedAt, Duration connectTimeout, Duration readTimeout, ContentScanner scanner) {
+            this.url = url;
+            this.startedAt = startedAt;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.scanner = scanner;
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close probe connection to {}", url, e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        resolver.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            ((Attempt) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Failed to close TCP probe selector", e);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link ProbeEngine} that opens a fresh connection for every probe so that each phase can be timed: DNS
+ * resolution, TCP connect, TLS handshake, time to first byte and body transfer, plus the bytes read. Enabled with
+ * {@code uplert.probe.mode=TIMED}.
+ * <p>
+ * Probes run as blocking HTTP/1.1 exchanges on virtual threads. Without connection reuse every probe pays the full
+ * connect and handshake cost, which is what the timings are meant to show but makes this mode more expensive than
+ * the pooled {@link HttpProbeEngine}. Bodies are read and discarded up to {@code uplert.probe.max-body-bytes}, or
+ * inspected by the request's content checks.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "uplert.probe.mode", havingValue = "TIMED")
+public class TimedHttpProbeEngine implements ProbeEngine {
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final Duration defaultConnectTimeout;
+    private final Duration defaultReadTimeout;
+    private final long maxBodyBytes;
+    private final SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ProbeMetrics metrics;
+
+    public TimedHttpProbeEngine(MeterRegistry meterRegistry,
+                                @Value("${uplert.probe.connect-timeout:5s}") Duration defaultConnectTimeout,
+                                @Value("${uplert.probe.read-timeout:10s}") Duration defaultReadTimeout,
+                                @Value("${uplert.probe.max-body-bytes:1MB}") DataSize maxBodyBytes) {
+        this.defaultConnectTimeout = defaultConnectTimeout;
+        this.defaultReadTimeout = defaultReadTimeout;
+        this.maxBodyBytes = maxBodyBytes.toBytes();
+        this.metrics = new ProbeMetrics(meterRegistry, "http");
+    }
+
+    @Override
+    public CompletableFuture<ProbeResult> probe(ProbeRequest request) {
+        String url = request.getUrl();
+        long startedAt = System.currentTimeMillis();
+        Duration connectTimeout = request.getConnectTimeout() != null
+                ? request.getConnectTimeout() : defaultConnectTimeout;
+        Duration readTimeout = request.getReadTimeout() != null
+                ? request.getReadTimeout() : defaultReadTimeout;
+
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0, e.getMessage()));
+        }
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : null;
+        if (!"http".equals(scheme) && !"https".equals(scheme) || uri.getHost() == null) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0, "Unsupported URL: " + url));
+        }
+
+        metrics.started();
+        return CompletableFuture.supplyAsync(
+                () -> new Exchange(uri, "https".equals(scheme), connectTimeout, readTimeout, request.getContentRules())
+                        .run(url, startedAt),
+                executor);
+    }
+
+    /**
+     * One probe; collects the phase timestamps as it goes so that a failure still reports the phases it got through.
+     */
+    private class Exchange {
+        private final URI uri;
+        private final boolean tls;
+        private final Duration connectTimeout;
+        private final long start = System.nanoTime();
+        private final long deadline;
+        private long resolved;
+        private long connected;
+        private long handshaken;
+        private long requestSent;
+        private long firstByte;
+        private long completed;
+        private final ContentRules contentRules;
+        private CountingInputStream response;
+        private ContentScanner scanner;
+        private boolean scanned;
+        private ContentVerdict content;
+        private long contentLength;
+        private boolean chunked;
+
+        Exchange(URI uri, boolean tls, Duration connectTimeout, Duration readTimeout, ContentRules contentRules) {
+            this.uri = uri;
+            this.contentRules = contentRules;
+            this.tls = tls;
+            this.connectTimeout = connectTimeout;
+            this.deadline = start + connectTimeout.plus(readTimeout).toNanos();
+        }
+
+        ProbeResult run(String url, long startedAt) {
+            Integer statusCode = null;
+            Exception failure = null;
+            try {
+                statusCode = exchange();
+            } catch (Exception e) {
+                failure = e;
+            }
+            long end = System.nanoTime();
+            if (completed == 0 && firstByte != 0) {
+                completed = end;
+            }
+            ProbeTimings timings = timings();
+            long elapsed = end - start;
+            long responseTime = elapsed / 1_000_000;
+            metrics.finished(elapsed, statusCode, failure instanceof SocketTimeoutException);
+            metrics.phases(timings);
+            if (failure != null) {
+                return new ProbeResult(url, startedAt, responseTime, null, describe(failure), timings, null, null);
+            }
+            return new ProbeResult(url, startedAt, responseTime, statusCode, null, timings, content, null);
+        }
+
+        private int exchange() throws IOException {
+            // getHost() keeps the brackets of IPv6 literals, which the Host header needs and sockets do not
+            String host = uri.getHost().startsWith("[") ? uri.getHost().substring(1, uri.getHost().length() - 1)
+                    : uri.getHost();
+            int port = uri.getPort() != -1 ? uri.getPort() : tls ? 443 : 80;
+
+            InetAddress address = InetAddress.getByName(host);
+            resolved = System.nanoTime();
+
+            try (Socket socket = new Socket()) {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(address, port),
+                        (int) Math.max(1, Math.min(connectTimeout.toMillis(), remainingMillis())));
+                connected = System.nanoTime();
+
+                Socket channel = socket;
+                if (tls) {
+                    SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+                    SSLParameters parameters = sslSocket.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    sslSocket.setSSLParameters(parameters);
+                    sslSocket.setSoTimeout(timeout());
+                    sslSocket.startHandshake();
+                    handshaken = System.nanoTime();
+                    channel = sslSocket;
+                }
+
+                OutputStream out = channel.getOutputStream();
+                out.write(request(port).getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                requestSent = System.nanoTime();
+
+                response = new CountingInputStream(channel);
+                int statusCode = readHead();
+                readBody(statusCode);
+                completed = System.nanoTime();
+                return statusCode;
+            }
+        }
+
+        private String request(int port) {
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+            return "GET " + path + " HTTP/1.1\r\n"
+                    + "Host: " + hostHeader(uri, port, tls) + "\r\n"
+                    + "User-Agent: uplert\r\n"
+                    + "Accept: */*\r\n"
+                    + "Accept-Encoding: identity\r\n"
+                    + "Connection: close\r\n"
+                    + "\r\n";
+        }
+
+        /**
+         * Reads the status line and headers, skipping interim 1xx responses, and remembers the body framing.
+         */
+        private int readHead() throws IOException {
+            while (true) {
+                String statusLine = readLine();
+                String[] parts = statusLine.split(" ", 3);
+                if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                    throw new IOException("Malformed status line: " + statusLine);
+                }
+                int statusCode;
+                try {
+                    statusCode = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed status line: " + statusLine);
+                }
+                contentLength = -1;
+                chunked = false;
+                String line;
+                while (!(line = readLine()).isEmpty()) {
+                    int colon = line.indexOf(':');
+                    if (colon <= 0) {
+                        continue;
+                    }
+                    String name = line.substring(0, colon).trim();
+                    String value = line.substring(colon + 1).trim();
+                    if (name.equalsIgnoreCase("Content-Length")) {
+                        try {
+                            contentLength = Long.parseLong(value);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Malformed Content-Length: " + value);
+                        }
+                    } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                        chunked = value.toLowerCase(Locale.ROOT).endsWith("chunked");
+                    }
+                }
+                if (statusCode >= 200 || statusCode == 101) {
+                    return statusCode;
+                }
+            }
+        }
+
+        /**
+         * Drains the body, through the content scanner if the monitor has content checks. The scanner then decides
+         * how much is read instead of {@code uplert.probe.max-body-bytes}.
+         */
+        private void readBody(int statusCode) throws IOException {
+            if (statusCode == 204 || statusCode == 304 || statusCode == 101) {
+                return;
+            }
+            // error responses fail the check anyway, their bodies are not worth inspecting
+            scanner = contentRules != null && statusCode < 400 ? contentRules.newScanner() : null;
+            long budget = scanner != null ? Long.MAX_VALUE : maxBodyBytes;
+            if (chunked) {
+                while (budget > 0 && !scanned) {
+                    String sizeLine = readLine();
+                    int extension = sizeLine.indexOf(';');
+                    long size;
+                    try {
+                        size = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed chunk size: " + sizeLine);
+                    }
+                    if (size == 0) {
+                        // trailers
+                        while (!readLine().isEmpty()) {
+                        }
+                        break;
+                    }
+                    budget -= skip(Math.min(size, budget), true);
+                    if (budget > 0 && !scanned) {
+                        readLine();
+                    }
+                }
+            } else if (contentLength >= 0) {
+                skip(Math.min(contentLength, budget), true);
+            } else {
+                skip(budget, false);
+            }
+            if (scanner != null) {
+                content = scanner.finish(!scanned);
+            }
+        }
+
+        /**
+         * Reads and discards up to {@code count} bytes, stopping early once the content scanner has its verdict.
+         *
+         * @param exact whether the connection ending early is an error
+         * @return the bytes skipped
+         */
+        private long skip(long count, boolean exact) throws IOException {
+            byte[] buffer = new byte[8192];
+            long skipped = 0;
+            while (skipped < count) {
+                int read = response.read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+                if (read < 0) {
+                    if (exact) {
+                        throw new EOFException("Connection closed after " + skipped + " of " + count + " body bytes");
+                    }
+                    break;
+                }
+                skipped += read;
+                if (scanner != null && scanner.feed(ByteBuffer.wrap(buffer, 0, read))) {
+                    scanned = true;
+                    break;
+                }
+            }
+            return skipped;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = response.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException("Connection closed before the response was complete");
+                }
+                if (line.length() >= MAX_LINE_LENGTH) {
+                    throw new IOException("Response line longer than " + MAX_LINE_LENGTH + " bytes");
+                }
+                line.append((char) b);
+            }
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+
+        private long remainingMillis() {
+            return (deadline - System.nanoTime()) / 1_000_000;
+        }
+
+        /**
+         * Socket timeout for the next blocking call so that the exchange as a whole ends at the deadline.
+         */
+        private int timeout() throws SocketTimeoutException {
+            long remaining = remainingMillis();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("Probe deadline exceeded");
+            }
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        private ProbeTimings timings() {
+            long dns = resolved != 0 ? resolved - start : 0;
+            long connect = connected != 0 ? connected - resolved : 0;
+            long tlsHandshake = handshaken != 0 ? handshaken - connected : 0;
+            long ttfb = firstByte != 0 ? firstByte - requestSent : 0;
+            long transfer = firstByte != 0 ? completed - firstByte : 0;
+            return new ProbeTimings(dns, connect, tlsHandshake, ttfb, transfer, response != null ? response.count : 0);
+        }
+
+        /**
+         * Buffers the socket input, counts the bytes read, notes when the first one arrived and re-arms the socket
+         * timeout before every blocking read.
+         */
+        private class CountingInputStream extends FilterInputStream {
+            private final Socket socket;
+            private final byte[] buffer = new byte[8192];
+            private int position;
+            private int limit;
+            private long count;
+
+            CountingInputStream(Socket socket) throws IOException {
+                super(socket.getInputStream());
+                this.socket = socket;
+            }
+
+            private boolean fill() throws IOException {
+                socket.setSoTimeout(timeout());
+                int read = in.read(buffer, 0, buffer.length);
+                if (read <= 0) {
+                    return false;
+                }
+                if (firstByte == 0) {
+                    firstByte = System.nanoTime();
+                }
+                count += read;
+                position = 0;
+                limit = read;
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (position == limit && !fill()) {
+                    return -1;
+                }
+                return buffer[position++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position == limit && !fill()) {
+                    return -1;
+                }
+                int read = Math.min(len, limit - position);
+                System.arraycopy(buffer, position, b, off, read);
+                position += read;
+                return read;
+            }
+        }
+    }
+
+    /**
+     * Host header of a request, e.g. {@code [::1]:8080}, with the port only when it is not the scheme's default.
+     */
+    static String hostHeader(URI uri, int port, boolean tls) {
+        // getHost() already brackets IPv6 literals
+        return uri.getHost() + (port == (tls ? 443 : 80) ? "" : ":" + port);
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof SocketTimeoutException) {
+            return "Timed out: " + e.getMessage();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.uplert.probe;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * What a TLS probe learned about the server's handshake and certificate chain.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class TlsInfo {
+
+    private final String protocol;
+
+    private final String cipherSuite;
+
+    /**
+     * Whether the handshake resumed a cached session instead of doing a full one.
+     */
+    private final boolean resumed;
+
+    /**
+     * Earliest expiry in the chain, which is when the chain stops validating.
+     */
+    private final Instant expiresAt;
+
+    /**
+     * Subject of the certificate that expires at {@link #expiresAt}.
+     */
+    private final String expiringSubject;
+
+    /**
+     * Why the chain or host name did not validate, {@code null} if they did.
+     */
+    private final String validationError;
+
+    /**
+     * Smallest configured warning threshold in days that the expiry is within, {@code null} if none.
+     */
+    private final Integer warningDays;
+}
@@ -0,0 +1,396 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProbeEngine} for {@code tls://host[:port]} monitors, the port defaults to 443. Each probe connects, completes
+ * a TLS handshake and reports the negotiated protocol and cipher suite, the handshake time and the earliest expiry in
+ * the server's certificate chain. Handshakes run blocking on virtual threads.
+ * <p>
+ * All probes share one {@link SSLContext}, so its client session cache lets repeated checks of a server resume the
+ * previous session instead of doing a full handshake. Validating the chain against the default trust store and the
+ * host name is cached per chain fingerprint and host for {@code uplert.probe.tls.validation-ttl}; the handshake
+ * itself never fails on an untrusted chain, so that expiry is reported for those too, and the probe fails afterwards
+ * with the validation error. A probe also fails once the chain has expired.
+ */
+@Slf4j
+@Component
+public class TlsProbeEngine implements ProbeEngine {
+
+    private static final int DEFAULT_PORT = 443;
+
+    private final Duration defaultConnectTimeout;
+    private final Duration defaultReadTimeout;
+    private final int[] warningDays;
+    private final ValidationCache validations;
+    // sockets whose current handshake went through the trust manager, i.e. was not resumed
+    private final Set<Socket> fullHandshakes = ConcurrentHashMap.newKeySet();
+    private final SSLSocketFactory socketFactory;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ProbeMetrics metrics;
+
+    public TlsProbeEngine(MeterRegistry meterRegistry,
+                          @Value("${uplert.probe.connect-timeout:5s}") Duration defaultConnectTimeout,
+                          @Value("${uplert.probe.read-timeout:10s}") Duration defaultReadTimeout,
+                          @Value("${uplert.probe.tls.expiry-warning-days:30,14,7,1}") int[] warningDays,
+                          @Value("${uplert.probe.tls.validation-ttl:6h}") Duration validationTtl,
+                          @Value("${uplert.probe.tls.validation-cache-size:10000}") int validationCacheSize) {
+        this.defaultConnectTimeout = defaultConnectTimeout;
+        this.defaultReadTimeout = defaultReadTimeout;
+        this.warningDays = warningDays.clone();
+        Arrays.sort(this.warningDays);
+        this.validations = new ValidationCache(validationTtl.toNanos(), validationCacheSize);
+        this.metrics = new ProbeMetrics(meterRegistry, "tls");
+        try {
+            TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init((KeyStore) null);
+            X509ExtendedTrustManager platform = Arrays.stream(trustManagers.getTrustManagers())
+                    .filter(X509ExtendedTrustManager.class::isInstance)
+                    .map(X509ExtendedTrustManager.class::cast)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No X509 trust manager available"));
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{new CachingTrustManager(platform)}, null);
+            // a resumed session skips validation, it must not outlive the cached outcome
+            sslContext.getClientSessionContext().setSessionTimeout((int) Math.max(1, validationTtl.toSeconds()));
+            sslContext.getClientSessionContext().setSessionCacheSize(validationCacheSize);
+            this.socketFactory = sslContext.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to set up the TLS probe context", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ProbeResult> probe(ProbeRequest request) {
+        String url = request.getUrl();
+        long startedAt = System.currentTimeMillis();
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0, e.getMessage()));
+        }
+        if (!"tls".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            return CompletableFuture.completedFuture(ProbeResult.failure(url, startedAt, 0,
+                    "Expected tls://host[:port]: " + url));
+        }
+
+        Duration connectTimeout = request.getConnectTimeout() != null ? request.getConnectTimeout() : defaultConnectTimeout;
+        Duration readTimeout = request.getReadTimeout() != null ? request.getReadTimeout() : defaultReadTimeout;
+        metrics.started();
+        return CompletableFuture.supplyAsync(() -> new Handshake(uri, connectTimeout, readTimeout).run(url, startedAt),
+                executor);
+    }
+
+    /**
+     * One probe; collects the phase timestamps as it goes so that a failure still reports the phases it got through.
+     */
+    private class Handshake {
+        private final String host;
+        private final int port;
+        private final Duration connectTimeout;
+        private final Duration readTimeout;
+        private final long start = System.nanoTime();
+        private long resolved;
+        private long connected;
+        private long handshaken;
+        // when the probe had its result, before waiting for a session ticket
+        private long finished;
+        private TlsInfo tls;
+
+        Handshake(URI uri, Duration connectTimeout, Duration readTimeout) {
+            this.host = uri.getHost();
+            this.port = uri.getPort() != -1 ? uri.getPort() : DEFAULT_PORT;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        ProbeResult run(String url, long startedAt) {
+            String error;
+            boolean timeout = false;
+            try {
+                error = handshake();
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                timeout = e instanceof SocketTimeoutException;
+            }
+            long elapsed = (finished != 0 ? finished : System.nanoTime()) - start;
+            ProbeTimings timings = new ProbeTimings(
+                    resolved != 0 ? resolved - start : 0,
+                    connected != 0 ? connected - resolved : 0,
+                    handshaken != 0 ? handshaken - connected : 0,
+                    0, 0, 0);
+            metrics.finished(elapsed, error == null, timeout);
+            metrics.phases(timings);
+            return new ProbeResult(url, startedAt, TimeUnit.NANOSECONDS.toMillis(elapsed), null, error, timings,
+                    null, tls);
+        }
+
+        /**
+         * @return why the certificate chain is not acceptable, {@code null} if it is
+         */
+        private String handshake() throws IOException {
+            InetAddress address = InetAddress.getByName(host);
+            resolved = System.nanoTime();
+            if (!connect(address, false)) {
+                // resumed a session whose validation is no longer cached, validate it again with a full handshake
+                connect(address, true);
+            }
+            Instant now = Instant.now();
+            if (!tls.getExpiresAt().isAfter(now)) {
+                return "Certificate expired: " + tls.getExpiringSubject() + " on " + tls.getExpiresAt();
+            }
+            return tls.getValidationError() != null ? "Certificate not trusted: " + tls.getValidationError() : null;
+        }
+
+        /**
+         * @return {@code false} if the handshake resumed a session the validation outcome is unknown for
+         */
+        private boolean connect(InetAddress address, boolean retry) throws IOException {
+            try (Socket socket = new Socket()) {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(address, port), (int) Math.max(1, connectTimeout.toMillis()));
+                connected = System.nanoTime();
+
+                try (SSLSocket sslSocket = (SSLSocket) socketFactory.createSocket(socket, host, port, true)) {
+                    SSLParameters parameters = sslSocket.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    sslSocket.setSSLParameters(parameters);
+                    sslSocket.setSoTimeout((int) Math.max(1, readTimeout.toMillis()));
+                    boolean resumed;
+                    try {
+                        sslSocket.startHandshake();
+                        handshaken = System.nanoTime();
+                    } finally {
+                        resumed = !fullHandshakes.remove(sslSocket);
+                    }
+
+                    SSLSession session = sslSocket.getSession();
+                    X509Certificate[] chain = x509(session.getPeerCertificates());
+                    Validation validation = validations.get(ValidationCache.key(chain, host));
+                    if (validation == null) {
+                        session.invalidate();
+                        if (!retry) {
+                            return false;
+                        }
+                    }
+                    // a chain that is still not validated after a full handshake is not trusted
+                    tls = info(session, chain, resumed,
+                            validation != null ? validation.error() : "Certificate chain could not be validated");
+                    finished = System.nanoTime();
+                    if ("TLSv1.3".equals(session.getProtocol())) {
+                        awaitTicket(sslSocket);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * TLS 1.3 servers send the session ticket that a later probe resumes with after the handshake, and it is only
+         * processed when reading. Closes the sending side and reads until the server closes, which takes one round
+         * trip; the probe has its result and response time already, so a server that does not answer only costs the
+         * read timeout.
+         */
+        private void awaitTicket(SSLSocket sslSocket) {
+            try {
+                sslSocket.shutdownOutput();
+                InputStream in = sslSocket.getInputStream();
+                byte[] discard = new byte[512];
+                while (in.read(discard) != -1) {
+                    // nothing expected besides the ticket and close_notify
+                }
+            } catch (IOException e) {
+                log.debug("No session ticket from {}:{}", host, port, e);
+            }
+        }
+
+        private TlsInfo info(SSLSession session, X509Certificate[] chain, boolean resumed, String validationError) {
+            X509Certificate expiring = chain[0];
+            for (X509Certificate certificate : chain) {
+                if (certificate.getNotAfter().before(expiring.getNotAfter())) {
+                    expiring = certificate;
+                }
+            }
+            Instant expiresAt = expiring.getNotAfter().toInstant();
+            return new TlsInfo(session.getProtocol(), session.getCipherSuite(), resumed, expiresAt,
+                    expiring.getSubjectX500Principal().getName(), validationError, warningThreshold(expiresAt));
+        }
+
+        /**
+         * @return the smallest warning threshold the expiry is within, {@code null} if it is further away than all
+         */
+        private Integer warningThreshold(Instant expiresAt) {
+            long days = Duration.between(Instant.now(), expiresAt).toDays();
+            for (int threshold : warningDays) {
+                if (days < threshold) {
+                    return threshold;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static X509Certificate[] x509(Certificate[] certificates) {
+        return Arrays.stream(certificates)
+                .map(X509Certificate.class::cast)
+                .toArray(X509Certificate[]::new);
+    }
+
+    private record Validation(String error, long validatedAt) {
+    }
+
+    /**
+     * Outcome of full-chain validation by chain fingerprint and host, expiring after a fixed time and evicting the
+     * least recently used entries beyond its capacity.
+     */
+    private static class ValidationCache {
+        private final long ttlNanos;
+        private final Map<String, Validation> entries;
+
+        ValidationCache(long ttlNanos, int capacity) {
+            this.ttlNanos = ttlNanos;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Validation> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        static String key(X509Certificate[] chain, String host) {
+            try {
+                MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+                for (X509Certificate certificate : chain) {
+                    sha256.update(certificate.getEncoded());
+                }
+                return HexFormat.of().formatHex(sha256.digest()) + "@" + host.toLowerCase();
+            } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        synchronized Validation get(String key) {
+            Validation validation = entries.get(key);
+            if (validation != null && System.nanoTime() - validation.validatedAt() > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return validation;
+        }
+
+        synchronized void put(String key, Validation validation) {
+            entries.put(key, validation);
+        }
+    }
+
+    /**
+     * Validates the server chains of probe sockets with the platform trust manager unless the cache already has the
+     * outcome, and records failures instead of failing the handshake. A socket without a peer host fails the
+     * handshake, as do untrusted chains on the other overloads, which are left to the platform.
+     */
+    private class CachingTrustManager extends X509ExtendedTrustManager {
+        private final X509ExtendedTrustManager platform;
+
+        CachingTrustManager(X509ExtendedTrustManager platform) {
+            this.platform = platform;
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            String host = socket instanceof SSLSocket sslSocket && sslSocket.getHandshakeSession() != null
+                    ? sslSocket.getHandshakeSession().getPeerHost() : null;
+            fullHandshakes.add(socket);
+            if (host == null) {
+                throw new CertificateException("No peer host to verify the certificate chain for");
+            }
+            String key = ValidationCache.key(chain, host);
+            if (validations.get(key) != null) {
+                return;
+            }
+            String error = null;
+            try {
+                platform.checkServerTrusted(chain, authType, socket);
+            } catch (CertificateException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            validations.put(key, new Validation(error, System.nanoTime()));
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            platform.checkServerTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            platform.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            platform.checkClientTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            platform.checkClientTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            platform.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return platform.getAcceptedIssuers();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
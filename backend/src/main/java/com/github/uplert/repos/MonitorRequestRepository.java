@@ -7,6 +7,6 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 
 public interface MonitorRequestRepository extends MongoRepository<MonitorRequest, String> {
 
-    boolean existsByUrlIgnoreCase(String url);
+    boolean existsByUrlKey(String urlKey);
 
 }
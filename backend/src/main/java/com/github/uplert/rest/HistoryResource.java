@@ -0,0 +1,43 @@
+package com.github.uplert.rest;
+
+import com.github.uplert.model.HistoryResponseDTO;
+import com.github.uplert.service.HistoryService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+
+
+@RestController
+@RequestMapping(value = "/api/history", produces = MediaType.APPLICATION_JSON_VALUE)
+public class HistoryResource {
+
+    private final HistoryService historyService;
+
+    public HistoryResource(final HistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @GetMapping("/{projectId}")
+    public ResponseEntity<HistoryResponseDTO> getHistory(
+            @PathVariable(name = "projectId") final String projectId,
+            @RequestParam(name = "url", required = false) final String url,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant to,
+            @RequestParam(name = "maxPoints", defaultValue = "1000") final int maxPoints) {
+        final Instant end = to != null ? to : Instant.now();
+        final Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end) || maxPoints <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(historyService.query(projectId, url, start, end, maxPoints));
+    }
+
+}
@@ -1,10 +1,18 @@
 package com.github.uplert.rest;
 
+import com.github.uplert.model.BulkImportResultDTO;
+import com.github.uplert.model.Intervals;
 import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.MonitorRequestPageDTO;
+import com.github.uplert.model.Status;
+import com.github.uplert.service.MonitorImportService;
 import com.github.uplert.service.MonitorRequestService;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
-import java.util.List;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,23 +22,55 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
 @RequestMapping(value = "/api/monitorRequests", produces = MediaType.APPLICATION_JSON_VALUE)
 public class MonitorRequestResource {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final MonitorRequestService monitorRequestService;
+    private final MonitorImportService monitorImportService;
 
-    public MonitorRequestResource(final MonitorRequestService monitorRequestService) {
+    public MonitorRequestResource(final MonitorRequestService monitorRequestService,
+            final MonitorImportService monitorImportService) {
         this.monitorRequestService = monitorRequestService;
+        this.monitorImportService = monitorImportService;
     }
 
+    /**
+     * Lists monitor requests a page at a time; pass the returned {@code nextCursor} as {@code after} to continue.
+     */
     @GetMapping
-    public ResponseEntity<List<MonitorRequestDTO>> getAllMonitorRequests() {
-        return ResponseEntity.ok(monitorRequestService.findAll());
+    public ResponseEntity<MonitorRequestPageDTO> getAllMonitorRequests(
+            @RequestParam(name = "after", required = false) final String after,
+            @RequestParam(name = "limit", defaultValue = "100") final int limit,
+            @RequestParam(name = "status", required = false) final Status status,
+            @RequestParam(name = "projectId", required = false) final String projectId,
+            @RequestParam(name = "interval", required = false) final Intervals interval) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(monitorRequestService.findPage(after, limit, status, projectId, interval));
+    }
+
+    /**
+     * Streams every matching monitor request as NDJSON.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMonitorRequests(
+            @RequestParam(name = "status", required = false) final Status status,
+            @RequestParam(name = "projectId", required = false) final String projectId,
+            @RequestParam(name = "interval", required = false) final Intervals interval) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> monitorRequestService.streamAll(out, status, projectId, interval));
     }
 
     @GetMapping("/{requestId}")
@@ -47,6 +87,23 @@ public class MonitorRequestResource {
         return new ResponseEntity<>(createdRequestId, HttpStatus.CREATED);
     }
 
+    /**
+     * Imports many monitors from an NDJSON stream ({@code application/x-ndjson}) or a JSON array, reporting
+     * rejected rows instead of failing the whole import.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkImportResultDTO> importMonitorRequests(
+            @RequestHeader(name = HttpHeaders.CONTENT_TYPE) final MediaType contentType,
+            @RequestParam(name = "schedule", defaultValue = "false") final boolean schedule,
+            final InputStream body) throws IOException {
+        final boolean ndjson = MediaType.APPLICATION_NDJSON.includes(contentType);
+        try {
+            return ResponseEntity.ok(monitorImportService.importRequests(body, ndjson, schedule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{requestId}")
     public ResponseEntity<String> updateMonitorRequest(
             @PathVariable(name = "requestId") final String requestId,
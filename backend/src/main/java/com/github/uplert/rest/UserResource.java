@@ -2,8 +2,10 @@ package com.github.uplert.rest;
 
 import com.github.uplert.domain.User;
 import com.github.uplert.model.UserRequestDTO;
+import com.github.uplert.notify.EmailNotifier;
 import com.github.uplert.repos.UserRepository;
 import com.github.uplert.config.SingleUserInitializer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,13 +13,16 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Arrays;
 
+@Slf4j
 @RestController
 public class UserResource {
 
     private final UserRepository userRepository;
+    private final EmailNotifier emailNotifier;
 
-    public UserResource(UserRepository userRepository) {
+    public UserResource(UserRepository userRepository, EmailNotifier emailNotifier) {
         this.userRepository = userRepository;
+        this.emailNotifier = emailNotifier;
     }
 
     @CrossOrigin(origins = "http://localhost:3000")
@@ -49,11 +54,12 @@ public class UserResource {
             return ResponseEntity.badRequest().body(resp);
         }
 
-        System.out.println(reqBody);
+        log.info("Updating the user settings, {} alert recipients", reqBody.getEmails() != null ? reqBody.getEmails().length : 0);
         user.setEmails(Arrays.asList(reqBody.getEmails()));
         user.setFromEmail(reqBody.getFromEmail());
         user.setAppPassword(reqBody.getAppPassword());
         userRepository.save(user);
+        emailNotifier.refreshRecipients();
 
         resp.put("message", "User updated successfully");
         return ResponseEntity.ok(resp);
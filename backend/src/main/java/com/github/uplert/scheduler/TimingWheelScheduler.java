@@ -0,0 +1,283 @@
+package com.github.uplert.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical hashed timing wheel driving all periodic monitor checks.
+ * <p>
+ * Each wheel level has {@value #SLOTS} slots; level {@code n} slots span {@code 64^n} ticks, so six levels cover
+ * any interval from one tick to years. Entries live in intrusive doubly linked slot lists, which makes schedule,
+ * cancel and reschedule O(1); entries further out than level 0 are cascaded down as the wheel turns.
+ * <p>
+ * Ticks are counted from the epoch and every monitor gets a deterministic phase within its interval derived from
+ * its key, so monitors created together are spread over the interval instead of firing at the same instant, and
+ * each monitor keeps its slot across restarts. Due tasks are only handed to the executor, never run on the
+ * timer thread. {@code uplert.scheduler.fire.lag} measures how late a task starts on the executor compared to its
+ * slot, covering both timer and executor delays.
+ */
+@Slf4j
+@Component
+public class TimingWheelScheduler {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int SLOTS = 1 << WHEEL_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final MeterRegistry meterRegistry;
+    private final Timer fireLag;
+    private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long currentTick;
+    private ScheduledFuture<?> ticker;
+
+    @Autowired
+    public TimingWheelScheduler(@Qualifier("monitorTimer") ScheduledExecutorService timer,
+                                @Qualifier("checkExecutor") Executor executor,
+                                @Value("${uplert.scheduler.tick:100ms}") Duration tick,
+                                MeterRegistry meterRegistry) {
+        this(timer, executor, tick, meterRegistry, System::currentTimeMillis);
+    }
+
+    TimingWheelScheduler(ScheduledExecutorService timer, Executor executor, Duration tick, MeterRegistry meterRegistry,
+                         LongSupplier clock) {
+        this.timer = timer;
+        this.executor = executor;
+        this.tickMillis = Math.max(1, tick.toMillis());
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        for (Slot[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Slot();
+            }
+        }
+        this.currentTick = clock.getAsLong() / tickMillis;
+        this.fireLag = Timer.builder("uplert.scheduler.fire.lag")
+                .description("Delay between a check's scheduled slot and the start of its execution")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("uplert.scheduler.scheduled", this, TimingWheelScheduler::size)
+                .description("Monitors scheduled on the timing wheel")
+                .register(meterRegistry);
+        ticker = timer.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+    }
+
+    /**
+     * Schedules {@code task} to run every {@code interval} at the key's phase offset, replacing any task already
+     * scheduled under the same key.
+     */
+    public void schedule(String key, Duration interval, Runnable task) {
+        long intervalTicks = Math.max(1, interval.toMillis() / tickMillis);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            } else {
+                entry.unlink();
+            }
+            entry.task = task;
+            entry.intervalTicks = intervalTicks;
+            entry.deadline = nextPhaseTick(key, intervalTicks, currentTick);
+            insert(entry);
+        }
+    }
+
+    /**
+     * @return {@code true} if a task was scheduled under the key
+     */
+    public synchronized boolean cancel(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.unlink();
+        return true;
+    }
+
+    public synchronized boolean isScheduled(String key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized List<String> keys() {
+        return List.copyOf(entries.keySet());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Time until the task under the key is next due, or {@code null} when nothing is scheduled under it.
+     */
+    public synchronized Duration nextRunIn(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : Duration.ofMillis((entry.deadline - currentTick) * tickMillis);
+    }
+
+    void advance() {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = clock.getAsLong() / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+                expire(due, targetTick);
+            }
+        }
+        for (Runnable task : due) {
+            try {
+                executor.execute(task);
+            } catch (RuntimeException e) {
+                log.error("Failed to dispatch scheduled check", e);
+            }
+        }
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            Slot slot = wheel[level][(int) (currentTick >>> (WHEEL_BITS * level)) & SLOT_MASK];
+            Entry entry = slot.head;
+            slot.head = null;
+            slot.tail = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                entry.slot = null;
+                insert(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void expire(List<Runnable> due, long targetTick) {
+        Slot slot = wheel[0][(int) currentTick & SLOT_MASK];
+        Entry entry = slot.head;
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.unlink();
+            Runnable task = entry.task;
+            long intendedAt = entry.deadline * tickMillis;
+            due.add(() -> {
+                fireLag.record(clock.getAsLong() - intendedAt, TimeUnit.MILLISECONDS);
+                task.run();
+            });
+            long deadline = entry.deadline + entry.intervalTicks;
+            if (deadline <= targetTick) {
+                // the timer fell behind, skip the runs missed up to now instead of firing them in a burst
+                deadline += ((targetTick - deadline) / entry.intervalTicks + 1) * entry.intervalTicks;
+            }
+            entry.deadline = deadline;
+            insert(entry);
+            entry = next;
+        }
+    }
+
+    private void insert(Entry entry) {
+        long delta = Math.max(0, entry.deadline - currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        // entries beyond the top level may cascade early, they are simply reinserted again
+        wheel[level][(int) (entry.deadline >>> (WHEEL_BITS * level)) & SLOT_MASK].append(entry);
+    }
+
+    /**
+     * First tick after {@code now} that falls on the key's phase within the interval.
+     */
+    static long nextPhaseTick(String key, long intervalTicks, long now) {
+        long phase = Math.floorMod(mix(key.hashCode()), intervalTicks);
+        long next = now - Math.floorMod(now, intervalTicks) + phase;
+        return next > now ? next : next + intervalTicks;
+    }
+
+    private static long mix(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Slot {
+        private Entry head;
+        private Entry tail;
+
+        private void append(Entry entry) {
+            entry.slot = this;
+            entry.prev = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+    }
+
+    private static final class Entry {
+        private Runnable task;
+        private long intervalTicks;
+        private long deadline;
+        private Slot slot;
+        private Entry prev;
+        private Entry next;
+
+        private void unlink() {
+            if (slot == null) {
+                return;
+            }
+            if (prev == null) {
+                slot.head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                slot.tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            slot = null;
+            prev = null;
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.github.uplert.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.AgentMessageDTO;
+import com.github.uplert.model.AgentMonitorDTO;
+import com.github.uplert.model.AgentResultBatchDTO;
+import com.github.uplert.model.AgentResultDTO;
+import com.github.uplert.model.ContentCheck;
+import com.github.uplert.model.MonitorType;
+import com.github.uplert.model.Status;
+import com.github.uplert.probe.ContentVerdict;
+import com.github.uplert.probe.ProbeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Hands the monitors of an agent group to the remote probe agents of that group connected to this node, and feeds
+ * the results they upload into the same pipeline as local probes: log, incidents, alerts and dashboards. Each
+ * monitor goes to one connected agent of its group chosen by rendezvous hashing, so when an agent joins or leaves
+ * only its share of the monitors moves. Agents learn about changes through versioned deltas.
+ * <p>
+ * Assignments are not coordinated between backend nodes, the agents of a group should connect to the same node.
+ * The last batch ingested from an agent is remembered across reconnects for {@code uplert.agent.seq-retention}
+ * after it disconnects.
+ */
+@Slf4j
+@Service
+public class AgentHub {
+
+    private final MonitorRegistry monitorRegistry;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Counter ingested;
+    private final Counter duplicates;
+    // guarded by this
+    private final Map<String, Group> groups = new HashMap<>();
+    // last ingested batch per agent ID, kept across reconnects
+    private final Map<String, Long> lastSeq = new ConcurrentHashMap<>();
+    // nanoTime the agents without a connection disconnected at, guarded by this
+    private final Map<String, Long> disconnectedAt = new HashMap<>();
+    private final long seqRetentionNanos;
+    private volatile Function<MonitoringSites, MonitoringJobService> jobFactory;
+
+    public AgentHub(MonitorRegistry monitorRegistry, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${uplert.agent.seq-retention:1h}") Duration seqRetention) {
+        this.monitorRegistry = monitorRegistry;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.seqRetentionNanos = seqRetention.toNanos();
+        this.ingested = Counter.builder("uplert.agent.results")
+                .description("Check results uploaded by remote probe agents")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("uplert.agent.batches.duplicate")
+                .description("Result batches uploaded again after they were ingested")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("uplert.agent.connected", this, AgentHub::connectedAgents)
+                .description("Remote probe agents connected to this node")
+                .register(meterRegistry);
+        // picks up monitors changed on other nodes
+        monitorRegistry.onRefresh(this::syncAll);
+    }
+
+    /**
+     * Sets how the jobs handling an agent monitor's results are created.
+     */
+    public void useJobs(Function<MonitoringSites, MonitoringJobService> jobFactory) {
+        this.jobFactory = jobFactory;
+    }
+
+    public synchronized Agent connected(String id, String groupName, WebSocketSession session) {
+        Group group = groups.computeIfAbsent(groupName, Group::new);
+        Agent previous = group.agents.get(id);
+        if (previous != null) {
+            previous.close(new CloseStatus(4000, "Replaced by a new connection"));
+        }
+        Agent agent = new Agent(id, groupName, session);
+        group.agents.put(id, agent);
+        disconnectedAt.remove(id);
+        log.info("Probe agent {} of group {} connected", id, groupName);
+        sync(group);
+        return agent;
+    }
+
+    public synchronized void disconnected(Agent agent) {
+        Group group = groups.get(agent.group);
+        if (group == null || group.agents.get(agent.id) != agent) {
+            return;
+        }
+        group.agents.remove(agent.id);
+        disconnectedAt.put(agent.id, System.nanoTime());
+        log.info("Probe agent {} of group {} disconnected", agent.id, agent.group);
+        if (group.agents.isEmpty()) {
+            groups.remove(agent.group);
+        } else {
+            sync(group);
+        }
+    }
+
+    /**
+     * Forgets the last ingested batch of the agents that have not reconnected within the retention.
+     */
+    @Scheduled(fixedDelayString = "${uplert.agent.seq-retention:1h}")
+    public synchronized void pruneSequences() {
+        long now = System.nanoTime();
+        disconnectedAt.entrySet().removeIf(gone -> {
+            if (now - gone.getValue() < seqRetentionNanos) {
+                return false;
+            }
+            lastSeq.remove(gone.getKey());
+            return true;
+        });
+    }
+
+    /**
+     * Sends the agent its complete monitor set again.
+     */
+    public synchronized void resync(Agent agent) {
+        agent.assigned.clear();
+        agent.version = 0;
+        Group group = groups.get(agent.group);
+        if (group != null && group.agents.get(agent.id) == agent) {
+            sync(group);
+        }
+    }
+
+    /**
+     * Brings the group's agents up to date after one of its monitors was started, changed, paused or deleted.
+     */
+    public synchronized void sync(String groupName) {
+        Group group = groups.get(groupName);
+        if (group != null) {
+            sync(group);
+        }
+    }
+
+    public synchronized void syncAll() {
+        groups.values().forEach(this::sync);
+    }
+
+    /**
+     * Asks the agent probing the monitor to check it now, its result comes with the agent's next batch.
+     *
+     * @return {@code false} if no connected agent probes the monitor
+     */
+    public synchronized boolean probeNow(String url) {
+        MonitoringSites site = monitorRegistry.find(url);
+        Group group = site != null && site.getAgentGroup() != null ? groups.get(site.getAgentGroup()) : null;
+        if (group == null || !group.monitors.containsKey(site.getId())) {
+            return false;
+        }
+        Agent agent = owner(group, site.getId());
+        agent.send(new AgentMessageDTO("probe", null, null, null, null, site.getId()));
+        return true;
+    }
+
+    /**
+     * Hands the batch's results to the monitors' jobs, unless the batch was ingested before.
+     *
+     * @return the sequence number to acknowledge
+     */
+    public long ingest(Agent agent, AgentResultBatchDTO batch) {
+        Long last = lastSeq.get(agent.id);
+        if (last != null && batch.getSeq() <= last) {
+            duplicates.increment();
+            return last;
+        }
+        Group group;
+        synchronized (this) {
+            group = groups.get(agent.group);
+        }
+        if (batch.getResults() != null && group != null) {
+            for (AgentResultDTO result : batch.getResults()) {
+                AgentMonitor monitor = group.monitors.get(result.getId());
+                if (monitor == null) {
+                    // removed while the result was on its way
+                    continue;
+                }
+                monitor.job.accept(toProbeResult(monitor.site.getUrl(), result));
+                ingested.increment();
+            }
+        }
+        lastSeq.put(agent.id, batch.getSeq());
+        return batch.getSeq();
+    }
+
+    private static ProbeResult toProbeResult(String url, AgentResultDTO result) {
+        ContentVerdict content = result.getContentPassed() == null ? null : new ContentVerdict(
+                result.getContentPassed(), result.getContentReason(), null,
+                result.getBytes() != null ? result.getBytes() : 0, false);
+        return new ProbeResult(url, result.getStartedAt(), result.getResponseTime(),
+                result.getStatusCode(), result.getError(), null, content, null);
+    }
+
+    private synchronized int connectedAgents() {
+        return groups.values().stream().mapToInt(group -> group.agents.size()).sum();
+    }
+
+    private void sync(Group group) {
+        Map<String, MonitoringSites> wanted = new HashMap<>();
+        for (MonitoringSites site : monitorRegistry.findByStatus(Status.ACTIVE)) {
+            if (group.name.equals(site.getAgentGroup()) && site.getId() != null) {
+                wanted.put(site.getId(), site);
+            }
+        }
+        group.monitors.keySet().retainAll(wanted.keySet());
+        for (MonitoringSites site : wanted.values()) {
+            AgentMonitorDTO definition = toAgentMonitor(site);
+            AgentMonitor current = group.monitors.get(site.getId());
+            if (current == null || !current.definition.equals(definition)) {
+                group.monitors.put(site.getId(), new AgentMonitor(site, definition, jobFactory.apply(site)));
+            }
+        }
+
+        Map<Agent, Map<String, AgentMonitorDTO>> assignments = new HashMap<>();
+        group.agents.values().forEach(agent -> assignments.put(agent, new HashMap<>()));
+        for (AgentMonitor monitor : group.monitors.values()) {
+            assignments.get(owner(group, monitor.definition.getId())).put(monitor.definition.getId(), monitor.definition);
+        }
+        assignments.forEach(Agent::assign);
+    }
+
+    /**
+     * The agent with the highest hash of agent and monitor ID, which only changes for the monitors of an agent that
+     * joins or leaves.
+     */
+    private static Agent owner(Group group, String monitorId) {
+        Agent owner = null;
+        long best = 0;
+        for (Agent agent : group.agents.values()) {
+            CRC32C crc = new CRC32C();
+            crc.update((agent.id + "/" + monitorId).getBytes(StandardCharsets.UTF_8));
+            long weight = crc.getValue();
+            if (owner == null || weight > best || weight == best && agent.id.compareTo(owner.id) < 0) {
+                owner = agent;
+                best = weight;
+            }
+        }
+        return owner;
+    }
+
+    private static AgentMonitorDTO toAgentMonitor(MonitoringSites site) {
+        ContentCheck check = site.getContentCheck();
+        return new AgentMonitorDTO(site.getId(), site.getUrl(), MonitorType.of(site.getMonitorType()),
+                site.resolveInterval().toMillis(),
+                check != null ? check.getRequired() : null,
+                check != null ? check.getForbidden() : null,
+                check != null ? check.getMaxBytes() : null);
+    }
+
+    private static final class Group {
+        private final String name;
+        private final Map<String, Agent> agents = new HashMap<>();
+        // by monitor ID, read by the ingesting threads
+        private final Map<String, AgentMonitor> monitors = new ConcurrentHashMap<>();
+
+        private Group(String name) {
+            this.name = name;
+        }
+    }
+
+    private record AgentMonitor(MonitoringSites site, AgentMonitorDTO definition, MonitoringJobService job) {
+    }
+
+    /**
+     * A connected agent and the monitors it was told about.
+     */
+    public final class Agent {
+        private final String id;
+        private final String group;
+        private final WebSocketSession session;
+        // guarded by the hub
+        private final Map<String, AgentMonitorDTO> assigned = new HashMap<>();
+        private long version;
+
+        private Agent(String id, String group, WebSocketSession session) {
+            this.id = id;
+            this.group = group;
+            this.session = session;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        private void assign(Map<String, AgentMonitorDTO> monitors) {
+            if (version == 0) {
+                assigned.putAll(monitors);
+                send(new AgentMessageDTO("assign", ++version, new ArrayList<>(monitors.values()), null, null, null));
+                return;
+            }
+            List<AgentMonitorDTO> changed = new ArrayList<>();
+            for (AgentMonitorDTO monitor : monitors.values()) {
+                if (!Objects.equals(assigned.get(monitor.getId()), monitor)) {
+                    changed.add(monitor);
+                }
+            }
+            List<String> removed = assigned.keySet().stream().filter(id -> !monitors.containsKey(id)).toList();
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            assigned.keySet().removeAll(removed);
+            changed.forEach(monitor -> assigned.put(monitor.getId(), monitor));
+            send(new AgentMessageDTO("delta", ++version, changed, removed, null, null));
+        }
+
+        public void acknowledge(long seq) {
+            send(new AgentMessageDTO("ack", null, null, null, seq, null));
+        }
+
+        private void send(AgentMessageDTO message) {
+            try {
+                session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException | RuntimeException e) {
+                // the agent reconnects and gets a complete assignment
+                log.warn("Failed to send {} to probe agent {}", message.getType(), id, e);
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+
+        private void close(CloseStatus status) {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                log.debug("Failed to close the session of probe agent {}", id, e);
+            }
+        }
+    }
+}
@@ -4,135 +4,268 @@ import com.github.uplert.config.SingleUserInitializer;
 import com.github.uplert.domain.User;
 import com.github.uplert.model.EmailDetails;
 import com.github.uplert.repos.UserRepository;
-import org.springframework.http.ResponseEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.mail.*;
 import jakarta.mail.internet.*;
 
+import java.io.UnsupportedEncodingException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Asynchronous alert mail. {@link #sendEmail(EmailDetails)} only queues the alert; a dedicated sender thread
+ * collects the alerts raised within {@code uplert.mail.digest-window} and sends one mail per recipient list, a
+ * digest when several sites are affected. Warnings about sites that are still up, such as expiring certificates, and
+ * recoveries are mailed and digested separately from outages with their own templates. The SMTP connection is authenticated once and reused across sends, and
+ * the templates are parsed once at startup.
+ */
+@Slf4j
 @Service
 public class EmailServiceImpl implements EmailService{
     private final UserRepository userRepository;
+    private final BlockingQueue<EmailDetails> queue;
+    private final String host;
+    private final int port;
+    private final Properties properties = new Properties();
+    private final long digestWindowNanos;
+    private final MailTemplate alertTemplate = MailTemplate.load("mail/alert.html");
+    private final MailTemplate digestTemplate = MailTemplate.load("mail/alert-digest.html");
+    private final MailTemplate digestRowTemplate = MailTemplate.load("mail/alert-digest-row.html");
+    private final MailTemplate warningTemplate = MailTemplate.load("mail/warning.html");
+    private final MailTemplate warningDigestTemplate = MailTemplate.load("mail/warning-digest.html");
+    private final MailTemplate warningDigestRowTemplate = MailTemplate.load("mail/warning-digest-row.html");
+    private final MailTemplate recoveryTemplate = MailTemplate.load("mail/recovery.html");
+    private final MailTemplate recoveryDigestTemplate = MailTemplate.load("mail/recovery-digest.html");
+    private final MailTemplate recoveryDigestRowTemplate = MailTemplate.load("mail/recovery-digest-row.html");
+    private final Timer sent;
+    private final Timer failed;
+    private final Counter dropped;
+    private volatile boolean running = true;
+    private Thread sender;
 
-    public EmailServiceImpl(UserRepository userRepository) {
+    // only touched by the sender thread
+    private Session session;
+    private Transport transport;
+    private String username;
+    private String password;
+
+    public EmailServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry,
+                            @Value("${uplert.mail.host:smtp.gmail.com}") String host,
+                            @Value("${uplert.mail.port:587}") int port,
+                            @Value("${uplert.mail.starttls:true}") boolean starttls,
+                            @Value("${uplert.mail.digest-window:10s}") Duration digestWindow,
+                            @Value("${uplert.mail.queue-capacity:1000}") int queueCapacity) {
         this.userRepository = userRepository;
+        this.host = host;
+        this.port = port;
+        this.digestWindowNanos = digestWindow.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        properties.put("mail.smtp.host", host);
+        properties.put("mail.smtp.port", Integer.toString(port));
+        properties.put("mail.smtp.auth", "true");
+        properties.put("mail.smtp.starttls.enable", Boolean.toString(starttls));
+        properties.put("mail.smtp.connectiontimeout", "10000");
+        properties.put("mail.smtp.timeout", "10000");
+        Gauge.builder("uplert.mail.queue.depth", queue, BlockingQueue::size)
+                .description("Alerts waiting to be mailed")
+                .register(meterRegistry);
+        this.sent = sendTimer(meterRegistry, "success");
+        this.failed = sendTimer(meterRegistry, "failure");
+        this.dropped = Counter.builder("uplert.mail.dropped")
+                .description("Alerts dropped because the mail queue was full")
+                .register(meterRegistry);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("uplert.mail.send")
+                .description("SMTP delivery of one mail, including reconnects")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        sender = new Thread(this::sendLoop, "alert-mail-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+        closeTransport();
     }
 
     @Override
     public String sendEmail(EmailDetails details) {
-        try {
-            User user = userRepository.findById(SingleUserInitializer.SINGLE_USER_ID).orElse(null);
-
-            if (user == null) System.out.println("User not found");
-            System.out.println("TLSEmail Start");
-            Properties props = new Properties();
-            props.put("mail.smtp.host", "smtp.gmail.com");
-            props.put("mail.smtp.port", "587");
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-
-            Session session = Session.getInstance(props,
-                    new Authenticator() {
-                        @Override
-                        protected PasswordAuthentication getPasswordAuthentication() {
-                            assert user != null;
-                            return new PasswordAuthentication(user.getFromEmail(), user.getAppPassword());
-                        }
-                    });
-
-            assert user != null;
-            sendEmail(session, user.getFromEmail(), details.getRecipients(), details.getSubject(), details.getMsgBody());
-            return "Email Sent Successfully";
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            return "Error while Sending Mail";
+        if (queue.offer(details)) {
+            return "Email queued";
+        }
+        dropped.increment();
+        log.warn("Alert queue is full, dropping alert for {}", details.getMsgBody().getUrl());
+        return "Error while Sending Mail";
+    }
+
+    private void sendLoop() {
+        List<EmailDetails> batch = new ArrayList<>();
+        while (running) {
+            try {
+                EmailDetails first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + digestWindowNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    EmailDetails next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch);
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to send {} alerts", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
         }
     }
-    public static void sendEmail(Session session, String fromEmail, List<String> toEmail, String subject, EmailDetails.BodyData body){
-        try
-        {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(fromEmail, "Uplert"));
-//            message.setRecipient(Message.RecipientType.TO, new InternetAddress(toEmail));
-            message.addRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(", ", toEmail)));
-            message.setSubject(subject);
-            message.setContent(body, "text/html; charset=utf-8");
-            String htmlContent = "<!DOCTYPE html>"
-                    + "<html lang='en'>"
-                    + "<head>"
-                    + "  <meta charset='UTF-8'>"
-                    + "  <meta name='viewport' content='width=device-width, initial-scale=1.0'>"
-                    + "  <title>Website Down Alert</title>"
-                    + "  <style>"
-                    + "    body {"
-                    + "      margin: 0;"
-                    + "      padding: 0;"
-                    + "      font-family: 'Helvetica Neue', Arial, sans-serif;"
-                    + "      background: linear-gradient(135deg, #2c3e50, #bdc3c7);"
-                    + "      color: #333;"
-                    + "    }"
-                    + "    .container {"
-                    + "      display: flex;"
-                    + "      justify-content: center;"
-                    + "      align-items: center;"
-                    + "      height: 100vh;"
-                    + "      padding: 20px;"
-                    + "    }"
-                    + "    .alert-box {"
-                    + "      background: #fff;"
-                    + "      border-radius: 8px;"
-                    + "      padding: 30px;"
-                    + "      box-shadow: 0 4px 15px rgba(0, 0, 0, 0.1);"
-                    + "      text-align: center;"
-                    + "      max-width: 600px;"
-                    + "      width: 100%;"
-                    + "    }"
-                    + "    h1 {"
-                    + "      color: #e74c3c;"
-                    + "      font-size: 2.5em;"
-                    + "      margin-bottom: 20px;"
-                    + "    }"
-                    + "    p {"
-                    + "      font-size: 1.2em;"
-                    + "      margin: 10px 0;"
-                    + "    }"
-                    + "    .highlight {"
-                    + "      color: #3498db;"
-                    + "      font-weight: bold;"
-                    + "    }"
-                    + "    .footer {"
-                    + "      margin-top: 20px;"
-                    + "      font-size: 0.9em;"
-                    + "      color: #777;"
-                    + "    }"
-                    + "  </style>"
-                    + "</head>"
-                    + "<body>"
-                    + "  <div class='container'>"
-                    + "    <div class='alert-box'>"
-                    + "      <h1>Website Alert</h1>"
-                    + "      <p>Your website <span class='highlight'>{WEBSITE_NAME}</span> appears to be down.</p>"
-                    + "      <p>Status Code: <span class='highlight'>{STATUS_CODE}</span></p>"
-                    + "      <p>Response Time: <span class='highlight'>{RESPONSE_TIME} ms</span></p>"
-                    + "      <p class='footer'>If the issue persists, please contact your support team.</p>"
-                    + "    </div>"
-                    + "  </div>"
-                    + "</body>"
-                    + "</html>";
-
-            htmlContent = htmlContent
-                    .replace("{WEBSITE_NAME}", body.getUrl())
-                    .replace("{STATUS_CODE}", body.getStatusCode())
-                    .replace("{RESPONSE_TIME}", body.getResponseTime());
-            message.setContent(htmlContent, "text/html; charset=utf-8");
-            Transport.send(message);
-            System.out.println("EMail Sent Successfully!!");
+
+    private void send(List<EmailDetails> batch) {
+        User user = userRepository.findById(SingleUserInitializer.SINGLE_USER_ID).orElse(null);
+        if (user == null) {
+            log.warn("User not found, dropping {} alerts", batch.size());
+            return;
+        }
+
+        Map<MailGroup, List<EmailDetails>> groups = new LinkedHashMap<>();
+        for (EmailDetails details : batch) {
+            if (details.getRecipients() != null && !details.getRecipients().isEmpty()) {
+                groups.computeIfAbsent(new MailGroup(details.getRecipients(), details.isWarning(), details.isRecovery()),
+                        key -> new ArrayList<>()).add(details);
+            }
+        }
+        for (Map.Entry<MailGroup, List<EmailDetails>> group : groups.entrySet()) {
+            List<EmailDetails> alerts = group.getValue();
+            boolean warning = group.getKey().warning();
+            boolean recovery = group.getKey().recovery();
+            String subject;
+            String html;
+            if (alerts.size() == 1) {
+                subject = alerts.get(0).getSubject();
+                html = (warning ? warningTemplate : recovery ? recoveryTemplate : alertTemplate)
+                        .render(values(alerts.get(0).getMsgBody()));
+            } else if (warning) {
+                subject = "Warning: " + alerts.size() + " of your websites need attention";
+                html = renderDigest(warningDigestTemplate, warningDigestRowTemplate, alerts);
+            } else if (recovery) {
+                subject = "Resolved: " + alerts.size() + " of your websites are back up";
+                html = renderDigest(recoveryDigestTemplate, recoveryDigestRowTemplate, alerts);
+            } else {
+                subject = "Urgent: " + alerts.size() + " of your websites are down";
+                html = renderDigest(digestTemplate, digestRowTemplate, alerts);
+            }
+            deliver(user, group.getKey().recipients(), subject, html);
         }
-        catch (Exception e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Alerts mailed together, outages, recoveries and warnings go in separate mails.
+     */
+    private record MailGroup(List<String> recipients, boolean warning, boolean recovery) {
+    }
+
+    private static String renderDigest(MailTemplate digest, MailTemplate row, List<EmailDetails> alerts) {
+        StringBuilder rows = new StringBuilder();
+        for (EmailDetails details : alerts) {
+            rows.append(row.render(values(details.getMsgBody())));
+        }
+        return digest.renderRaw(Map.of("COUNT", Integer.toString(alerts.size()), "ROWS", rows.toString()));
+    }
+
+    private static Map<String, String> values(EmailDetails.BodyData body) {
+        return Map.of(
+                "WEBSITE_NAME", Objects.toString(body.getUrl(), ""),
+                "STATUS_CODE", Objects.toString(body.getStatusCode(), ""),
+                "RESPONSE_TIME", Objects.toString(body.getResponseTime(), ""),
+                "MESSAGE", Objects.toString(body.getMessage(), ""));
+    }
+
+    private void deliver(User user, List<String> recipients, String subject, String html) {
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                Transport connected = transport(user);
+                Message message = new MimeMessage(session);
+                message.setFrom(new InternetAddress(user.getFromEmail(), "Uplert"));
+                message.addRecipients(Message.RecipientType.TO, InternetAddress.parse(String.join(", ", recipients)));
+                message.setSubject(subject);
+                message.setContent(html, "text/html; charset=utf-8");
+                message.saveChanges();
+                connected.sendMessage(message, message.getAllRecipients());
+                sent.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.info("Alert mail sent to {}", recipients);
+                return;
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                // the server may have dropped the idle connection, reconnect once
+                closeTransport();
+                if (attempt == 2) {
+                    failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.error("Failed to send alert mail to {}", recipients, e);
+                }
+            }
+        }
+    }
+
+    private Transport transport(User user) throws MessagingException {
+        if (session == null || !Objects.equals(username, user.getFromEmail()) || !Objects.equals(password, user.getAppPassword())) {
+            closeTransport();
+            session = Session.getInstance(properties);
+            username = user.getFromEmail();
+            password = user.getAppPassword();
+        }
+        if (transport == null) {
+            transport = session.getTransport("smtp");
+        }
+        if (!transport.isConnected()) {
+            transport.connect(host, port, username, password);
+        }
+        return transport;
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP transport", e);
+            }
+            transport = null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,262 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.ProbeRollup;
+import com.github.uplert.domain.ProbeSample;
+import com.github.uplert.model.HistoryPointDTO;
+import com.github.uplert.model.HistoryResponseDTO;
+import com.github.uplert.model.HistoryTier;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-term probe history. Raw samples land in the {@code probe_samples} time-series collection and are rolled
+ * up incrementally into 1-minute, 1-hour and 1-day buckets, each tier with its own TTL. Every rollup run only
+ * aggregates the closed buckets after the tier's persisted watermark, and coarser tiers are built from the next
+ * finer tier rather than from raw samples. Failed probes count towards the failures but not the latencies, whose
+ * timeouts and refused connections say nothing about how fast the site answers.
+ */
+@Slf4j
+@Service
+public class HistoryService {
+
+    private static final String CHECKPOINTS = "history_checkpoints";
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<HistoryTier, Duration> retention = new EnumMap<>(HistoryTier.class);
+    private final Duration lateness;
+    private final Duration rawMaxRange;
+    private final int rawMaxSamples;
+
+    public HistoryService(MongoTemplate mongoTemplate,
+                          @Value("${uplert.history.retention.raw:7d}") Duration rawRetention,
+                          @Value("${uplert.history.retention.minute:30d}") Duration minuteRetention,
+                          @Value("${uplert.history.retention.hour:365d}") Duration hourRetention,
+                          @Value("${uplert.history.retention.day:1825d}") Duration dayRetention,
+                          @Value("${uplert.history.lateness:1m}") Duration lateness,
+                          @Value("${uplert.history.raw-max-range:2h}") Duration rawMaxRange,
+                          @Value("${uplert.history.raw-max-samples:10000}") int rawMaxSamples) {
+        this.mongoTemplate = mongoTemplate;
+        this.retention.put(HistoryTier.RAW, rawRetention);
+        this.retention.put(HistoryTier.MINUTE, minuteRetention);
+        this.retention.put(HistoryTier.HOUR, hourRetention);
+        this.retention.put(HistoryTier.DAY, dayRetention);
+        this.lateness = lateness;
+        this.rawMaxRange = rawMaxRange;
+        this.rawMaxSamples = rawMaxSamples;
+    }
+
+    @PostConstruct
+    public void init() {
+        Duration rawRetention = retention.get(HistoryTier.RAW);
+        if (!mongoTemplate.collectionExists(ProbeSample.class)) {
+            mongoTemplate.createCollection(ProbeSample.class, CollectionOptions.timeSeries("timestamp", options -> options
+                    .metaField("meta")
+                    .granularity(Granularity.SECONDS)
+                    .expireAfter(rawRetention)));
+        } else {
+            mongoTemplate.executeCommand(new Document("collMod", HistoryTier.RAW.getCollection())
+                    .append("expireAfterSeconds", rawRetention.toSeconds()));
+        }
+
+        for (HistoryTier tier : List.of(HistoryTier.MINUTE, HistoryTier.HOUR, HistoryTier.DAY)) {
+            mongoTemplate.indexOps(tier.getCollection()).ensureIndex(new Index()
+                    .on("projectId", Sort.Direction.ASC)
+                    .on("url", Sort.Direction.ASC)
+                    .on("bucket", Sort.Direction.ASC)
+                    .unique());
+            try {
+                mongoTemplate.indexOps(tier.getCollection()).ensureIndex(new Index()
+                        .on("bucket", Sort.Direction.ASC)
+                        .expire(retention.get(tier)));
+            } catch (RuntimeException e) {
+                mongoTemplate.executeCommand(new Document("collMod", tier.getCollection())
+                        .append("index", new Document("keyPattern", new Document("bucket", 1))
+                                .append("expireAfterSeconds", retention.get(tier).toSeconds())));
+            }
+        }
+    }
+
+    public void record(List<ProbeSample> samples) {
+        if (!samples.isEmpty()) {
+            mongoTemplate.insert(samples, ProbeSample.class);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${uplert.history.rollup-interval:1m}", initialDelayString = "${uplert.history.rollup-interval:1m}")
+    public void rollup() {
+        Instant now = Instant.now();
+        Instant available = now.minus(lateness);
+        for (HistoryTier tier : List.of(HistoryTier.MINUTE, HistoryTier.HOUR, HistoryTier.DAY)) {
+            try {
+                available = rollup(tier, available);
+            } catch (RuntimeException e) {
+                log.error("Rolling up {} history failed", tier, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Aggregates the closed buckets of {@code tier} between its watermark and {@code available}.
+     *
+     * @return the new watermark of the tier, i.e. how far the next coarser tier may roll up
+     */
+    private Instant rollup(HistoryTier tier, Instant available) {
+        Instant to = truncate(available, tier);
+        Instant from = readWatermark(tier);
+        if (from == null) {
+            from = truncate(to.minus(retention.get(tier)), tier);
+        }
+        if (!from.isBefore(to)) {
+            return from;
+        }
+
+        HistoryTier source = HistoryTier.values()[tier.ordinal() - 1];
+        boolean raw = source == HistoryTier.RAW;
+        String time = raw ? "timestamp" : "bucket";
+        Object latency = new Document("$cond", List.of("$failed", "$$REMOVE", "$responseTime"));
+        Document group = new Document("_id", new Document()
+                .append("projectId", raw ? "$meta.projectId" : "$projectId")
+                .append("url", raw ? "$meta.url" : "$url")
+                .append("bucket", new Document("$dateTrunc", new Document("date", "$" + time).append("unit", tier.getUnit()))))
+                .append("count", new Document("$sum", raw ? 1 : "$count"))
+                .append("failures", new Document("$sum", raw ? new Document("$cond", List.of("$failed", 1, 0)) : "$failures"))
+                .append("minLatency", new Document("$min", raw ? latency : "$minLatency"))
+                .append("maxLatency", new Document("$max", raw ? latency : "$maxLatency"))
+                .append("sumLatency", new Document("$sum", raw ? latency : "$sumLatency"));
+        Document successes = new Document("$subtract", List.of("$count", "$failures"));
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document(time, new Document("$gte", Date.from(from)).append("$lt", Date.from(to)))),
+                new Document("$group", group),
+                new Document("$project", new Document("_id", 0)
+                        .append("projectId", "$_id.projectId")
+                        .append("url", "$_id.url")
+                        .append("bucket", "$_id.bucket")
+                        .append("count", 1)
+                        .append("failures", 1)
+                        .append("minLatency", 1)
+                        .append("maxLatency", 1)
+                        .append("sumLatency", 1)
+                        .append("avgLatency", new Document("$cond", List.of(new Document("$gt", List.of(successes, 0)),
+                                new Document("$divide", List.of("$sumLatency", successes)), "$$REMOVE")))),
+                new Document("$merge", new Document("into", tier.getCollection())
+                        .append("on", List.of("projectId", "url", "bucket"))
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert")));
+
+        mongoTemplate.getCollection(source.getCollection()).aggregate(pipeline).toCollection();
+        writeWatermark(tier, to);
+        return to;
+    }
+
+    /**
+     * Answers from the tier picked by {@link #selectTier}. A raw range with more than
+     * {@code uplert.history.raw-max-samples} samples, e.g. a project with many fast monitors, is answered from the
+     * minute tier instead.
+     */
+    public HistoryResponseDTO query(String projectId, String url, Instant from, Instant to, int maxPoints) {
+        HistoryTier tier = selectTier(from, to, maxPoints, Instant.now());
+        List<HistoryPointDTO> points = null;
+        if (tier == HistoryTier.RAW) {
+            points = queryRaw(projectId, url, from, to);
+            if (points == null) {
+                tier = HistoryTier.MINUTE;
+            }
+        }
+        if (points == null) {
+            points = queryRollups(tier, projectId, url, from, to);
+        }
+        return new HistoryResponseDTO(projectId, tier, from, to, points);
+    }
+
+    /**
+     * @return the samples as points, {@code null} if there are more than the cap
+     */
+    private List<HistoryPointDTO> queryRaw(String projectId, String url, Instant from, Instant to) {
+        Criteria criteria = Criteria.where("meta.projectId").is(projectId).and("timestamp").gte(from).lt(to);
+        if (url != null) {
+            criteria.and("meta.url").is(url);
+        }
+        Query query = Query.query(criteria).with(Sort.by("timestamp")).limit(rawMaxSamples + 1);
+        List<ProbeSample> samples = mongoTemplate.find(query, ProbeSample.class);
+        if (samples.size() > rawMaxSamples) {
+            return null;
+        }
+        return samples.stream()
+                .map(sample -> {
+                    Long latency = sample.isFailed() ? null : sample.getResponseTime();
+                    return new HistoryPointDTO(sample.getMeta().getUrl(), sample.getTimestamp(), 1,
+                            sample.isFailed() ? 1 : 0, latency, latency, latency != null ? latency.doubleValue() : null);
+                })
+                .toList();
+    }
+
+    private List<HistoryPointDTO> queryRollups(HistoryTier tier, String projectId, String url, Instant from, Instant to) {
+        Criteria criteria = Criteria.where("projectId").is(projectId).and("bucket").gte(from).lt(to);
+        if (url != null) {
+            criteria.and("url").is(url);
+        }
+        return mongoTemplate.find(Query.query(criteria).with(Sort.by("bucket")), ProbeRollup.class, tier.getCollection())
+                .stream()
+                .map(rollup -> new HistoryPointDTO(rollup.getUrl(), rollup.getBucket(), rollup.getCount(),
+                        rollup.getFailures(), rollup.getMinLatency(), rollup.getMaxLatency(), rollup.getAvgLatency()))
+                .toList();
+    }
+
+    /**
+     * Picks the finest tier that still holds data for {@code from} and answers the range with at most
+     * {@code maxPoints} buckets per URL, falling back to the coarsest tier.
+     */
+    HistoryTier selectTier(Instant from, Instant to, int maxPoints, Instant now) {
+        Duration range = Duration.between(from, to);
+        for (HistoryTier tier : HistoryTier.values()) {
+            if (from.isBefore(now.minus(retention.get(tier)))) {
+                continue;
+            }
+            boolean fits = tier == HistoryTier.RAW
+                    ? range.compareTo(rawMaxRange) <= 0
+                    : range.dividedBy(tier.getResolution()) <= maxPoints;
+            if (fits) {
+                return tier;
+            }
+        }
+        return HistoryTier.DAY;
+    }
+
+    private static Instant truncate(Instant instant, HistoryTier tier) {
+        long resolution = tier.getResolution().toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(instant.toEpochMilli(), resolution) * resolution);
+    }
+
+    private Instant readWatermark(HistoryTier tier) {
+        Document checkpoint = mongoTemplate.getCollection(CHECKPOINTS).find(Filters.eq("_id", tier.name())).first();
+        return checkpoint != null ? checkpoint.getDate("watermark").toInstant() : null;
+    }
+
+    private void writeWatermark(HistoryTier tier, Instant watermark) {
+        mongoTemplate.getCollection(CHECKPOINTS).replaceOne(Filters.eq("_id", tier.name()),
+                new Document("_id", tier.name()).append("watermark", Date.from(watermark)),
+                new ReplaceOptions().upsert(true));
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitorIncident;
+import com.github.uplert.model.IncidentState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-monitor incident state machine: {@code UP -> SUSPECT -> DOWN -> RECOVERING -> UP}. A monitor is only
+ * considered down after {@code uplert.incident.down-after} failed checks in a row and up again after
+ * {@code uplert.incident.up-after} successful ones, so alerts fire once per confirmed transition instead of on
+ * every failed check. A monitor that goes down {@code uplert.incident.flap-threshold} times within
+ * {@code uplert.incident.flap-window} is flapping and its alerts are suppressed until it settles. The alert of an
+ * outage suppressed that way is deferred and raised once the earlier outages leave the window, if the monitor is
+ * still down then. The recovery from an alerted outage is alerted too.
+ * <p>
+ * State is kept in memory and changed incidents are checkpointed to {@code monitor_incidents} periodically. Besides
+ * the state machine an incident keeps what the checks of the monitor compare with earlier checks, the last content
+ * digest and certificate expiry warning, so they survive the monitoring job being recreated.
+ */
+@Slf4j
+@Service
+public class IncidentTracker {
+
+    private final MongoTemplate mongoTemplate;
+    private final int downAfter;
+    private final int upAfter;
+    private final Duration flapWindow;
+    private final int flapThreshold;
+    private final Map<String, MonitorIncident> incidents = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Clock clock;
+
+    @Autowired
+    public IncidentTracker(MongoTemplate mongoTemplate,
+                           @Value("${uplert.incident.down-after:3}") int downAfter,
+                           @Value("${uplert.incident.up-after:2}") int upAfter,
+                           @Value("${uplert.incident.flap-window:1h}") Duration flapWindow,
+                           @Value("${uplert.incident.flap-threshold:3}") int flapThreshold) {
+        this(mongoTemplate, downAfter, upAfter, flapWindow, flapThreshold, Clock.systemUTC());
+    }
+
+    IncidentTracker(MongoTemplate mongoTemplate, int downAfter, int upAfter, Duration flapWindow, int flapThreshold,
+                    Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.clock = clock;
+        this.downAfter = Math.max(1, downAfter);
+        this.upAfter = Math.max(1, upAfter);
+        this.flapWindow = flapWindow;
+        this.flapThreshold = flapThreshold;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (MonitorIncident incident : mongoTemplate.findAll(MonitorIncident.class)) {
+            incidents.put(incident.getUrl(), incident);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        checkpoint();
+    }
+
+    /**
+     * Feeds the outcome of a check into the monitor's state machine.
+     *
+     * @return the transition the check caused, or {@code null} if the state did not change and no deferred alert is
+     *         due
+     */
+    public Transition record(String url, String projectId, boolean failed, Integer statusCode, String error) {
+        Transition[] transition = new Transition[1];
+        incidents.compute(url, (key, incident) -> {
+            incident = orNew(incident, url);
+            synchronized (incident) {
+                incident.setProjectId(projectId);
+                incident.setLastStatusCode(statusCode);
+                incident.setLastError(error);
+                if (failed) {
+                    incident.setConsecutiveFailures(incident.getConsecutiveFailures() + 1);
+                    incident.setConsecutiveSuccesses(0);
+                } else {
+                    incident.setConsecutiveSuccesses(incident.getConsecutiveSuccesses() + 1);
+                    incident.setConsecutiveFailures(0);
+                }
+
+                Instant now = clock.instant();
+                IncidentState previous = incident.getState();
+                IncidentState next = next(incident, failed);
+                boolean outage = next == IncidentState.DOWN && previous != IncidentState.DOWN
+                        && previous != IncidentState.RECOVERING;
+                if (outage) {
+                    incident.getDownTransitions().add(now);
+                }
+                incident.setFlapping(updateFlapping(incident, now));
+                boolean alert = false;
+                if (outage) {
+                    alert = !incident.isFlapping();
+                    incident.setAlertDeferred(incident.isFlapping());
+                } else if (next == IncidentState.DOWN && incident.isAlertDeferred() && !incident.isFlapping()) {
+                    // settled while still down, raise the alert suppressed at the start of the outage
+                    alert = true;
+                    incident.setAlertDeferred(false);
+                } else if (next == IncidentState.UP) {
+                    // the recovery from an outage that was alerted, outages suppressed while flapping recover quietly
+                    alert = (previous == IncidentState.DOWN || previous == IncidentState.RECOVERING)
+                            && !incident.isAlertDeferred();
+                    incident.setAlertDeferred(false);
+                }
+                if (next != previous) {
+                    incident.setState(next);
+                    incident.setSince(now);
+                }
+                if (next != previous || alert) {
+                    transition[0] = new Transition(url, projectId, previous, next, incident.isFlapping(), alert);
+                }
+            }
+            return incident;
+        });
+        dirty.add(url);
+        return transition[0];
+    }
+
+    /**
+     * Stores the digest of the monitor's latest body.
+     *
+     * @return the digest of the previous body, {@code null} if there was none
+     */
+    public String swapDigest(String url, String projectId, String digest) {
+        String[] previous = new String[1];
+        incidents.compute(url, (key, incident) -> {
+            incident = orNew(incident, url);
+            synchronized (incident) {
+                incident.setProjectId(projectId);
+                previous[0] = incident.getContentDigest();
+                incident.setContentDigest(digest);
+            }
+            return incident;
+        });
+        if (!digest.equals(previous[0])) {
+            dirty.add(url);
+        }
+        return previous[0];
+    }
+
+    /**
+     * Stores the certificate expiry threshold the monitor is currently within.
+     *
+     * @param days the threshold in days, {@code null} if the certificate is not close to expiring
+     * @return the threshold stored before, {@code null} if there was none
+     */
+    public Integer swapExpiryWarning(String url, String projectId, Integer days) {
+        Integer[] previous = new Integer[1];
+        incidents.compute(url, (key, incident) -> {
+            incident = orNew(incident, url);
+            synchronized (incident) {
+                incident.setProjectId(projectId);
+                previous[0] = incident.getExpiryWarningDays();
+                incident.setExpiryWarningDays(days);
+            }
+            return incident;
+        });
+        if (!Objects.equals(days, previous[0])) {
+            dirty.add(url);
+        }
+        return previous[0];
+    }
+
+    private MonitorIncident orNew(MonitorIncident incident, String url) {
+        if (incident != null) {
+            return incident;
+        }
+        MonitorIncident created = new MonitorIncident();
+        created.setUrl(url);
+        created.setSince(clock.instant());
+        return created;
+    }
+
+    private IncidentState next(MonitorIncident incident, boolean failed) {
+        return switch (incident.getState()) {
+            case UP, SUSPECT -> failed
+                    ? (incident.getConsecutiveFailures() >= downAfter ? IncidentState.DOWN : IncidentState.SUSPECT)
+                    : IncidentState.UP;
+            case DOWN, RECOVERING -> failed
+                    ? IncidentState.DOWN
+                    : (incident.getConsecutiveSuccesses() >= upAfter ? IncidentState.UP : IncidentState.RECOVERING);
+        };
+    }
+
+    private boolean updateFlapping(MonitorIncident incident, Instant now) {
+        Instant cutoff = now.minus(flapWindow);
+        Iterator<Instant> downs = incident.getDownTransitions().iterator();
+        while (downs.hasNext()) {
+            if (downs.next().isBefore(cutoff)) {
+                downs.remove();
+            }
+        }
+        return incident.getDownTransitions().size() >= flapThreshold;
+    }
+
+    public IncidentState state(String url) {
+        MonitorIncident incident = incidents.get(url);
+        return incident != null ? incident.getState() : IncidentState.UP;
+    }
+
+    /**
+     * Replaces the in-memory state of the monitors with their last checkpoint, for monitors another node probed
+     * until now.
+     */
+    public void reload(Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        List<MonitorIncident> loaded = mongoTemplate.find(Query.query(Criteria.where("_id").in(urls)), MonitorIncident.class);
+        incidents.keySet().removeAll(urls);
+        dirty.removeAll(urls);
+        for (MonitorIncident incident : loaded) {
+            incidents.put(incident.getUrl(), incident);
+        }
+    }
+
+    /**
+     * Drops the state of a deleted monitor.
+     */
+    public void forget(String url) {
+        incidents.remove(url);
+        dirty.remove(url);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(url)), MonitorIncident.class);
+    }
+
+    @Scheduled(fixedDelayString = "${uplert.incident.checkpoint-interval:10s}")
+    public void checkpoint() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> urls = new ArrayList<>(dirty);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonitorIncident.class);
+        int changes = 0;
+        for (String url : urls) {
+            dirty.remove(url);
+            MonitorIncident incident = incidents.get(url);
+            if (incident == null) {
+                continue;
+            }
+            Document document = new Document();
+            synchronized (incident) {
+                mongoTemplate.getConverter().write(incident, document);
+            }
+            bulk.upsert(Query.query(Criteria.where("_id").is(url)), Update.fromDocument(document));
+            changes++;
+        }
+        if (changes == 0) {
+            return;
+        }
+        try {
+            bulk.execute();
+        } catch (RuntimeException e) {
+            log.error("Failed to checkpoint {} incidents", changes, e);
+            dirty.addAll(urls);
+        }
+    }
+
+    /**
+     * A change of the incident state or of its flapping flag.
+     *
+     * @param alert whether the check confirmed an outage to alert on, either a new one while not flapping or one
+     *              whose alert was deferred while flapping, or the recovery from an outage that was alerted
+     */
+    public record Transition(String url, String projectId, IncidentState from, IncidentState to, boolean flapping,
+                             boolean alert) {
+    }
+}
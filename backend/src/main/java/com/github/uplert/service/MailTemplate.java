@@ -0,0 +1,78 @@
+package com.github.uplert.service;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTML mail template with {@code {NAME}} placeholders, split into literal and placeholder parts once when loaded
+ * so rendering is a single pass. Values are HTML-escaped unless rendered with {@link #renderRaw(Map)}.
+ */
+public final class MailTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Z_]+)}");
+
+    private final String[] literals;
+    private final String[] names;
+    private final int length;
+
+    private MailTemplate(String[] literals, String[] names, int length) {
+        this.literals = literals;
+        this.names = names;
+        this.length = length;
+    }
+
+    public static MailTemplate load(String resource) {
+        try (InputStream in = new ClassPathResource(resource).getInputStream()) {
+            return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load mail template " + resource, e);
+        }
+    }
+
+    public static MailTemplate parse(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int position = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(position, matcher.start()));
+            names.add(matcher.group(1));
+            position = matcher.end();
+        }
+        literals.add(text.substring(position));
+        return new MailTemplate(literals.toArray(String[]::new), names.toArray(String[]::new), text.length());
+    }
+
+    public String render(Map<String, String> values) {
+        return render(values, true);
+    }
+
+    /**
+     * Renders without escaping, for values that are already HTML such as rendered rows.
+     */
+    public String renderRaw(Map<String, String> values) {
+        return render(values, false);
+    }
+
+    private String render(Map<String, String> values, boolean escape) {
+        StringBuilder html = new StringBuilder(length + 64);
+        for (int i = 0; i < names.length; i++) {
+            html.append(literals[i]);
+            String value = values.get(names[i]);
+            if (value != null) {
+                html.append(escape ? HtmlUtils.htmlEscape(value) : value);
+            }
+        }
+        return html.append(literals[names.length]).toString();
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.uplert.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.uplert.domain.MonitorRequest;
+import com.github.uplert.model.BulkImportResultDTO;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bulk import of monitor definitions. The body is read as a stream, either NDJSON (one monitor per line) or a JSON
+ * array, and processed in chunks of {@code uplert.import.chunk-size} rows: every chunk costs one {@code $in} lookup
+ * on the indexed {@code urlKey} for uniqueness and one unordered bulk insert, and failures are reported per row
+ * instead of failing the import. The index is unique, so a row that races a concurrent create is reported as
+ * already existing too.
+ * <p>
+ * Rows are checked by the {@link MonitorRequestValidator} like the {@code /ws} commands and against the same
+ * constraints as a single create, except for the url's uniqueness which the chunk lookup covers, and their content
+ * checks must compile.
+ */
+@Slf4j
+@Service
+public class MonitorImportService {
+
+    private static final String URL_KEY_INDEX = "urlKey_1";
+    private static final int DUPLICATE_KEY = 11000;
+    // the url is checked below, its uniqueness per chunk
+    private static final List<String> VALIDATED_PROPERTIES = List.of("projectId", "intervalPresent",
+            "intervalSeconds", "agentGroup");
+
+    private final MonitorRequestService monitorRequestService;
+    private final MongoTemplate mongoTemplate;
+    private final Validator validator;
+    private final ObjectReader rowReader;
+    private final int chunkSize;
+
+    public MonitorImportService(MonitorRequestService monitorRequestService, MongoTemplate mongoTemplate,
+                                ObjectMapper objectMapper, Validator validator,
+                                @Value("${uplert.import.chunk-size:1000}") int chunkSize) {
+        this.monitorRequestService = monitorRequestService;
+        this.mongoTemplate = mongoTemplate;
+        this.validator = validator;
+        this.rowReader = objectMapper.readerFor(MonitorRequestDTO.class)
+                .with(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL);
+        this.chunkSize = chunkSize;
+    }
+
+    @PostConstruct
+    public void init() {
+        // requests saved before urlKey existed
+        BulkOperations backfill = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonitorRequest.class);
+        int missing = 0;
+        for (Document legacy : mongoTemplate.getCollection("monitoring_request")
+                .find(new Document("urlKey", new Document("$exists", false)).append("url", new Document("$type", "string")))
+                .projection(new Document("url", 1))) {
+            backfill.updateOne(Query.query(Criteria.where("_id").is(legacy.get("_id"))),
+                    Update.update("urlKey", MonitorRequestService.urlKey(legacy.getString("url"))));
+            missing++;
+        }
+        if (missing > 0) {
+            backfill.execute();
+            log.info("Added urlKey to {} monitor requests", missing);
+        }
+
+        IndexOperations indexes = mongoTemplate.indexOps(MonitorRequest.class);
+        boolean nonUnique = indexes.getIndexInfo().stream()
+                .anyMatch(index -> URL_KEY_INDEX.equals(index.getName()) && !index.isUnique());
+        try {
+            if (nonUnique) {
+                // created by earlier versions, an index cannot be made unique in place
+                indexes.dropIndex(URL_KEY_INDEX);
+            }
+            indexes.ensureIndex(new Index().on("urlKey", Sort.Direction.ASC).named(URL_KEY_INDEX).unique().sparse());
+        } catch (RuntimeException e) {
+            log.warn("Could not create the unique urlKey index, remove the duplicate monitor requests: {}", e.getMessage());
+            indexes.ensureIndex(new Index().on("urlKey", Sort.Direction.ASC).named(URL_KEY_INDEX));
+        }
+    }
+
+    public BulkImportResultDTO importRequests(InputStream body, boolean ndjson, boolean schedule) throws IOException {
+        Import state = new Import(schedule);
+        if (ndjson) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int row = state.received++;
+                try {
+                    state.add(row, rowReader.readValue(line));
+                } catch (JsonProcessingException e) {
+                    state.fail(row, null, "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        } else {
+            try (JsonParser parser = rowReader.createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Expected a JSON array of monitor requests");
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    int row = state.received++;
+                    try {
+                        state.add(row, rowReader.readValue(parser));
+                    } catch (JsonProcessingException e) {
+                        // the rest of the array cannot be located reliably after a malformed row
+                        state.fail(row, null, "Invalid JSON: " + e.getOriginalMessage());
+                        break;
+                    }
+                }
+            }
+        }
+        state.flush();
+        if (schedule && !state.created.isEmpty()) {
+            state.scheduled = monitorRequestService.scheduleAll(state.created);
+        }
+        return new BulkImportResultDTO(state.received, state.createdCount, state.scheduled, state.errors);
+    }
+
+    /**
+     * @return the reason the row is rejected, or {@code null} if it is valid
+     */
+    private String validate(MonitorRequestDTO dto) {
+        String error = MonitorRequestValidator.validate(dto);
+        if (error != null) {
+            return error;
+        }
+        if (dto.getUrl().length() > 255) {
+            return "url must be at most 255 characters";
+        }
+        Set<String> violations = new TreeSet<>();
+        for (String property : VALIDATED_PROPERTIES) {
+            for (ConstraintViolation<MonitorRequestDTO> violation : validator.validateProperty(dto, property)) {
+                violations.add(property.equals("intervalPresent")
+                        ? violation.getMessage() : property + " " + violation.getMessage());
+            }
+        }
+        if (dto.getContentCheck() != null) {
+            for (ConstraintViolation<?> violation : validator.validate(dto.getContentCheck())) {
+                violations.add("contentCheck." + violation.getPropertyPath() + " " + violation.getMessage());
+            }
+        }
+        if (!violations.isEmpty()) {
+            return String.join(", ", violations);
+        }
+        try {
+            MonitoringJobService.compile(dto.getContentCheck());
+        } catch (IllegalArgumentException e) {
+            return "contentCheck is invalid: " + e.getMessage();
+        }
+        return null;
+    }
+
+    private final class Import {
+        private final boolean keepCreated;
+        private final Set<String> seen = new HashSet<>();
+        private final List<Integer> rows = new ArrayList<>();
+        private final List<MonitorRequestDTO> chunk = new ArrayList<>();
+        private final List<MonitorRequestDTO> created = new ArrayList<>();
+        private final List<BulkImportResultDTO.RowError> errors = new ArrayList<>();
+        private int received;
+        private int createdCount;
+        private int scheduled;
+
+        private Import(boolean keepCreated) {
+            this.keepCreated = keepCreated;
+        }
+
+        private void add(int row, MonitorRequestDTO dto) {
+            String error = validate(dto);
+            if (error != null) {
+                fail(row, dto != null ? dto.getUrl() : null, error);
+                return;
+            }
+            if (!seen.add(MonitorRequestService.urlKey(dto.getUrl()))) {
+                fail(row, dto.getUrl(), "Duplicate url in import");
+                return;
+            }
+            rows.add(row);
+            chunk.add(dto);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void fail(int row, String url, String error) {
+            errors.add(new BulkImportResultDTO.RowError(row, url, error));
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<String> keys = chunk.stream().map(dto -> MonitorRequestService.urlKey(dto.getUrl())).toList();
+            Query existingQuery = Query.query(Criteria.where("urlKey").in(keys));
+            existingQuery.fields().include("urlKey");
+            Set<String> existing = new HashSet<>();
+            mongoTemplate.find(existingQuery, Document.class, "monitoring_request")
+                    .forEach(document -> existing.add(document.getString("urlKey")));
+
+            List<MonitorRequest> inserts = new ArrayList<>(chunk.size());
+            List<Integer> insertRows = new ArrayList<>(chunk.size());
+            List<MonitorRequestDTO> insertDtos = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                MonitorRequestDTO dto = chunk.get(i);
+                if (existing.contains(keys.get(i))) {
+                    fail(rows.get(i), dto.getUrl(), "Url already exists");
+                    continue;
+                }
+                inserts.add(monitorRequestService.mapToEntity(dto, new MonitorRequest()));
+                insertRows.add(rows.get(i));
+                insertDtos.add(dto);
+            }
+
+            Set<Integer> failedIndexes = new HashSet<>();
+            if (!inserts.isEmpty()) {
+                try {
+                    mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonitorRequest.class)
+                            .insert(inserts)
+                            .execute();
+                } catch (BulkOperationException e) {
+                    for (BulkWriteError writeError : e.getErrors()) {
+                        failedIndexes.add(writeError.getIndex());
+                        fail(insertRows.get(writeError.getIndex()), insertDtos.get(writeError.getIndex()).getUrl(),
+                                writeError.getCode() == DUPLICATE_KEY ? "Url already exists" : writeError.getMessage());
+                    }
+                }
+            }
+            for (int i = 0; i < insertDtos.size(); i++) {
+                if (!failedIndexes.contains(i)) {
+                    createdCount++;
+                    if (keepCreated) {
+                        created.add(insertDtos.get(i));
+                    }
+                }
+            }
+            rows.clear();
+            chunk.clear();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.Status;
+import com.github.uplert.repos.MonitoringSitesRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Authoritative in-memory view of the monitor definitions in {@code monitoring_sites}, keyed by URL. It is loaded
+ * at startup and every change goes through it to the repository, so lookups on the probe path never reach Mongo.
+ * <p>
+ * When several nodes share the database, {@code uplert.registry.refresh-interval} reloads the registry
+ * periodically to pick up changes made by the other nodes. A reload never overwrites a change this node made
+ * after the reload started reading. Cached definitions are never modified in place, changes save a copy and swap it
+ * in, so readers never see a change the database rejected.
+ */
+@Slf4j
+@Service
+public class MonitorRegistry {
+
+    private final MonitoringSitesRepository monitoringSitesRepository;
+    private final TaskScheduler taskScheduler;
+    private final Duration refreshInterval;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MonitoringSites> sites = new ConcurrentHashMap<>();
+    private final List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
+    // writes share the read lock, a reload takes the write lock to tell the writes it read from the later ones
+    private final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
+    private final Map<String, Long> lastWrite = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private ScheduledFuture<?> refresher;
+
+    public MonitorRegistry(MonitoringSitesRepository monitoringSitesRepository, TaskScheduler taskScheduler,
+                           @Value("${uplert.registry.refresh-interval:0s}") Duration refreshInterval,
+                           MeterRegistry meterRegistry) {
+        this.monitoringSitesRepository = monitoringSitesRepository;
+        this.taskScheduler = taskScheduler;
+        this.refreshInterval = refreshInterval;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Status status : Status.values()) {
+            Gauge.builder("uplert.monitors", this, registry -> registry.count(status))
+                    .description("Monitors by status")
+                    .tag("status", status.getStatus())
+                    .register(meterRegistry);
+        }
+        refresh();
+        if (!refreshInterval.isZero()) {
+            refresher = taskScheduler.scheduleWithFixedDelay(this::refresh, refreshInterval);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.cancel(false);
+        }
+    }
+
+    public void refresh() {
+        try {
+            long started;
+            reloadLock.writeLock().lock();
+            try {
+                // every write numbered up to here has completed and is in what the reload reads
+                started = writes.get();
+            } finally {
+                reloadLock.writeLock().unlock();
+            }
+            List<MonitoringSites> loaded = monitoringSitesRepository.findAll();
+            Map<String, MonitoringSites> byUrl = new HashMap<>();
+            loaded.forEach(site -> byUrl.put(site.getUrl(), site));
+            reloadLock.writeLock().lock();
+            try {
+                apply(byUrl, started);
+            } finally {
+                reloadLock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to load monitor definitions", e);
+            return;
+        }
+        for (Runnable listener : refreshListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.error("Failed to apply reloaded monitor definitions", e);
+            }
+        }
+    }
+
+    private void apply(Map<String, MonitoringSites> loaded, long started) {
+        Set<String> urls = new HashSet<>(sites.keySet());
+        urls.addAll(loaded.keySet());
+        for (String url : urls) {
+            Long written = lastWrite.get(url);
+            if (written != null && written > started) {
+                // changed here while the reload was reading, the cached state is newer
+                continue;
+            }
+            lastWrite.remove(url);
+            MonitoringSites site = loaded.get(url);
+            if (site != null) {
+                sites.put(url, site);
+            } else {
+                sites.remove(url);
+            }
+        }
+    }
+
+    /**
+     * Registers a callback run after every reload, on the refreshing thread.
+     */
+    public void onRefresh(Runnable listener) {
+        refreshListeners.add(listener);
+    }
+
+    /**
+     * @return the monitor for the URL, or {@code null} if there is none
+     */
+    public MonitoringSites find(String url) {
+        return sites.get(url);
+    }
+
+    public boolean exists(String url) {
+        return sites.containsKey(url);
+    }
+
+    public List<MonitoringSites> findAll() {
+        return List.copyOf(sites.values());
+    }
+
+    public List<MonitoringSites> findByStatus(Status status) {
+        return sites.values().stream()
+                .filter(site -> site.getStatus() == status)
+                .toList();
+    }
+
+    public long count(Status status) {
+        return sites.values().stream()
+                .filter(site -> site.getStatus() == status)
+                .count();
+    }
+
+    /**
+     * Saves a new or changed definition. Pass a copy when changing a definition returned by the registry, see
+     * {@link #updateStatus}.
+     */
+    public MonitoringSites save(MonitoringSites monitoringSite) {
+        reloadLock.readLock().lock();
+        try {
+            MonitoringSites saved = monitoringSitesRepository.save(monitoringSite);
+            sites.put(saved.getUrl(), saved);
+            written(saved.getUrl());
+            return saved;
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    public List<MonitoringSites> saveAll(List<MonitoringSites> monitoringSites) {
+        if (monitoringSites.isEmpty()) {
+            return monitoringSites;
+        }
+        reloadLock.readLock().lock();
+        try {
+            List<MonitoringSites> saved = monitoringSitesRepository.saveAll(monitoringSites);
+            saved.forEach(site -> {
+                sites.put(site.getUrl(), site);
+                written(site.getUrl());
+            });
+            return saved;
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves a copy of the monitor with the new status and swaps it into the registry once it is stored.
+     *
+     * @return the stored copy
+     * @throws IllegalArgumentException if there is no monitor for the URL
+     */
+    public MonitoringSites updateStatus(String url, Status status) {
+        MonitoringSites current = sites.get(url);
+        if (current == null) {
+            throw new IllegalArgumentException("Website is not monitored: " + url);
+        }
+        MonitoringSites copy = new MonitoringSites(current.getId(), current.getProjectId(), current.getUrl(),
+                current.getInterval(), current.getIntervalSeconds(), status, current.getContentCheck(),
+                current.getMonitorType(), current.getAgentGroup());
+        return save(copy);
+    }
+
+    public void delete(MonitoringSites monitoringSite) {
+        reloadLock.readLock().lock();
+        try {
+            monitoringSitesRepository.deleteById(monitoringSite.getId());
+            sites.remove(monitoringSite.getUrl());
+            written(monitoringSite.getUrl());
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private void written(String url) {
+        lastWrite.put(url, writes.incrementAndGet());
+    }
+}
@@ -2,58 +2,165 @@ package com.github.uplert.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.cluster.MonitorOwnership;
 import com.github.uplert.domain.MonitorRequest;
 import com.github.uplert.domain.MonitoringLog;
 import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.Intervals;
 import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.MonitorRequestPageDTO;
+import com.github.uplert.model.MonitorType;
 import com.github.uplert.model.MonitoringSitesDTO;
 import com.github.uplert.model.Status;
+import com.github.uplert.notify.AlertDispatcher;
+import com.github.uplert.probe.ProbeEngine;
+import com.github.uplert.probe.TcpProbeEngine;
+import com.github.uplert.probe.TlsProbeEngine;
 import com.github.uplert.repos.MonitorRequestRepository;
 import com.github.uplert.repos.MonitoringLogRepository;
-import com.github.uplert.repos.MonitoringSitesRepository;
 import com.github.uplert.repos.UserRepository;
+import com.github.uplert.scheduler.TimingWheelScheduler;
+import com.github.uplert.util.AlreadyExistsException;
 import com.github.uplert.util.NotFoundException;
+import com.github.uplert.websocket.ResultHub;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.mongodb.MongoInterruptedException;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketSession;
 
 @Slf4j
 @Service
 public class MonitorRequestService {
 
     private final MonitorRequestRepository monitorRequestRepository;
-    private final MonitoringSitesRepository monitoringSitesRepository;
+    private final MonitorRegistry monitorRegistry;
     private final MonitoringLogRepository monitoringLogRepository;
+    private final MonitoringLogWriter monitoringLogWriter;
     private final UserRepository userRepository;
-    private final ScheduledExecutorService schedular = Executors.newScheduledThreadPool(10);
-    private final Map<Integer, ScheduledFuture<?>> jobs = new ConcurrentHashMap<>();
-    private final Map<Integer, ScheduledFuture<?>> pauseJobs = new ConcurrentHashMap<>();
-    private final Map<Integer, MonitorRequestDTO> pausedMonitorRequests = new ConcurrentHashMap<>();
+    private final TimingWheelScheduler scheduler;
+    private final ExecutorService checkExecutor;
+    private final Map<String, MonitorRequestDTO> pausedMonitorRequests = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
-
-    public MonitorRequestService(final MonitorRequestRepository monitorRequestRepository, MonitoringSitesRepository monitoringSitesRepository, MonitoringLogRepository monitoringLogRepository, UserRepository userRepository, ObjectMapper objectMapper) {
+    private final ProbeEngine probeEngine;
+    private final TcpProbeEngine tcpProbeEngine;
+    private final TlsProbeEngine tlsProbeEngine;
+    private final ProbeCoalescer probeCoalescer;
+    private final ResultHub resultHub;
+    private final MongoTemplate mongoTemplate;
+    private final AlertDispatcher alertDispatcher;
+    private final IncidentTracker incidentTracker;
+    private final MonitorOwnership monitorOwnership;
+    private final AgentHub agentHub;
+
+    public MonitorRequestService(final MonitorRequestRepository monitorRequestRepository, MonitorRegistry monitorRegistry, MonitoringLogRepository monitoringLogRepository, MonitoringLogWriter monitoringLogWriter, UserRepository userRepository, ObjectMapper objectMapper, ProbeEngine probeEngine, TcpProbeEngine tcpProbeEngine, TlsProbeEngine tlsProbeEngine, ProbeCoalescer probeCoalescer, TimingWheelScheduler scheduler, @Qualifier("checkExecutor") ExecutorService checkExecutor, ResultHub resultHub, MongoTemplate mongoTemplate, AlertDispatcher alertDispatcher, IncidentTracker incidentTracker, MonitorOwnership monitorOwnership, AgentHub agentHub) {
         this.monitorRequestRepository = monitorRequestRepository;
-        this.monitoringSitesRepository = monitoringSitesRepository;
+        this.monitorRegistry = monitorRegistry;
         this.monitoringLogRepository = monitoringLogRepository;
+        this.monitoringLogWriter = monitoringLogWriter;
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
+        this.probeEngine = probeEngine;
+        this.tcpProbeEngine = tcpProbeEngine;
+        this.tlsProbeEngine = tlsProbeEngine;
+        this.probeCoalescer = probeCoalescer;
+        this.scheduler = scheduler;
+        this.checkExecutor = checkExecutor;
+        this.resultHub = resultHub;
+        this.mongoTemplate = mongoTemplate;
+        this.alertDispatcher = alertDispatcher;
+        this.incidentTracker = incidentTracker;
+        this.monitorOwnership = monitorOwnership;
+        this.agentHub = agentHub;
     }
 
-    public List<MonitorRequestDTO> findAll() {
-        final List<MonitorRequest> monitorRequests = monitorRequestRepository.findAll(Sort.by("requestId"));
-        return monitorRequests.stream()
-                .map(monitorRequest -> mapToDTO(monitorRequest, new MonitorRequestDTO()))
-                .toList();
+    @PostConstruct
+    public void init() {
+        mongoTemplate.indexOps(MonitorRequest.class).ensureIndex(new Index().on("status", Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+        mongoTemplate.indexOps(MonitorRequest.class).ensureIndex(new Index().on("projectId", Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+        if (monitorOwnership.isClustered()) {
+            monitorOwnership.onChange(this::rebalance);
+            monitorRegistry.onRefresh(this::rebalance);
+        }
+        agentHub.useJobs(site -> {
+            return newJob(toDTO(site));
+        });
+    }
+
+    /**
+     * One page of monitor requests in {@code _id} order, starting after the {@code after} cursor.
+     */
+    public MonitorRequestPageDTO findPage(final String after, final int limit, final Status status,
+            final String projectId, final Intervals interval) {
+        final Criteria criteria = filter(status, projectId, interval);
+        if (after != null) {
+            criteria.and("id").gt(after);
+        }
+        final Query query = Query.query(criteria).with(Sort.by("id")).limit(limit + 1);
+        final List<MonitorRequest> monitorRequests = mongoTemplate.find(query, MonitorRequest.class);
+        final boolean more = monitorRequests.size() > limit;
+        final List<MonitorRequest> page = more ? monitorRequests.subList(0, limit) : monitorRequests;
+        return new MonitorRequestPageDTO(
+                page.stream().map(monitorRequest -> mapToDTO(monitorRequest, new MonitorRequestDTO())).toList(),
+                more ? page.get(page.size() - 1).getId() : null);
+    }
+
+    /**
+     * Writes every matching monitor request as one JSON line, reading them through a cursor so memory stays
+     * constant regardless of the fleet size.
+     */
+    public void streamAll(final OutputStream out, final Status status, final String projectId,
+            final Intervals interval) throws IOException {
+        final Query query = Query.query(filter(status, projectId, interval)).with(Sort.by("id")).cursorBatchSize(500);
+        try (Stream<MonitorRequest> monitorRequests = mongoTemplate.stream(query, MonitorRequest.class)) {
+            final Iterator<MonitorRequest> iterator = monitorRequests.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(mapToDTO(iterator.next(), new MonitorRequestDTO())));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Matches requests by their effective interval, so an interval preset also finds the requests whose explicit
+     * {@code intervalSeconds} comes to the same period, see {@link Intervals#resolve}.
+     */
+    static Criteria filter(final Status status, final String projectId, final Intervals interval) {
+        final Criteria criteria = new Criteria();
+        if (status != null) {
+            criteria.and("status").is(status);
+        }
+        if (projectId != null) {
+            criteria.and("projectId").is(projectId);
+        }
+        if (interval != null) {
+            criteria.orOperator(
+                    Criteria.where("intervalSeconds").is((int) interval.toDuration().toSeconds()),
+                    Criteria.where("intervalSeconds").is(null).and("interval").is(interval));
+        }
+        return criteria;
     }
 
     public MonitorRequestDTO get(final String requestId) {
@@ -65,14 +172,26 @@ public class MonitorRequestService {
     public String create(final MonitorRequestDTO monitorRequestDTO) {
         final MonitorRequest monitorRequest = new MonitorRequest();
         mapToEntity(monitorRequestDTO, monitorRequest);
-        return monitorRequestRepository.save(monitorRequest).getId();
+        return saveUnique(monitorRequest).getId();
     }
 
     public void update(final String requestId, final MonitorRequestDTO monitorRequestDTO) {
         final MonitorRequest monitorRequest = monitorRequestRepository.findById(requestId)
                 .orElseThrow(NotFoundException::new);
         mapToEntity(monitorRequestDTO, monitorRequest);
-        monitorRequestRepository.save(monitorRequest);
+        saveUnique(monitorRequest);
+    }
+
+    /**
+     * Saves the request, reporting a clash on the unique {@code urlKey} index, e.g. two concurrent creates that both
+     * passed the {@link com.github.uplert.model.MonitorRequestUrlUnique} check, as the url already existing.
+     */
+    private MonitorRequest saveUnique(final MonitorRequest monitorRequest) {
+        try {
+            return monitorRequestRepository.save(monitorRequest);
+        } catch (DuplicateKeyException e) {
+            throw new AlreadyExistsException("Url already exists: " + monitorRequest.getUrl());
+        }
     }
 
     public void delete(final String requestId) {
@@ -84,75 +203,217 @@ public class MonitorRequestService {
         monitorRequestDTO.setProjectId(monitorRequest.getProjectId());
         monitorRequestDTO.setUrl(monitorRequest.getUrl());
         monitorRequestDTO.setInterval(monitorRequest.getInterval());
+        monitorRequestDTO.setIntervalSeconds(monitorRequest.getIntervalSeconds());
         monitorRequestDTO.setStatus(monitorRequest.getStatus());
         return monitorRequestDTO;
     }
 
-    private MonitorRequest mapToEntity(final MonitorRequestDTO monitorRequestDTO,
+    MonitorRequest mapToEntity(final MonitorRequestDTO monitorRequestDTO,
             final MonitorRequest monitorRequest) {
         monitorRequest.setProjectId(monitorRequestDTO.getProjectId());
         monitorRequest.setUrl(monitorRequestDTO.getUrl());
+        monitorRequest.setUrlKey(urlKey(monitorRequestDTO.getUrl()));
         monitorRequest.setInterval(monitorRequestDTO.getInterval());
+        monitorRequest.setIntervalSeconds(monitorRequestDTO.getIntervalSeconds());
         monitorRequest.setStatus(monitorRequestDTO.getStatus());
         return monitorRequest;
     }
 
     public boolean urlExists(final String url) {
-        return monitorRequestRepository.existsByUrlIgnoreCase(url);
+        return monitorRequestRepository.existsByUrlKey(urlKey(url));
+    }
+
+    static String urlKey(final String url) {
+        return url != null ? url.toLowerCase(Locale.ROOT) : null;
     }
 
     public String currentlyRunning() throws JsonProcessingException {
-        List<MonitoringSites> monitoringSites = monitoringSitesRepository.findAll();
+        List<MonitoringSites> monitoringSites = monitorRegistry.findAll();
 
         List<MonitoringSitesDTO> sitesDTOS = monitoringSites.stream().map(site -> new MonitoringSitesDTO(
                 site.getId(),
                 site.getProjectId(),
                 site.getUrl(),
                 site.getInterval(),
-                site.getStatus()
+                site.getIntervalSeconds(),
+                site.getStatus(),
+                site.getContentCheck(),
+                site.getMonitorType(),
+                site.getAgentGroup()
         )).toList();
 
         return objectMapper.writeValueAsString(sitesDTOS);
     }
 
-    public void startMonitorfromMonitoringSites(WebSocketSession session) {
-        List<MonitoringSites> monitoringSites = monitoringSitesRepository.findByStatus(Status.ACTIVE);
+    public void startMonitorfromMonitoringSites() {
+        List<MonitoringSites> monitoringSites = monitorRegistry.findByStatus(Status.ACTIVE);
 
-        List<MonitoringSites> pausedSites = monitoringSitesRepository.findByStatus(Status.PAUSED);
+        List<MonitoringSites> pausedSites = monitorRegistry.findByStatus(Status.PAUSED);
         for (MonitoringSites monitoringSite : pausedSites) {
-            pausedMonitorRequests.put(monitoringSite.getUrl().hashCode(), new MonitorRequestDTO(
-                    monitoringSite.getProjectId(), monitoringSite.getUrl(), monitoringSite.getInterval(), monitoringSite.getStatus()
-            ));
+            pausedMonitorRequests.put(monitoringSite.getUrl(), toDTO(monitoringSite));
         }
 
-        if (jobs.isEmpty()) {
+        if (monitorOwnership.isClustered()) {
+            // monitors are scheduled as this node gains them, see rebalance()
+            return;
+        }
+        if (scheduler.size() == 0) {
             for (MonitoringSites monitoringSite : monitoringSites) {
-                startMonitoring(new MonitorRequestDTO(
-                        monitoringSite.getProjectId(),
-                        monitoringSite.getUrl(),
-                        monitoringSite.getInterval(),
-                        monitoringSite.getStatus()
-                ), session);
+                if (monitoringSite.getAgentGroup() != null) {
+                    // handed to the group's agents as they connect
+                    continue;
+                }
+                // restored monitors wait for their phase slot instead of all firing at once
+                scheduleStored(monitoringSite);
+            }
+        }
+    }
+
+    /**
+     * Cluster mode: schedules the active monitors this node owns but does not probe yet, and stops probing those it
+     * no longer owns or that were paused or deleted on another node. Incident state moves between the nodes through
+     * its checkpoint.
+     */
+    public synchronized void rebalance() {
+        Set<String> owned = new HashSet<>();
+        List<MonitoringSites> gained = new ArrayList<>();
+        for (MonitoringSites site : monitorRegistry.findByStatus(Status.ACTIVE)) {
+            if (site.getAgentGroup() == null && monitorOwnership.owns(site)) {
+                owned.add(site.getUrl());
+                if (!scheduler.isScheduled(site.getUrl())) {
+                    gained.add(site);
+                }
+            }
+        }
+        int lost = 0;
+        for (String url : scheduler.keys()) {
+            if (!owned.contains(url)) {
+                scheduler.cancel(url);
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            // the new owners continue from this state
+            incidentTracker.checkpoint();
+        }
+        if (!gained.isEmpty()) {
+            incidentTracker.reload(gained.stream().map(MonitoringSites::getUrl).toList());
+            for (MonitoringSites site : gained) {
+                scheduleStored(site);
             }
         }
+        if (lost > 0 || !gained.isEmpty()) {
+            log.info("Rebalanced monitors: {} started, {} stopped, {} running", gained.size(), lost, scheduler.size());
+        }
     }
 
-    public void startMonitoring(MonitorRequestDTO monitorRequestDTO, WebSocketSession session) {
-        MonitoringJobService job = new MonitoringJobService(monitorRequestDTO, session, monitoringLogRepository, monitoringSitesRepository, userRepository);
+    /**
+     * Schedules a stored monitor, a definition that cannot be probed is logged and skipped so that it does not keep
+     * the remaining monitors from starting.
+     */
+    private void scheduleStored(MonitoringSites site) {
+        try {
+            scheduleMonitoring(toDTO(site), false);
+        } catch (RuntimeException e) {
+            log.error("Could not start monitoring for URL: {}", site.getUrl(), e);
+        }
+    }
 
-        if (!monitoringSitesRepository.existsByUrl(monitorRequestDTO.getUrl())) {
+    private static MonitorRequestDTO toDTO(MonitoringSites site) {
+        return new MonitorRequestDTO(site.getProjectId(), site.getUrl(), site.getInterval(), site.getIntervalSeconds(),
+                site.getStatus(), site.getContentCheck(), site.getMonitorType(), site.getAgentGroup());
+    }
+
+    public void startMonitoring(MonitorRequestDTO monitorRequestDTO) {
+        scheduleMonitoring(monitorRequestDTO, true);
+    }
+
+    /**
+     * Schedules many new monitors at once, e.g. after a bulk import. Their definitions are saved in one batch and
+     * the monitors wait for their phase slot instead of all running immediately. A monitor whose job cannot be
+     * created is neither saved nor scheduled.
+     *
+     * @return the number of monitors scheduled
+     */
+    public int scheduleAll(List<MonitorRequestDTO> monitorRequestDTOs) {
+        Map<String, MonitoringJobService> jobs = new HashMap<>();
+        for (MonitorRequestDTO dto : monitorRequestDTOs) {
+            try {
+                jobs.put(dto.getUrl(), newJob(dto));
+            } catch (IllegalArgumentException e) {
+                log.warn("Not scheduling monitoring for URL: {}: {}", dto.getUrl(), e.getMessage());
+            }
+        }
+        List<MonitoringSites> newSites = monitorRequestDTOs.stream()
+                .filter(dto -> jobs.containsKey(dto.getUrl()) && !monitorRegistry.exists(dto.getUrl()))
+                .map(dto -> new MonitoringSites(null, dto.getProjectId(), dto.getUrl(), dto.getInterval(),
+                        dto.getIntervalSeconds(), dto.getStatus() != null ? dto.getStatus() : Status.ACTIVE,
+                        dto.getContentCheck(), dto.getMonitorType(), dto.getAgentGroup()))
+                .toList();
+        monitorRegistry.saveAll(newSites);
+        int scheduled = 0;
+        Set<String> agentGroups = new HashSet<>();
+        for (MonitorRequestDTO dto : monitorRequestDTOs) {
+            MonitoringJobService job = jobs.get(dto.getUrl());
+            MonitoringSites site = job != null ? monitorRegistry.find(dto.getUrl()) : null;
+            if (site != null && site.getStatus() == Status.ACTIVE && site.getAgentGroup() != null) {
+                // each group is synced once below
+                agentGroups.add(site.getAgentGroup());
+                scheduled++;
+            } else if (site != null && site.getStatus() == Status.ACTIVE) {
+                scheduleMonitoring(dto, job, false);
+                scheduled++;
+            } else if (site != null && site.getStatus() == Status.PAUSED) {
+                pausedMonitorRequests.put(dto.getUrl(), dto);
+            }
+        }
+        agentGroups.forEach(agentHub::sync);
+        return scheduled;
+    }
+
+    private void scheduleMonitoring(MonitorRequestDTO monitorRequestDTO, boolean runNow) {
+        scheduleMonitoring(monitorRequestDTO, newJob(monitorRequestDTO), runNow);
+    }
+
+    private void scheduleMonitoring(MonitorRequestDTO monitorRequestDTO, MonitoringJobService job, boolean runNow) {
+        if (!monitorRegistry.exists(monitorRequestDTO.getUrl())) {
             Status status = monitorRequestDTO.getStatus() != null
                     ? monitorRequestDTO.getStatus() : Status.ACTIVE;
             MonitoringSites monitoringSite = new MonitoringSites(
-                    null, monitorRequestDTO.getProjectId(), monitorRequestDTO.getUrl(), monitorRequestDTO.getInterval(), status
+                    null, monitorRequestDTO.getProjectId(), monitorRequestDTO.getUrl(), monitorRequestDTO.getInterval(), monitorRequestDTO.getIntervalSeconds(), status, monitorRequestDTO.getContentCheck(), monitorRequestDTO.getMonitorType(), monitorRequestDTO.getAgentGroup()
             );
-            monitoringSitesRepository.save(monitoringSite);
+            monitorRegistry.save(monitoringSite);
+        }
+
+        MonitoringSites site = monitorRegistry.find(monitorRequestDTO.getUrl());
+        if (site.getAgentGroup() != null) {
+            // probed by a remote agent of the group
+            agentHub.sync(site.getAgentGroup());
+            return;
+        }
+        if (!monitorOwnership.owns(site)) {
+            // another node probes it once its registry picks it up
+            return;
         }
+        scheduler.schedule(monitorRequestDTO.getUrl(), monitorRequestDTO.resolveInterval(), whileOwned(site, job));
+        if (runNow) {
+            checkExecutor.execute(job);
+        }
+    }
 
-        ScheduledFuture<?> future = schedular.scheduleAtFixedRate(
-                job, 0, monitorRequestDTO.getInterval().getInterval(), TimeUnit.MINUTES
-        );
-        jobs.put(monitorRequestDTO.getUrl().hashCode(), future);
+    /**
+     * In cluster mode the task only probes while this node still holds the lease of the monitor's partition, in
+     * case the lease lapses before the next rebalance cancels it.
+     */
+    private Runnable whileOwned(MonitoringSites site, Runnable job) {
+        if (!monitorOwnership.isClustered()) {
+            return job;
+        }
+        return () -> {
+            if (monitorOwnership.owns(site)) {
+                job.run();
+            }
+        };
     }
 
 //    public void stopMonitoring(MonitorRequestDTO monitorRequestDTO) {
@@ -197,52 +458,35 @@ public class MonitorRequestService {
 //    }
 
     public void pauseMonitoring(MonitorRequestDTO monitorRequestDTO) {
-        ScheduledFuture<?> future = jobs.get(monitorRequestDTO.getUrl().hashCode());
-
-        MonitoringSites monitoringSite = monitoringSitesRepository.findByUrl(monitorRequestDTO.getUrl());
-        monitoringSite.setStatus(Status.PAUSED);
-        monitoringSitesRepository.save(monitoringSite);
-
-        pausedMonitorRequests.put(monitorRequestDTO.getUrl().hashCode(), monitorRequestDTO);
-        pauseJobs.put(monitorRequestDTO.getUrl().hashCode(), future);
-        jobs.remove(monitorRequestDTO.getUrl().hashCode());
-        if(future != null){
-            future.cancel(false);
-            try{
-                future.get();
-            } catch (InterruptedException | ExecutionException | CancellationException e){
-                System.out.println(e.getMessage());
-            }
+        MonitoringSites monitoringSite = monitorRegistry.updateStatus(monitorRequestDTO.getUrl(), Status.PAUSED);
+
+        pausedMonitorRequests.put(monitorRequestDTO.getUrl(), monitorRequestDTO);
+        scheduler.cancel(monitorRequestDTO.getUrl());
+        if (monitoringSite.getAgentGroup() != null) {
+            agentHub.sync(monitoringSite.getAgentGroup());
         }
     }
 
-    public void deleteMonitoringEntry(MonitorRequestDTO monitorRequestDTO, WebSocketSession session) {
+    public void deleteMonitoringEntry(MonitorRequestDTO monitorRequestDTO) {
         try {
-            MonitoringSites existingSite = monitoringSitesRepository.findByUrl(monitorRequestDTO.getUrl());
+            MonitoringSites existingSite = monitorRegistry.find(monitorRequestDTO.getUrl());
 
-            if (existingSite.getUrl().equals(monitorRequestDTO.getUrl())) {
-                monitoringSitesRepository.deleteById(monitoringSitesRepository.findByUrl(monitorRequestDTO.getUrl()).getId());
+            monitorRegistry.delete(existingSite);
+            if (existingSite.getAgentGroup() != null) {
+                agentHub.sync(existingSite.getAgentGroup());
             }
 
+            monitoringLogWriter.discardPending(monitorRequestDTO.getProjectId());
             Optional<MonitoringLog> monitoringLog = monitoringLogRepository.findByProjectId(monitorRequestDTO.getProjectId());
             if (monitoringLog.isPresent() && monitoringLog.get().getProjectId().equals(existingSite.getProjectId())) {
                 monitoringLogRepository.deleteById(monitoringLog.get().getId());
             }
 
-            ScheduledFuture<?> future = jobs.remove(monitorRequestDTO.getUrl().hashCode());
-
-            if (future != null) {
-                try {
-                    boolean cancelled = future.cancel(true);
-
-                    if (cancelled) {
-                        log.info("Monitoring stopped for URL: {}", monitorRequestDTO.getUrl());
-                    } else {
-                        log.warn("Could not cancel monitoring job for URL: {}", monitorRequestDTO.getUrl());
-                    }
-                } catch (Exception cancellationEx) {
-                    log.error("Error cancelling monitoring job for URL: {}", monitorRequestDTO.getUrl(), cancellationEx);
-                }
+            pausedMonitorRequests.remove(monitorRequestDTO.getUrl());
+            incidentTracker.forget(monitorRequestDTO.getUrl());
+            probeCoalescer.forget(monitorRequestDTO.getUrl());
+            if (scheduler.cancel(monitorRequestDTO.getUrl())) {
+                log.info("Monitoring stopped for URL: {}", monitorRequestDTO.getUrl());
             } else {
                 log.warn("No scheduled job found for URL: {}", monitorRequestDTO.getUrl());
             }
@@ -250,7 +494,7 @@ public class MonitorRequestService {
             log.error("MongoDB interruption while stopping monitoring for URL: {}", monitorRequestDTO.getUrl(), e);
 
             try {
-                jobs.remove(monitorRequestDTO.getUrl().hashCode());
+                scheduler.cancel(monitorRequestDTO.getUrl());
             } catch (Exception recoveryEx) {
                 log.error("Recovery attempt failed", recoveryEx);
             }
@@ -262,30 +506,89 @@ public class MonitorRequestService {
         }
     }
 
-    public void resumeMonitoring(String url, WebSocketSession session) {
-        MonitorRequestDTO pausedMonitorRequestDTO = pausedMonitorRequests.get(url.hashCode());
+    public void resumeMonitoring(String url) {
+        MonitorRequestDTO pausedMonitorRequestDTO = pausedMonitorRequests.get(url);
 
-        MonitoringSites monitoringSite = monitoringSitesRepository.findByUrl(url);
-        monitoringSite.setStatus(Status.ACTIVE);
-        monitoringSitesRepository.save(monitoringSite);
+        MonitoringSites monitoringSite = monitorRegistry.updateStatus(url, Status.ACTIVE);
+        pausedMonitorRequests.remove(url);
+        if (pausedMonitorRequestDTO == null) {
+            // paused on another node
+            pausedMonitorRequestDTO = toDTO(monitoringSite);
+        }
+        withStoredDefinition(pausedMonitorRequestDTO);
+        if (monitoringSite.getAgentGroup() != null) {
+            agentHub.sync(monitoringSite.getAgentGroup());
+            return;
+        }
+        if (!monitorOwnership.owns(monitoringSite)) {
+            return;
+        }
 
-        MonitoringJobService job = new MonitoringJobService(pausedMonitorRequestDTO, session, monitoringLogRepository, monitoringSitesRepository, userRepository);
+        MonitoringJobService job = newJob(pausedMonitorRequestDTO);
 
-        ScheduledFuture<?> future = schedular.scheduleAtFixedRate(
-                job, 0, pausedMonitorRequestDTO.getInterval().getInterval(), TimeUnit.MINUTES
-        );
+        scheduler.schedule(url, pausedMonitorRequestDTO.resolveInterval(), whileOwned(monitoringSite, job));
+        checkExecutor.execute(job);
+    }
 
-        jobs.put(url.hashCode(), future);
-        pausedMonitorRequests.remove(url.hashCode());
-        pauseJobs.remove(url.hashCode());
+    /**
+     * Probes the website now, or shares a probe of it that is in flight or has just completed. Results of new and
+     * in-flight probes reach the caller with the published result; the answer of a probe that has already completed
+     * is handed to {@code reply} instead of being published again.
+     *
+     * @return {@code false} if the URL is not being monitored
+     */
+    public boolean manualPing(MonitorRequestDTO monitorRequestDTO, Consumer<String> reply) {
+        if (!scheduler.isScheduled(monitorRequestDTO.getUrl())) {
+            MonitoringSites site = monitorRegistry.find(monitorRequestDTO.getUrl());
+            if (isActive(monitorRequestDTO.getUrl()) && site.getAgentGroup() != null) {
+                // the result is published when the agent uploads it
+                return agentHub.probeNow(monitorRequestDTO.getUrl());
+            }
+            if (!(monitorOwnership.isClustered() && isActive(monitorRequestDTO.getUrl()))) {
+                return false;
+            }
+        }
+        withStoredDefinition(monitorRequestDTO);
+        MonitoringJobService job = newJob(monitorRequestDTO);
+        String answer = job.ping();
+        if (answer != null) {
+            reply.accept(answer);
+        }
+        return true;
     }
 
-    public void manualPing(MonitorRequestDTO monitorRequestDTO, WebSocketSession session) throws IOException {
-        if (!jobs.containsKey(monitorRequestDTO.getUrl().hashCode())) {
-            session.sendMessage(new TextMessage("Website monitoring is not running for URL: " + monitorRequestDTO.getUrl()));
-            return;
+    private boolean isActive(String url) {
+        MonitoringSites site = monitorRegistry.find(url);
+        return site != null && site.getStatus() == Status.ACTIVE;
+    }
+
+    /**
+     * Pause and ping commands usually only name the website, their probes use the stored type and content check
+     * like the scheduled ones.
+     */
+    private void withStoredDefinition(MonitorRequestDTO monitorRequestDTO) {
+        if (monitorRequestDTO.getContentCheck() == null || monitorRequestDTO.getMonitorType() == null) {
+            MonitoringSites site = monitorRegistry.find(monitorRequestDTO.getUrl());
+            if (site != null) {
+                if (monitorRequestDTO.getContentCheck() == null) {
+                    monitorRequestDTO.setContentCheck(site.getContentCheck());
+                }
+                if (monitorRequestDTO.getMonitorType() == null) {
+                    monitorRequestDTO.setMonitorType(site.getMonitorType());
+                }
+            }
         }
-        MonitoringJobService job = new MonitoringJobService(monitorRequestDTO, session, monitoringLogRepository, monitoringSitesRepository, userRepository);
-        job.run();
+    }
+
+    private MonitoringJobService newJob(MonitorRequestDTO monitorRequestDTO) {
+        return new MonitoringJobService(monitorRequestDTO, resultHub, monitoringLogWriter, monitorRegistry, alertDispatcher, probeEngine(monitorRequestDTO), probeCoalescer, incidentTracker, checkExecutor);
+    }
+
+    private ProbeEngine probeEngine(MonitorRequestDTO monitorRequestDTO) {
+        return switch (MonitorType.of(monitorRequestDTO.getMonitorType())) {
+            case HTTP -> probeEngine;
+            case TCP -> tcpProbeEngine;
+            case TLS -> tlsProbeEngine;
+        };
     }
 }
@@ -0,0 +1,74 @@
+package com.github.uplert.service;
+
+import com.github.uplert.model.ContentCheck;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.MonitorType;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Checks a monitor definition can be probed the way it asks for: the url matches the monitor type and a monitor of
+ * an agent group only uses checks the remote probe agents support. Shared by the {@code /ws} commands and the bulk
+ * import, which checks the bean constraints of {@link MonitorRequestDTO} on top.
+ */
+public final class MonitorRequestValidator {
+
+    private MonitorRequestValidator() {
+    }
+
+    /**
+     * @return the reason the definition is rejected, or {@code null} if it is valid
+     */
+    public static String validate(MonitorRequestDTO request) {
+        if (request == null) {
+            return "Empty row";
+        }
+        if (request.getProjectId() == null || request.getProjectId().isEmpty()) {
+            return "projectId is required";
+        }
+        if (request.getUrl() == null || request.getUrl().isEmpty()) {
+            return "url is required";
+        }
+        if (!request.isIntervalPresent()) {
+            return "either interval or intervalSeconds is required";
+        }
+        if (request.getAgentGroup() != null) {
+            String agentError = agentError(request);
+            if (agentError != null) {
+                return agentError;
+            }
+        }
+        URI uri;
+        try {
+            uri = new URI(request.getUrl());
+        } catch (URISyntaxException e) {
+            return "url is invalid";
+        }
+        return switch (MonitorType.of(request.getMonitorType())) {
+            case HTTP -> ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))
+                    && uri.getHost() != null ? null : "url must be an absolute http or https url";
+            case TCP -> "tcp".equalsIgnoreCase(uri.getScheme()) && uri.getHost() != null && uri.getPort() != -1
+                    ? null : "url must be tcp://host:port";
+            case TLS -> "tls".equalsIgnoreCase(uri.getScheme()) && uri.getHost() != null
+                    ? null : "url must be tls://host or tls://host:port";
+        };
+    }
+
+    /**
+     * Remote probe agents run HTTP and TCP checks with keyword rules only.
+     */
+    private static String agentError(MonitorRequestDTO request) {
+        if (request.getAgentGroup().isBlank()) {
+            return "agentGroup must not be blank";
+        }
+        if (MonitorType.of(request.getMonitorType()) == MonitorType.TLS) {
+            return "TLS monitors cannot be probed by agents";
+        }
+        ContentCheck check = request.getContentCheck();
+        if (check != null && (check.getRegex() != null || Boolean.TRUE.equals(check.getDigest()))) {
+            return "agents only support keyword content checks";
+        }
+        return null;
+    }
+}
@@ -2,107 +2,294 @@ package com.github.uplert.service;
 
 import com.github.uplert.domain.MonitoringLog;
 import com.github.uplert.domain.MonitoringSites;
-import com.github.uplert.domain.User;
-import com.github.uplert.model.EmailDetails;
+import com.github.uplert.model.ContentCheck;
+import com.github.uplert.model.IncidentState;
 import com.github.uplert.model.MonitorRequestDTO;
-import com.github.uplert.repos.MonitoringLogRepository;
-import com.github.uplert.repos.MonitoringSitesRepository;
-import com.github.uplert.repos.UserRepository;
-import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketSession;
-
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import com.github.uplert.model.Status;
+import com.github.uplert.notify.Alert;
+import com.github.uplert.notify.AlertDispatcher;
+import com.github.uplert.probe.ContentRules;
+import com.github.uplert.probe.ContentVerdict;
+import com.github.uplert.probe.ProbeEngine;
+import com.github.uplert.probe.ProbeRequest;
+import com.github.uplert.probe.ProbeResult;
+import com.github.uplert.probe.ProbeTimings;
+import com.github.uplert.probe.TlsInfo;
+import com.github.uplert.websocket.LogHandler;
+import com.github.uplert.websocket.ResultHub;
+
+import lombok.extern.slf4j.Slf4j;
+
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
-import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 public class MonitoringJobService implements Runnable{
     private final MonitorRequestDTO website;
-    private final WebSocketSession session;
-    private final MonitoringLogRepository monitoringLogRepository;
-    private final MonitoringSitesRepository monitoringSitesRepository;
-    private final EmailServiceImpl emailService;
-    private final UserRepository userRepository;
+    private final ResultHub resultHub;
+    private final MonitoringLogWriter monitoringLogWriter;
+    private final MonitorRegistry monitorRegistry;
+    private final AlertDispatcher alertDispatcher;
+    private final ProbeEngine probeEngine;
+    private final ProbeCoalescer probeCoalescer;
+    private final IncidentTracker incidentTracker;
+    private final Executor executor;
+    private final ProbeRequest request;
 
-    public MonitoringJobService(MonitorRequestDTO website, WebSocketSession session, MonitoringLogRepository monitoringLogRepository, MonitoringSitesRepository monitoringSitesRepository, UserRepository userRepository) {
+    /**
+     * @throws IllegalArgumentException if the website's content check is invalid
+     */
+    public MonitoringJobService(MonitorRequestDTO website, ResultHub resultHub, MonitoringLogWriter monitoringLogWriter, MonitorRegistry monitorRegistry, AlertDispatcher alertDispatcher, ProbeEngine probeEngine, ProbeCoalescer probeCoalescer, IncidentTracker incidentTracker, Executor executor) {
         this.website = website;
-        this.session = session;
-        this.monitoringLogRepository = monitoringLogRepository;
-        this.monitoringSitesRepository = monitoringSitesRepository;
-        this.userRepository = userRepository;
-        this.emailService = new EmailServiceImpl(userRepository);
+        this.resultHub = resultHub;
+        this.monitoringLogWriter = monitoringLogWriter;
+        this.monitorRegistry = monitorRegistry;
+        this.alertDispatcher = alertDispatcher;
+        this.probeEngine = probeEngine;
+        this.probeCoalescer = probeCoalescer;
+        this.incidentTracker = incidentTracker;
+        this.executor = executor;
+        this.request = ProbeRequest.of(website.getUrl(), compile(website.getContentCheck()));
     }
 
+    /**
+     * @throws IllegalArgumentException if the check has too many keywords or an invalid regex
+     */
+    static ContentRules compile(ContentCheck check) {
+        if (check == null) {
+            return null;
+        }
+        return ContentRules.compile(check.getRequired(), check.getForbidden(), check.getRegex(),
+                Boolean.TRUE.equals(check.getDigest()),
+                check.getMaxBytes() != null ? check.getMaxBytes() : ContentRules.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Starts the check and returns immediately; the result is handled on the given executor so that blocking
+     * persistence and alerting never run on the probe engine's I/O threads. If the website is already being probed
+     * the check shares that probe.
+     */
     @Override
     public void run() {
+        check(probeCoalescer.join(request, false));
+    }
+
+    /**
+     * Like {@link #run()}, but also reuses a probe that completed within the coalescing freshness window.
+     *
+     * @return the already published answer of that probe, {@code null} if the answer is still to come
+     */
+    public String ping() {
+        ProbeCoalescer.Join join = probeCoalescer.join(request, true);
+        check(join);
+        return join.handles() ? null : join.answered().getNow(null);
+    }
+
+    private void check(ProbeCoalescer.Join join) {
+        if (join.probes()) {
+            try {
+                probeEngine.probe(request).whenComplete((result, throwable) ->
+                        join.complete(result != null ? result : ProbeResult.failure(website.getUrl(),
+                                System.currentTimeMillis(), 0, String.valueOf(throwable))));
+            } catch (RuntimeException e) {
+                join.complete(ProbeResult.failure(website.getUrl(), System.currentTimeMillis(), 0, e.getMessage()));
+            }
+        }
+        if (join.handles()) {
+            join.result().thenApplyAsync(this::handleResult, executor)
+                    .whenComplete((message, throwable) -> join.answer(message));
+        }
+    }
+
+    /**
+     * Handles the result of a probe run elsewhere, e.g. by a remote probe agent, like one of its own.
+     */
+    public void accept(ProbeResult result) {
+        executor.execute(() -> handleResult(result));
+    }
+
+    /**
+     * @return the message published to the dashboards, {@code null} if there was none
+     */
+    private String handleResult(ProbeResult result) {
+        MonitoringSites monitoringSites = monitorRegistry.find(website.getUrl());
+        if (monitoringSites == null) {
+            // deleted while the probe was in flight, its incident and digest are already forgotten
+            return null;
+        }
+        if (result.isFailed()) {
+            log.warn("Probe failed for {}: {}", website.getUrl(), result.getError());
+            MonitoringLog.LogEntry failure = new MonitoringLog.LogEntry(website.getUrl(), result.getError());
+            failure.setResponseTime(result.getResponseTime());
+            setTimings(failure, result.getTimings());
+            setTls(failure, result.getTls());
+            monitoringLogWriter.enqueueFailure(website.getProjectId(), failure);
+            IncidentTracker.Transition transition = incidentTracker.record(website.getUrl(), website.getProjectId(), true, null, result.getError());
+            alertOnChange(transition, result.getResponseTime(), null, result.getError());
+            return this.notifyUser(String.format("{\"website\":\"%s\"%s%s}", website.getUrl(),
+                    LogHandler.entryFields(failure), incidentFields(transition)));
+        }
         try {
-            long startTime = System.currentTimeMillis();
-            HttpURLConnection connection = (HttpURLConnection) new URL(website.getUrl()).openConnection();
-            connection.setRequestMethod("GET");
-            int statusCode = connection.getResponseCode();
-            long responseTime = System.currentTimeMillis() - startTime;
+            // null for TCP monitors
+            Integer statusCode = result.getStatusCode();
+            long responseTime = result.getResponseTime();
 
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-            String timestamp = sdf.format(new Date(System.currentTimeMillis()));
+            String timestamp = timestamp(System.currentTimeMillis());
 
             MonitoringLog.LogEntry logEntry = new MonitoringLog.LogEntry(
                     website.getUrl(), timestamp,responseTime, statusCode
             );
+            setTimings(logEntry, result.getTimings());
+            String contentError = setContent(logEntry, result.getContent());
+            setTls(logEntry, result.getTls());
 
-            MonitoringLog monitoringLog = monitoringLogRepository
-                    .findByProjectId(website.getProjectId())
-                    .orElse(new MonitoringLog(null, website.getProjectId(), website.getInterval(), null));
-
-            monitoringLog.addLogEntry(logEntry);
+            monitoringLogWriter.enqueue(website.getProjectId(), website.getInterval(), logEntry);
 
-            monitoringLogRepository.save(monitoringLog);
-
-            MonitoringSites monitoringSites = monitoringSitesRepository.findByUrl(website.getUrl());
-
-            System.out.println("Status: "+ monitoringSites.getStatus());
-            System.out.println("Status Code: "+ statusCode);
-            if (statusCode == 404) {
-                EmailDetails emailDetails = getEmailDetails(responseTime, statusCode);
-                emailService.sendEmail(emailDetails);
-            }
-            String logMessage = String.format(
-                    "{\"website\":\"%s\",\"projectId\":\"%s\",\"status\":\"%s\",\"responseTime\":%d,\"statusCode\":%d}",
-                    website.getUrl(), monitoringSites.getProjectId(), monitoringSites.getStatus(),responseTime, statusCode
-            );
-            this.notifyUser(logMessage);
+            log.debug("Checked {}: status {}, status code {}", website.getUrl(), monitoringSites.getStatus(), statusCode);
+            boolean failed = statusCode != null && statusCode >= 400 || contentError != null;
+            IncidentTracker.Transition transition = incidentTracker.record(website.getUrl(), website.getProjectId(), failed, statusCode, contentError);
+            alertOnChange(transition, responseTime, statusCode, contentError);
+            warnOnExpiry(result.getTls(), transition);
+            return this.notifyUser(formatResult(logEntry, monitoringSites.getProjectId(), monitoringSites.getStatus(), transition));
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to handle the result for {}", website.getUrl(), e);
             try {
-                this.notifyUser(String.format("{\"website\":\"%s\",\"error\":\"%s\"}", website.getUrl(), e.getMessage()));
+                return this.notifyUser(String.format("{\"website\":\"%s\",\"error\":\"%s\"}", website.getUrl(), e.getMessage()));
             } catch (Exception ex) {
-                ex.printStackTrace();
+                log.error("Failed to publish the error for {}", website.getUrl(), ex);
+                return null;
             }
         }
     }
 
-    private EmailDetails getEmailDetails(long responseTime, int statusCode) {
-        List<User> users = userRepository.findAll();
-        EmailDetails emailDetails = new EmailDetails();
-        emailDetails.setSubject("Urgent: Your Website Is Down – Immediate Action Required");
-        EmailDetails.BodyData bodyData = new EmailDetails.BodyData("" + responseTime, website.getUrl(), "" + statusCode);
-        emailDetails.setMsgBody(bodyData);
-        emailDetails.setRecipients(users.get(0).getEmails());
-        return emailDetails;
+    /**
+     * Log entry timestamp, e.g. {@code 2024-01-01T00:00:00.000+0000}.
+     */
+    public static String timestamp(long epochMillis) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdf.format(new Date(epochMillis));
+    }
+
+    /**
+     * Result message pushed to the {@code /ws} dashboards.
+     */
+    public static String formatResult(MonitoringLog.LogEntry entry, String projectId, Status status,
+                                      IncidentTracker.Transition transition) {
+        return String.format(
+                "{\"website\":\"%s\",\"projectId\":\"%s\",\"status\":\"%s\",\"responseTime\":%d,\"statusCode\":%d%s%s}",
+                entry.getWebsite(), projectId, status, entry.getResponseTime(), entry.getStatusCode(),
+                LogHandler.entryFields(entry), incidentFields(transition)
+        );
     }
 
-    public void notifyUser(String message) {
-        if (session != null && session.isOpen()) {
-            synchronized (session) {
-                try {
-                    session.sendMessage(new TextMessage(message));
-                } catch (IOException e) {
-                    System.err.println("Error sending message: " + e.getMessage());
-                }
+    /**
+     * Copies the content verdict to the log entry and compares the digest with the previous probe's.
+     *
+     * @return the error to report if the content checks failed, otherwise {@code null}
+     */
+    private String setContent(MonitoringLog.LogEntry entry, ContentVerdict content) {
+        if (content == null) {
+            return null;
+        }
+        if (content.getDigest() != null) {
+            String previous = incidentTracker.swapDigest(website.getUrl(), website.getProjectId(), content.getDigest());
+            entry.setDigest(content.getDigest());
+            entry.setContentChanged(previous != null ? !previous.equals(content.getDigest()) : null);
+        }
+        if (content.isPassed()) {
+            return null;
+        }
+        entry.setError("Content check failed: " + content.getReason());
+        return entry.getError();
+    }
+
+    /**
+     * Copies the probe phases to the log entry in microseconds; phases the probe did not reach stay {@code null}.
+     */
+    private static void setTimings(MonitoringLog.LogEntry entry, ProbeTimings timings) {
+        if (timings == null) {
+            return;
+        }
+        entry.setTimings(new MonitoringLog.Timings(micros(timings.getDnsNanos()), micros(timings.getConnectNanos()),
+                micros(timings.getTlsNanos()), micros(timings.getTtfbNanos()), micros(timings.getTransferNanos())));
+        entry.setBytes(timings.getBytes());
+    }
+
+    private static void setTls(MonitoringLog.LogEntry entry, TlsInfo tls) {
+        if (tls == null) {
+            return;
+        }
+        entry.setTls(new MonitoringLog.Tls(tls.getProtocol(), tls.getCipherSuite(), tls.isResumed(),
+                tls.getExpiresAt().toString(), daysToExpiry(tls), tls.getExpiringSubject(), tls.getValidationError()));
+    }
+
+    private static long daysToExpiry(TlsInfo tls) {
+        return Duration.between(Instant.now(), tls.getExpiresAt()).toDays();
+    }
+
+    private static Long micros(long nanos) {
+        return nanos > 0 ? TimeUnit.NANOSECONDS.toMicros(nanos) : null;
+    }
+
+    /**
+     * Alerts once when the monitor is confirmed down, not on every failed check, and once when it is confirmed up
+     * again. While it flaps the alert is deferred by the {@link IncidentTracker} until the monitor settles.
+     */
+    private void alertOnChange(IncidentTracker.Transition transition, Long responseTime, Integer statusCode, String error) {
+        if (transition == null || transition.to() != IncidentState.DOWN && transition.to() != IncidentState.UP) {
+            return;
+        }
+        if (!transition.alert()) {
+            if (transition.to() == IncidentState.DOWN && transition.flapping()
+                    && transition.from() != IncidentState.RECOVERING) {
+                log.info("Deferring alert for flapping website: {}", website.getUrl());
             }
+            return;
+        }
+        // a deferred alert comes from DOWN to DOWN, it is still the alert of the outage and not a warning
+        IncidentState from = transition.from() == transition.to() ? IncidentState.UP : transition.from();
+        alertDispatcher.dispatch(new Alert(website.getUrl(), website.getProjectId(), from, transition.to(),
+                statusCode, responseTime, error, Instant.now()));
+    }
+
+    /**
+     * Warns once per configured threshold as the certificate chain approaches its expiry, and again after a renewal
+     * once the new chain gets close. Expired or untrusted chains fail the check and alert as an incident instead.
+     */
+    private void warnOnExpiry(TlsInfo tls, IncidentTracker.Transition transition) {
+        if (tls == null) {
+            return;
         }
+        Integer threshold = tls.getWarningDays();
+        Integer warned = incidentTracker.swapExpiryWarning(website.getUrl(), website.getProjectId(), threshold);
+        if (threshold == null || warned != null && warned <= threshold) {
+            return;
+        }
+        IncidentState state = transition != null ? transition.to() : incidentTracker.state(website.getUrl());
+        alertDispatcher.dispatch(new Alert(website.getUrl(), website.getProjectId(), state, state, null, null,
+                "Certificate of " + tls.getExpiringSubject() + " expires in " + daysToExpiry(tls) + " days, on "
+                        + tls.getExpiresAt(), Instant.now()));
+    }
+
+    /**
+     * Extra result fields describing an incident transition, empty when the check did not change the state.
+     */
+    private static String incidentFields(IncidentTracker.Transition transition) {
+        if (transition == null) {
+            return "";
+        }
+        return String.format(",\"incident\":\"%s\",\"previousIncident\":\"%s\",\"flapping\":%b",
+                transition.to(), transition.from(), transition.flapping());
+    }
+
+    public String notifyUser(String message) {
+        resultHub.publish(ResultHub.resultsTopic(website.getProjectId()), website.getUrl(), message);
+        return message;
     }
 }
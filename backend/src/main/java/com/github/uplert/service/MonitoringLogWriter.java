@@ -0,0 +1,238 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitoringLog;
+import com.github.uplert.domain.ProbeSample;
+import com.github.uplert.model.Intervals;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for probe results. Entries are queued by the checks and flushed by a single writer
+ * thread every {@code uplert.log-writer.flush-interval} or as soon as {@code uplert.log-writer.batch-size}
+ * entries are waiting. A flush is one unordered bulk write with one atomic {@code $push}/{@code $slice} upsert
+ * per project, so Mongo write volume follows the flush rate rather than the number of monitors, and concurrent
+ * checks of the same project can no longer overwrite each other's entries. Every flushed entry is also handed to
+ * the {@link HistoryService} as a raw sample. Log entries whose write fails are counted as dropped, like entries
+ * that did not fit into the queue; samples the history fails to record are counted on their own, the log and the
+ * history are written independently of each other.
+ */
+@Slf4j
+@Service
+public class MonitoringLogWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final HistoryService historyService;
+    private final BlockingQueue<PendingEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final int maxLogs;
+    private final Timer flushLag;
+    private final Timer flushDuration;
+    private final Counter dropped;
+    private final Counter historyDropped;
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public MonitoringLogWriter(MongoTemplate mongoTemplate, HistoryService historyService, MeterRegistry meterRegistry,
+                               @Value("${uplert.log-writer.queue-capacity:10000}") int queueCapacity,
+                               @Value("${uplert.log-writer.batch-size:500}") int batchSize,
+                               @Value("${uplert.log-writer.flush-interval:1s}") Duration flushInterval,
+                               @Value("${uplert.log-writer.max-logs:20}") int maxLogs) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyService = historyService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxLogs = maxLogs;
+        Gauge.builder("uplert.log.writer.queue.depth", queue, BlockingQueue::size)
+                .description("Probe results waiting to be written")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("uplert.log.writer.flush.lag")
+                .description("Time from queueing the oldest entry of a batch until its flush completed")
+                .register(meterRegistry);
+        this.flushDuration = Timer.builder("uplert.log.writer.flush.duration")
+                .description("Duration of a single bulk write")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("uplert.log.writer.dropped")
+                .description("Probe results dropped because the queue was full or their write failed")
+                .register(meterRegistry);
+        this.historyDropped = Counter.builder("uplert.log.writer.history.dropped")
+                .description("Probe samples missing from the history because recording them failed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // concurrent upserts of a new project's log, e.g. from two nodes, must not create two documents
+        mongoTemplate.indexOps(MonitoringLog.class).ensureIndex(new Index().on("projectId", Sort.Direction.ASC).unique());
+        writer = new Thread(this::writeLoop, "monitoring-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        List<PendingEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flushOrDrop(remaining);
+        }
+    }
+
+    /**
+     * Queues a probe result for the project's log.
+     *
+     * @return {@code false} if the queue is full and the entry was dropped
+     */
+    public boolean enqueue(String projectId, Intervals intervals, MonitoringLog.LogEntry entry) {
+        // lets the change stream tell new entries from ones it already delivered
+        entry.setId(new ObjectId().toHexString());
+        return offer(new PendingEntry(projectId, intervals, entry, true, System.currentTimeMillis(), System.nanoTime()));
+    }
+
+    /**
+     * Queues a failed probe for the history only, the project's log keeps successful responses.
+     */
+    public boolean enqueueFailure(String projectId, MonitoringLog.LogEntry entry) {
+        return offer(new PendingEntry(projectId, null, entry, false, System.currentTimeMillis(), System.nanoTime()));
+    }
+
+    private boolean offer(PendingEntry pending) {
+        MonitoringLog.LogEntry entry = pending.entry();
+        if (queue.offer(pending)) {
+            return true;
+        }
+        dropped.increment();
+        log.warn("Monitoring log queue is full, dropping result for {}", entry.getWebsite());
+        return false;
+    }
+
+    /**
+     * Drops entries that have not been written yet, used before a project's log is deleted.
+     */
+    public void discardPending(String projectId) {
+        queue.removeIf(pending -> pending.projectId().equals(projectId));
+    }
+
+    private void writeLoop() {
+        List<PendingEntry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingEntry first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.queuedAt() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flushOrDrop(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!batch.isEmpty()) {
+                    flushOrDrop(batch);
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushOrDrop(List<PendingEntry> batch) {
+        List<PendingEntry> logged = batch.stream().filter(PendingEntry::appendToLog).toList();
+        if (!logged.isEmpty()) {
+            try {
+                writeLogs(logged);
+            } catch (Exception e) {
+                dropped.increment(logged.size());
+                log.error("Failed to flush {} monitoring log entries, dropping them", logged.size(), e);
+            }
+        }
+        try {
+            historyService.record(batch.stream().map(MonitoringLogWriter::toSample).toList());
+        } catch (Exception e) {
+            historyDropped.increment(batch.size());
+            log.error("Failed to record {} history samples, dropping them", batch.size(), e);
+        }
+        flushLag.record(System.nanoTime() - batch.get(0).queuedAt(), TimeUnit.NANOSECONDS);
+    }
+
+    private void writeLogs(List<PendingEntry> logged) {
+        Map<String, List<PendingEntry>> byProject = new LinkedHashMap<>();
+        for (PendingEntry pending : logged) {
+            byProject.computeIfAbsent(pending.projectId(), key -> new ArrayList<>()).add(pending);
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MonitoringLog.class);
+        for (Map.Entry<String, List<PendingEntry>> project : byProject.entrySet()) {
+            List<PendingEntry> pending = project.getValue();
+            // logs are kept newest first, the queue hands them out oldest first
+            Object[] entries = new Object[pending.size()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = pending.get(entries.length - 1 - i).entry();
+            }
+            Update update = new Update().push("logs").atPosition(0).slice(maxLogs).each(entries);
+            Intervals intervals = pending.get(pending.size() - 1).intervals();
+            if (intervals != null) {
+                update.set("intervals", intervals);
+            }
+            bulk.upsert(Query.query(Criteria.where("projectId").is(project.getKey())), update);
+        }
+
+        long start = System.nanoTime();
+        bulk.execute();
+        flushDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static ProbeSample toSample(PendingEntry pending) {
+        MonitoringLog.LogEntry entry = pending.entry();
+        // failed probes always carry an error, TCP probes have no status code
+        boolean failed = entry.getError() != null || entry.getStatusCode() != null && entry.getStatusCode() >= 400;
+        return new ProbeSample(null, Instant.ofEpochMilli(pending.recordedAt()),
+                new ProbeSample.Meta(pending.projectId(), entry.getWebsite()),
+                entry.getResponseTime(), entry.getStatusCode(), failed);
+    }
+
+    private record PendingEntry(String projectId, Intervals intervals, MonitoringLog.LogEntry entry,
+                                boolean appendToLog, long recordedAt, long queuedAt) {
+    }
+}
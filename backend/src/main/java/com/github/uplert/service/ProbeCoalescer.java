@@ -0,0 +1,153 @@
+package com.github.uplert.service;
+
+import com.github.uplert.probe.ContentRules;
+import com.github.uplert.probe.ProbeRequest;
+import com.github.uplert.probe.ProbeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight layer in front of the probe engine. Checks of the same URL that start while a probe of it is in
+ * flight, or for manual pings within {@code uplert.probe.coalesce.freshness} after it completed, share that probe
+ * instead of sending another request. URLs are compared after normalizing scheme, host, default port and fragment,
+ * and checks only share a probe when they also ask for the same content rules and timeouts.
+ * <p>
+ * The shared result is handled, i.e. logged, tracked and published, once per monitor: the first check of each
+ * monitor in a flight handles it and any further check of the same monitor gets the same answer.
+ */
+@Component
+public class ProbeCoalescer {
+
+    private final Map<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+    private final long freshnessNanos;
+    private final Counter joinedInFlight;
+    private final Counter joinedFresh;
+
+    public ProbeCoalescer(MeterRegistry meterRegistry,
+                          @Value("${uplert.probe.coalesce.freshness:2s}") Duration freshness) {
+        this.freshnessNanos = freshness.toNanos();
+        this.joinedInFlight = coalescedCounter(meterRegistry, "in_flight");
+        this.joinedFresh = coalescedCounter(meterRegistry, "fresh");
+    }
+
+    private static Counter coalescedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("uplert.probe.coalesced")
+                .description("Checks that shared another check's probe instead of sending their own")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Joins the flight of the request, starting a new one unless a probe is in flight or, with {@code acceptFresh},
+     * has just completed.
+     */
+    public Join join(ProbeRequest request, boolean acceptFresh) {
+        String url = request.getUrl();
+        long now = System.nanoTime();
+        Flight[] joined = new Flight[1];
+        boolean[] started = new boolean[1];
+        flights.compute(FlightKey.of(request), (key, current) -> {
+            if (current != null && (!current.result.isDone() || acceptFresh && current.isFresh(now, freshnessNanos))) {
+                joined[0] = current;
+                return current;
+            }
+            started[0] = true;
+            joined[0] = new Flight();
+            return joined[0];
+        });
+
+        Flight flight = joined[0];
+        if (!started[0]) {
+            (flight.result.isDone() ? joinedFresh : joinedInFlight).increment();
+        }
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        CompletableFuture<String> existing = flight.answers.putIfAbsent(url, answer);
+        return new Join(flight, started[0], existing == null, existing != null ? existing : answer);
+    }
+
+    /**
+     * Drops the flights of a URL that is no longer monitored.
+     */
+    public void forget(String url) {
+        String key = key(url);
+        flights.keySet().removeIf(flight -> flight.url().equals(key));
+    }
+
+    static String key(String url) {
+        if (url == null) {
+            return "";
+        }
+        try {
+            URI uri = new URI(url).normalize();
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            boolean defaultPort = port == -1 || "http".equals(scheme) && port == 80 || ("https".equals(scheme) || "tls".equals(scheme)) && port == 443;
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (defaultPort ? "" : ":" + port) + path
+                    + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * What makes two checks send the same request.
+     */
+    record FlightKey(String url, ContentRules contentRules, Duration connectTimeout, Duration readTimeout) {
+
+        static FlightKey of(ProbeRequest request) {
+            return new FlightKey(key(request.getUrl()), request.getContentRules(), request.getConnectTimeout(),
+                    request.getReadTimeout());
+        }
+    }
+
+    static class Flight {
+        private final CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        // the published answer per monitor URL
+        private final Map<String, CompletableFuture<String>> answers = new ConcurrentHashMap<>();
+        private volatile long completedAt;
+
+        private boolean isFresh(long now, long freshnessNanos) {
+            return now - completedAt < freshnessNanos;
+        }
+    }
+
+    /**
+     * One check's part in a flight.
+     *
+     * @param probes  whether this check has to send the probe and {@link #complete(ProbeResult)} the flight
+     * @param handles whether this check is the first of its monitor in the flight and has to handle the result and
+     *                {@link #answer(String)} it
+     */
+    public record Join(Flight flight, boolean probes, boolean handles, CompletableFuture<String> answered) {
+
+        public void complete(ProbeResult result) {
+            flight.completedAt = System.nanoTime();
+            flight.result.complete(result);
+        }
+
+        public CompletableFuture<ProbeResult> result() {
+            return flight.result;
+        }
+
+        /**
+         * @param message the message published for the result, {@code null} if none was
+         */
+        public void answer(String message) {
+            answered.complete(message);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.uplert.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class AlreadyExistsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AlreadyExistsException() {
+        super();
+    }
+
+    public AlreadyExistsException(final String message) {
+        super(message);
+    }
+
+}
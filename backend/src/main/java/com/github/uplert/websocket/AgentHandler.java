@@ -0,0 +1,129 @@
+package com.github.uplert.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.uplert.model.AgentMessageDTO;
+import com.github.uplert.model.AgentResultBatchDTO;
+import com.github.uplert.service.AgentHub;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Endpoint of the remote probe agents, {@code /ws/agent?agentId=...&group=...}, authenticated with
+ * {@code Authorization: Bearer <uplert.agent.token>}. The backend sends JSON text frames, see {@link AgentMessageDTO};
+ * agents upload results as gzipped JSON {@link AgentResultBatchDTO} binary frames, each acknowledged with its
+ * sequence number, and ask for their complete monitor set with a {@code resync} text frame.
+ */
+@Slf4j
+@Component
+public class AgentHandler extends AbstractWebSocketHandler {
+    private static final String AGENT = "agent";
+
+    private final AgentHub agentHub;
+    private final ObjectReader messageReader;
+    private final ObjectReader batchReader;
+    private final byte[] token;
+    private final long maxInflatedBatchBytes;
+
+    public AgentHandler(AgentHub agentHub, ObjectMapper objectMapper,
+                        @Value("${uplert.agent.token:}") String token,
+                        @Value("${uplert.agent.max-inflated-batch-bytes:16MB}") DataSize maxInflatedBatchBytes) {
+        this.agentHub = agentHub;
+        this.messageReader = objectMapper.readerFor(AgentMessageDTO.class);
+        this.batchReader = objectMapper.readerFor(AgentResultBatchDTO.class);
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.maxInflatedBatchBytes = maxInflatedBatchBytes.toBytes();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        if (token.length == 0) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Probe agents are disabled, set uplert.agent.token"));
+            return;
+        }
+        String authorization = session.getHandshakeHeaders().getFirst("Authorization");
+        byte[] presented = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring(7).getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (!MessageDigest.isEqual(token, presented)) {
+            log.warn("Probe agent connection from {} refused, bad token", session.getRemoteAddress());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Bad token"));
+            return;
+        }
+        var params = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+        String agentId = params.getFirst("agentId");
+        String group = params.getFirst("group");
+        if (agentId == null || agentId.isBlank() || group == null || group.isBlank()) {
+            session.close(CloseStatus.BAD_DATA.withReason("agentId and group are required"));
+            return;
+        }
+        // sends from the hub and acks from the upload thread must not interleave
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, 10_000, 4 * 1024 * 1024);
+        session.getAttributes().put(AGENT, agentHub.connected(agentId, group, decorated));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        AgentHub.Agent agent = (AgentHub.Agent) session.getAttributes().get(AGENT);
+        if (agent == null) {
+            return;
+        }
+        AgentMessageDTO request = messageReader.readValue(message.getPayload());
+        if ("resync".equals(request.getType())) {
+            agentHub.resync(agent);
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        AgentHub.Agent agent = (AgentHub.Agent) session.getAttributes().get(AGENT);
+        if (agent == null) {
+            return;
+        }
+        byte[] compressed = new byte[message.getPayloadLength()];
+        message.getPayload().get(compressed);
+        AgentResultBatchDTO batch;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] json = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxInflatedBatchBytes + 1));
+            if (json.length > maxInflatedBatchBytes) {
+                session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+                return;
+            }
+            batch = batchReader.readValue(json);
+        } catch (IOException e) {
+            // the agent resends it after reconnecting
+            log.warn("Unreadable result batch from probe agent {}", agent.getId(), e);
+            session.close(CloseStatus.BAD_DATA);
+            return;
+        }
+        agent.acknowledge(agentHub.ingest(agent, batch));
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Probe agent connection {} failed", session.getId(), exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        AgentHub.Agent agent = (AgentHub.Agent) session.getAttributes().get(AGENT);
+        if (agent != null) {
+            agentHub.disconnected(agent);
+        }
+    }
+}
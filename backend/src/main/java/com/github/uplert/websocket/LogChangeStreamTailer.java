@@ -0,0 +1,207 @@
+package com.github.uplert.websocket;
+
+import com.github.uplert.domain.MonitoringLog;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single MongoDB change stream on {@code monitoring_logs} that publishes new log entries to the project's
+ * {@link ResultHub#logTopic(String) log topic} as soon as they are written, by any backend node. Every node tails for
+ * its own sessions, so the resume token is checkpointed to {@code change_stream_tokens} under the node's
+ * {@code uplert.cluster.node-id}, the host name by default, and a restarted node continues where it stopped.
+ * <p>
+ * A log update carries the whole, newest first log; the entries newer than the newest one already delivered for the
+ * project are the new ones. Entries are told apart by their id, so entries with equal timestamps are not lost.
+ * <p>
+ * Change streams require a replica set; a single-node replica set is enough.
+ */
+@Slf4j
+@Component
+public class LogChangeStreamTailer {
+
+    private static final String COLLECTION = "monitoring_logs";
+    private static final String TOKENS = "change_stream_tokens";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final MongoTemplate mongoTemplate;
+    private final ResultHub resultHub;
+    private final long checkpointIntervalNanos;
+    private final String tokenId;
+    // newest entry delivered per project
+    private final Map<String, MonitoringLog.LogEntry> lastDelivered = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private Thread tailer;
+
+    public LogChangeStreamTailer(MongoTemplate mongoTemplate, ResultHub resultHub,
+                                 @Value("${uplert.change-stream.checkpoint-interval:5s}") Duration checkpointInterval,
+                                 @Value("${uplert.cluster.node-id:}") String nodeId) {
+        this.mongoTemplate = mongoTemplate;
+        this.resultHub = resultHub;
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.tokenId = COLLECTION + "@" + (nodeId == null || nodeId.isBlank() ? hostName() : nodeId);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        tailer = new Thread(this::tailLoop, "monitoring-log-change-stream");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        tailer.interrupt();
+        tailer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Subscribes a session to the project's new entries.
+     *
+     * @param newestSent the newest entry the session already received, may be {@code null}
+     */
+    public void subscribe(String projectId, WebSocketSession session, MonitoringLog.LogEntry newestSent) {
+        if (newestSent != null) {
+            // a delivery that already happened is at least as new as what the session read from the database
+            lastDelivered.putIfAbsent(projectId, newestSent);
+        }
+        resultHub.subscribe(ResultHub.logTopic(projectId), session);
+    }
+
+    private void tailLoop() {
+        long backoff = 1000;
+        while (running) {
+            try {
+                tail();
+                backoff = 1000;
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    log.warn("Resume token of {} is no longer in the oplog, starting from now", COLLECTION);
+                    tokens().deleteOne(Filters.eq("_id", new BsonString(tokenId)));
+                } else {
+                    log.error("Change stream on {} failed, is MongoDB running as a replica set?", COLLECTION, e);
+                }
+            } catch (MongoException e) {
+                log.error("Change stream on {} failed", COLLECTION, e);
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, 30_000);
+        }
+    }
+
+    private void tail() {
+        var stream = mongoTemplate.getCollection(COLLECTION)
+                .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace"))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        BsonDocument resumeToken = readToken();
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            BsonDocument checkpointed = resumeToken;
+            long lastCheckpoint = System.nanoTime();
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null && change.getFullDocument() != null) {
+                    deliver(mongoTemplate.getConverter().read(MonitoringLog.class, change.getFullDocument()));
+                }
+                BsonDocument token = cursor.getResumeToken();
+                if (token != null && !token.equals(checkpointed)
+                        && System.nanoTime() - lastCheckpoint >= checkpointIntervalNanos) {
+                    writeToken(token);
+                    checkpointed = token;
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+            BsonDocument token = cursor.getResumeToken();
+            if (token != null && !token.equals(checkpointed)) {
+                writeToken(token);
+            }
+        }
+    }
+
+    void deliver(MonitoringLog monitoringLog) {
+        String projectId = monitoringLog.getProjectId();
+        List<MonitoringLog.LogEntry> logs = monitoringLog.getLogs();
+        if (projectId == null || logs == null || logs.isEmpty()) {
+            return;
+        }
+        MonitoringLog.LogEntry previous = lastDelivered.put(projectId, logs.get(0));
+
+        String topic = ResultHub.logTopic(projectId);
+        if (resultHub.subscribers(topic) == 0) {
+            return;
+        }
+
+        // logs are stored newest first, everything before the last delivered entry is new; when that entry was
+        // sliced off all of them are
+        int fresh = previous == null ? 1 : logs.indexOf(previous);
+        if (fresh < 0) {
+            fresh = logs.size();
+        }
+        for (int i = fresh - 1; i >= 0; i--) {
+            resultHub.publishLog(topic, logs.get(i));
+        }
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return mongoTemplate.getDb().getCollection(TOKENS, BsonDocument.class);
+    }
+
+    private BsonDocument readToken() {
+        BsonDocument checkpoint = tokens().find(Filters.eq("_id", new BsonString(tokenId))).first();
+        return checkpoint != null ? checkpoint.getDocument("token") : null;
+    }
+
+    private void writeToken(BsonDocument token) {
+        try {
+            tokens().replaceOne(Filters.eq("_id", new BsonString(tokenId)),
+                    new BsonDocument("_id", new BsonString(tokenId)).append("token", token),
+                    new ReplaceOptions().upsert(true));
+        } catch (MongoException e) {
+            log.warn("Failed to checkpoint change stream resume token", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.uplert.websocket;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.github.uplert.domain.MonitoringLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary log frames for sessions that negotiate the {@value #PROTOCOL} subprotocol on {@code /ws/{projectId}/log}.
+ * <p>
+ * A frame is a CBOR map carrying any batch of entries:
+ * <pre>
+ * { "d": { "&lt;id&gt;": "&lt;url&gt;", ... },         URLs first seen in this frame, omitted when there are none
+ *   "e": [ [id, dt, dr, statusCode, timings?], ... ] }   entries, oldest first
+ * </pre>
+ * {@code dt} is the timestamp in epoch milliseconds and {@code dr} the response time in milliseconds, both as the
+ * difference to the previous entry sent on the session (starting from 0). Entries of timed probes carry a fifth
+ * element {@code [dns, connect, tls, ttfb, transfer, bytes]} with the phases in microseconds, {@code null} for phases
+ * the probe did not reach. URL ids stay valid for the lifetime of
+ * the session. The encoder is stateful and must only be used for frames that are actually sent, in order.
+ */
+public class LogFrameEncoder {
+
+    public static final String PROTOCOL = "uplert.log.cbor.v1";
+
+    private static final CBORFactory CBOR = new CBORFactory();
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private long lastTimestamp;
+    private long lastResponseTime;
+
+    public byte[] encode(List<MonitoringLog.LogEntry> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + entries.size() * 12);
+        try (CBORGenerator generator = CBOR.createGenerator(out)) {
+            generator.writeStartObject();
+
+            boolean dictionaryOpen = false;
+            int[] ids = new int[entries.size()];
+            for (int i = 0; i < ids.length; i++) {
+                String url = entries.get(i).getWebsite();
+                Integer id = dictionary.get(url);
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.put(url, id);
+                    if (!dictionaryOpen) {
+                        generator.writeFieldName("d");
+                        generator.writeStartObject();
+                        dictionaryOpen = true;
+                    }
+                    generator.writeFieldName(Integer.toString(id));
+                    generator.writeString(url);
+                }
+                ids[i] = id;
+            }
+            if (dictionaryOpen) {
+                generator.writeEndObject();
+            }
+
+            generator.writeFieldName("e");
+            generator.writeStartArray(null, ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                MonitoringLog.LogEntry entry = entries.get(i);
+                long timestamp = parseTimestamp(entry.getTimestamp());
+                long responseTime = entry.getResponseTime() != null ? entry.getResponseTime() : lastResponseTime;
+                MonitoringLog.Timings timings = entry.getTimings();
+                generator.writeStartArray(null, timings != null ? 5 : 4);
+                generator.writeNumber(ids[i]);
+                generator.writeNumber(timestamp - lastTimestamp);
+                generator.writeNumber(responseTime - lastResponseTime);
+                if (entry.getStatusCode() != null) {
+                    generator.writeNumber(entry.getStatusCode());
+                } else {
+                    generator.writeNull();
+                }
+                if (timings != null) {
+                    writeTimings(generator, timings, entry.getBytes());
+                }
+                generator.writeEndArray();
+                lastTimestamp = timestamp;
+                lastResponseTime = responseTime;
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeTimings(CBORGenerator generator, MonitoringLog.Timings timings, Long bytes) throws IOException {
+        generator.writeStartArray(null, 6);
+        writeNullable(generator, timings.getDns());
+        writeNullable(generator, timings.getConnect());
+        writeNullable(generator, timings.getTls());
+        writeNullable(generator, timings.getTtfb());
+        writeNullable(generator, timings.getTransfer());
+        writeNullable(generator, bytes);
+        generator.writeEndArray();
+    }
+
+    private static void writeNullable(CBORGenerator generator, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumber(value);
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    private long parseTimestamp(String timestamp) {
+        if (timestamp == null) {
+            return lastTimestamp;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp, TIMESTAMP).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return lastTimestamp;
+        }
+    }
+}
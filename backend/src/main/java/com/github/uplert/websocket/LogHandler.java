@@ -1,93 +1,101 @@
 package com.github.uplert.websocket;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.github.uplert.domain.MonitoringLog;
-import com.github.uplert.model.Intervals;
 import com.github.uplert.repos.MonitoringLogRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.*;
 
+/**
+ * Sends a project's stored log on connect; new entries are pushed by the {@link LogChangeStreamTailer}. All sends
+ * go through the {@link ResultHub}. Clients get JSON text frames unless they negotiate the binary
+ * {@value LogFrameEncoder#PROTOCOL} subprotocol.
+ */
+@Slf4j
 @Component
 public class LogHandler extends TextWebSocketHandler {
     private final MonitoringLogRepository monitoringLogRepository;
-    private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(10);
-    private final Map<WebSocketSession, ScheduledFuture<?>> sessionTasks = new ConcurrentHashMap<>();
-    private final Map<WebSocketSession, MonitoringLog.LogEntry> lastSentLogs = new ConcurrentHashMap<>();
+    private final LogChangeStreamTailer logChangeStreamTailer;
+    private final ResultHub resultHub;
 
-    public LogHandler(MonitoringLogRepository monitoringLogRepository) {
+    public LogHandler(MonitoringLogRepository monitoringLogRepository, LogChangeStreamTailer logChangeStreamTailer, ResultHub resultHub) {
         this.monitoringLogRepository = monitoringLogRepository;
+        this.logChangeStreamTailer = logChangeStreamTailer;
+        this.resultHub = resultHub;
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        String path = Objects.requireNonNull(session.getUri()).getPath();
-        String[] pathSegments = path.split("/");
-        String projectId = pathSegments[2];
+        String projectId = projectId(session);
 
-        System.out.println("WebSocket connection established for projectId: " + projectId);
+        log.debug("WebSocket connection established for projectId: {}", projectId);
 
         Optional<MonitoringLog> monitoringLog = monitoringLogRepository.findByProjectId(projectId);
         if (monitoringLog.isPresent()) {
-            Intervals interval = monitoringLog.get().getIntervals();
-
-            sendAllLogs(session, monitoringLog.get().getLogs());
-
-            ScheduledFuture<?> task = scheduledExecutorService.scheduleAtFixedRate(() -> {
-                try {
-                    if (!session.isOpen()) {
-                        return;
-                    }
-
-                    Optional<MonitoringLog> updatedLog = monitoringLogRepository.findByProjectId(projectId);
-                    if (updatedLog.isPresent()) {
-                        List<MonitoringLog.LogEntry> logs = updatedLog.get().getLogs();
-                        if (!logs.isEmpty()) {
-                            MonitoringLog.LogEntry latestLog = logs.get(0);
-
-                            if (!latestLog.equals(lastSentLogs.get(session))) {
-                                sendLog(session, latestLog);
-                                lastSentLogs.put(session, latestLog);
-                            }
-                        }
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }, 0, interval.getInterval(), TimeUnit.MINUTES);
-
-            sessionTasks.put(session, task);
+            List<MonitoringLog.LogEntry> logs = monitoringLog.get().getLogs();
+            resultHub.register(session);
+            resultHub.sendLogs(session, logs);
+            logChangeStreamTailer.subscribe(projectId, session, logs.isEmpty() ? null : logs.get(0));
         } else {
             session.close();
         }
     }
 
-    private void sendAllLogs(WebSocketSession session, List<MonitoringLog.LogEntry> logs) throws IOException {
-        for (MonitoringLog.LogEntry log : logs) {
-            sendLog(session, log);
-        }
+    public static String formatLog(MonitoringLog.LogEntry log) {
+        return String.format(
+                "{\"website\":\"%s\",\"timestamp\":\"%s\",\"responseTime\":%d,\"statusCode\":%d%s}",
+                log.getWebsite(), log.getTimestamp(), log.getResponseTime(), log.getStatusCode(),
+                entryFields(log)
+        );
     }
 
-    private void sendLog(WebSocketSession session, MonitoringLog.LogEntry log) throws IOException {
-        String logMessage = String.format(
-                "{\"website\":\"%s\",\"timestamp\":\"%s\",\"responseTime\":%d,\"statusCode\":%d}",
-                log.getWebsite(), log.getTimestamp(), log.getResponseTime(), log.getStatusCode()
-        );
-        session.sendMessage(new TextMessage(logMessage));
+    /**
+     * Message fields for the optional parts of an entry: the error, the probe phases in microseconds when the probe
+     * was timed, the content digest and the TLS details. Empty when the entry has none of them.
+     */
+    public static String entryFields(MonitoringLog.LogEntry log) {
+        StringBuilder fields = new StringBuilder();
+        if (log.getError() != null) {
+            fields.append(",\"error\":\"").append(JsonStringEncoder.getInstance().quoteAsString(log.getError())).append('"');
+        }
+        MonitoringLog.Timings timings = log.getTimings();
+        if (timings != null) {
+            fields.append(String.format(",\"timings\":{\"dns\":%s,\"connect\":%s,\"tls\":%s,\"ttfb\":%s,\"transfer\":%s},\"bytes\":%s",
+                    timings.getDns(), timings.getConnect(), timings.getTls(), timings.getTtfb(), timings.getTransfer(), log.getBytes()));
+        }
+        if (log.getDigest() != null) {
+            fields.append(",\"digest\":\"").append(log.getDigest()).append('"');
+            if (log.getContentChanged() != null) {
+                fields.append(",\"contentChanged\":").append(log.getContentChanged());
+            }
+        }
+        MonitoringLog.Tls tls = log.getTls();
+        if (tls != null) {
+            JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+            fields.append(String.format(",\"tls\":{\"protocol\":\"%s\",\"cipherSuite\":\"%s\",\"resumed\":%s,\"expiresAt\":\"%s\",\"daysToExpiry\":%s,\"subject\":\"%s\"",
+                    tls.getProtocol(), tls.getCipherSuite(), tls.getResumed(), tls.getExpiresAt(), tls.getDaysToExpiry(),
+                    new String(encoder.quoteAsString(tls.getSubject()))));
+            if (tls.getValidationError() != null) {
+                fields.append(",\"validationError\":\"").append(encoder.quoteAsString(tls.getValidationError())).append('"');
+            }
+            fields.append('}');
+        }
+        return fields.toString();
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        ScheduledFuture<?> task = sessionTasks.remove(session);
-        if (task != null) {
-            task.cancel(true);
-        }
-        lastSentLogs.remove(session);
-        System.out.println("WebSocket connection closed: " + session.getId());
+        resultHub.unregister(session);
+        log.debug("WebSocket connection closed: {}", session.getId());
+    }
+
+    private static String projectId(WebSocketSession session) {
+        String path = Objects.requireNonNull(session.getUri()).getPath();
+        return path.split("/")[2];
     }
 }
@@ -0,0 +1,306 @@
+package com.github.uplert.websocket;
+
+import com.github.uplert.domain.MonitoringLog;
+import com.github.uplert.model.SlowConsumerPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process fan-out of monitoring results to WebSocket sessions. A published message is serialized once and
+ * queued for every session subscribed to its topic; each session has its own bounded send queue drained by a
+ * sender task, so a slow browser only ever delays itself. When a queue is full the
+ * {@code uplert.websocket.slow-consumer-policy} decides whether the oldest message is dropped, results are
+ * coalesced to the latest per URL, or the session is disconnected.
+ * <p>
+ * Log entries are formatted as JSON text frames, or batched into binary frames by a per-session
+ * {@link LogFrameEncoder} when the session negotiated {@value LogFrameEncoder#PROTOCOL}. Binary frames are encoded
+ * when they are sent, so dropped or coalesced entries never break the delta chain.
+ * <p>
+ * All sends to a registered session must go through the hub, the underlying session does not allow concurrent
+ * sends. Messages for sessions that are not registered, e.g. late replies to a session that has closed, are dropped.
+ */
+@Slf4j
+@Component
+public class ResultHub {
+
+    private static final int MAX_FRAME_ENTRIES = 500;
+
+    private final SlowConsumerPolicy policy;
+    private final int queueCapacity;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-sender-", 0).factory());
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final Map<String, Set<Outbox>> topics = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    private final Counter disconnects;
+
+    public ResultHub(@Value("${uplert.websocket.slow-consumer-policy:DROP_OLDEST}") SlowConsumerPolicy policy,
+                     @Value("${uplert.websocket.send-queue-capacity:256}") int queueCapacity,
+                     MeterRegistry meterRegistry) {
+        this.policy = policy;
+        this.queueCapacity = queueCapacity;
+        this.meterRegistry = meterRegistry;
+        this.dropped = Counter.builder("uplert.websocket.dropped")
+                .description("Messages dropped because a session's send queue was full")
+                .register(meterRegistry);
+        this.disconnects = Counter.builder("uplert.websocket.slow.disconnects")
+                .description("Sessions closed because their send queue was full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("uplert.websocket.sessions", outboxes, Map::size)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+        Gauge.builder("uplert.websocket.send.queue.depth", this, ResultHub::queuedMessages)
+                .description("Messages waiting in the send queues of all sessions")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Topic of the probe results of a project, pushed to the {@code /ws} dashboards that work with the project.
+     */
+    public static String resultsTopic(String projectId) {
+        return "results:" + projectId;
+    }
+
+    /**
+     * Topic of the log entries of a project, pushed to {@code /ws/{projectId}/log}.
+     */
+    public static String logTopic(String projectId) {
+        return "log:" + projectId;
+    }
+
+    public void register(WebSocketSession session) {
+        outbox(session);
+    }
+
+    public void subscribe(String topic, WebSocketSession session) {
+        topics.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(outbox(session));
+    }
+
+    public void unregister(WebSocketSession session) {
+        Outbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+            topics.values().forEach(subscribers -> subscribers.remove(outbox));
+        }
+    }
+
+    public int subscribers(String topic) {
+        Set<Outbox> subscribers = topics.get(topic);
+        return subscribers != null ? subscribers.size() : 0;
+    }
+
+    /**
+     * Queues a message for a single session, e.g. a reply to one of its commands.
+     */
+    public void send(WebSocketSession session, String payload) {
+        Outbox outbox = outboxes.get(session.getId());
+        if (outbox != null) {
+            outbox.offer(null, new Pending(new TextMessage(payload), null));
+        }
+    }
+
+    /**
+     * Queues log entries for a single session, e.g. the stored log on connect. They are sent oldest first, like the
+     * entries published later.
+     *
+     * @param entries newest first, as stored
+     */
+    public void sendLogs(WebSocketSession session, List<MonitoringLog.LogEntry> entries) {
+        Outbox outbox = outboxes.get(session.getId());
+        if (outbox == null) {
+            return;
+        }
+        for (MonitoringLog.LogEntry entry : entries.reversed()) {
+            outbox.offer(null, new Pending(outbox.encoder == null ? new TextMessage(LogHandler.formatLog(entry)) : null, entry));
+        }
+    }
+
+    /**
+     * Queues a message for every subscriber of the topic.
+     *
+     * @param key the URL the message is about, results with the same key may be coalesced
+     */
+    public void publish(String topic, String key, String payload) {
+        Set<Outbox> subscribers = topics.get(topic);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        Pending message = new Pending(new TextMessage(payload), null);
+        for (Outbox outbox : subscribers) {
+            outbox.offer(key, message);
+        }
+    }
+
+    /**
+     * Queues a log entry for every subscriber of the topic, text subscribers share one formatted message.
+     */
+    public void publishLog(String topic, MonitoringLog.LogEntry entry) {
+        Set<Outbox> subscribers = topics.get(topic);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        Pending text = null;
+        Pending binary = null;
+        for (Outbox outbox : subscribers) {
+            if (outbox.encoder == null) {
+                if (text == null) {
+                    text = new Pending(new TextMessage(LogHandler.formatLog(entry)), entry);
+                }
+                outbox.offer(entry.getWebsite(), text);
+            } else {
+                if (binary == null) {
+                    binary = new Pending(null, entry);
+                }
+                outbox.offer(entry.getWebsite(), binary);
+            }
+        }
+    }
+
+    private int queuedMessages() {
+        int queued = 0;
+        for (Outbox outbox : outboxes.values()) {
+            queued += outbox.size();
+        }
+        return queued;
+    }
+
+    private Outbox outbox(WebSocketSession session) {
+        return outboxes.computeIfAbsent(session.getId(), id -> new Outbox(session));
+    }
+
+    private void disconnect(Outbox outbox) {
+        log.warn("Send queue of session {} is full, disconnecting", outbox.session.getId());
+        disconnects.increment();
+        unregister(outbox.session);
+        try {
+            outbox.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.warn("Failed to close session {}: {}", outbox.session.getId(), e.getMessage());
+        }
+    }
+
+    private record Pending(TextMessage text, MonitoringLog.LogEntry entry) {
+    }
+
+    private final class Outbox {
+        private final WebSocketSession session;
+        private final LogFrameEncoder encoder;
+        private final LinkedHashMap<Object, Pending> pending = new LinkedHashMap<>();
+        private long sequence;
+        private boolean draining;
+        private boolean closed;
+
+        private Outbox(WebSocketSession session) {
+            this.session = session;
+            this.encoder = LogFrameEncoder.PROTOCOL.equals(session.getAcceptedProtocol()) ? new LogFrameEncoder() : null;
+        }
+
+        private void offer(String key, Pending message) {
+            boolean overflow = false;
+            boolean startDrain = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                Object slot = policy == SlowConsumerPolicy.COALESCE && key != null ? key : sequence++;
+                if (!pending.containsKey(slot) && pending.size() >= queueCapacity) {
+                    if (policy == SlowConsumerPolicy.DISCONNECT) {
+                        overflow = true;
+                    } else {
+                        Iterator<Object> oldest = pending.keySet().iterator();
+                        oldest.next();
+                        oldest.remove();
+                        dropped.increment();
+                    }
+                }
+                if (!overflow) {
+                    pending.put(slot, message);
+                    if (!draining) {
+                        draining = true;
+                        startDrain = true;
+                    }
+                }
+            }
+            if (overflow) {
+                disconnect(this);
+            } else if (startDrain) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Pending next;
+                List<MonitoringLog.LogEntry> batch = null;
+                synchronized (this) {
+                    if (closed || pending.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    Iterator<Pending> oldest = pending.values().iterator();
+                    next = oldest.next();
+                    oldest.remove();
+                    if (encoder != null && next.entry() != null) {
+                        // binary sessions get every queued entry in one frame
+                        batch = new ArrayList<>();
+                        batch.add(next.entry());
+                        while (oldest.hasNext() && batch.size() < MAX_FRAME_ENTRIES) {
+                            Pending following = oldest.next();
+                            if (following.entry() == null) {
+                                break;
+                            }
+                            batch.add(following.entry());
+                            oldest.remove();
+                        }
+                    }
+                }
+                try {
+                    if (session.isOpen()) {
+                        session.sendMessage(batch != null ? new BinaryMessage(encoder.encode(batch)) : next.text());
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.warn("Failed to send message to session {}: {}", session.getId(), e.getMessage());
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return pending.size();
+        }
+
+        private synchronized void close() {
+            closed = true;
+            pending.clear();
+        }
+    }
+}
@@ -1,26 +1,55 @@
 package com.github.uplert.websocket;
 
-import com.github.uplert.model.Intervals;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.uplert.model.BatchAckDTO;
+import com.github.uplert.model.MonitorCommand;
 import com.github.uplert.model.MonitorRequestDTO;
 import com.github.uplert.service.MonitorRequestService;
-import com.google.gson.*;
+import com.github.uplert.service.MonitorRequestValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Handles the {@code /ws} dashboards. A session gets the results of the projects it names with {@code projectId}
+ * query parameters and of every project it sends a command for, not those of other users' projects.
+ */
+@Slf4j
 @Component
 public class WebSocketHandler extends TextWebSocketHandler {
+    private static final Set<String> ACTIONS = Set.of("start", "delete", "pause", "resume", "ping");
+
     private final Map<String, WebSocketSession> userSessions = new ConcurrentHashMap<>();
     private final MonitorRequestService monitorRequestService;
+    private final ResultHub resultHub;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader commandReader;
+    private final int maxBatchSize;
 
-    public WebSocketHandler(MonitorRequestService monitorRequestService) {
+    public WebSocketHandler(MonitorRequestService monitorRequestService, ResultHub resultHub, ObjectMapper objectMapper,
+                            @Value("${uplert.websocket.max-batch-size:1000}") int maxBatchSize) {
         this.monitorRequestService = monitorRequestService;
+        this.resultHub = resultHub;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+        // unknown interval names are treated as missing, like unknown fields
+        this.commandReader = objectMapper.readerFor(MonitorCommand.class)
+                .with(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL);
     }
 
     @Override
@@ -34,226 +63,183 @@ public class WebSocketHandler extends TextWebSocketHandler {
         }
 
         userSessions.put(sessionId, session);
-        monitorRequestService.startMonitorfromMonitoringSites(session);
-        session.sendMessage(new TextMessage(monitorRequestService.currentlyRunning()));
-        session.sendMessage(new TextMessage(String.format("{\"sessionId\":\"%s\"}", sessionId)));
-        System.out.println("WebSocket connection established. Session ID: " + sessionId);
+        resultHub.register(session);
+        for (String projectId : queryParams(session, "projectId")) {
+            resultHub.subscribe(ResultHub.resultsTopic(projectId), session);
+        }
+        monitorRequestService.startMonitorfromMonitoringSites();
+        resultHub.send(session, monitorRequestService.currentlyRunning());
+        resultHub.send(session, String.format("{\"sessionId\":\"%s\"}", sessionId));
+        log.debug("WebSocket connection established. Session ID: {}", sessionId);
     }
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
         String payload = (String) message.getPayload();
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
         String sessionId = extractSessionId(session);
 
         if (!userSessions.containsKey(sessionId)) {
             userSessions.put(sessionId, session);
         }
 
+        MonitorCommand command;
         try {
-            JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
-
-            if (!json.has("action")) {
-                sendErrorMessage(session, "Missing 'action' field");
-                return;
-            }
-            String action = json.get("action").getAsString();
-
-            switch (action.toLowerCase()) {
-                case "start":
-                    handleStartAction(session, json, gson);
-                    break;
-
-                case "delete":
-                    handleDeleteAction(session, json, gson);
-                    break;
-
-                case "pause":
-                    handlePauseAction(session, json, gson);
-                    break;
-
-                case "resume":
-                    handleResumeAction(session, json, gson);
-                    break;
-
-                case "ping":
-                    handleManualPing(session, json, gson);
-                    break;
-
-                default:
-                    sendErrorMessage(session, "Unknown action: " + action);
-            }
-        } catch (Exception e) {
-            sendErrorMessage(session, "Invalid payload: " + e.getMessage());
-            System.err.println("Error processing WebSocket message: " + e.getMessage());
+            command = commandReader.readValue(payload);
+        } catch (JsonProcessingException e) {
+            sendErrorMessage(session, "Invalid payload: " + e.getOriginalMessage());
+            log.warn("Error processing WebSocket message: {}", e.getMessage());
+            return;
         }
-    }
-
-    private void handlePauseAction(WebSocketSession session, JsonObject json, Gson gson) {
-        try {
-            if (!json.has("website")) {
-                sendErrorMessage(session, "Missing 'website' field in start action");
-                return;
-            }
 
-            JsonObject websiteJson = json.getAsJsonObject("website");
-            MonitorRequestDTO monitorRequest = gson.fromJson(websiteJson, MonitorRequestDTO.class);
+        if (command == null || command.getAction() == null) {
+            sendErrorMessage(session, "Missing 'action' field");
+            return;
+        }
+        String action = command.getAction().toLowerCase();
+        if (!ACTIONS.contains(action)) {
+            sendErrorMessage(session, "Unknown action: " + command.getAction());
+            return;
+        }
 
-            if (!validateMonitorRequest(monitorRequest)) {
-                sendErrorMessage(session, "Invalid website details provided");
+        if (command.getWebsites() != null) {
+            if (command.getWebsites().size() > maxBatchSize) {
+                sendErrorMessage(session, "Batch of " + command.getWebsites().size() + " websites exceeds the limit of " + maxBatchSize);
                 return;
             }
-
-            monitorRequestService.pauseMonitoring(monitorRequest);
-            session.sendMessage(new TextMessage("paused: " + monitorRequest.getUrl()));
-        } catch (Exception e) {
-            sendErrorMessage(session, "Invalid payload: " + e.getMessage());
+            handleBatch(session, action, command.getWebsites());
+            return;
+        }
+        if (command.getWebsite() == null) {
+            sendErrorMessage(session, "Missing 'website' field in " + action + " action");
+            return;
         }
-    }
-
-    private void handleResumeAction(WebSocketSession session, JsonObject json, Gson gson) {
-       try {
-           if (!json.has("website")) {
-               sendErrorMessage(session, "Missing 'website' field in start action");
-               return;
-           }
-
-           JsonObject websiteJson = json.getAsJsonObject("website");
-           MonitorRequestDTO monitorRequestURL = gson.fromJson(websiteJson, MonitorRequestDTO.class);
-
-           monitorRequestService.resumeMonitoring(monitorRequestURL.getUrl(), session);
-           session.sendMessage(new TextMessage("Monitoring resumed for: " + monitorRequestURL.getUrl()));
-       } catch (Exception e) {
-           sendErrorMessage(session, "Invalid payload: " + e.getMessage());
-       }
-    }
 
-    private void handleStartAction(WebSocketSession session, JsonObject json, Gson gson) {
+        MonitorRequestDTO website = command.getWebsite();
         try {
-            if (!json.has("website")) {
-                sendErrorMessage(session, "Missing 'website' field in start action");
-                return;
-            }
-
-            JsonObject websiteJson = json.getAsJsonObject("website");
-            MonitorRequestDTO monitorRequest = gson.fromJson(websiteJson, MonitorRequestDTO.class);
-
-            if (!validateMonitorRequest(monitorRequest)) {
-                sendErrorMessage(session, "Invalid website details provided");
-                return;
+            String ack = apply(session, action, website);
+            if (ack != null) {
+                resultHub.send(session, ack);
             }
-
-            monitorRequestService.startMonitoring(monitorRequest, session);
-            session.sendMessage(new TextMessage("Monitoring started for: " + monitorRequest.getUrl()));
+        } catch (NotRunningException e) {
+            // a plain reply, not an error
+            resultHub.send(session, e.getMessage());
         } catch (Exception e) {
-            sendErrorMessage(session, "Failed to start monitoring: " + e.getMessage());
-            System.err.println("Error in handleStartAction: " + e.getMessage());
+            sendErrorMessage(session, "Failed to " + action + " monitoring: " + e.getMessage());
+            log.warn("Error in {} action: {}", action, e.getMessage());
         }
     }
 
-    private void handleDeleteAction(WebSocketSession session, JsonObject json, Gson gson) {
-        try {
-            String sessionId = extractSessionId(session);
-            if (!json.has("website")) {
-                sendErrorMessage(session, "Missing 'website' field in stop action");
-                return;
-            }
-
-            JsonObject websiteJson = json.getAsJsonObject("website");
-            MonitorRequestDTO monitorRequest = gson.fromJson(websiteJson, MonitorRequestDTO.class);
-
-            System.out.println(websiteJson);
-            synchronized (userSessions.get(sessionId)) {
-                monitorRequestService.deleteMonitoringEntry(monitorRequest, session);
+    /**
+     * Applies one batch command to every website and replies with a single {@link BatchAckDTO}.
+     */
+    private void handleBatch(WebSocketSession session, String action, List<MonitorRequestDTO> websites) throws IOException {
+        List<String> succeeded = new ArrayList<>();
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (MonitorRequestDTO website : websites) {
+            String url = website != null ? website.getUrl() : null;
+            try {
+                apply(session, action, website);
+                succeeded.add(url);
+            } catch (Exception e) {
+                failed.put(String.valueOf(url), e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
             }
-            session.sendMessage(new TextMessage("Monitoring stopped for: " + monitorRequest.getUrl()));
-        } catch (Exception e) {
-            sendErrorMessage(session, "Failed to stop monitoring: " + e.getMessage());
-            System.err.println("Error in handleDeleteAction: " + e.getMessage());
         }
+        resultHub.send(session, objectMapper.writeValueAsString(new BatchAckDTO(action, succeeded, failed)));
     }
 
-    private void handleManualPing(WebSocketSession session, JsonObject json, Gson gson) {
-        try {
-            if (!json.has("website")) {
-                sendErrorMessage(session, "Missing 'website' field in start action");
-                return;
-            }
-
-            JsonObject websiteJson = json.getAsJsonObject("website");
-            MonitorRequestDTO monitorRequest = gson.fromJson(websiteJson, MonitorRequestDTO.class);
-
-            if (!validateMonitorRequest(monitorRequest)) {
-                sendErrorMessage(session, "Invalid website details provided");
-                return;
-            }
-
-            monitorRequestService.manualPing(monitorRequest, session);
-        } catch (Exception e) {
-            sendErrorMessage(session, "Failed to start monitoring: " + e.getMessage());
-            System.err.println("Error in handleStartAction: " + e.getMessage());
+    /**
+     * @return the acknowledgement for the single-website form of the command, {@code null} if there is none
+     */
+    private String apply(WebSocketSession session, String action, MonitorRequestDTO website) {
+        if (website == null || website.getUrl() == null) {
+            throw new IllegalArgumentException("Missing website url");
+        }
+        if (website.getProjectId() != null && !website.getProjectId().isEmpty()) {
+            resultHub.subscribe(ResultHub.resultsTopic(website.getProjectId()), session);
+        }
+        switch (action) {
+            case "start":
+                requireValid(website);
+                monitorRequestService.startMonitoring(website);
+                return "Monitoring started for: " + website.getUrl();
+
+            case "delete":
+                monitorRequestService.deleteMonitoringEntry(website);
+                return "Monitoring stopped for: " + website.getUrl();
+
+            case "pause":
+                requireValid(website);
+                monitorRequestService.pauseMonitoring(website);
+                return "paused: " + website.getUrl();
+
+            case "resume":
+                monitorRequestService.resumeMonitoring(website.getUrl());
+                return "Monitoring resumed for: " + website.getUrl();
+
+            case "ping":
+                requireValid(website);
+                if (!monitorRequestService.manualPing(website, answer -> resultHub.send(session, answer))) {
+                    throw new NotRunningException(website.getUrl());
+                }
+                // the result itself is the reply
+                return null;
+
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
         }
     }
 
-    private void sendErrorMessage(WebSocketSession session, String errorMessage) {
-        try {
-            session.sendMessage(new TextMessage("Error: " + errorMessage));
-        } catch (IOException e) {
-            System.err.println("Failed to send error message to client: " + e.getMessage());
+    /**
+     * Ping of a website that is not monitored, answered with the plain text clients have always received.
+     */
+    private static final class NotRunningException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private NotRunningException(String url) {
+            super("Website monitoring is not running for URL: " + url);
         }
     }
 
-    private boolean validateMonitorRequest(MonitorRequestDTO request) {
-//        if (request == null || request.getUserId() == null || request.getUserId() <= 0) {
-//            return false;
-//        }
-        if (request.getProjectId() == null || request.getProjectId().isEmpty()) {
-            return false;
-        }
-        if (request.getUrl() == null || request.getUrl().isEmpty()) {
-            return false;
-        }
-        if (request.getInterval() == null) {
-            return false;
+    private void requireValid(MonitorRequestDTO website) {
+        if (MonitorRequestValidator.validate(website) != null) {
+            throw new IllegalArgumentException("Invalid website details provided");
         }
-        return isValidUrl(request.getUrl());
     }
 
-    private boolean isValidUrl(String url) {
-        try {
-            new java.net.URL(url).toURI();
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    private void sendErrorMessage(WebSocketSession session, String errorMessage) {
+        resultHub.send(session, "Error: " + errorMessage);
     }
 
-//    @Override
-//    public void afterConnectionClosed(WebSocketSession session, org.springframework.web.socket.CloseStatus status) {
-//        String sessionId = extractSessionId(session);
-//        if (sessionId != null) {
-//            userSessions.remove(sessionId);
-//            System.out.println("WebSocket connection closed. SessionId: " + sessionId);
-//        }
-//    }
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        resultHub.unregister(session);
+        userSessions.values().remove(session);
+        log.debug("WebSocket connection closed. Session ID: {}", session.getId());
+    }
 
     private String extractSessionId(WebSocketSession session) {
+        List<String> sessionIds = queryParams(session, "sessionId");
+        return sessionIds.isEmpty() ? "" : sessionIds.get(0);
+    }
+
+    private static List<String> queryParams(WebSocketSession session, String name) {
         if (session.getUri() == null) {
-            return "";
+            return List.of();
         }
 
         String query = session.getUri().getQuery();
         if (query == null || query.isEmpty()) {
-            return "";
+            return List.of();
         }
 
+        List<String> values = new ArrayList<>();
         for (String param : query.split("&")) {
             String[] keyValue = param.split("=");
-            if (keyValue.length == 2 && "sessionId".equals(keyValue[0])) {
-                return keyValue[1];
+            if (keyValue.length == 2 && name.equals(keyValue[0])) {
+                values.add(keyValue[1]);
             }
         }
-        return "";
+        return values;
     }
 
 }
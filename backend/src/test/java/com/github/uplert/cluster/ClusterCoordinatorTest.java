@@ -0,0 +1,163 @@
+package com.github.uplert.cluster;
+
+import com.github.uplert.domain.MonitoringSites;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Lease handoff between nodes sharing an in-memory Mongo server, with the heartbeats driven by the test.
+ */
+class ClusterCoordinatorTest {
+
+    private static final int PARTITIONS = 16;
+
+    private final List<MonitoringSites> sites = new ArrayList<>();
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "uplert");
+        // one monitor in every partition
+        for (int i = 0; sites.size() < PARTITIONS; i++) {
+            String id = "monitor-" + i;
+            if (ConsistentHashRing.partition(id, PARTITIONS) == sites.size()) {
+                MonitoringSites site = new MonitoringSites();
+                site.setId(id);
+                sites.add(site);
+                i = -1;
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void requiresARegistryRefreshInterval() {
+        assertThatThrownBy(() -> new ClusterCoordinator(mongoTemplate, new SimpleMeterRegistry(), "a", PARTITIONS, 16,
+                Duration.ofSeconds(1), Duration.ofSeconds(3), Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("uplert.registry.refresh-interval");
+    }
+
+    @Test
+    void joiningNodeTakesOverItsPartitionsOnlyOnceReleased() {
+        ClusterCoordinator a = node("a", Duration.ofSeconds(1));
+        ClusterCoordinator b = node("b", Duration.ofSeconds(1));
+
+        a.tick();
+        assertThat(owned(a)).hasSize(PARTITIONS);
+
+        // a still holds the leases of the partitions the ring now gives to b
+        b.tick();
+        assertThat(owned(b)).isEmpty();
+        assertDisjoint(a, b);
+
+        a.tick();
+        Set<Integer> keptByA = owned(a);
+        assertThat(keptByA).isNotEmpty().hasSizeLessThan(PARTITIONS);
+        assertDisjoint(a, b);
+
+        b.tick();
+        assertDisjoint(a, b);
+        assertThat(owned(b)).isEqualTo(complement(keptByA));
+
+        // stable from here on
+        a.tick();
+        b.tick();
+        assertThat(owned(a)).isEqualTo(keptByA);
+        assertThat(owned(b)).isEqualTo(complement(keptByA));
+    }
+
+    @Test
+    void stoppedNodeHandsItsPartitionsOverRightAway() {
+        ClusterCoordinator a = node("a", Duration.ofSeconds(1));
+        ClusterCoordinator b = node("b", Duration.ofSeconds(1));
+        settle(a, b);
+        assertThat(owned(b)).isNotEmpty();
+
+        b.stop();
+        assertThat(owned(b)).isEmpty();
+
+        a.tick();
+        assertThat(owned(a)).hasSize(PARTITIONS);
+    }
+
+    @Test
+    void deadNodeStopsProbingAndItsLeasesAreTakenOnceExpired() throws InterruptedException {
+        Duration heartbeat = Duration.ofMillis(500);
+        ClusterCoordinator a = node("a", heartbeat);
+        ClusterCoordinator b = node("b", heartbeat);
+        settle(a, b);
+        assertThat(owned(b)).isNotEmpty();
+
+        // b stops heartbeating, a renews its own leases meanwhile
+        Thread.sleep(heartbeat.toMillis());
+        a.tick();
+        assertThat(owned(a)).hasSizeLessThan(PARTITIONS);
+        Thread.sleep(heartbeat.multipliedBy(3).toMillis());
+
+        assertThat(owned(b)).isEmpty();
+        a.tick();
+        assertThat(owned(a)).hasSize(PARTITIONS);
+    }
+
+    private ClusterCoordinator node(String id, Duration heartbeat) {
+        ClusterCoordinator node = new ClusterCoordinator(mongoTemplate, new SimpleMeterRegistry(), id, PARTITIONS, 16,
+                heartbeat, heartbeat.multipliedBy(3), Duration.ofSeconds(30));
+        return node;
+    }
+
+    private void settle(ClusterCoordinator a, ClusterCoordinator b) {
+        a.tick();
+        b.tick();
+        a.tick();
+        b.tick();
+        assertThat(owned(a).size() + owned(b).size()).isEqualTo(PARTITIONS);
+    }
+
+    private Set<Integer> owned(ClusterCoordinator node) {
+        return IntStream.range(0, PARTITIONS)
+                .filter(partition -> node.owns(sites.get(partition)))
+                .boxed()
+                .collect(Collectors.toSet());
+    }
+
+    private void assertDisjoint(ClusterCoordinator a, ClusterCoordinator b) {
+        Set<Integer> both = new HashSet<>(owned(a));
+        both.retainAll(owned(b));
+        assertThat(both).as("partitions probed by both nodes").isEmpty();
+    }
+
+    private static Set<Integer> complement(Set<Integer> partitions) {
+        return IntStream.range(0, PARTITIONS)
+                .filter(partition -> !partitions.contains(partition))
+                .boxed()
+                .collect(Collectors.toSet());
+    }
+}
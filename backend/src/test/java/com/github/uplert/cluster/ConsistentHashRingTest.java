@@ -0,0 +1,84 @@
+package com.github.uplert.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int PARTITIONS = 256;
+    private static final int VIRTUAL_NODES = 64;
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertThat(new ConsistentHashRing(List.of(), VIRTUAL_NODES).owner(0)).isNull();
+    }
+
+    @Test
+    void ownersDoNotDependOnTheOrderOfTheNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), VIRTUAL_NODES);
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertThat(reordered.owner(partition)).isEqualTo(ring.owner(partition));
+        }
+    }
+
+    @Test
+    void spreadsPartitionsOverAllNodes() {
+        Map<String, Integer> counts = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), VIRTUAL_NODES));
+
+        assertThat(counts).containsOnlyKeys("a", "b", "c", "d");
+        // 64 partitions each on average
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(32, 96));
+    }
+
+    @Test
+    void joiningNodeOnlyTakesPartitionsOverFromOthers() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!after.owner(partition).equals(before.owner(partition))) {
+                assertThat(after.owner(partition)).isEqualTo("d");
+                moved++;
+            }
+        }
+        // a quarter of the partitions on average
+        assertThat(moved).isBetween(PARTITIONS / 8, PARTITIONS / 2);
+    }
+
+    @Test
+    void leavingNodeOnlyHandsOnItsOwnPartitions() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "c"), VIRTUAL_NODES);
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!"b".equals(before.owner(partition))) {
+                assertThat(after.owner(partition)).isEqualTo(before.owner(partition));
+            }
+        }
+    }
+
+    @Test
+    void partitionsAreStableAndInRange() {
+        for (int i = 0; i < 1_000; i++) {
+            int partition = ConsistentHashRing.partition("monitor-" + i, PARTITIONS);
+            assertThat(partition).isBetween(0, PARTITIONS - 1);
+            assertThat(ConsistentHashRing.partition("monitor-" + i, PARTITIONS)).isEqualTo(partition);
+        }
+    }
+
+    private static Map<String, Integer> owners(ConsistentHashRing ring) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            counts.merge(ring.owner(partition), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
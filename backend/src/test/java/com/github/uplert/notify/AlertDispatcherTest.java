@@ -0,0 +1,194 @@
+package com.github.uplert.notify;
+
+import com.github.uplert.model.IncidentState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class AlertDispatcherTest {
+
+    private AlertDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void batchesAlertsQueuedWhileWaitingForTheRateLimit() {
+        // one delivery every 500 ms
+        StubNotifier notifier = new StubNotifier(10, 120);
+        start(notifier);
+
+        dispatcher.dispatch(alert("a"));
+        await().until(() -> notifier.batches.size() == 1);
+        dispatcher.dispatch(alert("b"));
+        dispatcher.dispatch(alert("c"));
+        dispatcher.dispatch(alert("d"));
+
+        await().until(() -> notifier.batches.size() == 2);
+        assertThat(notifier.batches).containsExactly(List.of("a"), List.of("b", "c", "d"));
+        assertThat(Duration.between(notifier.sentAt.get(0), notifier.sentAt.get(1)))
+                .isGreaterThanOrEqualTo(Duration.ofMillis(450));
+    }
+
+    @Test
+    void splitsBatchesAtTheNotifiersLimit() {
+        StubNotifier notifier = new StubNotifier(2, 60_000);
+        dispatcher = dispatcher(notifier, 5);
+        for (String url : List.of("a", "b", "c", "d", "e")) {
+            dispatcher.dispatch(alert(url));
+        }
+        dispatcher.start();
+
+        await().until(() -> notifier.batches.size() == 3);
+        assertThat(notifier.batches).containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+    }
+
+    @Test
+    void retriesRetryableFailures() {
+        StubNotifier notifier = new StubNotifier(10, 60_000);
+        notifier.outcomes.add(batch -> new NotificationException("busy", true, null));
+        start(notifier);
+
+        dispatcher.dispatch(alert("a"));
+
+        await().until(() -> notifier.batches.size() == 2);
+        assertThat(notifier.batches).containsExactly(List.of("a"), List.of("a"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws InterruptedException {
+        StubNotifier notifier = new StubNotifier(10, 60_000);
+        for (int i = 0; i < 5; i++) {
+            notifier.outcomes.add(batch -> new IllegalStateException("down"));
+        }
+        dispatcher = dispatcher(notifier, 3);
+        dispatcher.start();
+
+        dispatcher.dispatch(alert("a"));
+
+        await().until(() -> notifier.batches.size() == 3);
+        Thread.sleep(100);
+        assertThat(notifier.batches).hasSize(3);
+    }
+
+    @Test
+    void dropsBatchesOnNonRetryableFailures() throws InterruptedException {
+        StubNotifier notifier = new StubNotifier(10, 60_000);
+        notifier.outcomes.add(batch -> new NotificationException("bad request", false, null));
+        start(notifier);
+
+        dispatcher.dispatch(alert("a"));
+        await().until(() -> notifier.batches.size() == 1);
+        Thread.sleep(100);
+        dispatcher.dispatch(alert("b"));
+
+        await().until(() -> notifier.batches.size() == 2);
+        assertThat(notifier.batches).containsExactly(List.of("a"), List.of("b"));
+    }
+
+    @Test
+    void retriesOnlyTheUndeliveredPartOfABatch() {
+        StubNotifier notifier = new StubNotifier(10, 60_000);
+        notifier.outcomes.add(batch -> new NotificationException("queue full", true, null, batch.subList(1, batch.size())));
+        dispatcher = dispatcher(notifier, 5);
+        dispatcher.dispatch(alert("a"));
+        dispatcher.dispatch(alert("b"));
+        dispatcher.dispatch(alert("c"));
+        dispatcher.start();
+
+        await().until(() -> notifier.batches.size() == 2);
+        assertThat(notifier.batches).containsExactly(List.of("a", "b", "c"), List.of("b", "c"));
+    }
+
+    @Test
+    void cancelsSendsThatTimeOut() {
+        List<CompletableFuture<Void>> sends = new CopyOnWriteArrayList<>();
+        StubNotifier notifier = new StubNotifier(10, 60_000) {
+            @Override
+            public CompletableFuture<Void> send(List<Alert> alerts) {
+                super.send(alerts);
+                CompletableFuture<Void> send = new CompletableFuture<>();
+                sends.add(send);
+                return send;
+            }
+        };
+        dispatcher = new AlertDispatcher(List.of(notifier), new SimpleMeterRegistry(), 100, 2, Duration.ofMillis(10),
+                Duration.ofMillis(20), Duration.ofMillis(100));
+        dispatcher.start();
+
+        dispatcher.dispatch(alert("a"));
+
+        await().until(() -> sends.size() == 2 && sends.get(1).isDone());
+        assertThat(sends).allMatch(CompletableFuture::isCancelled);
+    }
+
+    private void start(Notifier notifier) {
+        dispatcher = dispatcher(notifier, 5);
+        dispatcher.start();
+    }
+
+    private static AlertDispatcher dispatcher(Notifier notifier, int maxAttempts) {
+        return new AlertDispatcher(List.of(notifier), new SimpleMeterRegistry(), 100, maxAttempts,
+                Duration.ofMillis(10), Duration.ofMillis(20), Duration.ofSeconds(5));
+    }
+
+    private static Alert alert(String url) {
+        return new Alert(url, "p", IncidentState.SUSPECT, IncidentState.DOWN, 503, 100L, null, Instant.now());
+    }
+
+    /**
+     * Records every delivery and fails the first ones with the queued outcomes.
+     */
+    private static class StubNotifier implements Notifier {
+        private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        private final List<Instant> sentAt = new CopyOnWriteArrayList<>();
+        private final Queue<Function<List<Alert>, RuntimeException>> outcomes = new ConcurrentLinkedQueue<>();
+        private final int maxBatchSize;
+        private final int ratePerMinute;
+
+        private StubNotifier(int maxBatchSize, int ratePerMinute) {
+            this.maxBatchSize = maxBatchSize;
+            this.ratePerMinute = ratePerMinute;
+        }
+
+        @Override
+        public String name() {
+            return "stub";
+        }
+
+        @Override
+        public CompletableFuture<Void> send(List<Alert> alerts) {
+            List<String> urls = new ArrayList<>();
+            alerts.forEach(alert -> urls.add(alert.getUrl()));
+            sentAt.add(Instant.now());
+            batches.add(urls);
+            Function<List<Alert>, RuntimeException> outcome = outcomes.poll();
+            return outcome == null ? CompletableFuture.completedFuture(null) : CompletableFuture.failedFuture(outcome.apply(alerts));
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return maxBatchSize;
+        }
+
+        @Override
+        public int ratePerMinute() {
+            return ratePerMinute;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.uplert.notify;
+
+import com.github.uplert.domain.User;
+import com.github.uplert.model.EmailDetails;
+import com.github.uplert.model.IncidentState;
+import com.github.uplert.repos.UserRepository;
+import com.github.uplert.service.EmailService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailNotifierTest {
+
+    private final EmailService emailService = mock(EmailService.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final EmailNotifier notifier = new EmailNotifier(emailService, userRepository, 600);
+
+    @Test
+    void readsTheRecipientsFromTheCacheOnly() {
+        recipients("ops@example.com");
+        when(emailService.sendEmail(any())).thenReturn("Email queued");
+        notifier.refreshRecipients();
+
+        assertThat(notifier.send(List.of(alert("a"), alert("b")))).isCompleted();
+        assertThat(notifier.send(List.of(alert("c")))).isCompleted();
+        verify(userRepository).findById(any());
+    }
+
+    @Test
+    void retriesUntilTheRecipientsAreLoaded() {
+        NotificationException failure = failure(notifier.send(List.of(alert("a"))));
+
+        assertThat(failure.isRetryable()).isTrue();
+        verify(emailService, never()).sendEmail(any());
+    }
+
+    @Test
+    void dropsAlertsWithoutRecipients() {
+        recipients();
+        notifier.refreshRecipients();
+
+        assertThat(failure(notifier.send(List.of(alert("a")))).isRetryable()).isFalse();
+    }
+
+    @Test
+    void reportsTheAlertsThatDidNotFitIntoTheQueue() {
+        recipients("ops@example.com");
+        when(emailService.sendEmail(any())).thenReturn("Email queued", "Email queued", "Error while Sending Mail");
+        notifier.refreshRecipients();
+        List<Alert> alerts = List.of(alert("a"), alert("b"), alert("c"), alert("d"));
+
+        NotificationException failure = failure(notifier.send(alerts));
+
+        assertThat(failure.isRetryable()).isTrue();
+        assertThat(failure.getUndelivered()).containsExactly(alerts.get(2), alerts.get(3));
+    }
+
+    @Test
+    void retriesTheWholeBatchWhenNothingWasQueued() {
+        recipients("ops@example.com");
+        when(emailService.sendEmail(any())).thenReturn("Error while Sending Mail");
+        notifier.refreshRecipients();
+
+        NotificationException failure = failure(notifier.send(List.of(alert("a"), alert("b"))));
+
+        assertThat(failure.isRetryable()).isTrue();
+        assertThat(failure.getUndelivered()).isNull();
+    }
+
+    @Test
+    void marksWarningsSoTheyAreNotMailedAsOutages() {
+        recipients("ops@example.com");
+        when(emailService.sendEmail(any())).thenReturn("Email queued");
+        notifier.refreshRecipients();
+        Alert warning = new Alert("a", "p", IncidentState.UP, IncidentState.UP, null, null,
+                "Certificate expires in 7 days", Instant.now());
+
+        assertThat(notifier.send(List.of(warning, alert("b")))).isCompleted();
+        ArgumentCaptor<EmailDetails> mails = ArgumentCaptor.forClass(EmailDetails.class);
+        verify(emailService, times(2)).sendEmail(mails.capture());
+        assertThat(mails.getAllValues()).extracting(EmailDetails::isWarning).containsExactly(true, false);
+        assertThat(mails.getAllValues().get(0).getMsgBody().getMessage()).isEqualTo("Certificate expires in 7 days");
+    }
+
+    @Test
+    void marksRecoveriesSoTheyAreNotMailedAsOutages() {
+        recipients("ops@example.com");
+        when(emailService.sendEmail(any())).thenReturn("Email queued");
+        notifier.refreshRecipients();
+        Alert recovery = new Alert("a", "p", IncidentState.RECOVERING, IncidentState.UP, 200, 80L, null, Instant.now());
+
+        assertThat(notifier.send(List.of(recovery, alert("b")))).isCompleted();
+        ArgumentCaptor<EmailDetails> mails = ArgumentCaptor.forClass(EmailDetails.class);
+        verify(emailService, times(2)).sendEmail(mails.capture());
+        assertThat(mails.getAllValues()).extracting(EmailDetails::isRecovery).containsExactly(true, false);
+        assertThat(mails.getAllValues().get(0).getSubject()).isEqualTo("Resolved: a is back up");
+        assertThat(mails.getAllValues().get(0).getMsgBody().getStatusCode()).isEqualTo("200");
+    }
+
+    private void recipients(String... emails) {
+        User user = new User();
+        user.setEmails(List.of(emails));
+        when(userRepository.findById(any())).thenReturn(Optional.of(user));
+    }
+
+    private static NotificationException failure(CompletableFuture<Void> future) {
+        Throwable thrown = catchThrowable(future::get);
+        assertThat(thrown).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(NotificationException.class);
+        return (NotificationException) thrown.getCause();
+    }
+
+    private static Alert alert(String url) {
+        return new Alert(url, "p", IncidentState.SUSPECT, IncidentState.DOWN, 503, 100L, null, Instant.now());
+    }
+}
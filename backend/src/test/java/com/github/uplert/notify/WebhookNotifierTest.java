@@ -0,0 +1,53 @@
+package com.github.uplert.notify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.model.IncidentState;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class WebhookNotifierTest {
+
+    private final HttpClient httpClient = mock(HttpClient.class);
+    private final CompletableFuture<HttpResponse<Void>> exchange = new CompletableFuture<>();
+    private final WebhookNotifier notifier = new GenericWebhookNotifier("https://hooks.example.com/alerts", httpClient,
+            new ObjectMapper().findAndRegisterModules(), Duration.ofSeconds(3), 10, 60);
+
+    @Test
+    void boundsTheRequestByTheTimeout() {
+        doReturn(exchange).when(httpClient).sendAsync(any(), any());
+
+        notifier.send(List.of(alert()));
+
+        ArgumentCaptor<HttpRequest> request = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).sendAsync(request.capture(), any());
+        assertThat(request.getValue().timeout()).contains(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void cancelsTheExchangeWhenTheSendIsCancelled() {
+        doReturn(exchange).when(httpClient).sendAsync(any(), any());
+
+        notifier.send(List.of(alert())).cancel(true);
+
+        assertThat(exchange).isCancelled();
+    }
+
+    private static Alert alert() {
+        return new Alert("https://example.com", "p", IncidentState.SUSPECT, IncidentState.DOWN, 503, 100L, null,
+                Instant.now());
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.uplert.probe;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentScannerTest {
+
+    @Test
+    void findsKeywordsSplitAtEveryPosition() {
+        ContentRules rules = rules(List.of("status: healthy"), List.of());
+        byte[] body = "<p>status: healthy</p>".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            assertThat(scan(rules, body, split).isPassed()).as("split at %d", split).isTrue();
+        }
+    }
+
+    @Test
+    void findsKeywordsFedOneByteAtATime() {
+        ContentRules rules = rules(List.of("healthy", "ok"), List.of());
+        ContentVerdict verdict = scanInChunks(rules, "all ok and healthy".getBytes(StandardCharsets.UTF_8), 1);
+
+        assertThat(verdict.isPassed()).isTrue();
+    }
+
+    @Test
+    void followsFailureLinksAcrossChunks() {
+        // "abab" fails over to "ab" when "c" does not follow, the keyword then completes in the next chunk
+        ContentRules rules = rules(List.of("abac"), List.of());
+        byte[] body = "xxababacxx".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            assertThat(scan(rules, body, split).isPassed()).as("split at %d", split).isTrue();
+        }
+    }
+
+    @Test
+    void findsOverlappingKeywordsAcrossChunks() {
+        ContentRules rules = rules(List.of("he", "she", "hers"), List.of());
+        byte[] body = "ushers".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            assertThat(scan(rules, body, split).isPassed()).as("split at %d", split).isTrue();
+        }
+    }
+
+    @Test
+    void reportsForbiddenKeywordsSplitAcrossChunks() {
+        ContentRules rules = rules(List.of(), List.of("Internal Server Error"));
+        byte[] body = "<h1>Internal Server Error</h1>".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            ContentVerdict verdict = scan(rules, body, split);
+            assertThat(verdict.isPassed()).isFalse();
+            assertThat(verdict.getReason()).isEqualTo("Forbidden keyword found: Internal Server Error");
+        }
+    }
+
+    @Test
+    void matchesMultiByteKeywordsSplitInsideACharacter() {
+        ContentRules rules = rules(List.of("café ☕"), List.of());
+        byte[] body = "le café ☕ est ouvert".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            assertThat(scan(rules, body, split).isPassed()).as("split at %d", split).isTrue();
+        }
+    }
+
+    @Test
+    void doesNotMatchAcrossUnrelatedChunks() {
+        ContentRules rules = rules(List.of("healthy"), List.of());
+        ContentScanner scanner = rules.newScanner();
+        scanner.feed(ByteBuffer.wrap("heal".getBytes(StandardCharsets.UTF_8)));
+        scanner.feed(ByteBuffer.wrap("xthy".getBytes(StandardCharsets.UTF_8)));
+
+        ContentVerdict verdict = scanner.finish(true);
+        assertThat(verdict.isPassed()).isFalse();
+        assertThat(verdict.getReason()).isEqualTo("Required keyword not found: healthy");
+    }
+
+    @Test
+    void matchesTheRegexAcrossChunksAndSplitCharacters() {
+        ContentRules rules = ContentRules.compile(null, null, "version \"\\d+\\.\\d+\" ✓", false, 1024);
+        byte[] body = "build: version \"4.12\" ✓ deployed".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= body.length; split++) {
+            assertThat(scan(rules, body, split).isPassed()).as("split at %d", split).isTrue();
+        }
+    }
+
+    @Test
+    void digestDoesNotDependOnTheChunking() {
+        ContentRules rules = ContentRules.compile(null, null, null, true, 1024);
+        byte[] body = "the same body, chunked differently".getBytes(StandardCharsets.UTF_8);
+        String whole = scan(rules, body, body.length).getDigest();
+
+        assertThat(whole).isNotNull();
+        assertThat(scanInChunks(rules, body, 1).getDigest()).isEqualTo(whole);
+        assertThat(scanInChunks(rules, body, 7).getDigest()).isEqualTo(whole);
+    }
+
+    @Test
+    void ignoresKeywordsPastTheByteLimit() {
+        ContentRules rules = ContentRules.compile(List.of("healthy"), null, null, false, 10);
+        ContentVerdict verdict = scanInChunks(rules, "0123456healthy".getBytes(StandardCharsets.UTF_8), 4);
+
+        assertThat(verdict.isPassed()).isFalse();
+        assertThat(verdict.isTruncated()).isTrue();
+        assertThat(verdict.getBytes()).isEqualTo(10);
+    }
+
+    private static ContentRules rules(List<String> required, List<String> forbidden) {
+        return ContentRules.compile(required, forbidden, null, false, ContentRules.DEFAULT_MAX_BYTES);
+    }
+
+    private static ContentVerdict scan(ContentRules rules, byte[] body, int split) {
+        ContentScanner scanner = rules.newScanner();
+        if (!scanner.feed(ByteBuffer.wrap(body, 0, split))) {
+            scanner.feed(ByteBuffer.wrap(body, split, body.length - split));
+        }
+        return scanner.finish(true);
+    }
+
+    private static ContentVerdict scanInChunks(ContentRules rules, byte[] body, int chunkSize) {
+        ContentScanner scanner = rules.newScanner();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            if (scanner.feed(ByteBuffer.wrap(body, offset, Math.min(chunkSize, body.length - offset)))) {
+                break;
+            }
+        }
+        return scanner.finish(true);
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.uplert.probe;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpProbeEngineTest {
+
+    private final HttpProbeEngine engine = new HttpProbeEngine(new SimpleMeterRegistry(), Duration.ofSeconds(2),
+            Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1, 2, HttpClient.Redirect.NORMAL);
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/health", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().set("Location", "/health");
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        server.createContext("/stalled", exchange -> {
+            // the headers arrive in time, the rest of the body never does
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            body.write("still loading".getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                // the test is over
+            }
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void boundsTheWholeExchangeByTheConnectAndReadTimeouts() {
+        ProbeResult result = engine.probe(new ProbeRequest(base + "/stalled", Duration.ofMillis(200),
+                Duration.ofMillis(300), rules("ready"))).join();
+
+        assertThat(result.getError()).isEqualTo("Timed out: no complete response after 500 ms");
+        assertThat(result.getStatusCode()).isNull();
+        assertThat(result.getResponseTime()).isBetween(500L, 2_000L);
+    }
+
+    @Test
+    void followsRedirects() {
+        ProbeResult result = engine.probe(ProbeRequest.of(base + "/moved")).join();
+
+        assertThat(result.getError()).isNull();
+        assertThat(result.getStatusCode()).isEqualTo(204);
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    void reportsTheRedirectWhenNotFollowing() {
+        HttpProbeEngine neverFollow = new HttpProbeEngine(new SimpleMeterRegistry(), Duration.ofSeconds(2),
+                Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1, 1, HttpClient.Redirect.NEVER);
+        try {
+            ProbeResult result = neverFollow.probe(ProbeRequest.of(base + "/moved")).join();
+
+            assertThat(result.getStatusCode()).isEqualTo(301);
+            assertThat(clientPorts).isEmpty();
+        } finally {
+            neverFollow.shutdown();
+        }
+    }
+
+    @Test
+    void sharesOneClientPerConnectTimeout() {
+        Duration fast = Duration.ofSeconds(1);
+        Duration slow = Duration.ofSeconds(3);
+
+        probe(fast);
+        probe(fast);
+        probe(slow);
+
+        // probes with the same connect timeout reuse the pooled keep-alive connection, others get their own client
+        assertThat(clientPorts).hasSize(3);
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+        assertThat(clientPorts.get(2)).isNotEqualTo(clientPorts.get(0));
+    }
+
+    private void probe(Duration connectTimeout) {
+        ProbeResult result = engine.probe(new ProbeRequest(base + "/health", connectTimeout, null, null)).join();
+        assertThat(result.getStatusCode()).isEqualTo(204);
+    }
+
+    private static ContentRules rules(String required) {
+        return ContentRules.compile(List.of(required), null, null, false, ContentRules.DEFAULT_MAX_BYTES);
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TcpProbeEngineTest {
+
+    private final TcpProbeEngine engine = new TcpProbeEngine(new SimpleMeterRegistry(), Duration.ofSeconds(2),
+            Duration.ofSeconds(2));
+    private final List<Socket> clients = new ArrayList<>();
+    private ServerSocket server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.shutdown();
+        for (Socket client : clients) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void succeedsOnceConnected() throws IOException {
+        int port = start(null);
+
+        ProbeResult result = engine.probe(ProbeRequest.of("tcp://localhost:" + port)).join();
+
+        assertThat(result.getError()).isNull();
+        assertThat(result.getStatusCode()).isNull();
+        assertThat(result.getTimings().getConnectNanos()).isPositive();
+    }
+
+    @Test
+    void reportsRefusedConnections() throws IOException {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+
+        ProbeResult result = engine.probe(ProbeRequest.of("tcp://localhost:" + port)).join();
+
+        assertThat(result.getError()).containsIgnoringCase("refused");
+    }
+
+    @Test
+    void timesOutConnectsTheServerDoesNotAnswer() throws IOException {
+        // a listener that never accepts drops further connection attempts once its backlog is full
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        for (int i = 0; i < 16; i++) {
+            Socket client = new Socket();
+            clients.add(client);
+            try {
+                client.connect(address, 200);
+            } catch (IOException e) {
+                break;
+            }
+        }
+
+        ProbeResult result = engine.probe(new ProbeRequest("tcp://127.0.0.1:" + server.getLocalPort(),
+                Duration.ofMillis(300), null, null)).join();
+
+        assertThat(result.getError()).startsWith("Timed out: connect after 300 ms");
+        assertThat(result.getResponseTime()).isBetween(300L, 1_500L);
+    }
+
+    @Test
+    void matchesTheBannerAgainstTheContentRules() throws IOException {
+        int port = start("220 mail.example.com ESMTP ready\r\n");
+
+        ProbeResult result = engine.probe(ProbeRequest.of("tcp://localhost:" + port, rules("ESMTP"))).join();
+
+        assertThat(result.getError()).isNull();
+        assertThat(result.getContent().isPassed()).isTrue();
+        assertThat(result.getResponseTime()).isLessThan(1_000);
+    }
+
+    @Test
+    void judgesTheBannerSentBeforeTheReadTimeout() throws IOException {
+        int port = start("220 mail.example.com ready\r\n");
+
+        ProbeResult result = engine.probe(new ProbeRequest("tcp://localhost:" + port, null, Duration.ofMillis(300),
+                rules("ESMTP"))).join();
+
+        assertThat(result.getError()).isNull();
+        assertThat(result.getContent().isPassed()).isFalse();
+        assertThat(result.getResponseTime()).isGreaterThanOrEqualTo(300);
+    }
+
+    private static ContentRules rules(String required) {
+        return ContentRules.compile(List.of(required), null, null, false, ContentRules.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Accepts connections, sends them the banner if there is one and keeps them open.
+     */
+    private int start(String banner) throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread.ofVirtual().start(() -> hold(socket, banner));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        return server.getLocalPort();
+    }
+
+    private static void hold(Socket socket, String banner) {
+        try (socket) {
+            if (banner != null) {
+                OutputStream out = socket.getOutputStream();
+                out.write(banner.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+            Thread.sleep(5_000);
+        } catch (IOException | InterruptedException e) {
+            // the test is over
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.uplert.probe;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TimedHttpProbeEngineTest {
+
+    private final TimedHttpProbeEngine engine = new TimedHttpProbeEngine(new SimpleMeterRegistry(),
+            Duration.ofSeconds(2), Duration.ofSeconds(2), DataSize.ofKilobytes(64));
+    private final AtomicReference<String> hostHeader = new AtomicReference<>();
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void hostHeaderOmitsTheDefaultPort() {
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("http://example.com/a"), 80, false))
+                .isEqualTo("example.com");
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("https://example.com:443/"), 443, true))
+                .isEqualTo("example.com");
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("https://example.com:8443/"), 8443, true))
+                .isEqualTo("example.com:8443");
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("http://example.com:443/"), 443, false))
+                .isEqualTo("example.com:443");
+    }
+
+    @Test
+    void hostHeaderBracketsIpv6LiteralsOnce() {
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("http://[::1]/"), 80, false)).isEqualTo("[::1]");
+        assertThat(TimedHttpProbeEngine.hostHeader(URI.create("http://[::1]:8080/"), 8080, false))
+                .isEqualTo("[::1]:8080");
+    }
+
+    @Test
+    void sendsTheHostAndPort() throws IOException {
+        int port = start(InetAddress.getLoopbackAddress());
+
+        ProbeResult result = engine.probe(ProbeRequest.of("http://127.0.0.1:" + port + "/health")).join();
+
+        assertThat(result.getStatusCode()).isEqualTo(204);
+        assertThat(hostHeader.get()).isEqualTo("127.0.0.1:" + port);
+    }
+
+    @Test
+    void probesIpv6Literals() throws IOException {
+        int port;
+        try {
+            port = start(InetAddress.getByName("::1"));
+        } catch (IOException e) {
+            assumeTrue(false, "no IPv6 loopback");
+            return;
+        }
+
+        ProbeResult result = engine.probe(ProbeRequest.of("http://[::1]:" + port + "/")).join();
+
+        assertThat(result.getError()).isNull();
+        assertThat(result.getStatusCode()).isEqualTo(204);
+        assertThat(hostHeader.get()).isEqualTo("[::1]:" + port);
+    }
+
+    private int start(InetAddress address) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(address, 0), 0);
+        server.createContext("/", exchange -> {
+            hostHeader.set(exchange.getRequestHeaders().getFirst("Host"));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        return server.getAddress().getPort();
+    }
+}
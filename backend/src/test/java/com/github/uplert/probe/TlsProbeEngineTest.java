@@ -0,0 +1,93 @@
+package com.github.uplert.probe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TlsProbeEngineTest {
+
+    // the self-signed test certificate GreenMail ships for its SSL endpoints
+    private static final String KEYSTORE = "/greenmail.p12";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final TlsProbeEngine engine = new TlsProbeEngine(new SimpleMeterRegistry(), Duration.ofSeconds(2),
+            Duration.ofSeconds(2), new int[]{30, 14, 7, 1}, Duration.ofHours(6), 100);
+    private SSLServerSocket server;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        engine.shutdown();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void reportsUntrustedChainsWithTheirExpiry() throws Exception {
+        int port = start();
+
+        ProbeResult result = engine.probe(ProbeRequest.of("tls://localhost:" + port)).join();
+
+        assertThat(result.getError()).startsWith("Certificate not trusted");
+        assertThat(result.getTls()).isNotNull();
+        assertThat(result.getTls().getProtocol()).isEqualTo("TLSv1.3");
+        assertThat(result.getTls().getValidationError()).isNotNull();
+    }
+
+    @Test
+    void responseTimeEndsWithTheHandshakeNotTheTicketWait() throws Exception {
+        // the server keeps the connection open, so waiting for its session ticket takes the whole read timeout
+        int port = start();
+
+        ProbeResult result = engine.probe(ProbeRequest.of("tls://localhost:" + port)).join();
+
+        assertThat(result.getTls()).isNotNull();
+        assertThat(result.getResponseTime()).isLessThan(1_000);
+    }
+
+    private int start() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream(KEYSTORE)) {
+            keyStore.load(in, PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        server = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 50,
+                InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    SSLSocket socket = (SSLSocket) server.accept();
+                    Thread.ofVirtual().start(() -> hold(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        return server.getLocalPort();
+    }
+
+    private static void hold(SSLSocket socket) {
+        try (socket) {
+            socket.startHandshake();
+            Thread.sleep(5_000);
+        } catch (IOException | InterruptedException e) {
+            // the test is over
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.uplert.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelSchedulerTest {
+
+    private static final long TICK = 100;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private TimingWheelScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TimingWheelScheduler(null, Runnable::run, Duration.ofMillis(TICK), new SimpleMeterRegistry(),
+                now::get);
+    }
+
+    @Test
+    void phaseTickFollowsNowWithinOneInterval() {
+        for (long current = 0; current < 500; current += 7) {
+            long next = TimingWheelScheduler.nextPhaseTick("https://example.com", 60, current);
+            assertThat(next).isGreaterThan(current).isLessThanOrEqualTo(current + 60);
+        }
+    }
+
+    @Test
+    void phaseIsStableForTheSameKey() {
+        long phase = TimingWheelScheduler.nextPhaseTick("https://example.com", 600, 1_000) % 600;
+        for (long current = 1_000; current < 100_000; current += 997) {
+            assertThat(TimingWheelScheduler.nextPhaseTick("https://example.com", 600, current) % 600).isEqualTo(phase);
+        }
+    }
+
+    @Test
+    void phasesSpreadKeysOverTheInterval() {
+        Set<Long> phases = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            phases.add(TimingWheelScheduler.nextPhaseTick("https://example.com/" + i, 600, 0) % 600);
+        }
+        // 1000 keys hashed into 600 slots leave roughly 600 * (1 - e^-1.67) = 490 distinct phases
+        assertThat(phases.size()).isGreaterThan(400);
+    }
+
+    @Test
+    void firesAtItsPhaseSlotAndEveryIntervalAfter() {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("a", Duration.ofSeconds(60), runs::incrementAndGet);
+        long due = scheduler.nextRunIn("a").toMillis();
+        assertThat(due).isPositive().isLessThanOrEqualTo(60_000);
+
+        advanceBy(due - TICK);
+        assertThat(runs).hasValue(0);
+        advanceBy(TICK);
+        assertThat(runs).hasValue(1);
+        assertThat(scheduler.nextRunIn("a")).isEqualTo(Duration.ofSeconds(60));
+
+        advanceBy(60_000 - TICK);
+        assertThat(runs).hasValue(1);
+        advanceBy(TICK);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void longIntervalsCascadeDownToTheirSlot() {
+        // a day is 864,000 ticks, placed on level 3 and cascaded through levels 2 and 1
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("daily", Duration.ofDays(1), runs::incrementAndGet);
+        long due = scheduler.nextRunIn("daily").toMillis();
+
+        advanceBy(due - TICK);
+        assertThat(runs).hasValue(0);
+        advanceBy(TICK);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void cancelledAndReplacedTasksDoNotFire() {
+        List<String> fired = new ArrayList<>();
+        scheduler.schedule("a", Duration.ofSeconds(10), () -> fired.add("a"));
+        scheduler.schedule("b", Duration.ofSeconds(10), () -> fired.add("b-old"));
+        scheduler.schedule("b", Duration.ofSeconds(10), () -> fired.add("b-new"));
+        assertThat(scheduler.cancel("a")).isTrue();
+        assertThat(scheduler.cancel("a")).isFalse();
+
+        advanceBy(10_000);
+        assertThat(fired).containsExactly("b-new");
+        assertThat(scheduler.keys()).containsExactly("b");
+    }
+
+    @Test
+    void skipsMissedRunsWhenTheTimerFallsBehind() {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("a", Duration.ofSeconds(1), runs::incrementAndGet);
+
+        advanceBy(5_000);
+        assertThat(runs).hasValue(5);
+        // one advance covering ten intervals, as after a long GC pause
+        now.addAndGet(10_000);
+        scheduler.advance();
+        assertThat(runs).hasValue(6);
+        assertThat(scheduler.nextRunIn("a")).isLessThanOrEqualTo(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Moves the clock tick by tick, like the timer thread does.
+     */
+    private void advanceBy(long millis) {
+        long target = now.get() + millis;
+        while (now.get() < target) {
+            now.addAndGet(Math.min(TICK, target - now.get()));
+            scheduler.advance();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.uplert.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.AgentResultBatchDTO;
+import com.github.uplert.model.AgentResultDTO;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.Status;
+import com.github.uplert.probe.ProbeResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AgentHubTest {
+
+    private static final String GROUP = "eu";
+
+    private final MonitorRegistry monitorRegistry = mock(MonitorRegistry.class);
+    private final MonitoringJobService job = mock(MonitoringJobService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AgentHub hub = new AgentHub(monitorRegistry, new ObjectMapper(), meterRegistry, Duration.ofHours(1));
+
+    @BeforeEach
+    void setUp() {
+        MonitoringSites site = new MonitoringSites("m1", "p1", "https://example.com", Intervals.TEN, null,
+                Status.ACTIVE, null, null, GROUP);
+        when(monitorRegistry.findByStatus(Status.ACTIVE)).thenReturn(List.of(site));
+        hub.useJobs(monitor -> job);
+    }
+
+    @Test
+    void ingestsNewBatches() {
+        AgentHub.Agent agent = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+
+        assertThat(hub.ingest(agent, batch(5))).isEqualTo(5);
+        assertThat(hub.ingest(agent, batch(6))).isEqualTo(6);
+
+        verify(job, times(2)).accept(any(ProbeResult.class));
+    }
+
+    @Test
+    void skipsBatchesAtOrBelowTheLastIngested() {
+        AgentHub.Agent agent = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        hub.ingest(agent, batch(5));
+
+        // both are acknowledged with the last ingested seq, so the agent drops them
+        assertThat(hub.ingest(agent, batch(5))).isEqualTo(5);
+        assertThat(hub.ingest(agent, batch(4))).isEqualTo(5);
+
+        verify(job, times(1)).accept(any(ProbeResult.class));
+        assertThat(meterRegistry.counter("uplert.agent.batches.duplicate").count()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsBatchesResentAfterAReconnect() {
+        AgentHub.Agent first = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        hub.ingest(first, batch(5));
+        hub.disconnected(first);
+
+        AgentHub.Agent second = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        assertThat(hub.ingest(second, batch(5))).isEqualTo(5);
+        assertThat(hub.ingest(second, batch(6))).isEqualTo(6);
+
+        verify(job, times(2)).accept(any(ProbeResult.class));
+    }
+
+    @Test
+    void forgetsTheSequenceOfAgentsThatDidNotComeBack() {
+        AgentHub hub = new AgentHub(monitorRegistry, new ObjectMapper(), meterRegistry, Duration.ZERO);
+        hub.useJobs(monitor -> job);
+        AgentHub.Agent gone = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        AgentHub.Agent staying = hub.connected("agent-2", GROUP, mock(WebSocketSession.class));
+        hub.ingest(gone, batch(5));
+        hub.ingest(staying, batch(5));
+        hub.disconnected(gone);
+
+        hub.pruneSequences();
+
+        AgentHub.Agent back = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        assertThat(hub.ingest(back, batch(5))).isEqualTo(5);
+        hub.ingest(staying, batch(5));
+        verify(job, times(3)).accept(any(ProbeResult.class));
+    }
+
+    @Test
+    void tracksTheSequenceOfEachAgentSeparately() {
+        AgentHub.Agent one = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        AgentHub.Agent two = hub.connected("agent-2", GROUP, mock(WebSocketSession.class));
+        hub.ingest(one, batch(5));
+
+        assertThat(hub.ingest(two, batch(3))).isEqualTo(3);
+        verify(job, times(2)).accept(any(ProbeResult.class));
+    }
+
+    @Test
+    void acknowledgesBatchesOfRemovedMonitorsWithoutIngestingThem() {
+        AgentHub.Agent agent = hub.connected("agent-1", GROUP, mock(WebSocketSession.class));
+        AgentResultBatchDTO batch = new AgentResultBatchDTO(5,
+                List.of(new AgentResultDTO("gone", 1_700_000_000_000L, 12, 200, null, null, null, 100L)));
+
+        assertThat(hub.ingest(agent, batch)).isEqualTo(5);
+        verify(job, never()).accept(any(ProbeResult.class));
+    }
+
+    private static AgentResultBatchDTO batch(long seq) {
+        return new AgentResultBatchDTO(seq,
+                List.of(new AgentResultDTO("m1", 1_700_000_000_000L, 12, 200, null, null, null, 100L)));
+    }
+}
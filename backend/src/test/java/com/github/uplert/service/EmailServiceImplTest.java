@@ -0,0 +1,140 @@
+package com.github.uplert.service;
+
+import com.github.uplert.config.SingleUserInitializer;
+import com.github.uplert.domain.User;
+import com.github.uplert.model.EmailDetails;
+import com.github.uplert.repos.UserRepository;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailServiceImplTest {
+
+    private static final String FROM = "uplert@example.com";
+    private static final String PASSWORD = "app-password";
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort())
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser(FROM, PASSWORD));
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private EmailServiceImpl emailService;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUserId("user");
+        user.setFromEmail(FROM);
+        user.setAppPassword(PASSWORD);
+        SingleUserInitializer.SINGLE_USER_ID = "user";
+        when(userRepository.findById(any())).thenReturn(Optional.of(user));
+        emailService = new EmailServiceImpl(userRepository, new SimpleMeterRegistry(), "localhost",
+                greenMail.getSmtp().getPort(), false, Duration.ofMillis(200), 100);
+        emailService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        emailService.stop();
+    }
+
+    @Test
+    void deliversOneAlert() throws Exception {
+        emailService.sendEmail(alert("ops@example.com", "https://example.com/<a>"));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 1)).isTrue();
+        MimeMessage message = greenMail.getReceivedMessages()[0];
+        assertThat(message.getSubject()).isEqualTo("Down: https://example.com/<a>");
+        assertThat(message.getAllRecipients()).extracting(Object::toString).containsExactly("ops@example.com");
+        assertThat(GreenMailUtil.getBody(message)).contains("https://example.com/&lt;a&gt;", "503");
+    }
+
+    @Test
+    void digestsAlertsRaisedTogether() throws Exception {
+        emailService.sendEmail(alert("ops@example.com", "https://a.example.com"));
+        emailService.sendEmail(alert("ops@example.com", "https://b.example.com"));
+        emailService.sendEmail(alert("other@example.com", "https://c.example.com"));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 2)).isTrue();
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertThat(messages).hasSize(2);
+        assertThat(messages[0].getSubject()).isEqualTo("Urgent: 2 of your websites are down");
+        assertThat(GreenMailUtil.getBody(messages[0])).contains("https://a.example.com", "https://b.example.com");
+        assertThat(messages[1].getSubject()).isEqualTo("Down: https://c.example.com");
+    }
+
+    @Test
+    void mailsWarningsWithTheWarningTemplate() throws Exception {
+        emailService.sendEmail(warning("ops@example.com", "https://a.example.com"));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 1)).isTrue();
+        MimeMessage message = greenMail.getReceivedMessages()[0];
+        assertThat(message.getSubject()).isEqualTo("Warning: https://a.example.com");
+        assertThat(GreenMailUtil.getBody(message))
+                .contains("https://a.example.com", "needs attention", "Certificate expires in 7 days")
+                .doesNotContain("down");
+    }
+
+    @Test
+    void digestsWarningsSeparatelyFromOutages() throws Exception {
+        emailService.sendEmail(alert("ops@example.com", "https://a.example.com"));
+        emailService.sendEmail(warning("ops@example.com", "https://b.example.com"));
+        emailService.sendEmail(warning("ops@example.com", "https://c.example.com"));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 2)).isTrue();
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertThat(messages).hasSize(2);
+        assertThat(messages[0].getSubject()).isEqualTo("Down: https://a.example.com");
+        assertThat(messages[1].getSubject()).isEqualTo("Warning: 2 of your websites need attention");
+        assertThat(GreenMailUtil.getBody(messages[1]))
+                .contains("2 websites need attention", "https://b.example.com", "https://c.example.com")
+                .doesNotContain("https://a.example.com", "down");
+    }
+
+    @Test
+    void digestsRecoveriesSeparatelyWithTheRecoveryTemplate() throws Exception {
+        emailService.sendEmail(alert("ops@example.com", "https://a.example.com"));
+        emailService.sendEmail(recovery("ops@example.com", "https://b.example.com"));
+        emailService.sendEmail(recovery("ops@example.com", "https://c.example.com"));
+
+        assertThat(greenMail.waitForIncomingEmail(5_000, 2)).isTrue();
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertThat(messages).hasSize(2);
+        assertThat(messages[0].getSubject()).isEqualTo("Down: https://a.example.com");
+        assertThat(messages[1].getSubject()).isEqualTo("Resolved: 2 of your websites are back up");
+        assertThat(GreenMailUtil.getBody(messages[1]))
+                .contains("2 websites are back up", "https://b.example.com", "https://c.example.com", "200")
+                .doesNotContain("https://a.example.com", "down");
+    }
+
+    private static EmailDetails alert(String recipient, String url) {
+        return new EmailDetails(List.of(recipient), new EmailDetails.BodyData("120", url, "503", null), "Down: " + url,
+                null, false, false);
+    }
+
+    private static EmailDetails warning(String recipient, String url) {
+        return new EmailDetails(List.of(recipient), new EmailDetails.BodyData("", url, "", "Certificate expires in 7 days"),
+                "Warning: " + url, null, true, false);
+    }
+
+    private static EmailDetails recovery(String recipient, String url) {
+        return new EmailDetails(List.of(recipient), new EmailDetails.BodyData("80", url, "200", null),
+                "Resolved: " + url + " is back up", null, false, true);
+    }
+}
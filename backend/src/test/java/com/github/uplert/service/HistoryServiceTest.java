@@ -0,0 +1,81 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.ProbeRollup;
+import com.github.uplert.domain.ProbeSample;
+import com.github.uplert.model.HistoryPointDTO;
+import com.github.uplert.model.HistoryResponseDTO;
+import com.github.uplert.model.HistoryTier;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HistoryServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final HistoryService historyService = new HistoryService(mongoTemplate, Duration.ofDays(7),
+            Duration.ofDays(30), Duration.ofDays(365), Duration.ofDays(1825), Duration.ofMinutes(1),
+            Duration.ofHours(2), 3);
+
+    @Test
+    void picksTheFinestTierThatFits() {
+        Instant now = Instant.parse("2024-06-01T12:00:00Z");
+        assertThat(historyService.selectTier(now.minus(Duration.ofHours(1)), now, 1000, now)).isEqualTo(HistoryTier.RAW);
+        assertThat(historyService.selectTier(now.minus(Duration.ofHours(6)), now, 1000, now)).isEqualTo(HistoryTier.MINUTE);
+        assertThat(historyService.selectTier(now.minus(Duration.ofDays(20)), now, 1000, now)).isEqualTo(HistoryTier.HOUR);
+        assertThat(historyService.selectTier(now.minus(Duration.ofDays(400)), now, 1000, now)).isEqualTo(HistoryTier.DAY);
+    }
+
+    @Test
+    void rawPointsOfFailedProbesHaveNoLatency() {
+        Instant to = Instant.now();
+        when(mongoTemplate.find(any(Query.class), eq(ProbeSample.class))).thenReturn(List.of(
+                sample(to.minusSeconds(20), 120L, false),
+                sample(to.minusSeconds(10), 10_000L, true)));
+
+        HistoryResponseDTO response = historyService.query("p1", null, to.minusSeconds(60), to, 1000);
+
+        assertThat(response.getTier()).isEqualTo(HistoryTier.RAW);
+        List<HistoryPointDTO> points = response.getPoints();
+        assertThat(points.get(0).getAvgLatency()).isEqualTo(120.0);
+        assertThat(points.get(1).getFailures()).isEqualTo(1);
+        assertThat(points.get(1).getMinLatency()).isNull();
+        assertThat(points.get(1).getMaxLatency()).isNull();
+        assertThat(points.get(1).getAvgLatency()).isNull();
+    }
+
+    @Test
+    void fallsBackToTheMinuteTierAboveTheRawCap() {
+        Instant to = Instant.now();
+        List<ProbeSample> samples = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            samples.add(sample(to.minusSeconds(i), 100L, false));
+        }
+        when(mongoTemplate.find(any(Query.class), eq(ProbeSample.class))).thenReturn(samples);
+        when(mongoTemplate.find(any(Query.class), eq(ProbeRollup.class), eq(HistoryTier.MINUTE.getCollection())))
+                .thenReturn(List.of());
+
+        HistoryResponseDTO response = historyService.query("p1", null, to.minusSeconds(60), to, 1000);
+
+        assertThat(response.getTier()).isEqualTo(HistoryTier.MINUTE);
+        verify(mongoTemplate).find(argThat((Query query) -> query.getLimit() == 4),
+                eq(ProbeSample.class));
+    }
+
+    private static ProbeSample sample(Instant timestamp, Long responseTime, boolean failed) {
+        return new ProbeSample(null, timestamp, new ProbeSample.Meta("p1", "https://example.com"), responseTime,
+                failed ? null : 200, failed);
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitorIncident;
+import com.github.uplert.model.IncidentState;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IncidentTrackerTest {
+
+    private static final String URL = "https://example.com";
+
+    private final MutableClock clock = new MutableClock();
+    // down after 2 failures, up after 1 success, flapping at 2 outages within an hour
+    private final IncidentTracker tracker = new IncidentTracker(null, 2, 1, Duration.ofHours(1), 2, clock);
+
+    @Test
+    void alertsOnceWhenConfirmedDown() {
+        IncidentTracker.Transition suspect = fail();
+        assertThat(suspect.to()).isEqualTo(IncidentState.SUSPECT);
+        assertThat(suspect.alert()).isFalse();
+
+        IncidentTracker.Transition down = fail();
+        assertThat(down.from()).isEqualTo(IncidentState.SUSPECT);
+        assertThat(down.to()).isEqualTo(IncidentState.DOWN);
+        assertThat(down.alert()).isTrue();
+
+        assertThat(fail()).isNull();
+    }
+
+    @Test
+    void secondOutageInsideTheWindowIsFlappingAndDefersItsAlert() {
+        goDown();
+        recover();
+
+        clock.advance(Duration.ofMinutes(10));
+        fail();
+        IncidentTracker.Transition down = fail();
+        assertThat(down.to()).isEqualTo(IncidentState.DOWN);
+        assertThat(down.flapping()).isTrue();
+        assertThat(down.alert()).isFalse();
+
+        clock.advance(Duration.ofMinutes(30));
+        assertThat(fail()).isNull();
+    }
+
+    @Test
+    void deferredAlertIsSentOnceTheWindowClearsWhileStillDown() {
+        goDown();
+        recover();
+        clock.advance(Duration.ofMinutes(10));
+        goDown();
+
+        // the first outage leaves the window an hour after it started
+        clock.advance(Duration.ofMinutes(51));
+        IncidentTracker.Transition settled = fail();
+        assertThat(settled.from()).isEqualTo(IncidentState.DOWN);
+        assertThat(settled.to()).isEqualTo(IncidentState.DOWN);
+        assertThat(settled.flapping()).isFalse();
+        assertThat(settled.alert()).isTrue();
+
+        assertThat(fail()).isNull();
+    }
+
+    @Test
+    void deferredAlertIsDroppedWhenTheMonitorRecovers() {
+        goDown();
+        recover();
+        clock.advance(Duration.ofMinutes(10));
+        goDown();
+        recover();
+
+        clock.advance(Duration.ofHours(2));
+        IncidentTracker.Transition suspect = fail();
+        assertThat(suspect.alert()).isFalse();
+        IncidentTracker.Transition down = fail();
+        assertThat(down.flapping()).isFalse();
+        assertThat(down.alert()).isTrue();
+    }
+
+    @Test
+    void secondOutageOutsideTheWindowAlertsAgain() {
+        goDown();
+        recover();
+
+        clock.advance(Duration.ofMinutes(61));
+        fail();
+        IncidentTracker.Transition down = fail();
+        assertThat(down.to()).isEqualTo(IncidentState.DOWN);
+        assertThat(down.flapping()).isFalse();
+        assertThat(down.alert()).isTrue();
+    }
+
+    @Test
+    void relapseWhileRecoveringDoesNotAlertAgain() {
+        IncidentTracker tracker = new IncidentTracker(null, 1, 2, Duration.ofHours(1), 2, clock);
+        assertThat(tracker.record(URL, "p", true, null, "down").alert()).isTrue();
+        assertThat(tracker.record(URL, "p", false, 200, null).to()).isEqualTo(IncidentState.RECOVERING);
+
+        IncidentTracker.Transition relapse = tracker.record(URL, "p", true, null, "down");
+        assertThat(relapse.to()).isEqualTo(IncidentState.DOWN);
+        assertThat(relapse.alert()).isFalse();
+    }
+
+    @Test
+    void alertsOnceWhenConfirmedUpAgain() {
+        IncidentTracker tracker = new IncidentTracker(null, 1, 2, Duration.ofHours(1), 2, clock);
+        tracker.record(URL, "p", true, null, "down");
+
+        IncidentTracker.Transition recovering = tracker.record(URL, "p", false, 200, null);
+        assertThat(recovering.to()).isEqualTo(IncidentState.RECOVERING);
+        assertThat(recovering.alert()).isFalse();
+
+        IncidentTracker.Transition up = tracker.record(URL, "p", false, 200, null);
+        assertThat(up.from()).isEqualTo(IncidentState.RECOVERING);
+        assertThat(up.to()).isEqualTo(IncidentState.UP);
+        assertThat(up.alert()).isTrue();
+
+        assertThat(tracker.record(URL, "p", false, 200, null)).isNull();
+    }
+
+    @Test
+    void recoveryFromASuppressedOutageIsNotAlerted() {
+        goDown();
+        recover();
+        clock.advance(Duration.ofMinutes(10));
+        goDown();
+
+        IncidentTracker.Transition up = tracker.record(URL, "p", false, 200, null);
+        assertThat(up.to()).isEqualTo(IncidentState.UP);
+        assertThat(up.alert()).isFalse();
+    }
+
+    @Test
+    void remembersTheLastDigestAndExpiryWarning() {
+        assertThat(tracker.swapDigest(URL, "p", "abc")).isNull();
+        assertThat(tracker.swapDigest(URL, "p", "def")).isEqualTo("abc");
+        assertThat(tracker.swapExpiryWarning(URL, "p", 14)).isNull();
+        assertThat(tracker.swapExpiryWarning(URL, "p", 7)).isEqualTo(14);
+        assertThat(tracker.swapExpiryWarning(URL, "p", null)).isEqualTo(7);
+    }
+
+    @Test
+    void digestAndExpiryWarningSurviveAReload() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MonitorIncident stored = new MonitorIncident();
+        stored.setUrl(URL);
+        stored.setContentDigest("abc");
+        stored.setExpiryWarningDays(14);
+        when(mongoTemplate.find(any(Query.class), eq(MonitorIncident.class))).thenReturn(List.of(stored));
+        IncidentTracker tracker = new IncidentTracker(mongoTemplate, 2, 1, Duration.ofHours(1), 2, clock);
+
+        tracker.reload(List.of(URL));
+
+        assertThat(tracker.swapExpiryWarning(URL, "p", 14)).isEqualTo(14);
+        assertThat(tracker.swapDigest(URL, "p", "abc")).isEqualTo("abc");
+    }
+
+    private IncidentTracker.Transition fail() {
+        return tracker.record(URL, "p", true, 503, "Service Unavailable");
+    }
+
+    private void goDown() {
+        fail();
+        assertThat(fail().to()).isEqualTo(IncidentState.DOWN);
+    }
+
+    private void recover() {
+        assertThat(tracker.record(URL, "p", false, 200, null).to()).isEqualTo(IncidentState.UP);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
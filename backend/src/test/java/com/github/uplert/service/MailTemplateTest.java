@@ -0,0 +1,57 @@
+package com.github.uplert.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailTemplateTest {
+
+    @Test
+    void escapesValues() {
+        MailTemplate template = MailTemplate.parse("<p>{WEBSITE_NAME}</p>");
+
+        assertThat(template.render(Map.of("WEBSITE_NAME", "<script>alert('x')</script>&")))
+                .isEqualTo("<p>&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt;&amp;</p>");
+    }
+
+    @Test
+    void rendersRawValuesUnescaped() {
+        MailTemplate template = MailTemplate.parse("<table>{ROWS}</table>");
+
+        assertThat(template.renderRaw(Map.of("ROWS", "<tr><td>a</td></tr>")))
+                .isEqualTo("<table><tr><td>a</td></tr></table>");
+    }
+
+    @Test
+    void missingValuesRenderEmpty() {
+        MailTemplate template = MailTemplate.parse("{A}-{B}-{A}");
+
+        assertThat(template.render(Map.of("A", "1"))).isEqualTo("1--1");
+        assertThat(template.render(Map.of())).isEqualTo("--");
+    }
+
+    @Test
+    void onlyUpperCasePlaceholdersAreReplaced() {
+        // CSS blocks and lower-case braces in the HTML stay as they are
+        MailTemplate template = MailTemplate.parse("body { margin: 0; } {name} {NAME}");
+
+        assertThat(template.render(Map.of("NAME", "x", "name", "y"))).isEqualTo("body { margin: 0; } {name} x");
+    }
+
+    @Test
+    void templateWithoutPlaceholdersRendersAsIs() {
+        assertThat(MailTemplate.parse("plain").render(Map.of("A", "1"))).isEqualTo("plain");
+        assertThat(MailTemplate.parse("").render(Map.of())).isEmpty();
+    }
+
+    @Test
+    void loadsTheBundledTemplates() {
+        String html = MailTemplate.load("mail/alert.html")
+                .render(Map.of("WEBSITE_NAME", "https://example.com", "STATUS_CODE", "503", "RESPONSE_TIME", "120"));
+
+        assertThat(html).contains("<span class='highlight'>https://example.com</span>", "503", "120 ms")
+                .doesNotContain("{WEBSITE_NAME}", "{STATUS_CODE}", "{RESPONSE_TIME}");
+    }
+}
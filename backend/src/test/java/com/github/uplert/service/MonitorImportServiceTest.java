@@ -0,0 +1,119 @@
+package com.github.uplert.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.domain.MonitorRequest;
+import com.github.uplert.model.BulkImportResultDTO;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MonitorImportServiceTest {
+
+    private final MonitorRequestService monitorRequestService = mock(MonitorRequestService.class);
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private MongoServer server;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private MonitorImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        server = new MongoServer(new MemoryBackend());
+        client = MongoClients.create(server.bindAndGetConnectionString());
+        mongoTemplate = new MongoTemplate(client, "uplert");
+        when(monitorRequestService.mapToEntity(any(), any())).thenCallRealMethod();
+        importService = new MonitorImportService(monitorRequestService, mongoTemplate, new ObjectMapper(),
+                validatorFactory.getValidator(), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    void importsValidRows() throws IOException {
+        BulkImportResultDTO result = importNdjson(
+                "{\"projectId\":\"p1\",\"url\":\"https://a.example.com\",\"interval\":\"TEN\"}",
+                "{\"projectId\":\"p1\",\"url\":\"https://b.example.com\",\"intervalSeconds\":30,"
+                        + "\"contentCheck\":{\"required\":[\"ok\"],\"regex\":\"v\\\\d+\"}}");
+
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(mongoTemplate.findAll(MonitorRequest.class)).hasSize(2);
+    }
+
+    @Test
+    void rejectsRowsWhoseContentCheckDoesNotCompile() throws IOException {
+        BulkImportResultDTO result = importNdjson(
+                "{\"projectId\":\"p1\",\"url\":\"https://a.example.com\",\"interval\":\"TEN\","
+                        + "\"contentCheck\":{\"regex\":\"(unclosed\"}}",
+                "{\"projectId\":\"p1\",\"url\":\"https://b.example.com\",\"interval\":\"TEN\"}");
+
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getRow()).isZero();
+            assertThat(error.getError()).startsWith("contentCheck is invalid");
+        });
+        assertThat(mongoTemplate.findAll(MonitorRequest.class))
+                .extracting(MonitorRequest::getUrl)
+                .containsExactly("https://b.example.com");
+    }
+
+    @Test
+    void rejectsRowsViolatingTheRequestConstraints() throws IOException {
+        BulkImportResultDTO result = importNdjson(
+                "{\"projectId\":\"p1\",\"url\":\"https://a.example.com\",\"interval\":\"TEN\","
+                        + "\"contentCheck\":{\"maxBytes\":0}}",
+                "{\"projectId\":\"p1\",\"url\":\"https://b.example.com\",\"interval\":\"TEN\","
+                        + "\"agentGroup\":\"" + "g".repeat(65) + "\"}",
+                "{\"projectId\":\"p1\",\"url\":\"https://c.example.com\",\"intervalSeconds\":0}");
+
+        assertThat(result.getCreated()).isZero();
+        assertThat(result.getErrors())
+                .extracting(BulkImportResultDTO.RowError::getError)
+                .satisfiesExactly(
+                        error -> assertThat(error).startsWith("contentCheck.maxBytes"),
+                        error -> assertThat(error).startsWith("agentGroup"),
+                        error -> assertThat(error).startsWith("intervalSeconds"));
+        assertThat(mongoTemplate.findAll(MonitorRequest.class)).isEmpty();
+    }
+
+    @Test
+    void rejectsRowsTheMonitorTypeOrAgentsCannotProbe() throws IOException {
+        BulkImportResultDTO result = importNdjson(
+                "{\"projectId\":\"p1\",\"url\":\"https://a.example.com\",\"interval\":\"TEN\",\"monitorType\":\"TCP\"}",
+                "{\"projectId\":\"p1\",\"url\":\"tls://b.example.com\",\"interval\":\"TEN\",\"monitorType\":\"TLS\","
+                        + "\"agentGroup\":\"eu\"}",
+                "{\"projectId\":\"p1\",\"url\":\"tcp://c.example.com:25\",\"interval\":\"TEN\",\"monitorType\":\"TCP\"}");
+
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(BulkImportResultDTO.RowError::getRow).containsExactly(0, 1);
+        assertThat(mongoTemplate.findAll(MonitorRequest.class))
+                .extracting(MonitorRequest::getUrl)
+                .containsExactly("tcp://c.example.com:25");
+    }
+
+    private BulkImportResultDTO importNdjson(String... rows) throws IOException {
+        byte[] body = String.join("\n", rows).getBytes(StandardCharsets.UTF_8);
+        return importService.importRequests(new ByteArrayInputStream(body), true, false);
+    }
+}
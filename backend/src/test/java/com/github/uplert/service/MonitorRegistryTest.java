@@ -0,0 +1,93 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.Status;
+import com.github.uplert.repos.MonitoringSitesRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MonitorRegistryTest {
+
+    private final MonitoringSitesRepository repository = mock(MonitoringSitesRepository.class);
+    private final MonitorRegistry registry = new MonitorRegistry(repository, mock(TaskScheduler.class), Duration.ZERO,
+            new SimpleMeterRegistry());
+
+    @Test
+    void failedStatusChangeLeavesTheCachedMonitorAlone() {
+        MonitoringSites site = site("https://a.example", Status.ACTIVE);
+        when(repository.findAll()).thenReturn(List.of(site));
+        registry.refresh();
+        when(repository.save(any())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThatThrownBy(() -> registry.updateStatus("https://a.example", Status.PAUSED))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(registry.find("https://a.example")).isSameAs(site);
+        assertThat(site.getStatus()).isEqualTo(Status.ACTIVE);
+    }
+
+    @Test
+    void statusChangeSwapsInTheSavedCopy() {
+        MonitoringSites site = site("https://a.example", Status.ACTIVE);
+        when(repository.findAll()).thenReturn(List.of(site));
+        registry.refresh();
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MonitoringSites paused = registry.updateStatus("https://a.example", Status.PAUSED);
+
+        assertThat(paused).isNotSameAs(site);
+        assertThat(registry.find("https://a.example")).isSameAs(paused);
+        assertThat(registry.count(Status.PAUSED)).isEqualTo(1);
+        assertThat(site.getStatus()).isEqualTo(Status.ACTIVE);
+    }
+
+    @Test
+    void reloadKeepsChangesMadeWhileItWasReading() {
+        MonitoringSites old = site("https://old.example", Status.ACTIVE);
+        MonitoringSites added = site("https://new.example", Status.ACTIVE);
+        when(repository.findAll()).thenReturn(List.of(old));
+        registry.refresh();
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // the reload reads a snapshot taken before these writes
+        when(repository.findAll()).thenAnswer(invocation -> {
+            registry.save(added);
+            registry.updateStatus("https://old.example", Status.PAUSED);
+            return List.of(old);
+        });
+
+        registry.refresh();
+
+        assertThat(registry.find("https://new.example")).isSameAs(added);
+        assertThat(registry.find("https://old.example").getStatus()).isEqualTo(Status.PAUSED);
+    }
+
+    @Test
+    void reloadAppliesChangesFromOtherNodes() {
+        when(repository.findAll()).thenReturn(List.of(site("https://a.example", Status.ACTIVE)));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        registry.refresh();
+        registry.save(site("https://b.example", Status.ACTIVE));
+        // b was deleted and a paused elsewhere after this node's write
+        when(repository.findAll()).thenReturn(List.of(site("https://a.example", Status.PAUSED)));
+
+        registry.refresh();
+
+        assertThat(registry.exists("https://b.example")).isFalse();
+        assertThat(registry.find("https://a.example").getStatus()).isEqualTo(Status.PAUSED);
+    }
+
+    private static MonitoringSites site(String url, Status status) {
+        return new MonitoringSites(url, "p1", url, Intervals.TEN, null, status, null, null, null);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.uplert.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.cluster.MonitorOwnership;
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.ContentCheck;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.Status;
+import com.github.uplert.notify.AlertDispatcher;
+import com.github.uplert.probe.ProbeEngine;
+import com.github.uplert.probe.TcpProbeEngine;
+import com.github.uplert.probe.TlsProbeEngine;
+import com.github.uplert.repos.MonitorRequestRepository;
+import com.github.uplert.repos.MonitoringLogRepository;
+import com.github.uplert.repos.UserRepository;
+import com.github.uplert.scheduler.TimingWheelScheduler;
+import com.github.uplert.websocket.ResultHub;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MonitorRequestServiceTest {
+
+    private static final String GOOD = "https://good.example.com";
+    private static final String BAD = "https://bad.example.com";
+
+    private final MonitorRegistry monitorRegistry = mock(MonitorRegistry.class);
+    private final TimingWheelScheduler scheduler = mock(TimingWheelScheduler.class);
+    private final MonitorOwnership monitorOwnership = mock(MonitorOwnership.class);
+    private final MonitorRequestService service = new MonitorRequestService(mock(MonitorRequestRepository.class),
+            monitorRegistry, mock(MonitoringLogRepository.class), mock(MonitoringLogWriter.class),
+            mock(UserRepository.class), new ObjectMapper(), mock(ProbeEngine.class), mock(TcpProbeEngine.class),
+            mock(TlsProbeEngine.class), mock(ProbeCoalescer.class), scheduler, mock(ExecutorService.class),
+            mock(ResultHub.class), mock(MongoTemplate.class), mock(AlertDispatcher.class),
+            mock(IncidentTracker.class), monitorOwnership, mock(AgentHub.class));
+
+    @Test
+    void intervalFilterMatchesPresetsAndExplicitSeconds() {
+        Document filter = MonitorRequestService.filter(Status.ACTIVE, "p1", Intervals.TEN).getCriteriaObject();
+
+        assertThat(filter.get("status")).isEqualTo(Status.ACTIVE);
+        assertThat(filter.get("projectId")).isEqualTo("p1");
+        assertThat(filter.getList("$or", Document.class)).containsExactly(
+                new Document("intervalSeconds", 600),
+                new Document("intervalSeconds", null).append("interval", Intervals.TEN));
+    }
+
+    @Test
+    void noIntervalFilterWithoutAnInterval() {
+        Document filter = MonitorRequestService.filter(null, "p1", null).getCriteriaObject();
+
+        assertThat(filter.keySet()).containsExactly("projectId");
+    }
+
+    @Test
+    void scheduleAllNeitherSavesNorSchedulesMonitorsThatCannotBeProbed() {
+        when(monitorOwnership.owns(any())).thenReturn(true);
+        when(monitorRegistry.find(GOOD)).thenReturn(site(GOOD, null));
+
+        int scheduled = service.scheduleAll(List.of(dto(BAD, "(unclosed"), dto(GOOD, null)));
+
+        assertThat(scheduled).isEqualTo(1);
+        verify(monitorRegistry).saveAll(argThat(sites ->
+                sites.size() == 1 && sites.get(0).getUrl().equals(GOOD)));
+        verify(scheduler).schedule(eq(GOOD), any(), any());
+        verify(scheduler, never()).schedule(eq(BAD), any(), any());
+    }
+
+    @Test
+    void storedMonitorThatCannotBeProbedDoesNotStopTheOthers() {
+        when(monitorOwnership.owns(any())).thenReturn(true);
+        when(monitorRegistry.findByStatus(Status.ACTIVE)).thenReturn(List.of(site(BAD, "(unclosed"), site(GOOD, null)));
+        when(monitorRegistry.find(GOOD)).thenReturn(site(GOOD, null));
+
+        service.startMonitorfromMonitoringSites();
+
+        verify(scheduler).schedule(eq(GOOD), any(), any());
+        verify(scheduler, never()).schedule(eq(BAD), any(), any());
+    }
+
+    private static MonitorRequestDTO dto(String url, String regex) {
+        return new MonitorRequestDTO("p1", url, Intervals.TEN, null, null, contentCheck(regex), null, null);
+    }
+
+    private static MonitoringSites site(String url, String regex) {
+        return new MonitoringSites(null, "p1", url, Intervals.TEN, null, Status.ACTIVE, contentCheck(regex), null, null);
+    }
+
+    private static ContentCheck contentCheck(String regex) {
+        return regex != null ? new ContentCheck(null, null, regex, null, null) : null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.uplert.service;
+
+import com.github.uplert.model.ContentCheck;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.MonitorType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MonitorRequestValidatorTest {
+
+    @Test
+    void acceptsUrlsMatchingTheMonitorType() {
+        assertThat(MonitorRequestValidator.validate(request("https://example.com", null, null))).isNull();
+        assertThat(MonitorRequestValidator.validate(request("tcp://mail.example.com:25", MonitorType.TCP, null))).isNull();
+        assertThat(MonitorRequestValidator.validate(request("tls://example.com", MonitorType.TLS, null))).isNull();
+    }
+
+    @Test
+    void rejectsUrlsOfAnotherScheme() {
+        assertThat(MonitorRequestValidator.validate(request("tcp://example.com:25", null, null))).isNotNull();
+        assertThat(MonitorRequestValidator.validate(request("https://example.com", MonitorType.TCP, null))).isNotNull();
+        assertThat(MonitorRequestValidator.validate(request("tcp://example.com", MonitorType.TCP, null))).isNotNull();
+        assertThat(MonitorRequestValidator.validate(request("https://example.com", MonitorType.TLS, null))).isNotNull();
+    }
+
+    @Test
+    void rejectsChecksTheAgentsDoNotSupport() {
+        MonitorRequestDTO tls = request("tls://example.com", MonitorType.TLS, null);
+        tls.setAgentGroup("eu");
+        MonitorRequestDTO regex = request("https://example.com", null, new ContentCheck(null, null, "v\\d+", null, null));
+        regex.setAgentGroup("eu");
+        MonitorRequestDTO blank = request("https://example.com", null, null);
+        blank.setAgentGroup(" ");
+        MonitorRequestDTO keywords = request("https://example.com", null,
+                new ContentCheck(List.of("ok"), null, null, null, null));
+        keywords.setAgentGroup("eu");
+
+        assertThat(MonitorRequestValidator.validate(tls)).isNotNull();
+        assertThat(MonitorRequestValidator.validate(regex)).isNotNull();
+        assertThat(MonitorRequestValidator.validate(blank)).isNotNull();
+        assertThat(MonitorRequestValidator.validate(keywords)).isNull();
+    }
+
+    private static MonitorRequestDTO request(String url, MonitorType type, ContentCheck contentCheck) {
+        return new MonitorRequestDTO("p1", url, Intervals.TEN, null, null, contentCheck, type, null);
+    }
+}
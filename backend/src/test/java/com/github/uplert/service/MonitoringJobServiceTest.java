@@ -0,0 +1,79 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitoringSites;
+import com.github.uplert.model.IncidentState;
+import com.github.uplert.model.Intervals;
+import com.github.uplert.model.MonitorRequestDTO;
+import com.github.uplert.model.Status;
+import com.github.uplert.notify.Alert;
+import com.github.uplert.notify.AlertDispatcher;
+import com.github.uplert.probe.ContentVerdict;
+import com.github.uplert.probe.ProbeEngine;
+import com.github.uplert.probe.ProbeResult;
+import com.github.uplert.websocket.ResultHub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MonitoringJobServiceTest {
+
+    private static final String URL = "https://example.com";
+
+    private final MonitorRegistry monitorRegistry = mock(MonitorRegistry.class);
+    private final AlertDispatcher alertDispatcher = mock(AlertDispatcher.class);
+    private final IncidentTracker incidentTracker = mock(IncidentTracker.class);
+
+    @Test
+    void ignoresResultsOfMonitorsDeletedWhileTheProbeWasInFlight() {
+        MonitoringJobService job = job(incidentTracker);
+
+        job.accept(ProbeResult.failure(URL, 1_700_000_000_000L, 12, "Connection refused"));
+        job.accept(ProbeResult.success(URL, 1_700_000_000_000L, 12, 200,
+                new ContentVerdict(true, null, "abc", 100, false)));
+
+        verify(incidentTracker, never()).record(anyString(), any(), anyBoolean(), any(), any());
+        verify(incidentTracker, never()).swapDigest(anyString(), any(), anyString());
+        verifyNoInteractions(alertDispatcher);
+    }
+
+    @Test
+    void alertsWhenConfirmedDownAndAgainWhenConfirmedUp() {
+        when(monitorRegistry.find(URL)).thenReturn(new MonitoringSites("m1", "p1", URL, Intervals.TEN, null,
+                Status.ACTIVE, null, null, null));
+        MonitoringJobService job = job(new IncidentTracker(null, 1, 2, Duration.ofHours(1), 2, Clock.systemUTC()));
+
+        job.accept(ProbeResult.failure(URL, 1_700_000_000_000L, 12, "Connection refused"));
+        job.accept(ProbeResult.success(URL, 1_700_000_000_000L, 12, 200));
+        job.accept(ProbeResult.success(URL, 1_700_000_000_000L, 12, 200));
+
+        ArgumentCaptor<Alert> alerts = ArgumentCaptor.forClass(Alert.class);
+        verify(alertDispatcher, times(2)).dispatch(alerts.capture());
+        assertThat(alerts.getAllValues().get(0).getTo()).isEqualTo(IncidentState.DOWN);
+        Alert recovery = alerts.getAllValues().get(1);
+        assertThat(recovery.isRecovery()).isTrue();
+        assertThat(recovery.getFrom()).isEqualTo(IncidentState.RECOVERING);
+        assertThat(recovery.getStatusCode()).isEqualTo(200);
+    }
+
+    private MonitoringJobService job(IncidentTracker incidentTracker) {
+        MonitorRequestDTO website = new MonitorRequestDTO("p1", URL, Intervals.TEN, null, Status.ACTIVE, null, null,
+                null);
+        return new MonitoringJobService(website, mock(ResultHub.class), mock(MonitoringLogWriter.class),
+                monitorRegistry, alertDispatcher, mock(ProbeEngine.class),
+                new ProbeCoalescer(new SimpleMeterRegistry(), Duration.ZERO), incidentTracker, Runnable::run);
+    }
+}
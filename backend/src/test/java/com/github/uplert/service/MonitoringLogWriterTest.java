@@ -0,0 +1,74 @@
+package com.github.uplert.service;
+
+import com.github.uplert.domain.MonitoringLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MonitoringLogWriterTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final HistoryService historyService = mock(HistoryService.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final IndexOperations indexOps = mock(IndexOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MonitoringLogWriter writer = new MonitoringLogWriter(mongoTemplate, historyService, meterRegistry,
+            100, 10, Duration.ofMillis(50), 20);
+
+    @Test
+    void createsUniqueProjectIndexOnStart() throws InterruptedException {
+        when(mongoTemplate.indexOps(MonitoringLog.class)).thenReturn(indexOps);
+        writer.start();
+        writer.stop();
+
+        verify(indexOps).ensureIndex(argThat((IndexDefinition index) ->
+                index.getIndexKeys().containsKey("projectId") && Boolean.TRUE.equals(index.getIndexOptions().get("unique"))));
+    }
+
+    @Test
+    void countsEntriesOfAFailedBulkWriteAsDropped() throws InterruptedException {
+        when(mongoTemplate.indexOps(MonitoringLog.class)).thenReturn(indexOps);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulk);
+        when(bulk.execute()).thenThrow(new IllegalStateException("primary stepped down"));
+
+        writer.start();
+        writer.enqueue("p1", null, new MonitoringLog.LogEntry("https://a.example", "2024-01-01T00:00:00.000+0000", 12L, 200));
+        writer.enqueue("p2", null, new MonitoringLog.LogEntry("https://b.example", "2024-01-01T00:00:00.000+0000", 15L, 200));
+        writer.stop();
+
+        assertThat(meterRegistry.get("uplert.log.writer.dropped").counter().count()).isEqualTo(2);
+        // the history is written independently of the log
+        verify(historyService).record(argThat(samples -> samples.size() == 2));
+        assertThat(meterRegistry.get("uplert.log.writer.history.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    void countsSamplesTheHistoryFailedToRecordSeparately() throws InterruptedException {
+        when(mongoTemplate.indexOps(MonitoringLog.class)).thenReturn(indexOps);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulk);
+        doThrow(new IllegalStateException("time series collection missing")).when(historyService).record(anyList());
+
+        writer.start();
+        writer.enqueue("p1", null, new MonitoringLog.LogEntry("https://a.example", "2024-01-01T00:00:00.000+0000", 12L, 200));
+        writer.enqueueFailure("p1", new MonitoringLog.LogEntry("https://b.example", "Connection refused"));
+        writer.stop();
+
+        verify(bulk).execute();
+        assertThat(meterRegistry.get("uplert.log.writer.dropped").counter().count()).isZero();
+        assertThat(meterRegistry.get("uplert.log.writer.history.dropped").counter().count()).isEqualTo(2);
+    }
+}
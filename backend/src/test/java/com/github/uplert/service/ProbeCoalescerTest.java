@@ -0,0 +1,75 @@
+package com.github.uplert.service;
+
+import com.github.uplert.probe.ContentRules;
+import com.github.uplert.probe.ProbeRequest;
+import com.github.uplert.probe.ProbeResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProbeCoalescerTest {
+
+    private final ProbeCoalescer coalescer = new ProbeCoalescer(new SimpleMeterRegistry(), Duration.ofSeconds(2));
+
+    @Test
+    void checksOfTheSameRequestShareTheProbe() {
+        ProbeCoalescer.Join first = coalescer.join(request("https://example.com", rules("ok")), false);
+        ProbeCoalescer.Join second = coalescer.join(request("https://EXAMPLE.com:443/", rules("ok")), false);
+
+        assertThat(first.probes()).isTrue();
+        assertThat(second.probes()).isFalse();
+        assertThat(second.result()).isSameAs(first.result());
+    }
+
+    @Test
+    void differentContentRulesDoNotShareTheProbe() {
+        ProbeCoalescer.Join required = coalescer.join(request("https://example.com", rules("ok")), false);
+        ProbeCoalescer.Join other = coalescer.join(request("https://example.com/", rules("maintenance")), false);
+        ProbeCoalescer.Join none = coalescer.join(request("https://example.com/", null), false);
+
+        assertThat(List.of(required, other, none)).allMatch(ProbeCoalescer.Join::probes);
+        assertThat(other.result()).isNotSameAs(required.result());
+        assertThat(none.result()).isNotSameAs(required.result());
+    }
+
+    @Test
+    void differentTimeoutsDoNotShareTheProbe() {
+        ProbeCoalescer.Join defaults = coalescer.join(ProbeRequest.of("https://example.com"), false);
+        ProbeCoalescer.Join shorter = coalescer.join(
+                new ProbeRequest("https://example.com", Duration.ofSeconds(1), null, null), false);
+
+        assertThat(shorter.probes()).isTrue();
+        assertThat(shorter.result()).isNotSameAs(defaults.result());
+    }
+
+    @Test
+    void freshResultsAreSharedWithPingsOnly() {
+        ProbeCoalescer.Join first = coalescer.join(request("https://example.com", rules("ok")), false);
+        first.complete(ProbeResult.failure("https://example.com", 0, 0, "refused"));
+
+        assertThat(coalescer.join(request("https://example.com", rules("ok")), true).probes()).isFalse();
+        assertThat(coalescer.join(request("https://example.com", rules("ok")), false).probes()).isTrue();
+    }
+
+    @Test
+    void forgetDropsEveryFlightOfTheUrl() {
+        coalescer.join(request("https://example.com", rules("ok")), false);
+        coalescer.join(request("https://example.com", null), false);
+        coalescer.forget("https://example.com/");
+
+        assertThat(coalescer.join(request("https://example.com", rules("ok")), false).probes()).isTrue();
+        assertThat(coalescer.join(request("https://example.com", null), false).probes()).isTrue();
+    }
+
+    private static ProbeRequest request(String url, ContentRules rules) {
+        return ProbeRequest.of(url, rules);
+    }
+
+    private static ContentRules rules(String required) {
+        return ContentRules.compile(List.of(required), List.of(), null, false, 1024);
+    }
+}
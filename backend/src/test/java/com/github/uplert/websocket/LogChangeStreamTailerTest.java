@@ -0,0 +1,105 @@
+package com.github.uplert.websocket;
+
+import com.github.uplert.domain.MonitoringLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogChangeStreamTailerTest {
+
+    private static final String TIMESTAMP = "2024-01-01T00:00:00.000+0000";
+    private static final String TOPIC = ResultHub.logTopic("p1");
+
+    private final ResultHub resultHub = mock(ResultHub.class);
+    private final LogChangeStreamTailer tailer = new LogChangeStreamTailer(mock(MongoTemplate.class), resultHub,
+            Duration.ofSeconds(5), "node-1");
+    // newest first, like the stored log
+    private final List<MonitoringLog.LogEntry> logs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(resultHub.subscribers(TOPIC)).thenReturn(1);
+    }
+
+    @Test
+    void deliversEntriesWithTheSameTimestampOnce() {
+        push(entry("a"));
+        tailer.deliver(log());
+        push(entry("b"));
+        push(entry("c"));
+        tailer.deliver(log());
+        tailer.deliver(log());
+
+        assertThat(published()).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void skipsEntriesTheSessionReadOnSubscribe() {
+        MonitoringLog.LogEntry stored = entry("a");
+        push(stored);
+        tailer.subscribe("p1", mock(WebSocketSession.class), stored);
+        push(entry("b"));
+        tailer.deliver(log());
+
+        assertThat(published()).containsExactly("b");
+    }
+
+    @Test
+    void deliversTheWholeLogWhenTheLastDeliveredEntryWasSlicedOff() {
+        push(entry("a"));
+        tailer.deliver(log());
+        logs.clear();
+        push(entry("b"));
+        push(entry("c"));
+        tailer.deliver(log());
+
+        assertThat(published()).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void publishesNothingWithoutSubscribers() {
+        when(resultHub.subscribers(TOPIC)).thenReturn(0);
+        push(entry("a"));
+        tailer.deliver(log());
+
+        verify(resultHub, never()).publishLog(anyString(), any());
+    }
+
+    private List<String> published() {
+        ArgumentCaptor<MonitoringLog.LogEntry> entries = ArgumentCaptor.forClass(MonitoringLog.LogEntry.class);
+        verify(resultHub, atLeast(0)).publishLog(any(), entries.capture());
+        return entries.getAllValues().stream().map(MonitoringLog.LogEntry::getId).toList();
+    }
+
+    private void push(MonitoringLog.LogEntry entry) {
+        logs.add(0, entry);
+    }
+
+    private MonitoringLog log() {
+        MonitoringLog log = new MonitoringLog();
+        log.setProjectId("p1");
+        log.setLogs(List.copyOf(logs));
+        return log;
+    }
+
+    private static MonitoringLog.LogEntry entry(String id) {
+        MonitoringLog.LogEntry entry = new MonitoringLog.LogEntry("https://example.com", TIMESTAMP, 100, 200);
+        entry.setId(id);
+        return entry;
+    }
+}
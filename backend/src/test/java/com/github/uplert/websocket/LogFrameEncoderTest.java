@@ -0,0 +1,128 @@
+package com.github.uplert.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.uplert.domain.MonitoringLog;
+import com.github.uplert.model.SlowConsumerPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LogFrameEncoderTest {
+
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
+    private final LogFrameEncoder encoder = new LogFrameEncoder();
+    // decoder state, like a client keeps it
+    private final Map<Integer, String> urls = new HashMap<>();
+    private long timestamp;
+    private long responseTime;
+
+    @Test
+    void roundTripsEntriesAcrossFrames() throws IOException {
+        MonitoringLog.LogEntry first = entry("https://a.example", "2024-01-01T00:00:00.000+0000", 120L, 200);
+        MonitoringLog.LogEntry second = entry("https://b.example", "2024-01-01T00:00:10.000+0000", 80L, 503);
+        MonitoringLog.LogEntry third = entry("https://a.example", "2024-01-01T00:00:20.000+0000", 95L, 200);
+
+        JsonNode frame = CBOR.readTree(encoder.encode(List.of(first, second)));
+        assertThat(frame.get("d").size()).isEqualTo(2);
+        assertThat(decode(frame)).containsExactly(
+                "https://a.example 2024-01-01T00:00:00Z 120 200",
+                "https://b.example 2024-01-01T00:00:10Z 80 503");
+
+        frame = CBOR.readTree(encoder.encode(List.of(third)));
+        // known URLs are not repeated
+        assertThat(frame.has("d")).isFalse();
+        assertThat(decode(frame)).containsExactly("https://a.example 2024-01-01T00:00:20Z 95 200");
+    }
+
+    @Test
+    void encodesTimingsAndMissingStatusCodes() throws IOException {
+        MonitoringLog.LogEntry entry = entry("tcp://db.example:5432", "2024-01-01T00:00:00.000+0000", 3L, null);
+        entry.setTimings(new MonitoringLog.Timings(150L, 900L, null, 1200L, 40L));
+        entry.setBytes(512L);
+
+        JsonNode row = CBOR.readTree(encoder.encode(List.of(entry))).get("e").get(0);
+
+        assertThat(row.size()).isEqualTo(5);
+        assertThat(row.get(3).isNull()).isTrue();
+        assertThat(row.get(4).toString()).isEqualTo("[150,900,null,1200,40,512]");
+    }
+
+    @Test
+    void storedLogIsFramedOldestFirst() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.getAcceptedProtocol()).thenReturn(LogFrameEncoder.PROTOCOL);
+        when(session.isOpen()).thenReturn(true);
+        List<byte[]> sent = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> sent.add(invocation.<BinaryMessage>getArgument(0).getPayload().array()))
+                .when(session).sendMessage(any());
+        ResultHub resultHub = new ResultHub(SlowConsumerPolicy.DROP_OLDEST, 256, new SimpleMeterRegistry());
+        int frames = 0;
+        try {
+            resultHub.register(session);
+            // stored newest first
+            resultHub.sendLogs(session, List.of(
+                    entry("https://a.example", "2024-01-01T00:01:00.000+0000", 110L, 200),
+                    entry("https://a.example", "2024-01-01T00:00:00.000+0000", 100L, 200)));
+
+            List<String> decoded = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            // the sender may split the entries over several frames
+            while (decoded.size() < 2 && System.nanoTime() < deadline) {
+                if (sent.size() > frames) {
+                    decoded.addAll(decode(CBOR.readTree(sent.get(frames++))));
+                } else {
+                    Thread.sleep(10);
+                }
+            }
+            assertThat(decoded).containsExactly(
+                    "https://a.example 2024-01-01T00:00:00Z 100 200",
+                    "https://a.example 2024-01-01T00:01:00Z 110 200");
+        } finally {
+            resultHub.stop();
+        }
+    }
+
+    private List<String> decode(JsonNode frame) {
+        if (frame.has("d")) {
+            frame.get("d").fields().forEachRemaining(url -> urls.put(Integer.parseInt(url.getKey()), url.getValue().asText()));
+        }
+        return StreamSupport.stream(frame.get("e").spliterator(), false)
+                .map(row -> {
+                    timestamp += row.get(1).asLong();
+                    responseTime += row.get(2).asLong();
+                    return urls.get(row.get(0).asInt()) + " " + Instant.ofEpochMilli(timestamp) + " " + responseTime
+                            + " " + row.get(3).asInt();
+                })
+                .toList();
+    }
+
+    private static MonitoringLog.LogEntry entry(String url, String timestamp, Long responseTime, Integer statusCode) {
+        MonitoringLog.LogEntry entry = new MonitoringLog.LogEntry();
+        entry.setWebsite(url);
+        entry.setTimestamp(timestamp);
+        entry.setResponseTime(responseTime);
+        entry.setStatusCode(statusCode);
+        return entry;
+    }
+}
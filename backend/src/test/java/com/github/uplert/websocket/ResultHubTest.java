@@ -0,0 +1,132 @@
+package com.github.uplert.websocket;
+
+import com.github.uplert.model.SlowConsumerPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResultHubTest {
+
+    private static final String TOPIC = ResultHub.resultsTopic("p1");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    // holds the first send until released, so the following messages queue up
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ResultHub hub;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hub.stop();
+    }
+
+    @Test
+    void dropsTheOldestMessageWhenTheQueueIsFull() throws Exception {
+        WebSocketSession session = session();
+        hub = hub(SlowConsumerPolicy.DROP_OLDEST);
+        hub.register(session);
+
+        hub.send(session, "m0");
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        hub.send(session, "m1");
+        hub.send(session, "m2");
+        hub.send(session, "m3");
+        release.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> delivered.size() == 3);
+        assertThat(delivered).containsExactly("m0", "m2", "m3");
+        assertThat(meterRegistry.counter("uplert.websocket.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void coalescesResultsToTheLatestPerUrl() throws Exception {
+        WebSocketSession session = session();
+        hub = hub(SlowConsumerPolicy.COALESCE);
+        hub.subscribe(TOPIC, session);
+
+        hub.publish(TOPIC, "a", "a1");
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        hub.publish(TOPIC, "a", "a2");
+        hub.publish(TOPIC, "b", "b1");
+        hub.publish(TOPIC, "a", "a3");
+        release.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> delivered.size() == 3);
+        assertThat(delivered).containsExactly("a1", "a3", "b1");
+        assertThat(meterRegistry.counter("uplert.websocket.dropped").count()).isZero();
+    }
+
+    @Test
+    void disconnectsSessionsThatFallBehind() throws Exception {
+        WebSocketSession session = session();
+        hub = hub(SlowConsumerPolicy.DISCONNECT);
+        hub.subscribe(TOPIC, session);
+
+        hub.send(session, "m0");
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        hub.send(session, "m1");
+        hub.send(session, "m2");
+        hub.send(session, "m3");
+
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(meterRegistry.counter("uplert.websocket.slow.disconnects").count()).isEqualTo(1);
+        assertThat(hub.subscribers(TOPIC)).isZero();
+        release.countDown();
+        hub.send(session, "m4");
+        await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1)).until(() -> delivered.size() == 1);
+    }
+
+    @Test
+    void dropsMessagesForSessionsThatAreNotRegistered() throws Exception {
+        WebSocketSession session = session();
+        hub = hub(SlowConsumerPolicy.DROP_OLDEST);
+        hub.register(session);
+        hub.unregister(session);
+
+        hub.send(session, "late reply");
+        hub.sendLogs(session, List.of());
+
+        assertThat(meterRegistry.get("uplert.websocket.sessions").gauge().value()).isZero();
+        verify(session, never()).sendMessage(any());
+    }
+
+    private ResultHub hub(SlowConsumerPolicy policy) {
+        ResultHub hub = new ResultHub(policy, 2, meterRegistry);
+        hub.init();
+        return hub;
+    }
+
+    private WebSocketSession session() throws IOException {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            delivered.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.uplert.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.uplert.service.MonitorRequestService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketHandlerTest {
+
+    private final MonitorRequestService monitorRequestService = mock(MonitorRequestService.class);
+    private final ResultHub resultHub = mock(ResultHub.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WebSocketHandler handler = new WebSocketHandler(monitorRequestService, resultHub, objectMapper, 2);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    WebSocketHandlerTest() {
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/ws?sessionId=s1"));
+    }
+
+    @Test
+    void pingOfAWebsiteThatIsNotRunningGetsThePlainReply() throws Exception {
+        when(monitorRequestService.manualPing(any(), any())).thenReturn(false);
+
+        handler.handleMessage(session, new TextMessage(
+                "{\"action\":\"ping\",\"website\":{\"projectId\":\"p1\",\"url\":\"https://a.example\",\"interval\":\"TEN\"}}"));
+
+        verify(resultHub).send(session, "Website monitoring is not running for URL: https://a.example");
+    }
+
+    @Test
+    void batchFailuresWithoutMessageStillExplainThemselves() throws Exception {
+        doThrow(new NullPointerException()).when(monitorRequestService).resumeMonitoring("https://a.example");
+
+        handler.handleMessage(session, new TextMessage(
+                "{\"action\":\"resume\",\"websites\":[{\"projectId\":\"p1\",\"url\":\"https://a.example\"},"
+                        + "{\"projectId\":\"p1\",\"url\":\"https://b.example\"}]}"));
+
+        ArgumentCaptor<String> reply = ArgumentCaptor.forClass(String.class);
+        verify(resultHub).send(eq(session), reply.capture());
+        assertThat(objectMapper.readTree(reply.getValue()).toString()).isEqualTo(
+                "{\"action\":\"resume\",\"succeeded\":[\"https://b.example\"],"
+                        + "\"failed\":{\"https://a.example\":\"NullPointerException\"}}");
+    }
+
+    @Test
+    void rejectsBatchesAboveTheLimit() throws Exception {
+        handler.handleMessage(session, new TextMessage(
+                "{\"action\":\"resume\",\"websites\":[{\"url\":\"https://a.example\"},{\"url\":\"https://b.example\"},"
+                        + "{\"url\":\"https://c.example\"}]}"));
+
+        verify(resultHub).send(session, "Error: Batch of 3 websites exceeds the limit of 2");
+    }
+}
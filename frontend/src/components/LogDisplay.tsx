@@ -29,11 +29,57 @@ import {
 import { ChevronDown, ChevronUp, Filter, Search } from "lucide-react";
 import { useMemo, useState } from "react";
 
+// phase durations in microseconds, only sent when the backend runs timed probes
+type Timings = {
+  dns: number | null;
+  connect: number | null;
+  tls: number | null;
+  ttfb: number | null;
+  transfer: number | null;
+};
+
+// handshake details, only sent for TLS monitors
+type Tls = {
+  protocol: string;
+  cipherSuite: string;
+  resumed: boolean;
+  expiresAt: string;
+  daysToExpiry: number;
+  subject: string;
+  validationError?: string;
+};
+
 type Log = {
   website: string;
   timestamp: string;
   responseTime: number;
-  statusCode: number;
+  statusCode: number | null;
+  timings?: Timings;
+  bytes?: number | null;
+  tls?: Tls;
+};
+
+// TCP monitors have no status code, their entries are logged when connected
+const isSuccess = (log: Log) =>
+  log.statusCode === null ||
+  (log.statusCode >= 200 && log.statusCode < 300);
+
+const formatTimings = (log: Log) => {
+  if (!log.timings) {
+    return undefined;
+  }
+  const ms = (micros: number | null) =>
+    micros === null ? "-" : `${(micros / 1000).toFixed(1)}ms`;
+  const { dns, connect, tls, ttfb, transfer } = log.timings;
+  return `DNS ${ms(dns)} · Connect ${ms(connect)} · TLS ${ms(tls)} · TTFB ${ms(ttfb)} · Transfer ${ms(transfer)} · ${log.bytes ?? 0} bytes`;
+};
+
+const formatTls = (log: Log) => {
+  if (!log.tls) {
+    return undefined;
+  }
+  const { protocol, cipherSuite, resumed, expiresAt, subject, validationError } = log.tls;
+  return `${protocol} ${cipherSuite}${resumed ? " (resumed)" : ""} · ${subject} expires ${new Date(expiresAt).toLocaleDateString()}${validationError ? ` · ${validationError}` : ""}`;
 };
 
 type LogDisplayProps = {
@@ -62,16 +108,13 @@ export function LogDisplay({ logs }: LogDisplayProps) {
       .filter((log) => {
         const matchesSearch =
           log.website.toLowerCase().includes(searchQuery.toLowerCase()) ||
-          log.statusCode.toString().includes(searchQuery) ||
+          String(log.statusCode ?? "").includes(searchQuery) ||
           log.responseTime.toString().includes(searchQuery);
 
         const matchesStatus =
           statusFilter === "all" ||
-          (statusFilter === "success" &&
-            log.statusCode >= 200 &&
-            log.statusCode < 300) ||
-          (statusFilter === "error" &&
-            (log.statusCode < 200 || log.statusCode >= 300));
+          (statusFilter === "success" && isSuccess(log)) ||
+          (statusFilter === "error" && !isSuccess(log));
 
         return matchesSearch && matchesStatus;
       })
@@ -188,16 +231,17 @@ export function LogDisplay({ logs }: LogDisplayProps) {
                       {new Date(log.timestamp).toLocaleString()}
                     </TableCell>
                     <TableCell>{log.website}</TableCell>
-                    <TableCell>{log.responseTime}ms</TableCell>
-                    <TableCell>
+                    <TableCell title={formatTimings(log)}>
+                      {log.responseTime}ms
+                    </TableCell>
+                    <TableCell title={formatTls(log)}>
                       <span
                         className={
-                          log.statusCode >= 200 && log.statusCode < 300
-                            ? "text-green-500"
-                            : "text-red-500"
+                          isSuccess(log) ? "text-green-500" : "text-red-500"
                         }
                       >
-                        {log.statusCode}
+                        {log.statusCode ??
+                          (log.tls ? `${log.tls.daysToExpiry}d` : "-")}
                       </span>
                     </TableCell>
                   </TableRow>
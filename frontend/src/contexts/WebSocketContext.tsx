@@ -148,7 +148,8 @@ export const WebSocketProvider: React.FC<{ children: React.ReactNode }> = ({
           };
           updateWebsiteCheck(data.projectId, check);
 
-          if (data.statusCode !== 200) {
+          // TCP monitors report no status code, only an error when they fail
+          if (data.error || (data.statusCode != null && data.statusCode !== 200)) {
             const website = websitesRef.current.find(
               (w) => w.id === data.projectId
             );